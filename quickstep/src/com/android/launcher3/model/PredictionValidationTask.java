@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_MASK;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.BgDataModel.FixedContainerItems;
+import com.android.launcher3.model.QuickstepModelDelegate.PredictorState;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Task to validate the predicted apps restored from the cache once all apps are loaded. Apps
+ * which are not available anymore are dropped, the others are updated with their current state.
+ */
+public class PredictionValidationTask extends BaseModelUpdateTask {
+
+    private final PredictorState mPredictorState;
+
+    PredictionValidationTask(PredictorState predictorState) {
+        mPredictorState = predictorState;
+    }
+
+    @Override
+    public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList apps) {
+        Context context = app.getContext();
+        FixedContainerItems fci = mPredictorState.items;
+
+        boolean hasDroppedItems = false;
+        boolean hasChanges = false;
+        List<ItemInfo> validItems = new ArrayList<>(fci.items.size());
+        for (ItemInfo item : fci.items) {
+            if (item.itemType != ITEM_TYPE_APPLICATION) {
+                // Shortcuts are already resolved against the pinned shortcuts when loading
+                validItems.add(item);
+                continue;
+            }
+            WorkspaceItemInfo validItem = resolveApp(app, apps, item);
+            if (validItem == null) {
+                hasDroppedItems = true;
+                continue;
+            }
+            WorkspaceItemInfo restoredItem = (WorkspaceItemInfo) item;
+            if (isSameApp(restoredItem, validItem)) {
+                // Keep the bound item, with the flags which are only known once it is resolved
+                restoredItem.runtimeStatusFlags = validItem.runtimeStatusFlags;
+                validItems.add(restoredItem);
+            } else {
+                hasChanges = true;
+                validItems.add(validItem);
+            }
+        }
+
+        if (!hasDroppedItems && !hasChanges) {
+            return;
+        }
+        fci.setItems(validItems);
+        bindExtraContainerItems(fci);
+        if (hasDroppedItems) {
+            mPredictorState.storage.write(context, fci.items);
+        }
+    }
+
+    private static WorkspaceItemInfo resolveApp(
+            LauncherAppState app, AllAppsList apps, ItemInfo item) {
+        ComponentName cn = item.getTargetComponent();
+        if (cn == null) {
+            return null;
+        }
+        AppInfo appInfo = apps.data.stream()
+                .filter(info -> item.user.equals(info.user) && cn.equals(info.componentName))
+                .findAny()
+                .orElse(null);
+        if (appInfo != null) {
+            app.getIconCache().getTitleAndIcon(appInfo, false);
+            return appInfo.makeWorkspaceItem();
+        }
+
+        LauncherActivityInfo lai = app.getContext().getSystemService(LauncherApps.class)
+                .resolveActivity(AppInfo.makeLaunchIntent(cn), item.user);
+        if (lai == null) {
+            return null;
+        }
+        appInfo = new AppInfo(app.getContext(), lai, item.user);
+        app.getIconCache().getTitleAndIcon(appInfo, lai, false);
+        return appInfo.makeWorkspaceItem();
+    }
+
+    /**
+     * Returns true if the restored app is shown the same as the resolved one. Only the state known
+     * when restoring is compared, as the other flags, like whether the app is a system app, are
+     * only known once the activity is resolved and do not affect how the app is shown.
+     */
+    private static boolean isSameApp(WorkspaceItemInfo cached, WorkspaceItemInfo resolved) {
+        return Objects.equals(cached.title, resolved.title)
+                && cached.bitmap.icon == resolved.bitmap.icon
+                && (cached.runtimeStatusFlags & FLAG_DISABLED_MASK)
+                        == (resolved.runtimeStatusFlags & FLAG_DISABLED_MASK)
+                && cached.status == resolved.status;
+    }
+}
@@ -27,9 +27,12 @@ import static com.android.launcher3.Utilities.getDevicePrefs;
 import static com.android.launcher3.hybridhotseat.HotseatPredictionModel.convertDataModelToAppTargetBundle;
 import static com.android.launcher3.model.PredictionHelper.getAppTargetFromItemInfo;
 import static com.android.launcher3.model.PredictionHelper.wrapAppTargetWithItemLocation;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_QUIET_USER;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 
 import android.app.StatsManager;
 import android.app.prediction.AppPredictionContext;
@@ -37,14 +40,14 @@ import android.app.prediction.AppPredictionManager;
 import android.app.prediction.AppPredictor;
 import android.app.prediction.AppTarget;
 import android.app.prediction.AppTargetEvent;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.LauncherActivityInfo;
-import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
 import android.os.Bundle;
 import android.os.UserHandle;
+import android.text.TextUtils;
 import android.util.Log;
 import android.util.StatsEvent;
 
@@ -53,16 +56,20 @@ import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.logger.LauncherAtom;
 import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.shortcuts.ShortcutKey;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PersistedItemArray;
 import com.android.quickstep.logging.SettingsChangeLogger;
 import com.android.quickstep.logging.StatsLogCompatManager;
@@ -70,6 +77,7 @@ import com.android.systemui.shared.system.SysUiStatsLog;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -102,6 +110,9 @@ public class QuickstepModelDelegate extends ModelDelegate {
 
     protected boolean mActive = false;
 
+    // Number of app launches seen since the process started, only accessed on the model thread
+    private final HashMap<ComponentKey, Integer> mAppLaunchCounts = new HashMap<>();
+
     public QuickstepModelDelegate(Context context) {
         mContext = context;
         mAppEventProducer = new AppEventProducer(context, this::onAppTargetEvent);
@@ -114,29 +125,72 @@ public class QuickstepModelDelegate extends ModelDelegate {
     @Override
     @WorkerThread
     public void loadItems(UserManagerState ums, Map<ShortcutKey, ShortcutInfo> pinnedShortcuts) {
-        // TODO: Implement caching and preloading
         super.loadItems(ums, pinnedShortcuts);
 
+        // The persisted predictions are restored without resolving the apps, so that they can be
+        // bound with the first page. They are validated once all apps are loaded.
+        List<IconRequestInfo<WorkspaceItemInfo>> iconRequests = new ArrayList<>();
         WorkspaceItemFactory allAppsFactory = new WorkspaceItemFactory(
-                mApp, ums, pinnedShortcuts, mIDP.numDatabaseAllAppsColumns);
+                mApp, ums, pinnedShortcuts, mIDP.numDatabaseAllAppsColumns, iconRequests);
         mAllAppsState.items.setItems(
                 mAllAppsState.storage.read(mApp.getContext(), allAppsFactory, ums.allUsers::get));
         mDataModel.extraItems.put(CONTAINER_PREDICTION, mAllAppsState.items);
 
-        WorkspaceItemFactory hotseatFactory =
-                new WorkspaceItemFactory(mApp, ums, pinnedShortcuts, mIDP.numDatabaseHotseatIcons);
+        WorkspaceItemFactory hotseatFactory = new WorkspaceItemFactory(
+                mApp, ums, pinnedShortcuts, mIDP.numDatabaseHotseatIcons, iconRequests);
         mHotseatState.items.setItems(
                 mHotseatState.storage.read(mApp.getContext(), hotseatFactory, ums.allUsers::get));
         mDataModel.extraItems.put(CONTAINER_HOTSEAT_PREDICTION, mHotseatState.items);
+        loadCachedIcons(iconRequests);
 
         // Widgets prediction isn't used frequently. And thus, it is not persisted on disk.
         mDataModel.extraItems.put(CONTAINER_WIDGETS_PREDICTION, mWidgetsRecommendationState.items);
         mActive = true;
     }
 
+    /**
+     * Loads the titles and icons of the restored apps from the icon cache with a single query.
+     * Apps missing from the icon cache are resolved, and the persisted title is used when no
+     * title is found.
+     */
+    private void loadCachedIcons(List<IconRequestInfo<WorkspaceItemInfo>> iconRequests) {
+        if (iconRequests.isEmpty()) {
+            return;
+        }
+        List<CharSequence> persistedTitles = iconRequests.stream()
+                .map(request -> request.itemInfo.title)
+                .collect(toList());
+        IconCache iconCache = mApp.getIconCache();
+        iconCache.getTitlesAndIconsInBulk(iconRequests);
+
+        for (int i = 0; i < iconRequests.size(); i++) {
+            WorkspaceItemInfo info = iconRequests.get(i).itemInfo;
+            if (info.usingLowResIcon()) {
+                iconCache.getTitleAndIcon(info, false /* useLowResIcon */);
+            }
+            if (TextUtils.isEmpty(info.title)) {
+                info.title = persistedTitles.get(i);
+                info.contentDescription = persistedTitles.get(i);
+            }
+        }
+    }
+
     @Override
     public void workspaceLoadComplete() {
         super.workspaceLoadComplete();
+        if (mApp.getModel().getSubsystems().isLazy()) {
+            // Predictors are recreated once home is shown, the persisted predictions are shown
+            // until then
+            destroyPredictors();
+        } else {
+            recreatePredictors();
+        }
+    }
+
+    @Override
+    @WorkerThread
+    public void startPredictions() {
+        super.startPredictions();
         recreatePredictors();
     }
 
@@ -145,6 +199,15 @@ public class QuickstepModelDelegate extends ModelDelegate {
     public void modelLoadComplete() {
         super.modelLoadComplete();
 
+        // Validate the restored predictions once all apps are loaded. This has no effect if they
+        // were already replaced by the predictor. The loader calls this before its transaction is
+        // committed, and tasks enqueued on the model thread run inline, so they would be dropped
+        // as the model is not loaded yet. Post them to run once the loader is done instead.
+        MODEL_EXECUTOR.post(() -> {
+            mApp.getModel().enqueueModelUpdateTask(new PredictionValidationTask(mAllAppsState));
+            mApp.getModel().enqueueModelUpdateTask(new PredictionValidationTask(mHotseatState));
+        });
+
         // Log snapshot of the model
         SharedPreferences prefs = getDevicePrefs(mApp.getContext());
         long lastSnapshotTimeMillis = prefs.getLong(LAST_SNAPSHOT_TIME_MILLIS, 0);
@@ -332,6 +395,15 @@ public class QuickstepModelDelegate extends ModelDelegate {
     }
 
     private void onAppTargetEvent(AppTargetEvent event, int client) {
+        if (client == CONTAINER_PREDICTION && event.getAction() == AppTargetEvent.ACTION_LAUNCH) {
+            AppTarget target = event.getTarget();
+            if (target != null && target.getClassName() != null
+                    && target.getShortcutInfo() == null) {
+                ComponentKey key = new ComponentKey(new ComponentName(
+                        target.getPackageName(), target.getClassName()), target.getUser());
+                mAppLaunchCounts.merge(key, 1, Integer::sum);
+            }
+        }
         PredictorState state;
         switch(client) {
             case CONTAINER_PREDICTION:
@@ -352,6 +424,12 @@ public class QuickstepModelDelegate extends ModelDelegate {
         }
     }
 
+    @Override
+    @WorkerThread
+    public int getAppLaunchCount(ComponentKey key) {
+        return mAppLaunchCounts.getOrDefault(key, 0);
+    }
+
     private Bundle getBundleForWidgetsOnWorkspace(Context context, BgDataModel dataModel) {
         Bundle bundle = new Bundle();
         ArrayList<AppTargetEvent> widgetEvents =
@@ -425,41 +503,68 @@ public class QuickstepModelDelegate extends ModelDelegate {
         return true;
     }
 
+    /**
+     * Creates the items of the persisted predictions. Apps are created from the persisted entry
+     * without resolving the activity, their icons are added to the provided list of requests to
+     * be loaded in bulk.
+     */
     private static class WorkspaceItemFactory implements PersistedItemArray.ItemFactory<ItemInfo> {
 
         private final LauncherAppState mAppState;
         private final UserManagerState mUMS;
         private final Map<ShortcutKey, ShortcutInfo> mPinnedShortcuts;
         private final int mMaxCount;
+        private final List<IconRequestInfo<WorkspaceItemInfo>> mIconRequests;
+        private final PackageManagerHelper mPmHelper;
 
         private int mReadCount = 0;
 
         protected WorkspaceItemFactory(LauncherAppState appState, UserManagerState ums,
-                Map<ShortcutKey, ShortcutInfo> pinnedShortcuts, int maxCount) {
+                Map<ShortcutKey, ShortcutInfo> pinnedShortcuts, int maxCount,
+                List<IconRequestInfo<WorkspaceItemInfo>> iconRequests) {
             mAppState = appState;
             mUMS = ums;
             mPinnedShortcuts = pinnedShortcuts;
             mMaxCount = maxCount;
+            mIconRequests = iconRequests;
+            mPmHelper = new PackageManagerHelper(appState.getContext());
         }
 
         @Nullable
         @Override
         public ItemInfo createInfo(int itemType, UserHandle user, Intent intent) {
+            return createInfo(itemType, user, intent, null);
+        }
+
+        @Nullable
+        @Override
+        public ItemInfo createInfo(int itemType, UserHandle user, Intent intent,
+                @Nullable String title) {
             if (mReadCount >= mMaxCount) {
                 return null;
             }
             switch (itemType) {
                 case ITEM_TYPE_APPLICATION: {
-                    LauncherActivityInfo lai = mAppState.getContext()
-                            .getSystemService(LauncherApps.class)
-                            .resolveActivity(intent, user);
-                    if (lai == null) {
+                    ComponentName cn = intent.getComponent();
+                    if (cn == null) {
                         return null;
                     }
-                    AppInfo info = new AppInfo(lai, user, mUMS.isUserQuiet(user));
-                    mAppState.getIconCache().getTitleAndIcon(info, lai, false);
+                    WorkspaceItemInfo info = new WorkspaceItemInfo();
+                    info.itemType = ITEM_TYPE_APPLICATION;
+                    info.intent = AppInfo.makeLaunchIntent(cn);
+                    info.user = user;
+                    info.title = title;
+                    if (mUMS.isUserQuiet(user)) {
+                        info.runtimeStatusFlags |= FLAG_DISABLED_QUIET_USER;
+                    }
+                    // Restored apps are shown until they are validated, so they must not look
+                    // enabled when suspended
+                    if (mPmHelper.isAppSuspended(cn.getPackageName(), user)) {
+                        info.runtimeStatusFlags |= FLAG_DISABLED_SUSPENDED;
+                    }
+                    mIconRequests.add(new IconRequestInfo<>(info, null, false));
                     mReadCount++;
-                    return info.makeWorkspaceItem();
+                    return info;
                 }
                 case ITEM_TYPE_DEEP_SHORTCUT: {
                     ShortcutKey key = ShortcutKey.fromIntent(intent, user);
@@ -21,9 +21,9 @@ import android.view.View;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
+import com.android.launcher3.model.DeepShortcutCounts;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.ItemInfoMatcher;
@@ -31,9 +31,9 @@ import com.android.launcher3.util.LauncherBindableItemsContainer;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Launcher model Callbacks for rendering taskbar.
@@ -149,6 +149,11 @@ public class TaskbarModelCallbacks implements
         boolean added = handleItemsAdded(items);
         if (removed || added) {
             commitItemsToUI();
+            // Views bound to an item are kept across commits, rebind the ones modified in place
+            updateWorkspaceItems(items.stream()
+                    .filter(WorkspaceItemInfo.class::isInstance)
+                    .map(WorkspaceItemInfo.class::cast)
+                    .collect(Collectors.toList()), mContext);
         }
     }
 
@@ -193,7 +198,7 @@ public class TaskbarModelCallbacks implements
     }
 
     @Override
-    public void bindDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMapCopy) {
-        mControllers.taskbarPopupController.setDeepShortcutMap(deepShortcutMapCopy);
+    public void bindDeepShortcutMap(DeepShortcutCounts deepShortcutCounts) {
+        mControllers.taskbarPopupController.setDeepShortcutMap(deepShortcutCounts);
     }
 }
@@ -15,18 +15,20 @@
  */
 package com.android.launcher3.taskbar;
 
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_DEEP_SHORTCUTS;
+
 import androidx.annotation.NonNull;
 
 import com.android.launcher3.BubbleTextView;
+import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.R;
+import com.android.launcher3.model.DeepShortcutCounts;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.popup.PopupContainerWithArrow;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.popup.SystemShortcut;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.views.ActivityContext;
 
-import java.util.HashMap;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -51,8 +53,8 @@ public class TaskbarPopupController {
         return mPopupDataProvider;
     }
 
-    public void setDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMapCopy) {
-        mPopupDataProvider.setDeepShortcutMap(deepShortcutMapCopy);
+    public void setDeepShortcutMap(DeepShortcutCounts deepShortcutCounts) {
+        mPopupDataProvider.setDeepShortcutMap(deepShortcutCounts);
     }
 
     /**
@@ -76,6 +78,8 @@ public class TaskbarPopupController {
                         R.layout.popup_container, context.getDragLayer(), false);
         // TODO (b/198438631): configure for taskbar/context
 
+        LauncherAppState.getInstance(context).getModel().getSubsystems()
+                .ensureLoaded(SUBSYSTEM_DEEP_SHORTCUTS);
         container.populateAndShow(icon,
                 mPopupDataProvider.getShortcutCountForItem(item),
                 mPopupDataProvider.getNotificationKeysForItem(item),
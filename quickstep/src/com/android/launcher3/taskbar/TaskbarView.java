@@ -15,10 +15,16 @@
  */
 package com.android.launcher3.taskbar;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Canvas;
+import android.graphics.PointF;
 import android.graphics.Rect;
+import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
@@ -31,6 +37,7 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.Insettable;
 import com.android.launcher3.R;
+import com.android.launcher3.Reorderable;
 import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
@@ -38,11 +45,16 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.uioverrides.ApiWrapper;
 import com.android.launcher3.views.ActivityContext;
 
+import java.io.PrintWriter;
+import java.util.Objects;
+
 /**
  * Hosts the Taskbar content such as Hotseat and Recent Apps. Drawn on top of other apps.
  */
 public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconParent, Insettable {
 
+    private static final int MOVE_ANIMATION_DURATION = 200;
+
     private final int[] mTempOutLocation = new int[2];
 
     private final Rect mIconLayoutBounds = new Rect();
@@ -63,6 +75,17 @@ public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconPar
     // Only non-null when the corresponding Folder is open.
     private @Nullable FolderIcon mLeaveBehindFolderIcon;
 
+    // Left of the views kept across the last hotseat update, to animate them to their new position
+    private final ArrayMap<View, Integer> mPendingMoveStartLefts = new ArrayMap<>();
+    private final ArrayMap<View, ValueAnimator> mMoveAnimators = new ArrayMap<>();
+    private final PointF mTempOffset = new PointF();
+
+    // Bind metrics, for dumps
+    private int mHotseatBindCount;
+    private int mHotseatViewsInflated;
+    private int mHotseatViewsRebound;
+    private int mHotseatViewsKept;
+
     public TaskbarView(@NonNull Context context) {
         this(context, null);
     }
@@ -115,81 +138,180 @@ public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconPar
 
     /**
      * Inflates/binds the Hotseat views to show in the Taskbar given their ItemInfos.
+     *
+     * Existing views are matched to the items they represent, so that an item which only moved
+     * keeps its view, and views are only rebound when their item changed.
      */
     protected void updateHotseatItems(ItemInfo[] hotseatItemInfos) {
-        int nextViewIndex = 0;
+        mHotseatBindCount++;
         int numViewsAnimated = 0;
 
+        View[] oldViews = getIconViews();
+        View[] newViews = new View[hotseatItemInfos.length];
+
+        // First reuse the views already bound to the same items
         for (int i = 0; i < hotseatItemInfos.length; i++) {
             ItemInfo hotseatItemInfo = hotseatItemInfos[i];
             if (hotseatItemInfo == null) {
                 continue;
             }
-
-            // Replace any Hotseat views with the appropriate type if it's not already that type.
-            final int expectedLayoutResId;
-            boolean isFolder = false;
-            if (hotseatItemInfo.isPredictedItem()) {
-                expectedLayoutResId = R.layout.taskbar_predicted_app_icon;
-            } else if (hotseatItemInfo instanceof FolderInfo) {
-                expectedLayoutResId = R.layout.folder_icon;
-                isFolder = true;
-            } else {
-                expectedLayoutResId = R.layout.taskbar_app_icon;
-            }
-
-            View hotseatView = null;
-            while (nextViewIndex < getChildCount()) {
-                hotseatView = getChildAt(nextViewIndex);
-
-                // see if the view can be reused
-                if ((hotseatView.getSourceLayoutResId() != expectedLayoutResId)
-                        || (isFolder && (hotseatView.getTag() != hotseatItemInfo))) {
-                    // Unlike for BubbleTextView, we can't reapply a new FolderInfo after inflation,
-                    // so if the info changes we need to reinflate. This should only happen if a new
-                    // folder is dragged to the position that another folder previously existed.
-                    removeAndRecycle(hotseatView);
-                    hotseatView = null;
-                } else {
-                    // View found
+            int expectedLayoutResId = getLayoutResId(hotseatItemInfo);
+            for (int j = 0; j < oldViews.length; j++) {
+                View view = oldViews[j];
+                if (view != null && view.getSourceLayoutResId() == expectedLayoutResId
+                        && isSameItem((ItemInfo) view.getTag(), hotseatItemInfo)) {
+                    newViews[i] = view;
+                    oldViews[j] = null;
+                    if (view.isLaidOut()) {
+                        // Include the offset of a running move to continue from where it is
+                        mPendingMoveStartLefts.put(view, view.getLeft() + getMoveOffset(view));
+                    }
                     break;
                 }
             }
+        }
+        cancelMoveAnimations();
 
-            if (hotseatView == null) {
-                if (isFolder) {
-                    FolderInfo folderInfo = (FolderInfo) hotseatItemInfo;
+        // Then rebind the remaining views of the same type, or inflate new ones
+        for (int i = 0; i < hotseatItemInfos.length; i++) {
+            ItemInfo hotseatItemInfo = hotseatItemInfos[i];
+            if (hotseatItemInfo == null || newViews[i] != null) {
+                continue;
+            }
+            int expectedLayoutResId = getLayoutResId(hotseatItemInfo);
+            if (!(hotseatItemInfo instanceof FolderInfo)) {
+                // Unlike for BubbleTextView, we can't reapply a new FolderInfo after inflation,
+                // so folder views are only reused for the same FolderInfo.
+                for (int j = 0; j < oldViews.length; j++) {
+                    View view = oldViews[j];
+                    if (view != null && view.getSourceLayoutResId() == expectedLayoutResId
+                            && !(view.getTag() instanceof FolderInfo)) {
+                        newViews[i] = view;
+                        oldViews[j] = null;
+                        break;
+                    }
+                }
+            }
+            if (newViews[i] == null) {
+                View hotseatView;
+                if (hotseatItemInfo instanceof FolderInfo) {
                     FolderIcon folderIcon = FolderIcon.inflateFolderAndIcon(expectedLayoutResId,
-                            mActivityContext, this, folderInfo);
+                            mActivityContext, this, (FolderInfo) hotseatItemInfo);
                     folderIcon.setTextVisible(false);
                     hotseatView = folderIcon;
                 } else {
                     hotseatView = inflate(expectedLayoutResId);
                 }
-                LayoutParams lp = new LayoutParams(mIconTouchSize, mIconTouchSize);
                 hotseatView.setPadding(mItemPadding, mItemPadding, mItemPadding, mItemPadding);
-                addView(hotseatView, nextViewIndex, lp);
+                mHotseatViewsInflated++;
+                newViews[i] = hotseatView;
+            }
+        }
+
+        // Remove the views which are no longer used
+        boolean layoutChanged = false;
+        for (View view : oldViews) {
+            if (view != null) {
+                mPendingMoveStartLefts.remove(view);
+                removeAndRecycle(view);
+                layoutChanged = true;
+            }
+        }
+
+        // Place the views in order and apply the Hotseat ItemInfos
+        boolean orderChanged = false;
+        int nextViewIndex = 0;
+        for (int i = 0; i < hotseatItemInfos.length; i++) {
+            View hotseatView = newViews[i];
+            if (hotseatView == null) {
+                continue;
+            }
+            if (hotseatView.getParent() == null) {
+                addView(hotseatView, nextViewIndex,
+                        new LayoutParams(mIconTouchSize, mIconTouchSize));
+                layoutChanged = true;
+            } else if (getChildAt(nextViewIndex) != hotseatView) {
+                detachViewFromParent(hotseatView);
+                attachViewToParent(hotseatView, nextViewIndex, hotseatView.getLayoutParams());
+                orderChanged = true;
             }
 
-            // Apply the Hotseat ItemInfos, or hide the view if there is none for a given index.
             if (hotseatView instanceof BubbleTextView
-                    && hotseatItemInfo instanceof WorkspaceItemInfo) {
+                    && hotseatItemInfos[i] instanceof WorkspaceItemInfo) {
                 BubbleTextView btv = (BubbleTextView) hotseatView;
-                WorkspaceItemInfo workspaceInfo = (WorkspaceItemInfo) hotseatItemInfo;
-
-                boolean animate = btv.shouldAnimateIconChange((WorkspaceItemInfo) hotseatItemInfo);
-                btv.applyFromWorkspaceItem(workspaceInfo, animate, numViewsAnimated);
-                if (animate) {
-                    numViewsAnimated++;
+                WorkspaceItemInfo workspaceInfo = (WorkspaceItemInfo) hotseatItemInfos[i];
+                if (btv.getTag() == workspaceInfo) {
+                    mHotseatViewsKept++;
+                } else if (hasSameContent(btv.getTag(), workspaceInfo)) {
+                    btv.setTag(workspaceInfo);
+                    mHotseatViewsKept++;
+                } else {
+                    boolean animate = btv.shouldAnimateIconChange(workspaceInfo);
+                    btv.applyFromWorkspaceItem(workspaceInfo, animate, numViewsAnimated);
+                    mHotseatViewsRebound++;
+                    if (animate) {
+                        numViewsAnimated++;
+                    }
                 }
             }
             setClickAndLongClickListenersForIcon(hotseatView);
             nextViewIndex++;
         }
-        // Remove remaining views
-        while (nextViewIndex < getChildCount()) {
-            removeAndRecycle(getChildAt(nextViewIndex));
+        if (orderChanged) {
+            requestLayout();
+            invalidate();
+        } else if (!layoutChanged) {
+            // No view moves, only finish the moves cancelled above
+            animatePendingMoves();
+        }
+    }
+
+    private static int getLayoutResId(ItemInfo info) {
+        if (info.isPredictedItem()) {
+            return R.layout.taskbar_predicted_app_icon;
+        } else if (info instanceof FolderInfo) {
+            return R.layout.folder_icon;
+        } else {
+            return R.layout.taskbar_app_icon;
+        }
+    }
+
+    /**
+     * Returns whether {@param newInfo} represents the same item as {@param oldInfo}, so that the
+     * view bound to the old item can be kept for the new one.
+     */
+    private static boolean isSameItem(@Nullable ItemInfo oldInfo, ItemInfo newInfo) {
+        if (oldInfo == newInfo) {
+            return true;
         }
+        if (oldInfo == null || oldInfo instanceof FolderInfo || newInfo instanceof FolderInfo) {
+            return false;
+        }
+        if (oldInfo.isPredictedItem() || newInfo.isPredictedItem()) {
+            // Predictions are recreated on every update, match them by their target
+            return oldInfo.isPredictedItem() == newInfo.isPredictedItem()
+                    && oldInfo.user.equals(newInfo.user)
+                    && Objects.equals(oldInfo.getTargetComponent(), newInfo.getTargetComponent());
+        }
+        return oldInfo.id != ItemInfo.NO_ID && oldInfo.id == newInfo.id;
+    }
+
+    /**
+     * Returns whether binding {@param newInfo} would not change the view bound to
+     * {@param oldTag}.
+     */
+    private static boolean hasSameContent(Object oldTag, WorkspaceItemInfo newInfo) {
+        if (!(oldTag instanceof WorkspaceItemInfo)) {
+            return false;
+        }
+        WorkspaceItemInfo oldInfo = (WorkspaceItemInfo) oldTag;
+        return oldInfo.itemType == newInfo.itemType
+                && oldInfo.bitmap == newInfo.bitmap
+                && oldInfo.runtimeStatusFlags == newInfo.runtimeStatusFlags
+                && oldInfo.user.equals(newInfo.user)
+                && Objects.equals(oldInfo.getTargetComponent(), newInfo.getTargetComponent())
+                && TextUtils.equals(oldInfo.title, newInfo.title)
+                && TextUtils.equals(oldInfo.contentDescription, newInfo.contentDescription);
     }
 
     /**
@@ -228,6 +350,56 @@ public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconPar
             iconEnd = iconStart - mItemMarginLeftRight;
         }
         mIconLayoutBounds.left = iconEnd;
+        animatePendingMoves();
+    }
+
+    private int getMoveOffset(View view) {
+        if (!(view instanceof Reorderable)) {
+            return 0;
+        }
+        ((Reorderable) view).getReorderPreviewOffset(mTempOffset);
+        return Math.round(mTempOffset.x);
+    }
+
+    /**
+     * Cancels the moves started by a previous update, and resets the offset of the moved views
+     */
+    private void cancelMoveAnimations() {
+        for (int i = mMoveAnimators.size() - 1; i >= 0; i--) {
+            View view = mMoveAnimators.keyAt(i);
+            mMoveAnimators.removeAt(i).cancel();
+            ((Reorderable) view).setReorderPreviewOffset(0, 0);
+        }
+    }
+
+    /**
+     * Animates the views kept by {@link #updateHotseatItems} from their previous position
+     */
+    private void animatePendingMoves() {
+        if (mPendingMoveStartLefts.isEmpty()) {
+            return;
+        }
+        boolean animate = isShown();
+        for (int i = mPendingMoveStartLefts.size() - 1; i >= 0; i--) {
+            View view = mPendingMoveStartLefts.keyAt(i);
+            int dx = mPendingMoveStartLefts.valueAt(i) - view.getLeft();
+            if (animate && dx != 0 && view instanceof Reorderable && view.getParent() == this) {
+                Reorderable reorderable = (Reorderable) view;
+                ValueAnimator anim = ValueAnimator.ofFloat(dx, 0);
+                anim.addUpdateListener(a ->
+                        reorderable.setReorderPreviewOffset((float) a.getAnimatedValue(), 0));
+                anim.addListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        mMoveAnimators.remove(view, anim);
+                    }
+                });
+                anim.setDuration(MOVE_ANIMATION_DURATION);
+                mMoveAnimators.put(view, anim);
+                anim.start();
+            }
+        }
+        mPendingMoveStartLefts.clear();
     }
 
     @Override
@@ -326,6 +498,15 @@ public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconPar
         // Ignore, we just implement Insettable to draw behind system insets.
     }
 
+    protected void dumpLogs(String prefix, PrintWriter pw) {
+        pw.println(prefix + "TaskbarView:");
+        pw.println(prefix + "\thotseatBindCount=" + mHotseatBindCount);
+        pw.println(prefix + "\thotseatViewsInflated=" + mHotseatViewsInflated);
+        pw.println(prefix + "\thotseatViewsRebound=" + mHotseatViewsRebound);
+        pw.println(prefix + "\thotseatViewsKept=" + mHotseatViewsKept);
+        pw.println(prefix + "\ticonCount=" + getChildCount());
+    }
+
     public boolean areIconsVisible() {
         // Consider the overall visibility
         return getVisibility() == VISIBLE;
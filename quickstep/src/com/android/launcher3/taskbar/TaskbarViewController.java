@@ -38,6 +38,8 @@ import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.MultiValueAlpha;
 import com.android.quickstep.AnimatedFloat;
 
+import java.io.PrintWriter;
+
 /**
  * Handles properties/data collection, then passes the results to TaskbarView to render.
  */
@@ -99,6 +101,11 @@ public class TaskbarViewController {
         LauncherAppState.getInstance(mActivity).getModel().removeCallbacks(mModelCallbacks);
     }
 
+    protected void dumpLogs(String prefix, PrintWriter pw) {
+        pw.println(prefix + "TaskbarViewController:");
+        mTaskbarView.dumpLogs(prefix + "\t", pw);
+    }
+
     public boolean areIconsVisible() {
         return mTaskbarView.areIconsVisible();
     }
@@ -35,7 +35,9 @@ import com.android.launcher3.icons.IconProvider;
 import com.android.launcher3.icons.IconProvider.IconChangeListener;
 import com.android.launcher3.util.Executors.SimpleThreadFactory;
 import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.quickstep.util.GroupTask;
+import com.android.quickstep.util.ThumbnailDrawStats;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.ThumbnailData;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
@@ -78,6 +80,8 @@ public class RecentsModel extends TaskStackChangeListener implements IconChangeL
         IconProvider iconProvider = new IconProvider(context);
         mIconCache = new TaskIconCache(context, RECENTS_MODEL_EXECUTOR, iconProvider);
         mThumbnailCache = new TaskThumbnailCache(context, RECENTS_MODEL_EXECUTOR);
+        MemoryAccounting.INSTANCE.register("taskThumbnails", mThumbnailCache::estimateSize);
+        MemoryAccounting.INSTANCE.register("taskIcons", mIconCache::estimateSize);
 
         TaskStackChangeListeners.getInstance().registerTaskStackListener(this);
         iconProvider.registerIconChangeListener(this, MAIN_EXECUTOR.getHandler());
@@ -224,6 +228,7 @@ public class RecentsModel extends TaskStackChangeListener implements IconChangeL
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        ThumbnailDrawStats.INSTANCE.dump("  ", writer);
     }
 
     /**
@@ -17,6 +17,7 @@ package com.android.quickstep;
 
 import static com.android.launcher3.uioverrides.QuickstepLauncher.GO_LOW_RAM_RECENTS_ENABLED;
 import static com.android.launcher3.util.DisplayController.CHANGE_DENSITY;
+import static com.android.launcher3.util.MemoryAccounting.CACHE_ENTRY_BYTES;
 
 import android.app.ActivityManager.TaskDescription;
 import android.content.Context;
@@ -42,6 +43,7 @@ import com.android.launcher3.icons.IconProvider;
 import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.DisplayController.DisplayInfoChangeListener;
 import com.android.launcher3.util.DisplayController.Info;
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.util.CancellableTask;
 import com.android.quickstep.util.TaskKeyLruCache;
@@ -127,6 +129,21 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         mBgExecutor.execute(this::resetFactory);
     }
 
+    /**
+     * Estimates the memory retained by the cached icons
+     */
+    public void estimateSize(SizeEstimate estimate) {
+        mIconCache.forEach(entry -> {
+            estimate.addObjects(1, CACHE_ENTRY_BYTES);
+            estimate.addDrawable(entry.icon);
+        });
+        synchronized (mDefaultIcons) {
+            for (int i = 0; i < mDefaultIcons.size(); i++) {
+                estimate.addBitmapInfo(mDefaultIcons.valueAt(i));
+            }
+        }
+    }
+
     void onTaskRemoved(TaskKey taskKey) {
         mIconCache.remove(taskKey);
     }
@@ -15,10 +15,13 @@
  */
 package com.android.quickstep;
 
+import static com.android.launcher3.util.MemoryAccounting.CACHE_ENTRY_BYTES;
+
 import android.content.Context;
 import android.content.res.Resources;
 
 import com.android.launcher3.R;
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.util.CancellableTask;
 import com.android.quickstep.util.TaskKeyLruCache;
@@ -191,6 +194,16 @@ public class TaskThumbnailCache {
         mCache.remove(key);
     }
 
+    /**
+     * Estimates the memory retained by the cached thumbnails
+     */
+    public void estimateSize(SizeEstimate estimate) {
+        mCache.forEach(thumbnail -> {
+            estimate.addObjects(1, CACHE_ENTRY_BYTES);
+            estimate.addBitmap(thumbnail.thumbnail);
+        });
+    }
+
     /**
      * @return The cache size.
      */
@@ -45,11 +45,9 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
-import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.Region;
 import android.graphics.drawable.Icon;
-import android.hardware.display.DisplayManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.IBinder;
@@ -58,10 +56,8 @@ import android.os.SystemClock;
 import android.os.SystemProperties;
 import android.util.Log;
 import android.view.Choreographer;
-import android.view.Display;
 import android.view.InputEvent;
 import android.view.MotionEvent;
-import android.view.Surface;
 import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.BinderThread;
@@ -82,6 +78,7 @@ import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.tracing.LauncherTraceProto;
 import com.android.launcher3.tracing.TouchInteractionServiceProto;
 import com.android.launcher3.uioverrides.plugins.PluginManagerWrapper;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.launcher3.util.OnboardingPrefs;
 import com.android.launcher3.util.TraceHelper;
 import com.android.launcher3.util.WindowBounds;
@@ -99,6 +96,8 @@ import com.android.quickstep.inputconsumers.SysUiOverlayInputConsumer;
 import com.android.quickstep.inputconsumers.TaskbarStashInputConsumer;
 import com.android.quickstep.util.ActiveGestureLog;
 import com.android.quickstep.util.AssistantUtilities;
+import com.android.quickstep.util.GestureTrace;
+import com.android.quickstep.util.InputRotationTransform;
 import com.android.quickstep.util.LauncherSplitScreenListener;
 import com.android.quickstep.util.ProtoTracer;
 import com.android.quickstep.util.ProxyScreenStatusProvider;
@@ -106,7 +105,6 @@ import com.android.quickstep.util.SplitScreenBounds;
 import com.android.systemui.shared.recents.IOverviewProxy;
 import com.android.systemui.shared.recents.ISystemUiProxy;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
-import com.android.systemui.shared.system.InputChannelCompat;
 import com.android.systemui.shared.system.InputChannelCompat.InputEventReceiver;
 import com.android.systemui.shared.system.InputConsumerController;
 import com.android.systemui.shared.system.InputMonitorCompat;
@@ -119,10 +117,14 @@ import com.android.wm.shell.splitscreen.ISplitScreen;
 import com.android.wm.shell.startingsurface.IStartingWindow;
 import com.android.wm.shell.transition.IShellTransitions;
 
+import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 
 /**
@@ -148,6 +150,11 @@ public class TouchInteractionService extends Service
     public static final boolean ENABLE_PER_WINDOW_INPUT_ROTATION =
             SystemProperties.getBoolean("persist.debug.per_window_input_rotation", false);
 
+    private static final boolean ENABLE_GESTURE_TRACE =
+            SystemProperties.getBoolean("persist.debug.gesture_trace", false);
+    private static final int GESTURE_TRACE_CAPACITY = 4096;
+    private static final String GESTURE_TRACE_FILE = "gesture_trace.bin";
+
     private int mBackGestureNotificationCounter = -1;
 
     private final TISBinder mTISBinder = new TISBinder();
@@ -353,7 +360,11 @@ public class TouchInteractionService extends Service
     private InputMonitorCompat mInputMonitorCompat;
     private InputEventReceiver mInputEventReceiver;
 
-    private DisplayManager mDisplayManager;
+    @Nullable
+    private InputRotationTransform mInputRotationTransform;
+    @Nullable
+    private final GestureTrace mGestureTrace =
+            ENABLE_GESTURE_TRACE ? new GestureTrace(GESTURE_TRACE_CAPACITY) : null;
 
     private TaskbarManager mTaskbarManager;
     private Function<GestureState, AnimatedFloat> mSwipeUpProxyProvider = i -> null;
@@ -366,7 +377,9 @@ public class TouchInteractionService extends Service
         mMainChoreographer = Choreographer.getInstance();
         mAM = ActivityManagerWrapper.getInstance();
         mDeviceState = new RecentsAnimationDeviceState(this, true);
-        mDisplayManager = getSystemService(DisplayManager.class);
+        if (ENABLE_PER_WINDOW_INPUT_ROTATION) {
+            mInputRotationTransform = new InputRotationTransform(this);
+        }
         mTaskbarManager = new TaskbarManager(this);
         mRotationTouchHelper = mDeviceState.getRotationTouchHelper();
 
@@ -538,6 +551,9 @@ public class TouchInteractionService extends Service
         }
         disposeEventHandlers();
         mDeviceState.destroy();
+        if (mInputRotationTransform != null) {
+            mInputRotationTransform.destroy();
+        }
         SystemUiProxy.INSTANCE.get(this).clearProxy();
         ProtoTracer.INSTANCE.get(this).stop();
         ProtoTracer.INSTANCE.get(this).remove(this);
@@ -563,18 +579,15 @@ public class TouchInteractionService extends Service
             return;
         }
         MotionEvent event = (MotionEvent) ev;
-        if (ENABLE_PER_WINDOW_INPUT_ROTATION) {
-            final Display display = mDisplayManager.getDisplay(mDeviceState.getDisplayId());
-            int rotation = display.getRotation();
-            Point sz = new Point();
-            display.getRealSize(sz);
-            if (rotation != Surface.ROTATION_0) {
-                event.transform(InputChannelCompat.createRotationMatrix(rotation, sz.x, sz.y));
-            }
+        if (mInputRotationTransform != null) {
+            mInputRotationTransform.apply(event);
         }
 
         TestLogging.recordMotionEvent(
                 TestProtocol.SEQUENCE_TIS, "TouchInteractionService.onInputEvent", event);
+        if (mGestureTrace != null) {
+            mGestureTrace.add(event, mDeviceState.getSystemUiStateFlags());
+        }
 
         if (!mDeviceState.isUserUnlocked()) {
             return;
@@ -987,6 +1000,8 @@ public class TouchInteractionService extends Service
             pw.println("  mConsumer=" + mConsumer.getName());
             ActiveGestureLog.INSTANCE.dump("", pw);
             RecentsModel.INSTANCE.get(this).dump("", pw);
+            MemoryAccounting.INSTANCE.dump("", pw);
+            mTaskbarManager.dumpLogs("", pw);
             pw.println("ProtoTrace:");
             pw.println("  file=" + ProtoTracer.INSTANCE.get(this).getTraceFile());
         }
@@ -995,6 +1010,7 @@ public class TouchInteractionService extends Service
     private void printAvailableCommands(PrintWriter pw) {
         pw.println("Available commands:");
         pw.println("  clear-touch-log: Clears the touch interaction log");
+        pw.println("  save-gesture-trace: Saves the recorded input events for offline replay");
     }
 
     private void onCommand(PrintWriter pw, LinkedList<String> args) {
@@ -1002,6 +1018,33 @@ public class TouchInteractionService extends Service
             case "clear-touch-log":
                 ActiveGestureLog.INSTANCE.clear();
                 break;
+            case "save-gesture-trace":
+                saveGestureTrace(pw);
+                break;
+        }
+    }
+
+    private void saveGestureTrace(PrintWriter pw) {
+        if (mGestureTrace == null) {
+            pw.println("Gesture trace is disabled, set persist.debug.gesture_trace to enable");
+            return;
+        }
+        // Events are recorded on the main thread, take a snapshot there before writing it out
+        GestureTrace trace;
+        try {
+            trace = MAIN_EXECUTOR.submit(mGestureTrace::copy).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "Failed to copy gesture trace", e);
+            pw.println("Failed to copy gesture trace: " + e);
+            return;
+        }
+        File file = new File(getCacheDir(), GESTURE_TRACE_FILE);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            trace.writeTo(out);
+            pw.println("Saved " + trace.size() + " events to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save gesture trace", e);
+            pw.println("Failed to save gesture trace: " + e);
         }
     }
 
@@ -36,12 +36,10 @@ import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
 import android.graphics.PointF;
-import android.hardware.display.DisplayManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
-import android.view.Display;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.ViewConfiguration;
@@ -52,6 +50,7 @@ import com.android.launcher3.R;
 import com.android.launcher3.testing.TestLogging;
 import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.tracing.InputConsumerProto;
+import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.util.TraceHelper;
 import com.android.quickstep.AbsSwipeUpHandler;
@@ -132,7 +131,7 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
     // Might be displacement in X or Y, depending on the direction we are swiping from the nav bar.
     private float mStartDisplacement;
 
-    private final DisplayManager mDisplayManager;
+    private final DisplayController mDisplayController;
 
     private Handler mMainThreadHandler;
     private Runnable mCancelRecentsAnimationRunnable = () -> {
@@ -176,7 +175,7 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
         mPassedPilferInputSlop = mPassedWindowMoveSlop = continuingPreviousGesture;
         mDisableHorizontalSwipe = !mPassedPilferInputSlop && disableHorizontalSwipe;
         mRotationTouchHelper = mDeviceState.getRotationTouchHelper();
-        mDisplayManager = getSystemService(DisplayManager.class);
+        mDisplayController = DisplayController.INSTANCE.get(this);
     }
 
     @Override
@@ -203,8 +202,8 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
         }
 
         if (TouchInteractionService.ENABLE_PER_WINDOW_INPUT_ROTATION) {
-            final Display display = mDisplayManager.getDisplay(mDeviceState.getDisplayId());
-            final int rotation = display.getRotation();
+            // Use the cached display info, querying the display for every event is expensive
+            final int rotation = mDisplayController.getInfo().rotation;
             if (rotation != mLastRotation) {
                 // If rotation changes, reset tracking to avoid degenerate velocities.
                 mLastPos.set(ev.getX(), ev.getY());
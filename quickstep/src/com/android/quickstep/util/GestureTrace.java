@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.view.MotionEvent;
+
+import androidx.annotation.UiThread;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A bounded record of the input events received by the gesture nav input consumers, which can be
+ * saved in a compact binary format and replayed later to measure the cost of gesture handling.
+ *
+ * Only the primary pointer is recorded. Once full, the oldest events are overwritten. Recording
+ * an event does not allocate, so it can stay enabled on the input path.
+ *
+ * File format, big endian:
+ *   int magic, int version, int eventCount, long firstEventTime, followed for each event by
+ *   int timeDeltaMs (from the previous event), byte action, float x, float y, int sysUiStateFlags
+ */
+public class GestureTrace {
+
+    private static final int MAGIC = 0x47545243; // "GTRC"
+    private static final int VERSION = 1;
+
+    private final long[] mEventTimes;
+    private final byte[] mActions;
+    private final float[] mXs;
+    private final float[] mYs;
+    private final int[] mStateFlags;
+
+    // Index of the oldest event
+    private int mStart;
+    private int mSize;
+
+    public GestureTrace(int capacity) {
+        mEventTimes = new long[capacity];
+        mActions = new byte[capacity];
+        mXs = new float[capacity];
+        mYs = new float[capacity];
+        mStateFlags = new int[capacity];
+    }
+
+    /**
+     * Records the primary pointer of the event along with the sysui state at that time
+     */
+    @UiThread
+    public void add(MotionEvent event, int sysUiStateFlags) {
+        add(event.getEventTime(), event.getActionMasked(), event.getX(), event.getY(),
+                sysUiStateFlags);
+    }
+
+    /**
+     * Records an event, overwriting the oldest one if the trace is full
+     */
+    public void add(long eventTime, int action, float x, float y, int sysUiStateFlags) {
+        int capacity = mEventTimes.length;
+        int index;
+        if (mSize < capacity) {
+            index = (mStart + mSize) % capacity;
+            mSize++;
+        } else {
+            index = mStart;
+            mStart = (mStart + 1) % capacity;
+        }
+        mEventTimes[index] = eventTime;
+        mActions[index] = (byte) action;
+        mXs[index] = x;
+        mYs[index] = y;
+        mStateFlags[index] = sysUiStateFlags;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        mStart = 0;
+        mSize = 0;
+    }
+
+    public long getEventTime(int i) {
+        return mEventTimes[toIndex(i)];
+    }
+
+    public int getAction(int i) {
+        return mActions[toIndex(i)];
+    }
+
+    public float getX(int i) {
+        return mXs[toIndex(i)];
+    }
+
+    public float getY(int i) {
+        return mYs[toIndex(i)];
+    }
+
+    public int getSysUiStateFlags(int i) {
+        return mStateFlags[toIndex(i)];
+    }
+
+    /**
+     * Returns a copy of the recorded events. As events are recorded on the UI thread, this should
+     * be called on the UI thread to get a consistent snapshot which can be used on any thread.
+     */
+    @UiThread
+    public GestureTrace copy() {
+        GestureTrace copy = new GestureTrace(mSize);
+        for (int i = 0; i < mSize; i++) {
+            copy.add(getEventTime(i), getAction(i), getX(i), getY(i), getSysUiStateFlags(i));
+        }
+        return copy;
+    }
+
+    private int toIndex(int i) {
+        if (i < 0 || i >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + i + " size=" + mSize);
+        }
+        return (mStart + i) % mEventTimes.length;
+    }
+
+    /**
+     * Returns a new event for the i-th recorded event, which should be recycled by the caller
+     */
+    public MotionEvent obtainEvent(int i, long downTime) {
+        return MotionEvent.obtain(downTime, getEventTime(i), getAction(i), getX(i), getY(i), 0);
+    }
+
+    /**
+     * Writes the recorded events, oldest first
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mSize);
+        long lastTime = mSize > 0 ? getEventTime(0) : 0;
+        data.writeLong(lastTime);
+        for (int i = 0; i < mSize; i++) {
+            long time = getEventTime(i);
+            data.writeInt((int) (time - lastTime));
+            data.writeByte(getAction(i));
+            data.writeFloat(getX(i));
+            data.writeFloat(getY(i));
+            data.writeInt(getSysUiStateFlags(i));
+            lastTime = time;
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a trace previously written with {@link #writeTo(OutputStream)}
+     */
+    public static GestureTrace readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a gesture trace");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported gesture trace version " + version);
+        }
+        int size = data.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid event count " + size);
+        }
+        GestureTrace trace = new GestureTrace(size);
+        long time = data.readLong();
+        for (int i = 0; i < size; i++) {
+            time += data.readInt();
+            int action = data.readByte();
+            float x = data.readFloat();
+            float y = data.readFloat();
+            trace.add(time, action, x, y, data.readInt());
+        }
+        return trace;
+    }
+}
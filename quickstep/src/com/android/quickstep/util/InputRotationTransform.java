@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.content.Context;
+import android.graphics.Matrix;
+import android.view.MotionEvent;
+import android.view.Surface;
+
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.DisplayController;
+import com.android.launcher3.util.DisplayController.DisplayInfoChangeListener;
+import com.android.launcher3.util.DisplayController.Info;
+import com.android.systemui.shared.system.InputChannelCompat;
+
+/**
+ * Transforms input events from the display coordinates to the unrotated coordinates. The
+ * transform is only recomputed when the display rotation or size changes, so that applying it
+ * to an event does not query the display or allocate.
+ */
+public class InputRotationTransform implements DisplayInfoChangeListener {
+
+    private final Matrix mMatrix = new Matrix();
+    private final DisplayController mDisplayController;
+
+    private int mRotation = Surface.ROTATION_0;
+    private int mDisplayWidth;
+    private int mDisplayHeight;
+
+    public InputRotationTransform(Context context) {
+        mDisplayController = DisplayController.INSTANCE.get(context);
+        Info info = mDisplayController.getInfo();
+        update(info.rotation, info.currentSize.x, info.currentSize.y);
+        mDisplayController.addChangeListener(this);
+    }
+
+    @VisibleForTesting
+    InputRotationTransform(int rotation, int displayWidth, int displayHeight) {
+        mDisplayController = null;
+        update(rotation, displayWidth, displayHeight);
+    }
+
+    @Override
+    public void onDisplayInfoChanged(Context context, Info info, int flags) {
+        update(info.rotation, info.currentSize.x, info.currentSize.y);
+    }
+
+    private void update(int rotation, int displayWidth, int displayHeight) {
+        if (rotation == mRotation && displayWidth == mDisplayWidth
+                && displayHeight == mDisplayHeight) {
+            return;
+        }
+        mRotation = rotation;
+        mDisplayWidth = displayWidth;
+        mDisplayHeight = displayHeight;
+        if (rotation == Surface.ROTATION_0) {
+            mMatrix.reset();
+        } else {
+            mMatrix.set(InputChannelCompat.createRotationMatrix(
+                    rotation, displayWidth, displayHeight));
+        }
+    }
+
+    /**
+     * Returns the display rotation the transform was computed for
+     */
+    public int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * Transforms the event to the unrotated coordinates, if the display is rotated
+     */
+    @UiThread
+    public void apply(MotionEvent event) {
+        if (mRotation != Surface.ROTATION_0) {
+            event.transform(mMatrix);
+        }
+    }
+
+    public void destroy() {
+        if (mDisplayController != null) {
+            mDisplayController.removeChangeListener(this);
+        }
+    }
+}
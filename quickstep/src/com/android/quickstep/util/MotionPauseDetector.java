@@ -52,7 +52,9 @@ public class MotionPauseDetector {
     private final Context mContext;
     private final SystemVelocityProvider mVelocityProvider;
 
-    private Float mPreviousVelocity = null;
+    // Kept as a primitive, as boxing it would allocate for every event
+    private float mPreviousVelocity;
+    private boolean mHasPreviousVelocity;
 
     private OnMotionPauseListener mOnMotionPauseListener;
     private boolean mIsPaused;
@@ -124,10 +126,11 @@ public class MotionPauseDetector {
                 : mMakePauseHarderToTrigger ? HARDER_TRIGGER_TIMEOUT : FORCE_PAUSE_TIMEOUT;
         mForcePauseTimeout.setAlarm(timeoutMs);
         float newVelocity = mVelocityProvider.addMotionEvent(ev, ev.getPointerId(pointerIndex));
-        if (mPreviousVelocity != null) {
+        if (mHasPreviousVelocity) {
             checkMotionPaused(newVelocity, mPreviousVelocity, ev.getEventTime());
         }
         mPreviousVelocity = newVelocity;
+        mHasPreviousVelocity = true;
     }
 
     private void checkMotionPaused(float velocity, float prevVelocity, long time) {
@@ -191,7 +194,7 @@ public class MotionPauseDetector {
 
     public void clear() {
         mVelocityProvider.clear();
-        mPreviousVelocity = null;
+        mHasPreviousVelocity = false;
         setOnMotionPauseListener(null);
         mIsPaused = mHasEverBeenPaused = false;
         mSlowStartTime = 0;
@@ -220,8 +223,7 @@ public class MotionPauseDetector {
         }
 
         /**
-         * Adds a new motion events, and returns the velocity at this point, or null if
-         * the velocity is not available
+         * Adds a new motion events, and returns the velocity at this point
          */
         public float addMotionEvent(MotionEvent ev, int pointer) {
             mVelocityTracker.addMovement(ev);
@@ -21,6 +21,7 @@ import com.android.systemui.shared.recents.model.Task.TaskKey;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
@@ -92,6 +93,15 @@ public class TaskKeyLruCache<V> {
         }
     }
 
+    /**
+     * Calls the consumer for each value in the cache, from the least recently accessed
+     */
+    public synchronized void forEach(Consumer<V> consumer) {
+        for (Entry<V> entry : mMap.values()) {
+            consumer.accept(entry.mValue);
+        }
+    }
+
     private static class Entry<V> {
 
         final TaskKey mKey;
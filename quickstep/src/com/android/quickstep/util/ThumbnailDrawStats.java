@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import androidx.annotation.UiThread;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the time spent drawing task thumbnails per frame, so that overview scroll cost
+ * can be inspected from the recents dump.
+ */
+public final class ThumbnailDrawStats {
+
+    public static final ThumbnailDrawStats INSTANCE = new ThumbnailDrawStats();
+
+    private long mCurrentFrameTime = -1;
+    private long mCurrentFrameNanos;
+    private int mCurrentFrameDraws;
+
+    private int mFrameCount;
+    private long mTotalFrameNanos;
+    private long mMaxFrameNanos;
+    private int mMaxDrawsPerFrame;
+
+    private int mShaderCreations;
+    private int mShaderReuses;
+    private int mMatrixUpdates;
+    private int mMatrixCacheHits;
+
+    private ThumbnailDrawStats() { }
+
+    /**
+     * Records a single thumbnail draw.
+     * @param frameTime the drawing time of the frame, used to group draws of the same frame
+     * @param drawNanos time spent in the draw call
+     */
+    @UiThread
+    public void onThumbnailDrawn(long frameTime, long drawNanos) {
+        if (frameTime != mCurrentFrameTime) {
+            commitFrame();
+            mCurrentFrameTime = frameTime;
+        }
+        mCurrentFrameNanos += drawNanos;
+        mCurrentFrameDraws++;
+    }
+
+    @UiThread
+    public void onShaderCreated() {
+        mShaderCreations++;
+    }
+
+    @UiThread
+    public void onShaderReused() {
+        mShaderReuses++;
+    }
+
+    @UiThread
+    public void onMatrixUpdated() {
+        mMatrixUpdates++;
+    }
+
+    @UiThread
+    public void onMatrixCacheHit() {
+        mMatrixCacheHits++;
+    }
+
+    private void commitFrame() {
+        if (mCurrentFrameDraws == 0) {
+            return;
+        }
+        mFrameCount++;
+        mTotalFrameNanos += mCurrentFrameNanos;
+        mMaxFrameNanos = Math.max(mMaxFrameNanos, mCurrentFrameNanos);
+        mMaxDrawsPerFrame = Math.max(mMaxDrawsPerFrame, mCurrentFrameDraws);
+        mCurrentFrameNanos = 0;
+        mCurrentFrameDraws = 0;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ThumbnailDrawStats:");
+        long avgMicros = mFrameCount == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMicros(mTotalFrameNanos / mFrameCount);
+        writer.println(prefix + "  frames=" + mFrameCount
+                + " avgFrameDrawUs=" + avgMicros
+                + " maxFrameDrawUs=" + TimeUnit.NANOSECONDS.toMicros(mMaxFrameNanos)
+                + " maxDrawsPerFrame=" + mMaxDrawsPerFrame);
+        writer.println(prefix + "  shaderCreations=" + mShaderCreations
+                + " shaderReuses=" + mShaderReuses);
+        writer.println(prefix + "  matrixUpdates=" + mMatrixUpdates
+                + " matrixCacheHits=" + mMatrixCacheHits);
+    }
+}
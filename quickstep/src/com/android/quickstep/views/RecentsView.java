@@ -136,9 +136,11 @@ import com.android.launcher3.touch.PagedOrientationHandler;
 import com.android.launcher3.util.DynamicResource;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.launcher3.util.MultiValueAlpha;
 import com.android.launcher3.util.ResourceBasedOverride.Overrides;
 import com.android.launcher3.util.RunnableList;
+import com.android.launcher3.util.SafeCloseable;
 import com.android.launcher3.util.SplitConfigurationOptions.StagePosition;
 import com.android.launcher3.util.SplitConfigurationOptions.StagedSplitBounds;
 import com.android.launcher3.util.Themes;
@@ -443,6 +445,7 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
      */
     private final ViewPool<TaskView> mTaskViewPool;
     private final ViewPool<GroupedTaskView> mGroupedTaskViewPool;
+    @Nullable private SafeCloseable mViewPoolMemoryCloseable;
 
     private final TaskOverlayFactory mTaskOverlayFactory;
 
@@ -887,6 +890,11 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         mOrientationState.initListeners();
         SplitScreenBounds.INSTANCE.addOnChangeListener(this);
         mTaskOverlayFactory.initListeners();
+        mViewPoolMemoryCloseable = MemoryAccounting.INSTANCE.register("taskViewPool",
+                estimate -> {
+                    mTaskViewPool.estimateSize(estimate);
+                    mGroupedTaskViewPool.estimateSize(estimate);
+                });
     }
 
     @Override
@@ -906,6 +914,10 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         mIPipAnimationListener.setActivityAndRecentsView(null, null);
         mOrientationState.destroyListeners();
         mTaskOverlayFactory.removeListeners();
+        if (mViewPoolMemoryCloseable != null) {
+            mViewPoolMemoryCloseable.close();
+            mViewPoolMemoryCloseable = null;
+        }
     }
 
     @Override
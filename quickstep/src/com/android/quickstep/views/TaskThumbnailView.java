@@ -54,6 +54,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.util.MainThreadInitializedObject;
 import com.android.launcher3.util.SystemUiController;
 import com.android.quickstep.TaskOverlayFactory.TaskOverlay;
+import com.android.quickstep.util.ThumbnailDrawStats;
 import com.android.quickstep.views.TaskView.FullscreenDrawParams;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.ThumbnailData;
@@ -98,6 +99,32 @@ public class TaskThumbnailView extends View {
     private ThumbnailData mThumbnailData;
     @Nullable
     protected BitmapShader mBitmapShader;
+    // The bitmap wrapped by mBitmapShader, so that the shader can be reused while the same
+    // snapshot is set again. Cleared when the view is unbound to not retain the snapshot.
+    @Nullable
+    private Bitmap mShaderBitmap;
+
+    // Inputs used to compute the current thumbnail matrix, the matrix is only recomputed when
+    // one of these changes. Only values are kept, not the snapshot itself.
+    private boolean mMatrixValid;
+    private int mMatrixThumbnailWidth;
+    private int mMatrixThumbnailHeight;
+    private int mMatrixThumbnailRotation;
+    private int mMatrixWindowingMode;
+    private float mMatrixThumbnailScale;
+    private final Rect mMatrixInsets = new Rect();
+    private final Rect mMatrixLetterboxInsets = new Rect();
+    @Nullable
+    private DeviceProfile mMatrixDeviceProfile;
+    // DeviceProfile insets are updated in place, so the values are kept alongside the profile
+    private final Rect mMatrixDeviceInsets = new Rect();
+    private int mMatrixDeviceWidth;
+    private int mMatrixDeviceHeight;
+    private int mMatrixWidth;
+    private int mMatrixHeight;
+    private int mMatrixRotation;
+    private boolean mMatrixIsRtl;
+    private boolean mMatrixOrientationChanged;
 
     /** How much this thumbnail is dimmed, 0 not dimmed at all, 1 totally dimmed. */
     private float mDimAlpha = 0f;
@@ -174,16 +201,27 @@ public class TaskThumbnailView extends View {
     private void refresh(boolean shouldRefreshOverlay) {
         if (mThumbnailData != null && mThumbnailData.thumbnail != null) {
             Bitmap bm = mThumbnailData.thumbnail;
-            bm.prepareToDraw();
-            mBitmapShader = new BitmapShader(bm, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            if (mBitmapShader == null || mShaderBitmap != bm) {
+                bm.prepareToDraw();
+                mBitmapShader = new BitmapShader(bm, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+                mShaderBitmap = bm;
+                // A new shader does not carry the previous local matrix
+                invalidateThumbnailMatrix();
+                ThumbnailDrawStats.INSTANCE.onShaderCreated();
+            } else {
+                ThumbnailDrawStats.INSTANCE.onShaderReused();
+            }
             mPaint.setShader(mBitmapShader);
             updateThumbnailMatrix();
             if (shouldRefreshOverlay) {
                 refreshOverlay();
             }
         } else {
-            mBitmapShader = null;
+            // Release the snapshot, this view can stay in the pool or off-screen for a while
             mThumbnailData = null;
+            mBitmapShader = null;
+            mShaderBitmap = null;
+            invalidateThumbnailMatrix();
             mPaint.setShader(null);
             getTaskOverlay().reset();
         }
@@ -264,6 +302,7 @@ public class TaskThumbnailView extends View {
 
     @Override
     protected void onDraw(Canvas canvas) {
+        long drawStartNanos = System.nanoTime();
         RectF currentDrawnInsets = mFullscreenParams.mCurrentDrawnInsets;
         canvas.save();
         canvas.scale(mFullscreenParams.mScale, mFullscreenParams.mScale);
@@ -276,6 +315,8 @@ public class TaskThumbnailView extends View {
                 getMeasuredHeight() + currentDrawnInsets.bottom,
                 mFullscreenParams.mCurrentDrawnCornerRadius);
         canvas.restore();
+        ThumbnailDrawStats.INSTANCE.onThumbnailDrawn(
+                getDrawingTime(), System.nanoTime() - drawStartNanos);
     }
 
     public PreviewPositionHelper getPreviewPositionHelper() {
@@ -312,8 +353,8 @@ public class TaskThumbnailView extends View {
         // split screen).
         canvas.drawRoundRect(x, y, width, height, cornerRadius, cornerRadius, mBackgroundPaint);
 
-        final boolean drawBackgroundOnly = mTask == null || mTask.isLocked || mBitmapShader == null
-                || mThumbnailData == null;
+        final boolean drawBackgroundOnly = mTask == null || mTask.isLocked
+                || !hasThumbnailShader();
         if (drawBackgroundOnly) {
             return;
         }
@@ -351,7 +392,7 @@ public class TaskThumbnailView extends View {
         mBackgroundPaint.setColorFilter(filter);
         int alpha = (int) (mDimAlpha * 255);
         mDimmingPaintAfterClearing.setAlpha(alpha);
-        if (mBitmapShader != null) {
+        if (hasThumbnailShader()) {
             mPaint.setColorFilter(filter);
         } else {
             mPaint.setColorFilter(null);
@@ -360,20 +401,78 @@ public class TaskThumbnailView extends View {
         invalidate();
     }
 
+    /**
+     * Returns true if the shader is set up for the currently bound thumbnail. The shader itself
+     * can outlive the thumbnail to be reused across rebinds.
+     */
+    private boolean hasThumbnailShader() {
+        return mBitmapShader != null && mThumbnailData != null;
+    }
+
+    private void invalidateThumbnailMatrix() {
+        mMatrixValid = false;
+        mMatrixDeviceProfile = null;
+    }
+
+    private boolean isThumbnailMatrixValid(DeviceProfile dp, int width, int height,
+            int currentRotation, boolean isRtl) {
+        ThumbnailData data = mThumbnailData;
+        return mMatrixValid && mMatrixDeviceProfile == dp
+                && mMatrixDeviceInsets.equals(dp.getInsets())
+                && mMatrixDeviceWidth == dp.widthPx && mMatrixDeviceHeight == dp.heightPx
+                && mMatrixWidth == width && mMatrixHeight == height
+                && mMatrixRotation == currentRotation && mMatrixIsRtl == isRtl
+                && mMatrixThumbnailWidth == data.thumbnail.getWidth()
+                && mMatrixThumbnailHeight == data.thumbnail.getHeight()
+                && mMatrixThumbnailRotation == data.rotation
+                && mMatrixWindowingMode == data.windowingMode
+                && mMatrixThumbnailScale == data.scale
+                && mMatrixInsets.equals(data.insets)
+                && mMatrixLetterboxInsets.equals(data.letterboxInsets);
+    }
+
     private void updateThumbnailMatrix() {
-        mPreviewPositionHelper.mIsOrientationChanged = false;
-        if (mBitmapShader != null && mThumbnailData != null) {
-            mPreviewRect.set(0, 0, mThumbnailData.thumbnail.getWidth(),
-                    mThumbnailData.thumbnail.getHeight());
+        if (hasThumbnailShader()) {
             int currentRotation = getTaskView().getRecentsView().getPagedViewOrientedState()
                     .getRecentsActivityRotation();
             boolean isRtl = getLayoutDirection() == LAYOUT_DIRECTION_RTL;
-            mPreviewPositionHelper.updateThumbnailMatrix(mPreviewRect, mThumbnailData,
-                    getMeasuredWidth(), getMeasuredHeight(), mActivity.getDeviceProfile(),
-                    currentRotation, isRtl);
-
-            mBitmapShader.setLocalMatrix(mPreviewPositionHelper.mMatrix);
+            DeviceProfile dp = mActivity.getDeviceProfile();
+            int width = getMeasuredWidth();
+            int height = getMeasuredHeight();
+            if (isThumbnailMatrixValid(dp, width, height, currentRotation, isRtl)) {
+                // Nothing affecting the matrix changed, the shader already has the right matrix.
+                mPreviewPositionHelper.mIsOrientationChanged = mMatrixOrientationChanged;
+                ThumbnailDrawStats.INSTANCE.onMatrixCacheHit();
+            } else {
+                mPreviewRect.set(0, 0, mThumbnailData.thumbnail.getWidth(),
+                        mThumbnailData.thumbnail.getHeight());
+                mPreviewPositionHelper.mIsOrientationChanged = false;
+                mPreviewPositionHelper.updateThumbnailMatrix(mPreviewRect, mThumbnailData,
+                        width, height, dp, currentRotation, isRtl);
+                mBitmapShader.setLocalMatrix(mPreviewPositionHelper.mMatrix);
+
+                mMatrixValid = true;
+                mMatrixThumbnailWidth = mThumbnailData.thumbnail.getWidth();
+                mMatrixThumbnailHeight = mThumbnailData.thumbnail.getHeight();
+                mMatrixThumbnailRotation = mThumbnailData.rotation;
+                mMatrixWindowingMode = mThumbnailData.windowingMode;
+                mMatrixThumbnailScale = mThumbnailData.scale;
+                mMatrixInsets.set(mThumbnailData.insets);
+                mMatrixLetterboxInsets.set(mThumbnailData.letterboxInsets);
+                mMatrixDeviceProfile = dp;
+                mMatrixDeviceInsets.set(dp.getInsets());
+                mMatrixDeviceWidth = dp.widthPx;
+                mMatrixDeviceHeight = dp.heightPx;
+                mMatrixWidth = width;
+                mMatrixHeight = height;
+                mMatrixRotation = currentRotation;
+                mMatrixIsRtl = isRtl;
+                mMatrixOrientationChanged = mPreviewPositionHelper.mIsOrientationChanged;
+                ThumbnailDrawStats.INSTANCE.onMatrixUpdated();
+            }
             mPaint.setShader(mBitmapShader);
+        } else {
+            mPreviewPositionHelper.mIsOrientationChanged = false;
         }
         getTaskView().updateCurrentFullscreenParams(mPreviewPositionHelper);
         invalidate();
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static android.os.Process.myUserHandle;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_PREDICTION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_SYSTEM_MASK;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.BgDataModel.FixedContainerItems;
+import com.android.launcher3.model.QuickstepModelDelegate.PredictorState;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+import com.android.launcher3.util.PersistedItemArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link PredictionValidationTask}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public final class PredictionValidationTaskTest {
+
+    private static final ComponentName UNINSTALLED_APP =
+            new ComponentName("com.example.uninstalled", "com.example.uninstalled.Main");
+    // The storage used by QuickstepModelDelegate for the all apps predictions
+    private static final String ALL_APPS_STORAGE = "all_apps_predictions";
+
+    private final FakeBgDataModelCallback mCallback = new FakeBgDataModelCallback();
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private PredictorState mPredictorState;
+    private AppInfo mInstalledApp;
+
+    @Before
+    public void setup() throws Exception {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        mModelHelper.loadModelSync();
+        MAIN_EXECUTOR.submit(() -> mModelHelper.getModel().addCallbacks(mCallback)).get();
+
+        mInstalledApp = mModelHelper.getAllAppsList().data.get(0);
+        mPredictorState = new PredictorState(CONTAINER_PREDICTION, "test_prediction_validation");
+        mPredictorState.storage.getFile(mContext).delete();
+    }
+
+    @After
+    public void tearDown() {
+        mPredictorState.storage.getFile(mContext).delete();
+        new PersistedItemArray<>(ALL_APPS_STORAGE).getFile(mContext).delete();
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void uninstalledApp_droppedAndStorageRewritten() throws Exception {
+        WorkspaceItemInfo installed = restoredApp(mInstalledApp.componentName,
+                mInstalledApp.title, mInstalledApp.bitmap);
+        mPredictorState.items.setItems(
+                Arrays.asList(installed, restoredApp(UNINSTALLED_APP, "Uninstalled", null)));
+
+        runValidationTask();
+
+        assertThat(getComponents(mCallback.mBoundItems.items))
+                .containsExactly(mInstalledApp.componentName);
+        assertThat(getComponents(mPredictorState.storage.read(mContext,
+                (itemType, user, intent) -> {
+                    WorkspaceItemInfo info = new WorkspaceItemInfo();
+                    info.intent = intent;
+                    return info;
+                })))
+                .containsExactly(mInstalledApp.componentName);
+    }
+
+    @Test
+    public void persistedUninstalledApp_droppedAfterLoad() throws Exception {
+        PersistedItemArray<ItemInfo> storage = new PersistedItemArray<>(ALL_APPS_STORAGE);
+        storage.write(mContext, Arrays.asList(
+                restoredApp(mInstalledApp.componentName, mInstalledApp.title, null),
+                restoredApp(UNINSTALLED_APP, "Uninstalled", null)));
+
+        // Reload the model so that the predictions are restored from the storage, and wait for
+        // the validation which is posted once the loader is done
+        MAIN_EXECUTOR.submit(() -> mModelHelper.getModel().forceReload()).get();
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+
+        assertThat(getComponents(mModelHelper.executeSimpleTask(
+                dataModel -> dataModel.extraItems.get(CONTAINER_PREDICTION).items)))
+                .containsExactly(mInstalledApp.componentName);
+        assertThat(getComponents(mCallback.mBoundItems.items))
+                .containsExactly(mInstalledApp.componentName);
+        assertThat(getComponents(storage.read(mContext, (itemType, user, intent) -> {
+            WorkspaceItemInfo info = new WorkspaceItemInfo();
+            info.intent = intent;
+            return info;
+        }))).containsExactly(mInstalledApp.componentName);
+    }
+
+    @Test
+    public void unchangedApp_notRebound() throws Exception {
+        WorkspaceItemInfo installed = restoredApp(mInstalledApp.componentName,
+                mInstalledApp.title, mInstalledApp.bitmap);
+        mPredictorState.items.setItems(Arrays.asList(installed));
+
+        runValidationTask();
+
+        assertThat(mCallback.mBoundItems).isNull();
+        assertThat(mPredictorState.items.items).containsExactly(installed);
+        // The flags only known once the activity is resolved are added to the bound item
+        assertThat(installed.runtimeStatusFlags & FLAG_SYSTEM_MASK).isNotEqualTo(0);
+        assertThat(mPredictorState.storage.getFile(mContext).getBaseFile().exists()).isFalse();
+    }
+
+    @Test
+    public void changedTitle_rebound() throws Exception {
+        mPredictorState.items.setItems(Arrays.asList(restoredApp(mInstalledApp.componentName,
+                "Old title", mInstalledApp.bitmap)));
+
+        runValidationTask();
+
+        assertThat(mCallback.mBoundItems.items).hasSize(1);
+        assertThat(mCallback.mBoundItems.items.get(0).title.toString())
+                .isEqualTo(mInstalledApp.title.toString());
+    }
+
+    @Test
+    public void changedIcon_rebound() throws Exception {
+        BitmapInfo oldIcon = BitmapInfo.of(Bitmap.createBitmap(10, 10, Bitmap.Config.ALPHA_8), 0);
+        mPredictorState.items.setItems(Arrays.asList(restoredApp(mInstalledApp.componentName,
+                mInstalledApp.title, oldIcon)));
+
+        runValidationTask();
+
+        assertThat(mCallback.mBoundItems.items).hasSize(1);
+        WorkspaceItemInfo bound = (WorkspaceItemInfo) mCallback.mBoundItems.items.get(0);
+        assertThat(bound.bitmap.icon).isSameInstanceAs(mInstalledApp.bitmap.icon);
+    }
+
+    private void runValidationTask() throws Exception {
+        mModelHelper.executeTaskForTest(new PredictionValidationTask(mPredictorState))
+                .forEach(Runnable::run);
+    }
+
+    /**
+     * Creates an app as restored from the persisted predictions, before its activity is resolved
+     */
+    private static WorkspaceItemInfo restoredApp(
+            ComponentName cn, CharSequence title, BitmapInfo icon) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.intent = AppInfo.makeLaunchIntent(cn);
+        info.user = myUserHandle();
+        info.title = title;
+        if (icon != null) {
+            info.bitmap = icon;
+        }
+        return info;
+    }
+
+    private static List<ComponentName> getComponents(List<ItemInfo> items) {
+        return items.stream().map(ItemInfo::getTargetComponent).collect(Collectors.toList());
+    }
+
+    private static final class FakeBgDataModelCallback implements BgDataModel.Callbacks {
+
+        private FixedContainerItems mBoundItems = null;
+
+        @Override
+        public void bindExtraContainerItems(FixedContainerItems item) {
+            mBoundItems = item;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static android.view.MotionEvent.ACTION_DOWN;
+
+import android.os.Debug;
+import android.view.MotionEvent;
+
+import com.android.quickstep.InputConsumer;
+
+/**
+ * Replays a {@link GestureTrace} into an {@link InputConsumer}, measuring the thread CPU time and
+ * the number of allocations of each event.
+ *
+ * All the events are created before the replay starts, so that only the work done by the
+ * consumer is measured. Replay must happen on the thread the consumer expects events on.
+ */
+public class GestureTraceReplayer {
+
+    private final GestureTrace mTrace;
+
+    public GestureTraceReplayer(GestureTrace trace) {
+        mTrace = trace;
+    }
+
+    /**
+     * Replays all the events of the trace into the consumer
+     */
+    // The Debug allocation counters are deprecated, but unlike the runtime stats they count the
+    // allocations of the replaying thread only, which makes them usable per event.
+    @SuppressWarnings("deprecation")
+    public Result replay(InputConsumer consumer) {
+        int count = mTrace.size();
+        MotionEvent[] events = new MotionEvent[count];
+        long downTime = count > 0 ? mTrace.getEventTime(0) : 0;
+        for (int i = 0; i < count; i++) {
+            if (mTrace.getAction(i) == ACTION_DOWN) {
+                downTime = mTrace.getEventTime(i);
+            }
+            events[i] = mTrace.obtainEvent(i, downTime);
+        }
+
+        Result result = new Result(count);
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < count; i++) {
+                Debug.resetThreadAllocCount();
+                long startCpu = Debug.threadCpuTimeNanos();
+                consumer.onMotionEvent(events[i]);
+                result.mCpuTimeNanos[i] = Debug.threadCpuTimeNanos() - startCpu;
+                result.mAllocations[i] = Debug.getThreadAllocCount();
+            }
+        } finally {
+            Debug.stopAllocCounting();
+            for (MotionEvent event : events) {
+                event.recycle();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Per-event cost of a replay
+     */
+    public static class Result {
+
+        private final long[] mCpuTimeNanos;
+        private final int[] mAllocations;
+
+        Result(int eventCount) {
+            mCpuTimeNanos = new long[eventCount];
+            mAllocations = new int[eventCount];
+        }
+
+        public int getEventCount() {
+            return mCpuTimeNanos.length;
+        }
+
+        public long getCpuTimeNanos(int i) {
+            return mCpuTimeNanos[i];
+        }
+
+        public int getAllocations(int i) {
+            return mAllocations[i];
+        }
+
+        public long getTotalCpuTimeNanos() {
+            long total = 0;
+            for (long time : mCpuTimeNanos) {
+                total += time;
+            }
+            return total;
+        }
+
+        public long getMaxCpuTimeNanos() {
+            long max = 0;
+            for (long time : mCpuTimeNanos) {
+                max = Math.max(max, time);
+            }
+            return max;
+        }
+
+        public int getTotalAllocations() {
+            int total = 0;
+            for (int count : mAllocations) {
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            int count = getEventCount();
+            long total = getTotalCpuTimeNanos();
+            return "events=" + count
+                    + " totalCpuUs=" + total / 1000
+                    + " meanCpuUs=" + (count == 0 ? 0 : total / count / 1000)
+                    + " maxCpuUs=" + getMaxCpuTimeNanos() / 1000
+                    + " allocations=" + getTotalAllocations();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static android.view.MotionEvent.ACTION_DOWN;
+import static android.view.MotionEvent.ACTION_MOVE;
+import static android.view.MotionEvent.ACTION_UP;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.quickstep.SysUINavigationMode.Mode.NO_BUTTON;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.PointF;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.Surface;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.quickstep.AbsSwipeUpHandler;
+import com.android.quickstep.GestureState;
+import com.android.quickstep.InputConsumer;
+import com.android.quickstep.RecentsAnimationCallbacks;
+import com.android.quickstep.RecentsAnimationDeviceState;
+import com.android.quickstep.RotationTouchHelper;
+import com.android.quickstep.TaskAnimationManager;
+import com.android.quickstep.inputconsumers.OtherActivityInputConsumer;
+import com.android.systemui.shared.system.InputChannelCompat.InputEventReceiver;
+import com.android.systemui.shared.system.InputMonitorCompat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Tests for {@link GestureTrace} and {@link GestureTraceReplayer}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class GestureTraceTest {
+
+    private static final String TAG = "GestureTraceTest";
+
+    private static final int SWIPE_MOVES = 60;
+    private static final int STATE_FLAGS = 1 << 3;
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        GestureTrace trace = createSwipeUp(100);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeTo(out);
+        GestureTrace read = GestureTrace.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(trace.size(), read.size());
+        for (int i = 0; i < trace.size(); i++) {
+            assertEquals(trace.getEventTime(i), read.getEventTime(i));
+            assertEquals(trace.getAction(i), read.getAction(i));
+            assertEquals(trace.getX(i), read.getX(i), 0);
+            assertEquals(trace.getY(i), read.getY(i), 0);
+            assertEquals(trace.getSysUiStateFlags(i), read.getSysUiStateFlags(i));
+        }
+    }
+
+    @Test
+    public void testOverwritesOldestEvents() {
+        GestureTrace trace = new GestureTrace(3);
+        for (int i = 0; i < 5; i++) {
+            trace.add(i, ACTION_MOVE, i, i, 0);
+        }
+
+        assertEquals(3, trace.size());
+        assertEquals(2, trace.getEventTime(0));
+        assertEquals(4, trace.getEventTime(2));
+    }
+
+    @Test
+    public void testReplayMotionPauseDetector() {
+        GestureTrace trace = createSwipeUp(100);
+        GestureTraceReplayer.Result result = replayMotionPauseDetector(trace, false);
+
+        Log.d(TAG, "MotionPauseDetector: " + result);
+        assertEquals(trace.size(), result.getEventCount());
+    }
+
+    @Test
+    public void testMotionPauseDetectorMovesDoNotAllocate() {
+        GestureTrace trace = createSwipeUp(100);
+        // Reporting a pause to the test harness allocates, only measure the velocity tracking
+        GestureTraceReplayer.Result result = replayMotionPauseDetector(trace, true);
+
+        // The first move schedules the pause timeout, which may need a new message
+        for (int i = 2; i < trace.size(); i++) {
+            if (trace.getAction(i) == ACTION_MOVE) {
+                assertEquals("Allocations for event " + i, 0, result.getAllocations(i));
+            }
+        }
+    }
+
+    @Test
+    public void testReplayOtherActivityInputConsumer() {
+        GestureTrace trace = createSwipeUp(100);
+
+        // Fake the device state and the recents animation, so that the consumer drives a swipe
+        // handler without starting a real recents animation
+        RecentsAnimationDeviceState deviceState = mock(RecentsAnimationDeviceState.class);
+        when(deviceState.getNavBarPosition())
+                .thenReturn(new NavBarPosition(NO_BUTTON, Surface.ROTATION_0));
+        when(deviceState.isFullyGesturalNavMode()).thenReturn(true);
+        when(deviceState.getRotationTouchHelper()).thenReturn(mock(RotationTouchHelper.class));
+
+        GestureState gestureState = mock(GestureState.class);
+        TaskAnimationManager taskAnimationManager = mock(TaskAnimationManager.class);
+        when(taskAnimationManager.startRecentsAnimation(eq(gestureState), any(), any()))
+                .thenReturn(mock(RecentsAnimationCallbacks.class));
+
+        AbsSwipeUpHandler handler = mock(AbsSwipeUpHandler.class);
+        when(handler.getLaunchIntent()).thenReturn(new Intent());
+        when(handler.getRecentsViewDispatcher(anyFloat())).thenReturn(ev -> { });
+        InputMonitorCompat inputMonitor = mock(InputMonitorCompat.class);
+
+        GestureTraceReplayer.Result[] result = new GestureTraceReplayer.Result[1];
+        Context context = getInstrumentation().getTargetContext();
+        getInstrumentation().runOnMainSync(() -> {
+            OtherActivityInputConsumer consumer = new OtherActivityInputConsumer(context,
+                    deviceState, taskAnimationManager, gestureState,
+                    false /* isDeferredDownTarget */, c -> { }, inputMonitor,
+                    mock(InputEventReceiver.class), false /* disableHorizontalSwipe */,
+                    (state, touchTimeMs) -> handler);
+            result[0] = new GestureTraceReplayer(trace).replay(consumer);
+        });
+
+        // Mockito records every call on the fakes, so only the CPU time is meaningful here
+        Log.d(TAG, "OtherActivityInputConsumer: " + result[0]);
+        assertEquals(trace.size(), result[0].getEventCount());
+
+        verify(taskAnimationManager, times(1)).startRecentsAnimation(eq(gestureState), any(),
+                eq(handler));
+        verify(inputMonitor).pilferPointers();
+        verify(handler).onGestureStarted(false /* isLikelyToStartNewTask */);
+
+        ArgumentCaptor<Float> displacement = ArgumentCaptor.forClass(Float.class);
+        verify(handler, atLeastOnce()).updateDisplacement(displacement.capture());
+        assertTrue("Swipe up should move the window up", displacement.getValue() < 0);
+
+        ArgumentCaptor<PointF> velocity = ArgumentCaptor.forClass(PointF.class);
+        verify(handler).onGestureEnded(anyFloat(), velocity.capture(), any());
+        assertTrue("Swipe up should end with an upward velocity", velocity.getValue().y < 0);
+    }
+
+    private static GestureTraceReplayer.Result replayMotionPauseDetector(GestureTrace trace,
+            boolean disallowPause) {
+        GestureTraceReplayer.Result[] result = new GestureTraceReplayer.Result[1];
+
+        Context context = getInstrumentation().getTargetContext();
+        getInstrumentation().runOnMainSync(() -> {
+            MotionPauseDetector detector = new MotionPauseDetector(context);
+            detector.setDisallowPause(disallowPause);
+            result[0] = new GestureTraceReplayer(trace).replay(new InputConsumer() {
+                @Override
+                public int getType() {
+                    return TYPE_NO_OP;
+                }
+
+                @Override
+                public void onMotionEvent(MotionEvent ev) {
+                    if (ev.getActionMasked() == ACTION_MOVE) {
+                        detector.addPosition(ev);
+                    } else if (ev.getActionMasked() == ACTION_UP) {
+                        detector.clear();
+                    }
+                }
+            });
+        });
+        return result[0];
+    }
+
+    /**
+     * Creates a swipe up from the bottom of the screen which slows down to a pause
+     */
+    private static GestureTrace createSwipeUp(long startTime) {
+        GestureTrace trace = new GestureTrace(SWIPE_MOVES + 2);
+        float x = 500;
+        float y = 2000;
+        long time = startTime;
+        trace.add(time, ACTION_DOWN, x, y, STATE_FLAGS);
+        for (int i = 0; i < SWIPE_MOVES; i++) {
+            time += 8;
+            y -= 40f * (SWIPE_MOVES - i) / SWIPE_MOVES;
+            trace.add(time, ACTION_MOVE, x, y, STATE_FLAGS);
+        }
+        trace.add(time + 8, ACTION_UP, x, y, STATE_FLAGS);
+        return trace;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Debug;
+import android.view.MotionEvent;
+import android.view.Surface;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link InputRotationTransform}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class InputRotationTransformTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2340;
+    private static final int MOVE_COUNT = 1000;
+
+    @Test
+    public void testNoRotationIsNoOp() {
+        InputRotationTransform transform =
+                new InputRotationTransform(Surface.ROTATION_0, WIDTH, HEIGHT);
+        MotionEvent event = obtainMove(100, 200);
+
+        transform.apply(event);
+
+        assertEquals(100, event.getX(), 0);
+        assertEquals(200, event.getY(), 0);
+        event.recycle();
+    }
+
+    @Test
+    public void testRotationTransformsEvent() {
+        // Display coordinates are mapped back to the unrotated coordinates
+        assertTransformed(Surface.ROTATION_90, 200, WIDTH - 100);
+        assertTransformed(Surface.ROTATION_180, WIDTH - 100, HEIGHT - 200);
+        assertTransformed(Surface.ROTATION_270, HEIGHT - 200, 100);
+    }
+
+    // The Debug allocation counters are deprecated, but they are the only per-thread allocation
+    // count in the SDK, and the test only needs to know whether the loop allocates at all.
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testMoveStreamDoesNotAllocate() {
+        InputRotationTransform transform =
+                new InputRotationTransform(Surface.ROTATION_90, WIDTH, HEIGHT);
+        MotionEvent event = obtainMove(100, 200);
+        // Warm up any lazy initialization in the framework
+        transform.apply(event);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            transform.apply(event);
+        }
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+        event.recycle();
+    }
+
+    private static void assertTransformed(int rotation, float expectedX, float expectedY) {
+        InputRotationTransform transform = new InputRotationTransform(rotation, WIDTH, HEIGHT);
+        MotionEvent event = obtainMove(100, 200);
+
+        transform.apply(event);
+
+        assertEquals(rotation, transform.getRotation());
+        assertEquals(expectedX, event.getX(), 0.01f);
+        assertEquals(expectedY, event.getY(), 0.01f);
+        event.recycle();
+    }
+
+    private static MotionEvent obtainMove(float x, float y) {
+        return MotionEvent.obtain(0, 0, MotionEvent.ACTION_MOVE, x, y, 0);
+    }
+}
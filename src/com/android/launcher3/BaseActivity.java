@@ -318,6 +318,13 @@ public abstract class BaseActivity extends Activity implements ActivityContext {
         writer.println(prefix + "mSystemUiController: " + mSystemUiController);
         writer.println(prefix + "mActivityFlags: " + mActivityFlags);
         writer.println(prefix + "mForceInvisible: " + mForceInvisible);
+        mViewCache.dump(prefix, writer);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        mViewCache.onTrimMemory(level);
     }
 
     /**
@@ -360,7 +360,12 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
     }
 
     private void setItemInfo(ItemInfoWithIcon itemInfo) {
+        boolean rebound = getTag() != null && getTag() != itemInfo;
         setTag(itemInfo);
+        if (rebound && getParent() instanceof ShortcutAndWidgetContainer) {
+            // Let the container know, as its item views may be indexed by their item
+            ((ShortcutAndWidgetContainer) getParent()).onChildRebound(this);
+        }
         if (mBubbleTextHolder != null) {
             mBubbleTextHolder.onItemInfoUpdated(itemInfo);
         }
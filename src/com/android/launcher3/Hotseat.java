@@ -128,6 +128,7 @@ public class Hotseat extends CellLayout implements Insettable {
 
     public void setWorkspace(Workspace w) {
         mWorkspace = w;
+        getShortcutsAndWidgets().setOnChildrenChangedListener(w.getViewIndex()::invalidate);
     }
 
     @Override
@@ -18,6 +18,7 @@ package com.android.launcher3;
 
 import static com.android.launcher3.Utilities.dpiFromPx;
 import static com.android.launcher3.config.FeatureFlags.ENABLE_TWO_PANEL_HOME;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_IDP_READY;
 import static com.android.launcher3.util.DisplayController.CHANGE_DENSITY;
 import static com.android.launcher3.util.DisplayController.CHANGE_SUPPORTED_BOUNDS;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
@@ -48,6 +49,7 @@ import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.launcher3.logging.StartupTracer;
 import com.android.launcher3.model.DeviceGridState;
 import com.android.launcher3.provider.RestoreDbTask;
 import com.android.launcher3.util.DisplayController;
@@ -202,6 +204,7 @@ public class InvariantDeviceProfile implements OnSharedPreferenceChangeListener
                 });
 
         Utilities.getPrefs(context).registerOnSharedPreferenceChangeListener(this);
+        StartupTracer.INSTANCE.mark(MILESTONE_IDP_READY);
     }
 
     /**
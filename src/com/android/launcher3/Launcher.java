@@ -42,6 +42,11 @@ import static com.android.launcher3.Utilities.postAsyncCallback;
 import static com.android.launcher3.accessibility.LauncherAccessibilityDelegate.getSupportedActions;
 import static com.android.launcher3.config.FeatureFlags.ADAPTIVE_ICON_WINDOW_ANIM;
 import static com.android.launcher3.dragndrop.DragLayer.ALPHA_INDEX_LAUNCHER_LOAD;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_ACTIVITY_CREATE;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_ALL_APPS_BOUND;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_FIRST_FRAME_DRAWN;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_FIRST_PAGE_BOUND;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_WIDGETS_BOUND;
 import static com.android.launcher3.logging.StatsLogManager.LAUNCHER_STATE_BACKGROUND;
 import static com.android.launcher3.logging.StatsLogManager.LAUNCHER_STATE_HOME;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ALLAPPS_ENTRY;
@@ -52,6 +57,10 @@ import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCH
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_WIDGET_RECONFIGURED;
 import static com.android.launcher3.model.ItemInstallQueue.FLAG_ACTIVITY_PAUSED;
 import static com.android.launcher3.model.ItemInstallQueue.FLAG_DRAG_AND_DROP;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_DEEP_SHORTCUTS;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_PREDICTIONS;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_WIDGETS;
+import static com.android.launcher3.popup.PopupPopulator.MAX_SHORTCUTS;
 import static com.android.launcher3.popup.SystemShortcut.APP_INFO;
 import static com.android.launcher3.popup.SystemShortcut.INSTALL;
 import static com.android.launcher3.popup.SystemShortcut.UNINSTALL;
@@ -111,6 +120,8 @@ import android.view.WindowManager.LayoutParams;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.animation.OvershootInterpolator;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TableRow;
 import android.widget.Toast;
 
 import androidx.annotation.CallSuper;
@@ -123,6 +134,7 @@ import com.android.launcher3.DropTarget.DragObject;
 import com.android.launcher3.accessibility.LauncherAccessibilityDelegate;
 import com.android.launcher3.accessibility.LauncherAccessibilityDelegate.LauncherAction;
 import com.android.launcher3.allapps.AllAppsContainerView;
+import com.android.launcher3.allapps.AllAppsGridAdapter;
 import com.android.launcher3.allapps.AllAppsStore;
 import com.android.launcher3.allapps.AllAppsTransitionController;
 import com.android.launcher3.allapps.DiscoveryBounce;
@@ -145,8 +157,10 @@ import com.android.launcher3.logger.LauncherAtom;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
+import com.android.launcher3.logging.StartupTracer;
 import com.android.launcher3.logging.StatsLogManager;
 import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.DeepShortcutCounts;
 import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.ModelUtils;
 import com.android.launcher3.model.ModelWriter;
@@ -175,10 +189,10 @@ import com.android.launcher3.touch.ItemClickHandler;
 import com.android.launcher3.uioverrides.plugins.PluginManagerWrapper;
 import com.android.launcher3.util.ActivityResultInfo;
 import com.android.launcher3.util.ActivityTracker;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.ItemInfoMatcher;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.launcher3.util.MultiValueAlpha;
 import com.android.launcher3.util.MultiValueAlpha.AlphaProperty;
 import com.android.launcher3.util.OnboardingPrefs;
@@ -193,6 +207,7 @@ import com.android.launcher3.util.Thunk;
 import com.android.launcher3.util.TouchController;
 import com.android.launcher3.util.TraceHelper;
 import com.android.launcher3.util.UiThreadHelper;
+import com.android.launcher3.util.ViewCache;
 import com.android.launcher3.util.ViewOnDrawExecutor;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.views.FloatingSurfaceView;
@@ -204,8 +219,10 @@ import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.PendingAddShortcutInfo;
 import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
+import com.android.launcher3.widget.PreviewRenderScheduler;
 import com.android.launcher3.widget.WidgetAddFlowHandler;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.picker.WidgetsFullSheet;
@@ -221,7 +238,6 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.function.Predicate;
@@ -290,6 +306,11 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
     private static final int THEME_CROSS_FADE_ANIMATION_DURATION = 375;
 
+    // Number of views pre-inflated in the background for first use of popups and widget picker
+    private static final int PREWARM_SYSTEM_SHORTCUTS = 3;
+    private static final int PREWARM_WIDGET_CELLS = 6;
+    private static final int PREWARM_ALL_APPS_ROWS = 2;
+
     private static final String DISPLAY_WORKSPACE_TRACE_METHOD_NAME = "DisplayWorkspaceFirstFrame";
     private static final String DISPLAY_ALL_APPS_TRACE_METHOD_NAME = "DisplayAllApps";
     public static final int DISPLAY_WORKSPACE_TRACE_COOKIE = 0;
@@ -372,6 +393,9 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
     private boolean mTouchInProgress;
 
     private SafeCloseable mUserChangedCallbackCloseable;
+    private SafeCloseable mViewCacheMemoryCloseable;
+    // The view cache is only prewarmed on the first bind, it keeps its views across rebinds
+    private boolean mViewCachePrewarmed;
 
     // New InstanceId is assigned to mAllAppsSessionLogId for each AllApps sessions.
     // When Launcher is not in AllApps state mAllAppsSessionLogId will be null.
@@ -385,6 +409,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
     @Override
     @TargetApi(Build.VERSION_CODES.S)
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.INSTANCE.mark(MILESTONE_ACTIVITY_CREATE);
         // Only use a hard-coded cookie since we only want to trace this once.
         if (Utilities.ATLEAST_S) {
             Trace.beginAsyncSection(
@@ -526,6 +551,8 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
         mUserChangedCallbackCloseable = UserCache.INSTANCE.get(this).addUserChangeListener(
                 () -> getStateManager().goToState(NORMAL));
+        mViewCacheMemoryCloseable = MemoryAccounting.INSTANCE.register(
+                "viewCache", getViewCache()::estimateSize);
 
         if (Utilities.ATLEAST_R) {
             getWindow().setSoftInputMode(LayoutParams.SOFT_INPUT_ADJUST_NOTHING);
@@ -637,6 +664,8 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
         onDeviceProfileInitiated();
         mModelWriter = mModel.getWriter(getDeviceProfile().isVerticalBarLayout(), true, this);
+        // Cached views were inflated with the sizes of the previous DeviceProfile
+        getViewCache().clear();
     }
 
     public RotationHelper getRotationHelper() {
@@ -1138,6 +1167,8 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         Object traceToken = TraceHelper.INSTANCE.beginSection(ON_RESUME_EVT,
                 TraceHelper.FLAG_UI_EVENT);
         super.onResume();
+        // Hotseat and all apps predictions are updated once home is shown
+        mModel.getSubsystems().ensureLoaded(SUBSYSTEM_PREDICTIONS);
 
         if (mDeferOverlayCallbacks) {
             scheduleDeferredCheck();
@@ -1152,6 +1183,13 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         }
     }
 
+    @Override
+    public void onUserInteraction() {
+        super.onUserInteraction();
+        // Load the popup data on the first touch, ahead of the first long press
+        mModel.getSubsystems().ensureLoaded(SUBSYSTEM_DEEP_SHORTCUTS | SUBSYSTEM_WIDGETS);
+    }
+
     @Override
     protected void onPause() {
         // Ensure that items added to Launcher are queued until Launcher returns
@@ -1687,6 +1725,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
         mOverlayManager.onActivityDestroyed(this);
         mUserChangedCallbackCloseable.close();
+        mViewCacheMemoryCloseable.close();
     }
 
     public LauncherAccessibilityDelegate getAccessibilityDelegate() {
@@ -2647,6 +2686,11 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
             Trace.endAsyncSection(DISPLAY_WORKSPACE_TRACE_METHOD_NAME,
                     DISPLAY_WORKSPACE_TRACE_COOKIE);
         }
+        StartupTracer.INSTANCE.mark(MILESTONE_FIRST_PAGE_BOUND);
+        if (Utilities.ATLEAST_Q) {
+            mDragLayer.getViewTreeObserver().registerFrameCommitCallback(
+                    () -> StartupTracer.INSTANCE.mark(MILESTONE_FIRST_FRAME_DRAWN));
+        }
     }
 
     /**
@@ -2679,10 +2723,41 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         getViewCache().setCacheSize(R.layout.folder_application,
                 mDeviceProfile.inv.numFolderColumns * mDeviceProfile.inv.numFolderRows);
         getViewCache().setCacheSize(R.layout.folder_page, 2);
+        if (!mViewCachePrewarmed) {
+            mViewCachePrewarmed = true;
+            prewarmViewCache();
+        }
 
         TraceHelper.INSTANCE.endSection(traceToken);
     }
 
+    /**
+     * Starts inflating views which are needed on first use of folders, popups, all apps and the
+     * widget picker in the background.
+     */
+    private void prewarmViewCache() {
+        ViewCache viewCache = getViewCache();
+        int folderPageSize = mDeviceProfile.inv.numFolderColumns * mDeviceProfile.inv.numFolderRows;
+        viewCache.prewarm(R.layout.folder_application, this, null,
+                folderPageSize, folderPageSize);
+        viewCache.prewarm(R.layout.folder_page, this, null, 1, 2);
+
+        // Template parents used only to generate the layout params of the inflated views.
+        LinearLayout popupParent = new LinearLayout(this);
+        viewCache.prewarm(R.layout.deep_shortcut, this, popupParent,
+                MAX_SHORTCUTS, MAX_SHORTCUTS);
+        viewCache.prewarm(R.layout.system_shortcut, this, popupParent,
+                PREWARM_SYSTEM_SHORTCUTS, PREWARM_SYSTEM_SHORTCUTS);
+        if (!WidgetsModel.GO_DISABLE_WIDGETS) {
+            viewCache.prewarm(R.layout.widget_cell, this, new TableRow(this),
+                    PREWARM_WIDGET_CELLS, PREWARM_WIDGET_CELLS);
+        }
+
+        int allAppsIcons = mDeviceProfile.numShownAllAppsColumns * PREWARM_ALL_APPS_ROWS;
+        viewCache.prewarm(AllAppsGridAdapter.getIconLayoutResId(), this,
+                mAppsView.getActiveRecyclerView(), allAppsIcons, allAppsIcons);
+    }
+
     private boolean canAnimatePageChange() {
         if (mDragController.isDragging()) {
             return false;
@@ -2720,16 +2795,61 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
             mWorkspace.forEachVisiblePage(page
                     -> containers.add(((CellLayout) page).getShortcutsAndWidgets()));
 
-            // Order: Preferred item by itself or in folder, then by matching package/user
-            if (ADAPTIVE_ICON_WINDOW_ANIM.get()) {
-                return getFirstMatch(containers, preferredItem, forFolderMatch(preferredItem),
-                        packageAndUserAndApp, forFolderMatch(packageAndUserAndApp));
+            // Only check the views which can match, instead of every item of the containers
+            WorkspaceViewIndex index = mWorkspace.getViewIndex();
+            List<View> preferredViews;
+            if (preferredItemId == ItemInfo.NO_ID) {
+                preferredViews = index.getViewsWithoutId();
             } else {
-                // Do not use Folder as a criteria, since it'll cause a crash when trying to draw
-                // FolderAdaptiveIcon as the background.
-                return getFirstMatch(containers, preferredItem, packageAndUserAndApp);
+                View preferredView = index.getViewByItemId(preferredItemId);
+                preferredViews = preferredView == null
+                        ? Collections.emptyList() : Collections.singletonList(preferredView);
+            }
+            List<FolderIcon> folderIcons = index.getFolderIcons();
+            // Do not use Folder as a criteria without adaptive icons, since it'll cause a crash
+            // when trying to draw FolderAdaptiveIcon as the background.
+            boolean matchFolders = ADAPTIVE_ICON_WINDOW_ANIM.get();
+
+            // Order: Preferred item by itself or in folder, then by matching package/user
+            View match = getFirstMatch(containers, preferredViews, preferredItem);
+            if (match == null && matchFolders) {
+                match = getFirstMatch(containers, folderIcons, forFolderMatch(preferredItem));
+            }
+            if (match == null) {
+                match = getFirstMatch(containers, index.getViewsForPackage(packageName, user),
+                        packageAndUserAndApp);
+            }
+            if (match == null && matchFolders) {
+                match = getFirstMatch(containers, folderIcons,
+                        forFolderMatch(packageAndUserAndApp));
+            }
+            return match;
+        }
+    }
+
+    /**
+     * Returns the candidate view matching the operator which comes first when iterating over the
+     * given ViewGroups in order, or null if none. Candidates outside of the ViewGroups are ignored.
+     */
+    private static View getFirstMatch(List<ViewGroup> containers,
+            List<? extends View> candidates, ItemInfoMatcher operator) {
+        View match = null;
+        int matchContainerIdx = containers.size();
+        int matchChildIdx = 0;
+        for (View candidate : candidates) {
+            int containerIdx = containers.indexOf(candidate.getParent());
+            if (containerIdx < 0 || containerIdx > matchContainerIdx
+                    || !operator.matchesInfo((ItemInfo) candidate.getTag())) {
+                continue;
+            }
+            int childIdx = containers.get(containerIdx).indexOfChild(candidate);
+            if (containerIdx < matchContainerIdx || childIdx < matchChildIdx) {
+                match = candidate;
+                matchContainerIdx = containerIdx;
+                matchChildIdx = childIdx;
             }
         }
+        return match;
     }
 
     /**
@@ -2791,6 +2911,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
             Trace.endAsyncSection(DISPLAY_ALL_APPS_TRACE_METHOD_NAME,
                     DISPLAY_ALL_APPS_TRACE_COOKIE);
         }
+        StartupTracer.INSTANCE.mark(MILESTONE_ALL_APPS_BOUND);
     }
 
     /**
@@ -2798,8 +2919,8 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
      * because LauncherModel's map is updated in the background, while Launcher runs on the UI.
      */
     @Override
-    public void bindDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMapCopy) {
-        mPopupDataProvider.setDeepShortcutMap(deepShortcutMapCopy);
+    public void bindDeepShortcutMap(DeepShortcutCounts deepShortcutCounts) {
+        mPopupDataProvider.setDeepShortcutMap(deepShortcutCounts);
     }
 
     @Override
@@ -2853,6 +2974,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
     @Override
     public void bindAllWidgets(final List<WidgetsListBaseEntry> allWidgets) {
         mPopupDataProvider.setAllWidgets(allWidgets);
+        StartupTracer.INSTANCE.mark(MILESTONE_WIDGETS_BOUND);
     }
 
     /**
@@ -2906,6 +3028,10 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         mDragLayer.dump(prefix, writer);
         mStateManager.dump(prefix, writer);
         mPopupDataProvider.dump(prefix, writer);
+        WidgetPreviewCache.INSTANCE.get(this).dump(prefix, writer);
+        PreviewRenderScheduler.INSTANCE.get(this).dump(prefix, writer);
+        MemoryAccounting.INSTANCE.dump(prefix, writer);
+        StartupTracer.INSTANCE.dump(prefix, writer);
         mDeviceProfile.dump(prefix, writer);
 
         try {
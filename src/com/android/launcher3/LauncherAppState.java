@@ -42,12 +42,14 @@ import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.InstallSessionTracker;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.util.RunnableList;
 import com.android.launcher3.util.SafeCloseable;
 import com.android.launcher3.util.SettingsCache;
 import com.android.launcher3.util.SimpleBroadcastReceiver;
 import com.android.launcher3.util.Themes;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 
 public class LauncherAppState implements SafeCloseable {
@@ -136,6 +138,8 @@ public class LauncherAppState implements SafeCloseable {
         mOnTerminateCallback.add(() ->
                 settingsCache.unregister(NOTIFICATION_BADGING_URI, notificationLister));
 
+        mOnTerminateCallback.add(mModel.registerMemorySources(MemoryAccounting.INSTANCE)::close);
+
         mHomeKeyListener = new HomeKeyWatcher(mContext);
     }
 
@@ -233,6 +237,10 @@ public class LauncherAppState implements SafeCloseable {
         @Override
         public void onSystemIconStateChanged(String iconState) {
             IconShape.init(mContext);
+            WidgetPreviewCache previewCache = WidgetPreviewCache.INSTANCE.getNoCreate();
+            if (previewCache != null) {
+                previewCache.onSystemStateChanged();
+            }
             refreshAndReloadLauncher();
             getDevicePrefs(mContext).edit().putString(KEY_ICON_STATE, iconState).apply();
         }
@@ -20,6 +20,8 @@ import static com.android.launcher3.LauncherAppState.ACTION_FORCE_ROLOAD;
 import static com.android.launcher3.config.FeatureFlags.IS_STUDIO_BUILD;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.MemoryAccounting.CACHE_ENTRY_BYTES;
+import static com.android.launcher3.util.MemoryAccounting.ITEM_INFO_BYTES;
 
 import android.content.Context;
 import android.content.Intent;
@@ -32,9 +34,11 @@ import android.util.Log;
 import android.util.Pair;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.AddWorkspaceItemsTask;
@@ -42,19 +46,24 @@ import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.CacheDataUpdatedTask;
 import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.LoaderResults;
 import com.android.launcher3.model.LoaderTask;
 import com.android.launcher3.model.ModelDelegate;
+import com.android.launcher3.model.ModelSubsystems;
 import com.android.launcher3.model.ModelWriter;
 import com.android.launcher3.model.PackageIncrementalDownloadUpdatedTask;
 import com.android.launcher3.model.PackageInstallStateChangedTask;
+import com.android.launcher3.model.PackageUpdateCoalescer;
+import com.android.launcher3.model.PackageUpdateCoalescer.SinglePackageTask;
 import com.android.launcher3.model.PackageUpdatedTask;
 import com.android.launcher3.model.ShortcutsChangedTask;
 import com.android.launcher3.model.UserLockStateChangedTask;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.InstallSessionTracker;
 import com.android.launcher3.pm.PackageInstallInfo;
@@ -63,12 +72,17 @@ import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.ItemInfoMatcher;
+import com.android.launcher3.util.MemoryAccounting;
+import com.android.launcher3.util.MemoryAccounting.MemorySource;
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
+import com.android.launcher3.util.SafeCloseable;
 
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.CancellationException;
@@ -116,6 +130,11 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     private final BgDataModel mBgDataModel = new BgDataModel();
 
     private final ModelDelegate mModelDelegate;
+    private final ModelSubsystems mSubsystems;
+
+    private final PackageUpdateCoalescer mPackageUpdates = new PackageUpdateCoalescer(
+            MODEL_EXECUTOR.getHandler(), PackageUpdateCoalescer.COALESCE_WINDOW_MS,
+            this::executeModelUpdateTask);
 
     // Runnable to check if the shortcuts permission has changed.
     private final Runnable mDataValidationCheck = new Runnable() {
@@ -133,12 +152,17 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         mBgAllAppsList = new AllAppsList(iconCache, appFilter);
         mModelDelegate = ModelDelegate.newInstance(context, app, mBgAllAppsList, mBgDataModel,
                 isPrimaryInstance);
+        mSubsystems = new ModelSubsystems(context, this);
     }
 
     public ModelDelegate getModelDelegate() {
         return mModelDelegate;
     }
 
+    public ModelSubsystems getSubsystems() {
+        return mSubsystems;
+    }
+
     /**
      * Adds the provided items to the workspace.
      */
@@ -158,7 +182,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     @Override
     public void onPackageChanged(String packageName, UserHandle user) {
         int op = PackageUpdatedTask.OP_UPDATE;
-        enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packageName));
+        enqueuePackageUpdate(op, user, packageName);
     }
 
     @Override
@@ -169,41 +193,37 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     public void onPackagesRemoved(UserHandle user, String... packages) {
         int op = PackageUpdatedTask.OP_REMOVE;
         FileLog.d(TAG, "package removed received " + TextUtils.join(",", packages));
-        enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packages));
+        enqueuePackageUpdate(op, user, packages);
     }
 
     @Override
     public void onPackageAdded(String packageName, UserHandle user) {
         int op = PackageUpdatedTask.OP_ADD;
-        enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packageName));
+        enqueuePackageUpdate(op, user, packageName);
     }
 
     @Override
     public void onPackagesAvailable(String[] packageNames, UserHandle user,
             boolean replacing) {
-        enqueueModelUpdateTask(
-                new PackageUpdatedTask(PackageUpdatedTask.OP_UPDATE, user, packageNames));
+        enqueuePackageUpdate(PackageUpdatedTask.OP_UPDATE, user, packageNames);
     }
 
     @Override
     public void onPackagesUnavailable(String[] packageNames, UserHandle user,
             boolean replacing) {
         if (!replacing) {
-            enqueueModelUpdateTask(new PackageUpdatedTask(
-                    PackageUpdatedTask.OP_UNAVAILABLE, user, packageNames));
+            enqueuePackageUpdate(PackageUpdatedTask.OP_UNAVAILABLE, user, packageNames);
         }
     }
 
     @Override
     public void onPackagesSuspended(String[] packageNames, UserHandle user) {
-        enqueueModelUpdateTask(new PackageUpdatedTask(
-                PackageUpdatedTask.OP_SUSPEND, user, packageNames));
+        enqueuePackageUpdate(PackageUpdatedTask.OP_SUSPEND, user, packageNames);
     }
 
     @Override
     public void onPackagesUnsuspended(String[] packageNames, UserHandle user) {
-        enqueueModelUpdateTask(new PackageUpdatedTask(
-                PackageUpdatedTask.OP_UNSUSPEND, user, packageNames));
+        enqueuePackageUpdate(PackageUpdatedTask.OP_UNSUSPEND, user, packageNames);
     }
 
     @Override
@@ -568,6 +588,39 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     }
 
     public void enqueueModelUpdateTask(ModelUpdateTask task) {
+        if (mModelDestroyed) {
+            return;
+        }
+        // Run the pending package updates first, so that tasks run in the order of their events
+        if (task instanceof SinglePackageTask) {
+            SinglePackageTask packageTask = (SinglePackageTask) task;
+            mPackageUpdates.flushIfPending(packageTask.getPackageName(), packageTask.getUser());
+        } else {
+            mPackageUpdates.flush();
+        }
+        executeModelUpdateTask(task);
+    }
+
+    /**
+     * Enqueues a {@link PackageUpdatedTask}, coalesced with the other package events received
+     * within a short window
+     */
+    private void enqueuePackageUpdate(int op, UserHandle user, String... packages) {
+        if (mModelDestroyed) {
+            return;
+        }
+        mPackageUpdates.addEvent(op, user, packages);
+    }
+
+    /**
+     * Enqueues the tasks for any pending package events immediately
+     */
+    @VisibleForTesting
+    public void flushPackageUpdates() {
+        mPackageUpdates.flush();
+    }
+
+    private void executeModelUpdateTask(ModelUpdateTask task) {
         if (mModelDestroyed) {
             return;
         }
@@ -631,6 +684,111 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         });
     }
 
+    /**
+     * Registers the memory retained by the model with {@link MemoryAccounting}. The model is
+     * captured on the model thread at each sample, so that the estimates on the main thread never
+     * wait for the model lock.
+     *
+     * @return a handle to unregister the sources
+     */
+    public SafeCloseable registerMemorySources(MemoryAccounting accounting) {
+        // Icons are registered first, as their bitmaps are shared with the model items
+        SafeCloseable icons = accounting.register("iconCache", new IconCacheMemorySource());
+        SafeCloseable items = accounting.register("bgDataModel", new DataModelMemorySource());
+        SafeCloseable apps = accounting.register("allAppsList", new AppsListMemorySource());
+        return () -> {
+            icons.close();
+            items.close();
+            apps.close();
+        };
+    }
+
+    /**
+     * Estimates the memory retained by the in-memory icon cache. The memory cache of
+     * {@link IconCache} is not accessible, so this counts the icons of the loaded items instead,
+     * which share their bitmaps with the cache entries.
+     */
+    private class IconCacheMemorySource implements MemorySource {
+
+        private volatile List<BitmapInfo> mIcons = Collections.emptyList();
+
+        @Override
+        public void prepareEstimate() {
+            List<BitmapInfo> icons = new ArrayList<>();
+            for (AppInfo info : mBgAllAppsList.data) {
+                icons.add(info.bitmap);
+            }
+            synchronized (mBgDataModel) {
+                for (ItemInfo info : mBgDataModel.itemsIdMap) {
+                    if (info instanceof ItemInfoWithIcon) {
+                        icons.add(((ItemInfoWithIcon) info).bitmap);
+                    }
+                }
+                for (FixedContainerItems container : mBgDataModel.extraItems) {
+                    for (ItemInfo info : container.items) {
+                        if (info instanceof ItemInfoWithIcon) {
+                            icons.add(((ItemInfoWithIcon) info).bitmap);
+                        }
+                    }
+                }
+            }
+            mIcons = icons;
+        }
+
+        @Override
+        public void estimateSize(SizeEstimate estimate) {
+            for (BitmapInfo icon : mIcons) {
+                estimate.addBitmapInfo(icon);
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory retained by the items of {@link BgDataModel}, excluding their icons
+     */
+    private class DataModelMemorySource implements MemorySource {
+
+        private volatile int mItemCount;
+        private volatile int mShortcutCountEntries;
+
+        @Override
+        public void prepareEstimate() {
+            synchronized (mBgDataModel) {
+                int itemCount = mBgDataModel.itemsIdMap.size();
+                for (FixedContainerItems container : mBgDataModel.extraItems) {
+                    itemCount += container.items.size();
+                }
+                mItemCount = itemCount;
+                mShortcutCountEntries = mBgDataModel.deepShortcutCounts.size();
+            }
+        }
+
+        @Override
+        public void estimateSize(SizeEstimate estimate) {
+            estimate.addObjects(mItemCount, ITEM_INFO_BYTES);
+            estimate.addObjects(mShortcutCountEntries, CACHE_ENTRY_BYTES);
+        }
+    }
+
+    /**
+     * Estimates the memory retained by the apps of {@link AllAppsList}, excluding their icons
+     */
+    private class AppsListMemorySource implements MemorySource {
+
+        private volatile int mAppCount;
+
+        @Override
+        public void prepareEstimate() {
+            // The list is only modified on the model thread
+            mAppCount = mBgAllAppsList.data.size();
+        }
+
+        @Override
+        public void estimateSize(SizeEstimate estimate) {
+            estimate.addObjects(mAppCount, ITEM_INFO_BYTES);
+        }
+    }
+
     public void dumpState(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
         if (args.length > 0 && TextUtils.equals(args[0], "--all")) {
             writer.println(prefix + "All apps list: size=" + mBgAllAppsList.data.size());
@@ -641,6 +799,8 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             }
             writer.println();
         }
+        mPackageUpdates.dump(prefix, writer);
+        mSubsystems.dump(prefix, writer);
         mModelDelegate.dump(prefix, fd, writer, args);
         mBgDataModel.dump(prefix, fd, writer, args);
     }
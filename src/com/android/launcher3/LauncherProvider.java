@@ -16,6 +16,7 @@
 
 package com.android.launcher3;
 
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_DB_OPEN;
 import static com.android.launcher3.provider.LauncherDbUtils.copyTable;
 import static com.android.launcher3.provider.LauncherDbUtils.dropTable;
 import static com.android.launcher3.provider.LauncherDbUtils.tableExists;
@@ -59,6 +60,7 @@ import com.android.launcher3.AutoInstallsLayout.LayoutParserCallback;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.logging.StartupTracer;
 import com.android.launcher3.model.DbDowngradeHelper;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.provider.LauncherDbUtils;
@@ -152,6 +154,7 @@ public class LauncherProvider extends ContentProvider {
                     getContext(), false /* forMigration */);
 
             RestoreDbTask.restoreIfNeeded(getContext(), mOpenHelper);
+            StartupTracer.INSTANCE.mark(MILESTONE_DB_OPEN);
         }
     }
 
@@ -22,6 +22,7 @@ import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.graphics.BitmapCreationCheck;
 import com.android.launcher3.graphics.IconShape;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.logging.StartupTracer;
 import com.android.launcher3.util.ResourceBasedOverride;
 
 /**
@@ -37,6 +38,7 @@ public class MainProcessInitializer implements ResourceBasedOverride {
 
     protected void init(Context context) {
         FileLog.setDir(context.getApplicationContext().getFilesDir());
+        StartupTracer.INSTANCE.init(context);
         FeatureFlags.initialize(context);
         IconShape.init(context);
 
@@ -29,6 +29,8 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.CellLayout.ContainerType;
 import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.views.ActivityContext;
@@ -57,6 +59,9 @@ public class ShortcutAndWidgetContainer extends ViewGroup implements FolderIcon.
     private final ActivityContext mActivity;
     private boolean mInvertIfRtl = false;
 
+    @Nullable
+    private Runnable mOnChildrenChangedListener;
+
     public ShortcutAndWidgetContainer(Context context, @ContainerType int containerType) {
         super(context);
         mActivity = ActivityContext.lookupContext(context);
@@ -73,6 +78,41 @@ public class ShortcutAndWidgetContainer extends ViewGroup implements FolderIcon.
         mBorderSpace = borderSpace;
     }
 
+    /**
+     * Sets a listener to be notified whenever a child is added, removed or rebound to a different
+     * item. Unlike {@link #setOnHierarchyChangeListener}, this does not replace any listener set
+     * by others.
+     */
+    public void setOnChildrenChangedListener(@Nullable Runnable listener) {
+        mOnChildrenChangedListener = listener;
+    }
+
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        if (mOnChildrenChangedListener != null) {
+            mOnChildrenChangedListener.run();
+        }
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        if (mOnChildrenChangedListener != null) {
+            mOnChildrenChangedListener.run();
+        }
+    }
+
+    /**
+     * Called when a child is bound to a different item without being removed, like when a
+     * predicted app icon is reused for another prediction.
+     */
+    public void onChildRebound(View child) {
+        if (mOnChildrenChangedListener != null) {
+            mOnChildrenChangedListener.run();
+        }
+    }
+
     public View getChildAt(int cellX, int cellY) {
         final int count = getChildCount();
         for (int i = 0; i < count; i++) {
@@ -121,9 +121,11 @@ import com.android.launcher3.widget.util.WidgetSizes;
 import com.android.systemui.plugins.shared.LauncherOverlayManager.LauncherOverlay;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -266,6 +268,8 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
 
     private final StatsLogManager mStatsLogManager;
 
+    private final WorkspaceViewIndex mViewIndex = new WorkspaceViewIndex(this);
+
     /**
      * Used to inflate the Workspace from XML.
      *
@@ -562,9 +566,25 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
         CellLayout cl = ((CellLayout) child);
         cl.setOnInterceptTouchListener(this);
         cl.setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_NO);
+        cl.getShortcutsAndWidgets().setOnChildrenChangedListener(mViewIndex::invalidate);
+        mViewIndex.invalidate();
         super.onViewAdded(child);
     }
 
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        ((CellLayout) child).getShortcutsAndWidgets().setOnChildrenChangedListener(null);
+        mViewIndex.invalidate();
+    }
+
+    /**
+     * Returns the index of the item views bound to the workspace and hotseat
+     */
+    public WorkspaceViewIndex getViewIndex() {
+        return mViewIndex;
+    }
+
     /**
      * Initializes and binds the first page
      */
@@ -3144,7 +3164,7 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
     }
 
     public View getHomescreenIconByItemId(final int id) {
-        return getFirstMatch((info, v) -> info != null && info.id == id);
+        return mViewIndex.getViewByItemId(id);
     }
 
     public LauncherAppWidgetHostView getWidgetForAppWidgetId(final int appWidgetId) {
@@ -3227,6 +3247,31 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
         }
     }
 
+    @Override
+    public void mapOverUpdatedItems(Collection<? extends ItemInfo> updates, ItemOperator op) {
+        // Only visit the views of the updated items and of the folders containing them
+        IntSet ids = new IntSet();
+        for (ItemInfo info : updates) {
+            ids.add(info.id);
+            ids.add(info.container);
+        }
+        ArrayList<View> views = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            View v = mViewIndex.getViewByItemId(id);
+            if (v != null) {
+                views.add(v);
+            }
+        }
+        views.addAll(mViewIndex.getViewsWithoutId());
+        for (View v : views) {
+            if (op.evaluate((ItemInfo) v.getTag(), v)) {
+                break;
+            }
+        }
+        // The items were updated in place, so their target might have changed
+        mViewIndex.invalidate();
+    }
+
     private View mapOverCellLayout(CellLayout layout, ItemOperator op) {
         // TODO(b/128460496) Potential race condition where layout is not yet loaded
         if (layout == null) {
@@ -3269,7 +3314,18 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
             return false;
         };
 
-        mapOverItems(op);
+        // Only visit the views of the updated packages, instead of every item
+        for (Map.Entry<PackageUserKey, ArrayList<View>> entry
+                : mViewIndex.getViewsByPackage().entrySet()) {
+            if (updatedDots.test(entry.getKey())) {
+                for (View v : entry.getValue()) {
+                    op.evaluate((ItemInfo) v.getTag(), v);
+                }
+            }
+        }
+        for (View v : mViewIndex.getViewsWithoutPackage()) {
+            op.evaluate((ItemInfo) v.getTag(), v);
+        }
         Folder folder = Folder.getOpen(mLauncher);
         if (folder != null) {
             folder.iterateOverItems(op);
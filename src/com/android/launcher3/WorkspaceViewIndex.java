@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3;
+
+import android.os.UserHandle;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.folder.FolderIcon;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Index of the item views bound to the workspace pages and the hotseat, by item id and by the
+ * package of their target, so that lookups do not need to walk every page.
+ *
+ * The index is rebuilt lazily on the first lookup after it was invalidated, which happens
+ * whenever an item view is added to or removed from a page, when an item view is rebound to a
+ * different item, and when the items bound to the views are updated in place. Folder contents
+ * are not indexed individually, as they change without any view hierarchy change, instead the
+ * folder icons are kept in a separate list.
+ */
+public class WorkspaceViewIndex {
+
+    // Returns the containers of the item views, hotseat first and then the pages in order
+    private final Supplier<List<ViewGroup>> mContainers;
+
+    private final IntSparseArrayMap<View> mViewsById = new IntSparseArrayMap<>();
+    private final HashMap<PackageUserKey, ArrayList<View>> mViewsByPackage = new HashMap<>();
+    // Views of items which are not in the model, like predicted apps
+    private final ArrayList<View> mViewsWithoutId = new ArrayList<>();
+    private final ArrayList<View> mViewsWithoutPackage = new ArrayList<>();
+    private final ArrayList<FolderIcon> mFolderIcons = new ArrayList<>();
+
+    private final PackageUserKey mTempKey = new PackageUserKey(null, null);
+
+    private boolean mIsValid;
+
+    public WorkspaceViewIndex(Workspace workspace) {
+        this(() -> getContainers(workspace));
+    }
+
+    @VisibleForTesting
+    WorkspaceViewIndex(Supplier<List<ViewGroup>> containers) {
+        mContainers = containers;
+    }
+
+    /**
+     * Marks the index as stale, it will be rebuilt on next use
+     */
+    public void invalidate() {
+        mIsValid = false;
+    }
+
+    /**
+     * Returns the top level view bound to the item with the given id, or null if none
+     */
+    @Nullable
+    public View getViewByItemId(int id) {
+        ensureValid();
+        View view = mViewsById.get(id);
+        if (view != null && !isBoundTo(view, id)) {
+            // The item of the view was replaced without notifying the index
+            rebuild();
+            view = mViewsById.get(id);
+        }
+        return view;
+    }
+
+    /**
+     * Returns the top level views targeting the package for the user
+     */
+    public List<View> getViewsForPackage(String packageName, UserHandle user) {
+        ensureValid();
+        mTempKey.update(packageName, user);
+        ArrayList<View> views = mViewsByPackage.get(mTempKey);
+        return views == null ? Collections.emptyList() : views;
+    }
+
+    /**
+     * Returns the views grouped by the package of their target
+     */
+    public Map<PackageUserKey, ArrayList<View>> getViewsByPackage() {
+        ensureValid();
+        return mViewsByPackage;
+    }
+
+    /**
+     * Returns the views of items which have no id, and so can not be looked up by id
+     */
+    public List<View> getViewsWithoutId() {
+        ensureValid();
+        return mViewsWithoutId;
+    }
+
+    /**
+     * Returns the views of items which have no target package, like folders
+     */
+    public List<View> getViewsWithoutPackage() {
+        ensureValid();
+        return mViewsWithoutPackage;
+    }
+
+    public List<FolderIcon> getFolderIcons() {
+        ensureValid();
+        return mFolderIcons;
+    }
+
+    private void ensureValid() {
+        if (!mIsValid) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        mViewsById.clear();
+        mViewsByPackage.clear();
+        mViewsWithoutId.clear();
+        mViewsWithoutPackage.clear();
+        mFolderIcons.clear();
+
+        for (ViewGroup container : mContainers.get()) {
+            addViews(container);
+        }
+        mIsValid = true;
+    }
+
+    private static List<ViewGroup> getContainers(Workspace workspace) {
+        int screenCount = workspace.getChildCount();
+        ArrayList<ViewGroup> containers = new ArrayList<>(screenCount + 1);
+        Hotseat hotseat = workspace.getHotseat();
+        if (hotseat != null) {
+            containers.add(hotseat.getShortcutsAndWidgets());
+        }
+        for (int i = 0; i < screenCount; i++) {
+            containers.add(((CellLayout) workspace.getChildAt(i)).getShortcutsAndWidgets());
+        }
+        return containers;
+    }
+
+    private void addViews(ViewGroup container) {
+        int childCount = container.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View view = container.getChildAt(i);
+            if (!(view.getTag() instanceof ItemInfo)) {
+                continue;
+            }
+            ItemInfo info = (ItemInfo) view.getTag();
+            if (view instanceof FolderIcon) {
+                mFolderIcons.add((FolderIcon) view);
+            }
+            if (info.id != ItemInfo.NO_ID) {
+                mViewsById.put(info.id, view);
+            } else {
+                mViewsWithoutId.add(view);
+            }
+            PackageUserKey key = PackageUserKey.fromItemInfo(info);
+            if (key == null) {
+                mViewsWithoutPackage.add(view);
+            } else {
+                ArrayList<View> views = mViewsByPackage.get(key);
+                if (views == null) {
+                    views = new ArrayList<>(1);
+                    mViewsByPackage.put(key, views);
+                }
+                views.add(view);
+            }
+        }
+    }
+
+    private static boolean isBoundTo(View view, int id) {
+        return view.getTag() instanceof ItemInfo && ((ItemInfo) view.getTag()).id == id
+                && view.getParent() != null;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import android.text.TextUtils;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.android.launcher3.allapps.AllAppsGridAdapter.AdapterItem;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Computes the minimal set of adapter notifications between the app items last bound to the
+ * all apps list and a new set of items.
+ *
+ * Apps are often updated in place, so the contents of each app item are recorded when the items
+ * are bound, and compared against the app when diffing.
+ */
+class AdapterItemDiffCallback extends DiffUtil.Callback {
+
+    private final ArrayList<AdapterItem> mOldItems = new ArrayList<>();
+    private CharSequence[] mOldTitles = new CharSequence[0];
+    private BitmapInfo[] mOldIcons = new BitmapInfo[0];
+    private int[] mOldFlags = new int[0];
+    private boolean mHasOldItems;
+
+    private List<AdapterItem> mNewItems;
+
+    /**
+     * Returns whether the items currently bound to the adapter are known
+     */
+    boolean hasOldItems() {
+        return mHasOldItems;
+    }
+
+    /**
+     * Records the items currently bound to the adapter, to be diffed against on the next update
+     */
+    void setOldItems(List<AdapterItem> items) {
+        int count = items.size();
+        if (mOldFlags.length < count) {
+            mOldTitles = new CharSequence[count];
+            mOldIcons = new BitmapInfo[count];
+            mOldFlags = new int[count];
+        }
+        mOldItems.clear();
+        mOldItems.addAll(items);
+        for (int i = 0; i < count; i++) {
+            ItemInfoWithIcon info = items.get(i).itemInfo;
+            mOldTitles[i] = info == null ? null : info.title;
+            mOldIcons[i] = info == null ? null : info.bitmap;
+            mOldFlags[i] = info == null ? 0 : info.runtimeStatusFlags;
+        }
+        clearSnapshots(count);
+        mHasOldItems = true;
+        mNewItems = null;
+    }
+
+    /**
+     * Forgets the bound items, for example when the adapter shows search results instead
+     */
+    void clearOldItems() {
+        mOldItems.clear();
+        clearSnapshots(0);
+        mHasOldItems = false;
+        mNewItems = null;
+    }
+
+    private void clearSnapshots(int fromIndex) {
+        // Do not hold on to the icons of apps which are no longer bound
+        Arrays.fill(mOldTitles, fromIndex, mOldTitles.length, null);
+        Arrays.fill(mOldIcons, fromIndex, mOldIcons.length, null);
+    }
+
+    void setNewItems(List<AdapterItem> items) {
+        mNewItems = items;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        AdapterItem oldItem = mOldItems.get(oldItemPosition);
+        AdapterItem newItem = mNewItems.get(newItemPosition);
+        if (oldItem.viewType != newItem.viewType) {
+            return false;
+        }
+        if (oldItem.itemInfo == null || newItem.itemInfo == null) {
+            return oldItem.itemInfo == newItem.itemInfo;
+        }
+        return oldItem.itemInfo == newItem.itemInfo
+                || (Objects.equals(oldItem.itemInfo.getTargetComponent(),
+                        newItem.itemInfo.getTargetComponent())
+                && Objects.equals(oldItem.itemInfo.user, newItem.itemInfo.user));
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        ItemInfoWithIcon info = mNewItems.get(newItemPosition).itemInfo;
+        if (info == null) {
+            // Cards do not expose their state, always rebind them
+            return false;
+        }
+        return mOldItems.get(oldItemPosition).itemInfo == info
+                && TextUtils.equals(mOldTitles[oldItemPosition], info.title)
+                && mOldIcons[oldItemPosition] == info.bitmap
+                && mOldFlags[oldItemPosition] == info.runtimeStatusFlags;
+    }
+}
@@ -347,14 +347,20 @@ public class AllAppsGridAdapter extends
         return mGridLayoutMgr;
     }
 
+    /**
+     * Returns the layout used for app icons
+     */
+    public static int getIconLayoutResId() {
+        return !FeatureFlags.ENABLE_TWOLINE_ALLAPPS.get() ? R.layout.all_apps_icon
+                : R.layout.all_apps_icon_twoline;
+    }
+
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         switch (viewType) {
             case VIEW_TYPE_ICON:
-                int layout = !FeatureFlags.ENABLE_TWOLINE_ALLAPPS.get() ? R.layout.all_apps_icon
-                        : R.layout.all_apps_icon_twoline;
-                BubbleTextView icon = (BubbleTextView) mLayoutInflater.inflate(
-                        layout, parent, false);
+                BubbleTextView icon = mLauncher.getViewCache().getView(
+                        getIconLayoutResId(), mLayoutInflater.getContext(), parent);
                 icon.setLongPressTimeoutFactor(1f);
                 icon.setOnFocusChangeListener(mIconFocusListener);
                 icon.setOnClickListener(mOnIconClickListener);
@@ -71,6 +71,16 @@ public class AllAppsRecyclerView extends BaseRecyclerView {
         public void onChanged() {
             mCachedScrollPositions.clear();
         }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mCachedScrollPositions.clear();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mCachedScrollPositions.clear();
+        }
     };
 
     // The empty-search result background
@@ -18,6 +18,9 @@ package com.android.launcher3.allapps;
 
 import android.content.Context;
 
+import androidx.annotation.VisibleForTesting;
+import androidx.recyclerview.widget.DiffUtil;
+
 import com.android.launcher3.BaseDraggingActivity;
 import com.android.launcher3.allapps.AllAppsGridAdapter.AdapterItem;
 import com.android.launcher3.config.FeatureFlags;
@@ -27,10 +30,13 @@ import com.android.launcher3.util.LabelComparator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -76,6 +82,8 @@ public class AlphabeticalAppsList implements AllAppsStore.OnUpdateListener {
     private final ArrayList<AdapterItem> mAdapterItems = new ArrayList<>();
     // The set of sections that we allow fast-scrolling to (includes non-merged sections)
     private final List<FastScrollSectionInfo> mFastScrollerSections = new ArrayList<>();
+    // The app items last bound to the adapter, used to notify only the items which changed
+    private final AdapterItemDiffCallback mDiffCallback = new AdapterItemDiffCallback();
 
     // The of ordered component names as a result of a search query
     private ArrayList<AdapterItem> mSearchResults;
@@ -217,15 +225,15 @@ public class AlphabeticalAppsList implements AllAppsStore.OnUpdateListener {
     @Override
     public void onAppsUpdated() {
         // Sort the list of apps
-        mApps.clear();
-
-        for (AppInfo app : mAllAppsStore.getApps()) {
+        AppInfo[] apps = mAllAppsStore.getApps();
+        Set<AppInfo> filteredApps = Collections.newSetFromMap(new IdentityHashMap<>(apps.length));
+        for (AppInfo app : apps) {
             if (mItemFilter == null || mItemFilter.matches(app, null) || hasFilter()) {
-                mApps.add(app);
+                filteredApps.add(app);
             }
         }
 
-        Collections.sort(mApps, mAppNameComparator);
+        updateSortedApps(mApps, filteredApps, mAppNameComparator);
 
         // As a special case for some languages (currently only Simplified Chinese), we may need to
         // coalesce sections
@@ -261,6 +269,21 @@ public class AlphabeticalAppsList implements AllAppsStore.OnUpdateListener {
         }
     }
 
+    /**
+     * Updates {@param sortedApps}, sorted by a previous update, to contain exactly the apps in
+     * {@param apps} sorted by {@param comparator}. Consumes {@param apps}.
+     */
+    @VisibleForTesting
+    static void updateSortedApps(List<AppInfo> sortedApps, Set<AppInfo> apps,
+            Comparator<AppInfo> comparator) {
+        // Keep the apps which are still present in their previous order, followed by the new
+        // ones. The sort is adaptive, so when only a few apps changed it merges them into the
+        // already sorted run instead of sorting the whole list again.
+        sortedApps.removeIf(app -> !apps.remove(app));
+        sortedApps.addAll(apps);
+        sortedApps.sort(comparator);
+    }
+
     /**
      * Updates the set of filtered apps with the current filter. At this point, we expect
      * mCachedSectionNames to have been calculated for the set of all apps in mApps.
@@ -271,8 +294,20 @@ public class AlphabeticalAppsList implements AllAppsStore.OnUpdateListener {
     }
 
     private void refreshRecyclerView() {
-        if (mAdapter != null) {
+        if (mAdapter == null) {
+            return;
+        }
+        if (hasFilter() || !mDiffCallback.hasOldItems()) {
             mAdapter.notifyDataSetChanged();
+        } else {
+            // Apps are already sorted, no need to detect moves
+            mDiffCallback.setNewItems(mAdapterItems);
+            DiffUtil.calculateDiff(mDiffCallback, false).dispatchUpdatesTo(mAdapter);
+        }
+        if (hasFilter()) {
+            mDiffCallback.clearOldItems();
+        } else {
+            mDiffCallback.setOldItems(mAdapterItems);
         }
     }
 
@@ -21,26 +21,47 @@ import android.content.Context;
 import android.os.Handler;
 
 import androidx.annotation.AnyThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.allapps.AllAppsGridAdapter.AdapterItem;
 import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.ModelDelegate;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
-import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatchScorer;
+import com.android.launcher3.search.TransliterationIndex;
+import com.android.launcher3.util.ComponentKey;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
  * The default search implementation.
  */
 public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
 
-    private static final int MAX_RESULTS_COUNT = 5;
+    @VisibleForTesting
+    static final int MAX_RESULTS_COUNT = 5;
+
+    // Number of title characters the approximate pass may scan per query. Approximate matching
+    // costs a few nanoseconds per character, this bounds it well within a frame on large app
+    // lists. Unlike a deadline, the result does not depend on the speed of the device.
+    @VisibleForTesting
+    static final int FUZZY_SEARCH_CHAR_BUDGET = 32 * 1024;
+
+    // Boost applied per launch. The maximum boost (95) is lower than the smallest gap between two
+    // match qualities in StringMatchScorer, which is 100 between the lowest word start score and
+    // the transliteration score.
+    private static final int LAUNCH_BOOST = 5;
+    private static final int MAX_BOOSTED_LAUNCHES = 19;
+    private static final int MAX_LAUNCH_BOOST = LAUNCH_BOOST * MAX_BOOSTED_LAUNCHES;
 
     private final LauncherAppState mAppState;
     private final Handler mResultHandler;
@@ -62,7 +83,9 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         mAppState.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
             @Override
             public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList apps) {
-                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
+                ModelDelegate delegate = app.getModel().getModelDelegate();
+                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query,
+                        apps.getSearchIndex(), delegate::getAppLaunchCount);
                 mResultHandler.post(() -> callback.onSearchResult(query, result));
             }
         });
@@ -73,23 +96,110 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
      */
     @AnyThread
     public static ArrayList<AdapterItem> getTitleMatchResult(List<AppInfo> apps, String query) {
-        // Do an intersection of the words in the query and each title, and filter out all the
-        // apps that don't match all of the words in the query.
+        return getTitleMatchResult(apps, query, null, null);
+    }
+
+    /**
+     * Returns the best {@link AppInfo}s matching the specified query, ranked using
+     * {@link StringMatchScorer}. Apps with the same match quality are ranked by their launch
+     * count, and then by their order in {@code apps}.
+     *
+     * @param searchIndex if provided, latin queries also match the romanized titles
+     * @param launchCounts if provided, used to boost frequently launched apps
+     */
+    @AnyThread
+    public static ArrayList<AdapterItem> getTitleMatchResult(List<AppInfo> apps, String query,
+            @Nullable TransliterationIndex searchIndex,
+            @Nullable ToIntFunction<ComponentKey> launchCounts) {
         final String queryTextLower = query.toLowerCase();
-        final ArrayList<AdapterItem> result = new ArrayList<>();
-        StringMatcherUtility.StringMatcher matcher =
-                StringMatcherUtility.StringMatcher.getInstance();
+        StringMatchScorer scorer = new StringMatchScorer(queryTextLower);
+        TopResults topResults = new TopResults(launchCounts);
 
-        int resultCount = 0;
         int total = apps.size();
-        for (int i = 0; i < total && resultCount < MAX_RESULTS_COUNT; i++) {
+        BitSet exactMatches = new BitSet(total);
+        for (int i = 0; i < total; i++) {
             AppInfo info = apps.get(i);
-            if (StringMatcherUtility.matches(queryTextLower, info.title.toString(), matcher)) {
-                AdapterItem appItem = AdapterItem.asApp(resultCount, "", info, resultCount);
-                result.add(appItem);
-                resultCount++;
+            if (info.title != null) {
+                int score = scorer.score(info.title.toString(), searchIndex, false);
+                if (score != StringMatchScorer.NO_MATCH) {
+                    exactMatches.set(i);
+                    topResults.add(info, score);
+                }
             }
         }
+
+        // Approximate matching is the most expensive step. Approximate matches always rank below
+        // exact matches, so they are only considered when there are not enough exact matches, and
+        // only until the budget is used up.
+        if (!topResults.isFull()) {
+            int budget = FUZZY_SEARCH_CHAR_BUDGET;
+            for (int i = 0; i < total && budget > 0; i++) {
+                AppInfo info = apps.get(i);
+                if (info.title == null || exactMatches.get(i)) {
+                    continue;
+                }
+                String title = info.title.toString();
+                budget -= title.length();
+                topResults.add(info, scorer.scoreApproximate(title));
+            }
+        }
+
+        final ArrayList<AdapterItem> result = new ArrayList<>(topResults.mCount);
+        for (int i = 0; i < topResults.mCount; i++) {
+            result.add(AdapterItem.asApp(i, "", topResults.mApps[i], i));
+        }
         return result;
     }
+
+    /**
+     * Best results sorted by decreasing score, apps with the same score keep the order in which
+     * they are added
+     */
+    private static class TopResults {
+
+        final AppInfo[] mApps = new AppInfo[MAX_RESULTS_COUNT];
+        final int[] mScores = new int[MAX_RESULTS_COUNT];
+        int mCount = 0;
+
+        @Nullable
+        private final ToIntFunction<ComponentKey> mLaunchCounts;
+        private final int mMaxBoost;
+
+        TopResults(@Nullable ToIntFunction<ComponentKey> launchCounts) {
+            mLaunchCounts = launchCounts;
+            mMaxBoost = launchCounts == null ? 0 : MAX_LAUNCH_BOOST;
+        }
+
+        boolean isFull() {
+            return mCount == MAX_RESULTS_COUNT;
+        }
+
+        void add(AppInfo info, int score) {
+            if (score == StringMatchScorer.NO_MATCH) {
+                return;
+            }
+            if (isFull() && score + mMaxBoost <= mScores[MAX_RESULTS_COUNT - 1]) {
+                // Cannot beat the results found so far, even with the maximum launch boost
+                return;
+            }
+            if (mLaunchCounts != null) {
+                score += Math.min(mLaunchCounts.applyAsInt(info.toComponentKey()),
+                        MAX_BOOSTED_LAUNCHES) * LAUNCH_BOOST;
+            }
+
+            int pos = mCount;
+            while (pos > 0 && mScores[pos - 1] < score) {
+                pos--;
+            }
+            if (pos >= MAX_RESULTS_COUNT) {
+                return;
+            }
+            int last = Math.min(mCount, MAX_RESULTS_COUNT - 1);
+            System.arraycopy(mApps, pos, mApps, pos + 1, last - pos);
+            System.arraycopy(mScores, pos, mScores, pos + 1, last - pos);
+            mApps[pos] = info;
+            mScores[pos] = score;
+            mCount = Math.min(mCount + 1, MAX_RESULTS_COUNT);
+        }
+    }
 }
@@ -24,6 +24,7 @@ import static com.android.launcher3.compat.AccessibilityManagerCompat.sendCustom
 import static com.android.launcher3.config.FeatureFlags.ALWAYS_USE_HARDWARE_OPTIMIZATION_FOR_FOLDER_ANIMATIONS;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_FOLDER_LABEL_UPDATED;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ITEM_DROP_COMPLETED;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_FOLDER_NAMES;
 import static com.android.launcher3.util.DisplayController.getSingleFrameMs;
 
 import android.animation.Animator;
@@ -69,6 +70,7 @@ import com.android.launcher3.DragSource;
 import com.android.launcher3.DropTarget;
 import com.android.launcher3.ExtendedEditText;
 import com.android.launcher3.Launcher;
+import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.OnAlarmListener;
 import com.android.launcher3.PagedView;
@@ -645,6 +647,9 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
             // Close any open folder before opening a folder.
             openFolder.close(true);
         }
+        // Suggestions are needed when the user edits the folder name
+        LauncherAppState.getInstance(getContext()).getModel().getSubsystems()
+                .ensureLoaded(SUBSYSTEM_FOLDER_NAMES);
 
         mContent.bindItems(items);
         centerAboutIcon();
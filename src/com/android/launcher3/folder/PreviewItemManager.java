@@ -26,12 +26,16 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Path;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.util.FloatProperty;
 import android.view.View;
 
@@ -90,6 +94,13 @@ public class PreviewItemManager {
     private float mCurrentPageItemsTransX = 0;
     private boolean mShouldSlideInFirstPage;
 
+    // Display list of the first page preview items in their resting state, reused as long as the
+    // items, their drawables and the preview offset do not change. Created lazily on Q and above.
+    private RenderNode mPreviewNode;
+    private boolean mPreviewNodeDirty = true;
+    private float mPreviewNodeOffsetX;
+    private float mPreviewNodeOffsetY;
+
     static final int INITIAL_ITEM_ANIMATION_DURATION = 350;
     private static final int FINAL_ITEM_ANIMATION_DURATION = 200;
 
@@ -186,9 +197,16 @@ public class PreviewItemManager {
      * Draws the preview items on {@param canvas}.
      */
     public void draw(Canvas canvas) {
+        PreviewBackground bg = mIcon.getFolderBackground();
+        if (canUsePreviewNode(canvas)) {
+            drawPreviewNode(canvas, bg);
+            return;
+        }
+        // Items are moving, the cached display list will need to be recorded again
+        mPreviewNodeDirty = true;
+
         int saveCount = canvas.getSaveCount();
         // The items are drawn in coordinates relative to the preview offset
-        PreviewBackground bg = mIcon.getFolderBackground();
         Path clipPath = bg.getClipPath();
         float firstPageItemsTransX = 0;
         if (mShouldSlideInFirstPage) {
@@ -206,7 +224,61 @@ public class PreviewItemManager {
         canvas.restoreToCount(saveCount);
     }
 
+    /**
+     * Returns true if the preview items are in their resting state, and can be drawn from the
+     * cached display list. Animating items, and all items before Q, are always drawn directly.
+     */
+    private boolean canUsePreviewNode(Canvas canvas) {
+        if (!Utilities.ATLEAST_Q || !canvas.isHardwareAccelerated() || mShouldSlideInFirstPage
+                || mIcon.mAnimating) {
+            return false;
+        }
+        for (int i = mFirstPageParams.size() - 1; i >= 0; i--) {
+            PreviewItemDrawingParams p = mFirstPageParams.get(i);
+            if (p.anim != null || p.index == EXIT_INDEX) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    private void drawPreviewNode(Canvas canvas, PreviewBackground bg) {
+        if (mPreviewNode == null) {
+            mPreviewNode = new RenderNode("FolderPreview");
+            mPreviewNode.setClipToBounds(false);
+            mPreviewNodeDirty = true;
+        }
+        if (mPreviewNodeDirty || !mPreviewNode.hasDisplayList()
+                || mPreviewNodeOffsetX != bg.basePreviewOffsetX
+                || mPreviewNodeOffsetY != bg.basePreviewOffsetY) {
+            mPreviewNodeOffsetX = bg.basePreviewOffsetX;
+            mPreviewNodeOffsetY = bg.basePreviewOffsetY;
+            mPreviewNode.setPosition(0, 0, mIcon.getWidth(), mIcon.getHeight());
+            RecordingCanvas recordingCanvas = mPreviewNode.beginRecording();
+            try {
+                drawParams(recordingCanvas, mFirstPageParams,
+                        new PointF(mPreviewNodeOffsetX, mPreviewNodeOffsetY), false,
+                        bg.getClipPath());
+            } finally {
+                mPreviewNode.endRecording();
+            }
+            mPreviewNodeDirty = false;
+        }
+        canvas.drawRenderNode(mPreviewNode);
+    }
+
+    /**
+     * Called when one of the preview drawables requests to be redrawn
+     */
+    void onDrawableInvalidated(Drawable who) {
+        if (verifyDrawable(who)) {
+            mPreviewNodeDirty = true;
+        }
+    }
+
     public void onParamsChanged() {
+        mPreviewNodeDirty = true;
         mIcon.invalidate();
     }
 
@@ -246,14 +318,16 @@ public class PreviewItemManager {
 
         PreviewItemDrawingParams params = index < mFirstPageParams.size() ?
                 mFirstPageParams.get(index) : null;
-        if (params != null) {
+        if (params != null && params.hidden != hidden) {
             params.hidden = hidden;
+            mPreviewNodeDirty = true;
         }
     }
 
     void buildParamsForPage(int page, ArrayList<PreviewItemDrawingParams> params, boolean animate) {
         List<WorkspaceItemInfo> items = mIcon.getPreviewItemsOnPage(page);
         int prevNumItems = params.size();
+        mPreviewNodeDirty = true;
 
         // We adjust the size of the list to match the number of items in the preview.
         while (items.size() < params.size()) {
@@ -297,6 +371,8 @@ public class PreviewItemManager {
         // If we are not closing on the first page, we animate the current page preview items
         // out, and animate the first page preview items in.
         mShouldSlideInFirstPage = currentPage != 0;
+        // The drawables were not bound to the icon while the folder was open
+        mPreviewNodeDirty = true;
         if (mShouldSlideInFirstPage) {
             mCurrentPageItemsTransX = 0;
             buildParamsForPage(currentPage, mCurrentPageParams, false);
@@ -335,6 +411,7 @@ public class PreviewItemManager {
             }
         }
         if (modified) {
+            mPreviewNodeDirty = true;
             mIcon.invalidate();
         }
     }
@@ -366,6 +443,7 @@ public class PreviewItemManager {
             WorkspaceItemInfo dropped) {
         int numItems = newItems.size();
         final ArrayList<PreviewItemDrawingParams> params = mFirstPageParams;
+        mPreviewNodeDirty = true;
         buildParamsForPage(0, params, false);
 
         // New preview items for items that are moving in (except for the dropped item).
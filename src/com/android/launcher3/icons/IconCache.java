@@ -92,6 +92,7 @@ public class IconCache extends BaseIconCache {
     private final UserCache mUserManager;
     private final InstantAppResolver mInstantAppResolver;
     private final IconProvider mIconProvider;
+    private final IconCacheWatermarks mWatermarks;
 
     private int mPendingIconRequestCount = 0;
 
@@ -110,6 +111,10 @@ public class IconCache extends BaseIconCache {
         mUserManager = UserCache.INSTANCE.get(mContext);
         mInstantAppResolver = InstantAppResolver.newInstance(mContext);
         mIconProvider = iconProvider;
+        mWatermarks = new IconCacheWatermarks(context, this,
+                LauncherFiles.APP_ICONS_DB.equals(dbFileName)
+                        ? LauncherFiles.ICON_WATERMARKS_DB : null,
+                idp.iconBitmapSize);
     }
 
     @Override
@@ -153,6 +158,49 @@ public class IconCache extends BaseIconCache {
         getUpdateHandler();
 
         mIconDb.close();
+        mWatermarks.close();
+    }
+
+    @Override
+    public void updateIconParams(int iconDpi, int iconPixelSize) {
+        super.updateIconParams(iconDpi, iconPixelSize);
+        // The icon DB is cleared when the params change
+        mWorkerHandler.post(mWatermarks::clear);
+    }
+
+    /**
+     * Returns the watermarks of the packages whose cache entries were validated
+     */
+    public IconCacheWatermarks getWatermarks() {
+        return mWatermarks;
+    }
+
+    /**
+     * Returns true if any cache entry of the package was created for another version of the
+     * package or with another icon system state.
+     */
+    synchronized boolean hasStaleEntries(PackageInfo info, UserHandle user) {
+        // Flattened component names of the package are in ["pkg/", "pkg0"), as '0' follows '/'.
+        // Unlike LIKE, this range can use the primary key index and has no wildcard characters.
+        try (Cursor c = mIconDb.query(new String[] {IconDB.COLUMN_COMPONENT},
+                IconDB.COLUMN_COMPONENT + " >= ? AND " + IconDB.COLUMN_COMPONENT + " < ? AND "
+                        + IconDB.COLUMN_USER + " = ? AND ("
+                        + IconDB.COLUMN_VERSION + " != ? OR "
+                        + IconDB.COLUMN_LAST_UPDATED + " != ? OR "
+                        + IconDB.COLUMN_SYSTEM_STATE + " != ?)",
+                new String[] {
+                        info.packageName + "/",
+                        info.packageName + "0",
+                        Long.toString(getSerialNumberForUser(user)),
+                        // The icon DB stores the legacy version code
+                        Integer.toString(info.versionCode),
+                        Long.toString(info.lastUpdateTime),
+                        getIconSystemState(info.packageName)})) {
+            return c.moveToNext();
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading icon cache", e);
+            return true;
+        }
     }
 
     /**
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import com.android.launcher3.icons.cache.CachingLogic;
+import com.android.launcher3.icons.cache.SQLiteCacheHelper;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted watermarks of the packages for which the icon cache entries were last validated, so
+ * that the loader only needs to revalidate the entries of the packages which changed since.
+ *
+ * A watermark is kept per package and user, as the version code, the last update time and the
+ * icon system state of the package. It is only written once all the cache entries of the package
+ * are up to date, so that a package whose entries were still being refreshed in the background
+ * when the process died is revalidated on the next load.
+ */
+public class IconCacheWatermarks {
+
+    private static final String TAG = "IconCacheWatermarks";
+
+    private final Context mContext;
+    private final IconCache mIconCache;
+    private final UserCache mUserCache;
+    private final WatermarkDb mDb;
+
+    /**
+     * @param dbFileName the file to persist the watermarks to, or null to only keep them in memory
+     * @param iconPixelSize the size of the cached icons, the watermarks are dropped when it changes
+     */
+    IconCacheWatermarks(Context context, IconCache iconCache, @Nullable String dbFileName,
+            int iconPixelSize) {
+        mContext = context;
+        mIconCache = iconCache;
+        mUserCache = UserCache.INSTANCE.get(context);
+        mDb = new WatermarkDb(context, dbFileName, iconPixelSize);
+    }
+
+    /**
+     * Starts a validation pass of the icon cache, against the currently installed packages
+     */
+    @WorkerThread
+    public Update startUpdate() {
+        HashMap<String, PackageInfo> packageInfos = new HashMap<>();
+        for (PackageInfo info : mContext.getPackageManager().getInstalledPackages(
+                PackageManager.MATCH_UNINSTALLED_PACKAGES)) {
+            packageInfos.put(info.packageName, info);
+        }
+        return startUpdate(packageInfos);
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    public Update startUpdate(Map<String, PackageInfo> packageInfos) {
+        return new Update(packageInfos, readWatermarks());
+    }
+
+    /**
+     * Drops all the watermarks, so that every package is revalidated on next load
+     */
+    @WorkerThread
+    public void clear() {
+        mDb.clear();
+    }
+
+    public void close() {
+        mDb.close();
+    }
+
+    private HashMap<PackageUserKey, Watermark> readWatermarks() {
+        HashMap<PackageUserKey, Watermark> watermarks = new HashMap<>();
+        ArrayList<Long> removedUsers = new ArrayList<>();
+        try (Cursor c = mDb.query(new String[] {
+                        WatermarkDb.COLUMN_PACKAGE,
+                        WatermarkDb.COLUMN_USER,
+                        WatermarkDb.COLUMN_VERSION,
+                        WatermarkDb.COLUMN_LAST_UPDATED,
+                        WatermarkDb.COLUMN_SYSTEM_STATE},
+                null, null)) {
+            while (c.moveToNext()) {
+                long serial = c.getLong(1);
+                UserHandle user = mUserCache.getUserForSerialNumber(serial);
+                if (user == null) {
+                    removedUsers.add(serial);
+                    continue;
+                }
+                watermarks.put(new PackageUserKey(c.getString(0), user),
+                        new Watermark(c.getLong(2), c.getLong(3), c.getString(4)));
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "Unable to read icon cache watermarks", e);
+        }
+        for (long serial : removedUsers) {
+            deleteWatermarks(WatermarkDb.COLUMN_USER + " = ?",
+                    new String[] {Long.toString(serial)});
+        }
+        return watermarks;
+    }
+
+    private void deleteWatermarks(String whereClause, String[] whereArgs) {
+        try {
+            mDb.delete(whereClause, whereArgs);
+        } catch (SQLException e) {
+            Log.e(TAG, "Unable to delete icon cache watermarks", e);
+        }
+    }
+
+    /**
+     * A single validation pass of the icon cache, which filters the components whose package
+     * changed since its last validation, and then records the new watermarks.
+     */
+    public class Update {
+
+        private final Map<String, PackageInfo> mPackageInfos;
+        private final HashMap<PackageUserKey, Watermark> mStoredWatermarks;
+        // Whether the package changed, for all the packages seen during this pass
+        private final HashMap<PackageUserKey, Boolean> mChangedPackages = new HashMap<>();
+        private final HashSet<PackageUserKey> mIgnoredPackages = new HashSet<>();
+        // Updates of the launcher can change how icons are generated and cached
+        private final String mLauncherState;
+
+        private final PackageUserKey mTempKey = new PackageUserKey(null, null);
+
+        private Update(Map<String, PackageInfo> packageInfos,
+                HashMap<PackageUserKey, Watermark> storedWatermarks) {
+            mPackageInfos = packageInfos;
+            mStoredWatermarks = storedWatermarks;
+            PackageInfo launcherInfo = packageInfos.get(mContext.getPackageName());
+            mLauncherState = launcherInfo == null ? "" : "," + launcherInfo.lastUpdateTime;
+        }
+
+        /**
+         * Keeps the cache entries of the package even if it is not installed, like for packages
+         * which have a promise icon
+         */
+        public void addPackageToIgnore(UserHandle user, String packageName) {
+            mIgnoredPackages.add(new PackageUserKey(packageName, user));
+        }
+
+        /**
+         * Returns the items whose package changed since the cache entries of the package were
+         * last validated. Only valid for caching logics which version entries by their package.
+         */
+        public <T> List<T> filterChanged(List<T> items, CachingLogic<T> cachingLogic) {
+            ArrayList<T> changedItems = new ArrayList<>();
+            for (T item : items) {
+                mTempKey.update(cachingLogic.getComponent(item).getPackageName(),
+                        cachingLogic.getUser(item));
+                Boolean changed = mChangedPackages.get(mTempKey);
+                if (changed == null) {
+                    Watermark watermark = getWatermark(mTempKey.mPackageName);
+                    changed = watermark == null
+                            || !watermark.equals(mStoredWatermarks.get(mTempKey));
+                    mChangedPackages.put(
+                            new PackageUserKey(mTempKey.mPackageName, mTempKey.mUser), changed);
+                }
+                if (changed) {
+                    changedItems.add(item);
+                }
+            }
+            return changedItems;
+        }
+
+        /**
+         * Records the watermarks of the changed packages whose cache entries are up to date, to
+         * be called once all the components were sent to the icon cache update handler.
+         */
+        @WorkerThread
+        public void commit() {
+            int validatedCount = 0;
+            int pendingCount = 0;
+            for (Map.Entry<PackageUserKey, Boolean> entry : mChangedPackages.entrySet()) {
+                if (!entry.getValue()) {
+                    continue;
+                }
+                PackageUserKey key = entry.getKey();
+                PackageInfo info = mPackageInfos.get(key.mPackageName);
+                if (info != null && !mIconCache.hasStaleEntries(info, key.mUser)) {
+                    writeWatermark(key, getWatermark(key.mPackageName));
+                    validatedCount++;
+                } else {
+                    // Entries are still being refreshed in the background
+                    if (mStoredWatermarks.containsKey(key)) {
+                        deleteWatermark(key);
+                    }
+                    pendingCount++;
+                }
+            }
+
+            // Packages which are no longer listed, as they were removed or have no components
+            int removedCount = 0;
+            for (Map.Entry<PackageUserKey, Watermark> entry : mStoredWatermarks.entrySet()) {
+                PackageUserKey key = entry.getKey();
+                if (mChangedPackages.containsKey(key)) {
+                    continue;
+                }
+                if (!mIgnoredPackages.contains(key)
+                        && !entry.getValue().equals(getWatermark(key.mPackageName))) {
+                    // The update handler only revalidates the entries of listed components
+                    mIconCache.removeIconsForPkg(key.mPackageName, key.mUser);
+                }
+                deleteWatermark(key);
+                removedCount++;
+            }
+            Log.d(TAG, "Validated " + validatedCount + " packages, pending=" + pendingCount
+                    + " removed=" + removedCount + " unchanged="
+                    + (mChangedPackages.size() - validatedCount - pendingCount));
+        }
+
+        @Nullable
+        private Watermark getWatermark(String packageName) {
+            PackageInfo info = mPackageInfos.get(packageName);
+            return info == null ? null : new Watermark(PackageInfoCompat.getLongVersionCode(info),
+                    info.lastUpdateTime, mIconCache.getIconSystemState(packageName)
+                    + mLauncherState);
+        }
+
+        private void writeWatermark(PackageUserKey key, Watermark watermark) {
+            ContentValues values = new ContentValues();
+            values.put(WatermarkDb.COLUMN_PACKAGE, key.mPackageName);
+            values.put(WatermarkDb.COLUMN_USER, mUserCache.getSerialNumberForUser(key.mUser));
+            values.put(WatermarkDb.COLUMN_VERSION, watermark.versionCode);
+            values.put(WatermarkDb.COLUMN_LAST_UPDATED, watermark.lastUpdateTime);
+            values.put(WatermarkDb.COLUMN_SYSTEM_STATE, watermark.systemState);
+            try {
+                mDb.insertOrReplace(values);
+            } catch (SQLException e) {
+                Log.e(TAG, "Unable to save icon cache watermark for " + key, e);
+            }
+        }
+
+        private void deleteWatermark(PackageUserKey key) {
+            deleteWatermarks(WatermarkDb.COLUMN_PACKAGE + " = ? AND "
+                            + WatermarkDb.COLUMN_USER + " = ?",
+                    new String[] {key.mPackageName,
+                            Long.toString(mUserCache.getSerialNumberForUser(key.mUser))});
+        }
+    }
+
+    private static final class Watermark {
+
+        final long versionCode;
+        final long lastUpdateTime;
+        final String systemState;
+
+        Watermark(long versionCode, long lastUpdateTime, String systemState) {
+            this.versionCode = versionCode;
+            this.lastUpdateTime = lastUpdateTime;
+            this.systemState = systemState;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Watermark)) {
+                return false;
+            }
+            Watermark other = (Watermark) o;
+            return versionCode == other.versionCode && lastUpdateTime == other.lastUpdateTime
+                    && TextUtils.equals(systemState, other.systemState);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(versionCode) ^ Long.hashCode(lastUpdateTime);
+        }
+    }
+
+    private static class WatermarkDb extends SQLiteCacheHelper {
+        private static final int DB_VERSION = 1;
+
+        private static final String TABLE_NAME = "icon_watermarks";
+        private static final String COLUMN_PACKAGE = "packageName";
+        private static final String COLUMN_USER = "profileId";
+        private static final String COLUMN_VERSION = "version";
+        private static final String COLUMN_LAST_UPDATED = "lastUpdated";
+        private static final String COLUMN_SYSTEM_STATE = "system_state";
+
+        WatermarkDb(Context context, @Nullable String dbFileName, int iconPixelSize) {
+            // Like the icon DB, the version includes the icon size which clears it on change
+            super(context, dbFileName, (DB_VERSION << 16) + iconPixelSize, TABLE_NAME);
+        }
+
+        @Override
+        public void onCreateTable(SQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                    + COLUMN_PACKAGE + " TEXT NOT NULL, "
+                    + COLUMN_USER + " INTEGER NOT NULL, "
+                    + COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_LAST_UPDATED + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_SYSTEM_STATE + " TEXT, "
+                    + "PRIMARY KEY (" + COLUMN_PACKAGE + ", " + COLUMN_USER + ") "
+                    + ");");
+        }
+    }
+}
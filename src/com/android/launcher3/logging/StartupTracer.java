@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the time at which the milestones of a launcher cold start are reached, and keeps the
+ * reports of the last cold starts so that regressions are visible in the dump across builds.
+ *
+ * Times are measured on the {@link SystemClock#uptimeMillis()} clock, relative to the process
+ * start. Only the first milestones after the process start are recorded, later occurrences (eg,
+ * a model reload) are ignored.
+ */
+public class StartupTracer {
+
+    private static final String TAG = "StartupTracer";
+
+    public static final StartupTracer INSTANCE =
+            new StartupTracer(Process.getStartUptimeMillis());
+
+    public static final int MILESTONE_PROCESS_START = 0;
+    public static final int MILESTONE_ACTIVITY_CREATE = 1;
+    public static final int MILESTONE_IDP_READY = 2;
+    public static final int MILESTONE_DB_OPEN = 3;
+    public static final int MILESTONE_WORKSPACE_LOADED = 4;
+    public static final int MILESTONE_FIRST_PAGE_BOUND = 5;
+    public static final int MILESTONE_FIRST_FRAME_DRAWN = 6;
+    public static final int MILESTONE_ALL_APPS_BOUND = 7;
+    public static final int MILESTONE_WIDGETS_BOUND = 8;
+    @VisibleForTesting
+    static final int MILESTONE_COUNT = 9;
+
+    private static final String[] MILESTONE_NAMES = {
+            "processStart",
+            "activityCreate",
+            "idpReady",
+            "dbOpen",
+            "workspaceLoaded",
+            "firstPageBound",
+            "firstFrameDrawn",
+            "allAppsBound",
+            "widgetsBound"};
+
+    // The process can be started without the activity (eg, for the recents service), in which
+    // case the activity creation is not a cold start
+    private static final long MAX_ACTIVITY_CREATE_DELAY_MS = 5000;
+    // Milestones which are not reached within this time after the activity creation are reported
+    // as missing, eg widgets when they are loaded on first use
+    private static final long REPORT_TIMEOUT_MS = 30000;
+
+    @VisibleForTesting
+    static final int MAX_REPORTS = 20;
+    private static final String FILE_NAME = "startup_reports";
+    private static final int FILE_VERSION = 1;
+
+    private static final int[] PERCENTILES = {50, 90};
+
+    private final long[] mTimes = new long[MILESTONE_COUNT];
+    // Set when the cold start report is complete, or when this process is not a cold start
+    private boolean mIsFinished;
+
+    @Nullable private Context mContext;
+
+    @VisibleForTesting
+    StartupTracer(long processStartTime) {
+        Arrays.fill(mTimes, -1);
+        mTimes[MILESTONE_PROCESS_START] = processStartTime;
+    }
+
+    /**
+     * Enables persisting the reports, to be called when the process starts
+     */
+    public synchronized void init(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Records that the milestone is reached, if it is the first time in this process
+     */
+    public void mark(int milestone) {
+        mark(milestone, SystemClock.uptimeMillis());
+    }
+
+    @VisibleForTesting
+    void mark(int milestone, long time) {
+        synchronized (this) {
+            if (mIsFinished || mTimes[milestone] >= 0) {
+                return;
+            }
+            mTimes[milestone] = time;
+            if (milestone == MILESTONE_ACTIVITY_CREATE) {
+                if (time - mTimes[MILESTONE_PROCESS_START] > MAX_ACTIVITY_CREATE_DELAY_MS) {
+                    mIsFinished = true;
+                    return;
+                }
+                MAIN_EXECUTOR.getHandler().postDelayed(this::finish, REPORT_TIMEOUT_MS);
+            }
+            for (long t : mTimes) {
+                if (t < 0) {
+                    return;
+                }
+            }
+        }
+        finish();
+    }
+
+    @VisibleForTesting
+    synchronized boolean isFinished() {
+        return mIsFinished;
+    }
+
+    private void finish() {
+        long[] times;
+        Context context;
+        synchronized (this) {
+            if (mIsFinished) {
+                return;
+            }
+            mIsFinished = true;
+            times = getRelativeTimes();
+            context = mContext;
+        }
+        Log.d(TAG, "Cold start: " + formatTimes(times));
+        if (context != null) {
+            long wallTime = System.currentTimeMillis();
+            UI_HELPER_EXECUTOR.execute(() -> addReport(getFile(context),
+                    new Report(wallTime, getBuild(context), times)));
+        }
+    }
+
+    private long[] getRelativeTimes() {
+        long[] times = new long[MILESTONE_COUNT];
+        for (int i = 0; i < MILESTONE_COUNT; i++) {
+            times[i] = mTimes[i] < 0 ? -1 : mTimes[i] - mTimes[MILESTONE_PROCESS_START];
+        }
+        return times;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        Context context;
+        writer.println(prefix + "StartupTracer:");
+        synchronized (this) {
+            writer.println(prefix + "  currentProcess: " + formatTimes(getRelativeTimes())
+                    + (mIsFinished ? "" : " (in progress)"));
+            context = mContext;
+        }
+        if (context == null) {
+            return;
+        }
+
+        // Group the cold starts by build, most recent builds last
+        Map<String, List<Report>> reportsByBuild = new LinkedHashMap<>();
+        for (Report report : readReports(getFile(context))) {
+            List<Report> reports = reportsByBuild.remove(report.build);
+            if (reports == null) {
+                reports = new ArrayList<>();
+            }
+            reports.add(report);
+            reportsByBuild.put(report.build, reports);
+        }
+        for (Map.Entry<String, List<Report>> entry : reportsByBuild.entrySet()) {
+            List<Report> reports = entry.getValue();
+            writer.println(prefix + "  build=" + entry.getKey() + " coldStarts=" + reports.size()
+                    + " last=" + DateFormat.getDateTimeInstance().format(
+                            new Date(reports.get(reports.size() - 1).wallTime)));
+            for (int i = MILESTONE_PROCESS_START + 1; i < MILESTONE_COUNT; i++) {
+                long[] values = getSortedValues(reports, i);
+                if (values.length == 0) {
+                    continue;
+                }
+                StringBuilder line = new StringBuilder(prefix).append("    ")
+                        .append(MILESTONE_NAMES[i]).append(':');
+                for (int percentile : PERCENTILES) {
+                    line.append(" p").append(percentile).append('=')
+                            .append(percentile(values, percentile)).append("ms");
+                }
+                line.append(" max=").append(values[values.length - 1]).append("ms");
+                if (values.length < reports.size()) {
+                    line.append(" missing=").append(reports.size() - values.length);
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    private static long[] getSortedValues(List<Report> reports, int milestone) {
+        long[] values = new long[reports.size()];
+        int count = 0;
+        for (Report report : reports) {
+            if (report.times[milestone] >= 0) {
+                values[count++] = report.times[milestone];
+            }
+        }
+        values = Arrays.copyOf(values, count);
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the sorted values
+     */
+    @VisibleForTesting
+    static long percentile(long[] sortedValues, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+        return sortedValues[Math.max(rank, 1) - 1];
+    }
+
+    private static String formatTimes(long[] times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = MILESTONE_PROCESS_START + 1; i < MILESTONE_COUNT; i++) {
+            builder.append(i == MILESTONE_PROCESS_START + 1 ? "" : " ")
+                    .append(MILESTONE_NAMES[i]).append('=')
+                    .append(times[i] < 0 ? "-" : times[i] + "ms");
+        }
+        return builder.toString();
+    }
+
+    @WorkerThread
+    private static String getBuild(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0);
+            return PackageInfoCompat.getLongVersionCode(info) + "/" + info.lastUpdateTime;
+        } catch (NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(context.getFileStreamPath(FILE_NAME));
+    }
+
+    /**
+     * Adds the report to the file, dropping the oldest reports beyond {@link #MAX_REPORTS}
+     */
+    @VisibleForTesting
+    @WorkerThread
+    static void addReport(AtomicFile file, Report report) {
+        List<Report> reports = readReports(file);
+        reports.add(report);
+        while (reports.size() > MAX_REPORTS) {
+            reports.remove(0);
+        }
+
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(reports.size());
+            for (Report r : reports) {
+                out.writeLong(r.wallTime);
+                out.writeUTF(r.build);
+                out.writeInt(r.times.length);
+                for (long time : r.times) {
+                    out.writeLong(time);
+                }
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to persist startup reports", e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static List<Report> readReports(AtomicFile file) {
+        List<Report> reports = new ArrayList<>();
+        try (FileInputStream fis = file.openRead()) {
+            DataInputStream in = new DataInputStream(fis);
+            if (in.readInt() != FILE_VERSION) {
+                return reports;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long wallTime = in.readLong();
+                String build = in.readUTF();
+                long[] times = new long[MILESTONE_COUNT];
+                Arrays.fill(times, -1);
+                int timeCount = in.readInt();
+                for (int j = 0; j < timeCount; j++) {
+                    long time = in.readLong();
+                    if (j < MILESTONE_COUNT) {
+                        times[j] = time;
+                    }
+                }
+                reports.add(new Report(wallTime, build, times));
+            }
+        } catch (FileNotFoundException e) {
+            // No reports yet
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read startup reports", e);
+            reports.clear();
+        }
+        return reports;
+    }
+
+    /**
+     * Times of the milestones of a cold start, relative to the process start
+     */
+    @VisibleForTesting
+    static final class Report {
+
+        final long wallTime;
+        @NonNull final String build;
+        // Indexed by milestone, -1 if the milestone was not reached
+        final long[] times;
+
+        Report(long wallTime, @NonNull String build, long[] times) {
+            this.wallTime = wallTime;
+            this.build = build;
+            this.times = times;
+        }
+    }
+}
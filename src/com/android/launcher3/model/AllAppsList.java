@@ -32,11 +32,13 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.android.launcher3.AppFilter;
+import com.android.launcher3.Utilities;
 import com.android.launcher3.compat.AlphabeticIndexCompat;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.pm.PackageInstallInfo;
+import com.android.launcher3.search.TransliterationIndex;
 import com.android.launcher3.util.FlagOp;
 import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
@@ -44,6 +46,7 @@ import com.android.launcher3.util.SafeCloseable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.function.Consumer;
@@ -70,6 +73,10 @@ public class AllAppsList {
     private Consumer<AppInfo> mRemoveListener = NO_OP_CONSUMER;
 
     private AlphabeticIndexCompat mIndex;
+    // Section names computed by mIndex, keyed by title
+    private final HashMap<String, String> mSectionNames = new HashMap<>();
+
+    private final TransliterationIndex mSearchIndex = new TransliterationIndex();
 
     /**
      * @see Callbacks#FLAG_HAS_SHORTCUT_PERMISSION
@@ -133,20 +140,26 @@ public class AllAppsList {
         add(info, activityInfo, true);
     }
 
-    public void add(AppInfo info, LauncherActivityInfo activityInfo, boolean loadIcon) {
+    /**
+     * Adds the app to the list, optionally loading its title and icon.
+     *
+     * @return true if the app was added, false if it is filtered out or already in the list
+     */
+    public boolean add(AppInfo info, LauncherActivityInfo activityInfo, boolean loadIcon) {
         if (!mAppFilter.shouldShowApp(info.componentName)) {
-            return;
+            return false;
         }
         if (findAppInfo(info.componentName, info.user) != null) {
-            return;
+            return false;
         }
         if (loadIcon) {
             mIconCache.getTitleAndIcon(info, activityInfo, false /* useLowResIcon */);
-            info.sectionName = mIndex.computeSectionName(info.title);
+            updateSectionName(info);
         }
 
         data.add(info);
         mDataChanged = true;
+        return true;
     }
 
     @Nullable
@@ -166,7 +179,7 @@ public class AllAppsList {
 
         if (loadIcon) {
             mIconCache.getTitleAndIcon(promiseAppInfo, promiseAppInfo.usingLowResIcon());
-            promiseAppInfo.sectionName = mIndex.computeSectionName(promiseAppInfo.title);
+            updateSectionName(promiseAppInfo);
         }
 
         data.add(promiseAppInfo);
@@ -176,8 +189,14 @@ public class AllAppsList {
     }
 
     public void updateSectionName(AppInfo appInfo) {
-        appInfo.sectionName = mIndex.computeSectionName(appInfo.title);
-
+        // Titles rarely change across updates, avoid running the index again in that case
+        String title = Utilities.trim(appInfo.title);
+        String sectionName = mSectionNames.get(title);
+        if (sectionName == null) {
+            sectionName = mIndex.computeSectionName(title);
+            mSectionNames.put(title, sectionName);
+        }
+        appInfo.sectionName = sectionName;
     }
 
     /** Updates the given PackageInstallInfo's associated AppInfo's installation info. */
@@ -220,6 +239,7 @@ public class AllAppsList {
         mDataChanged = false;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
+        mSectionNames.clear();
     }
 
     /**
@@ -268,7 +288,7 @@ public class AllAppsList {
         for (AppInfo info : data) {
             if (info.user.equals(user) && packages.contains(info.componentName.getPackageName())) {
                 mIconCache.updateTitleAndIcon(info);
-                info.sectionName = mIndex.computeSectionName(info.title);
+                updateSectionName(info);
                 mDataChanged = true;
             }
         }
@@ -305,7 +325,7 @@ public class AllAppsList {
                     Intent launchIntent = AppInfo.makeLaunchIntent(info);
 
                     mIconCache.getTitleAndIcon(applicationInfo, info, false /* useLowResIcon */);
-                    applicationInfo.sectionName = mIndex.computeSectionName(applicationInfo.title);
+                    updateSectionName(applicationInfo);
                     applicationInfo.setProgressLevel(
                             PackageManagerHelper.getLoadingProgress(info),
                             PackageInstallInfo.STATUS_INSTALLED_DOWNLOADING);
@@ -357,7 +377,17 @@ public class AllAppsList {
         return null;
     }
 
+    /**
+     * Returns the index of romanized titles, up to date as of the last {@link #copyData()}.
+     * Titles added since are indexed lazily on first use.
+     */
+    public TransliterationIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
     public AppInfo[] copyData() {
+        // Data is copied whenever it changes, rebuild the search index alongside.
+        mSearchIndex.update(data);
         AppInfo[] result = data.toArray(EMPTY_ARRAY);
         Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
         return result;
@@ -204,14 +204,16 @@ public abstract class BaseLoaderResults {
             executeCallbacksTask(c -> c.bindScreens(mOrderedScreenIds), mUiExecutor);
 
             // Load items on the current page.
-            bindWorkspaceItems(currentWorkspaceItems, mUiExecutor);
+            bindWorkspaceItems(currentWorkspaceItems, ITEMS_CHUNK, mUiExecutor);
             bindAppWidgets(currentAppWidgets, mUiExecutor);
             mExtraItems.forEach(item ->
                     executeCallbacksTask(c -> c.bindExtraContainerItems(item), mUiExecutor));
 
+            // Bind the other items one at a time, so that the pending tasks can be spread over
+            // frames according to their actual cost
             RunnableList pendingTasks = new RunnableList();
             Executor pendingExecutor = pendingTasks::add;
-            bindWorkspaceItems(otherWorkspaceItems, pendingExecutor);
+            bindWorkspaceItems(otherWorkspaceItems, 1, pendingExecutor);
             bindAppWidgets(otherAppWidgets, pendingExecutor);
             executeCallbacksTask(c -> c.finishBindingItems(currentScreenIds), pendingExecutor);
             pendingExecutor.execute(
@@ -228,13 +230,13 @@ public abstract class BaseLoaderResults {
                     }, mUiExecutor);
         }
 
-        private void bindWorkspaceItems(
-                final ArrayList<ItemInfo> workspaceItems, final Executor executor) {
+        private void bindWorkspaceItems(final ArrayList<ItemInfo> workspaceItems,
+                final int maxChunkSize, final Executor executor) {
             // Bind the workspace items
             int count = workspaceItems.size();
-            for (int i = 0; i < count; i += ITEMS_CHUNK) {
+            for (int i = 0; i < count; i += maxChunkSize) {
                 final int start = i;
-                final int chunkSize = (i + ITEMS_CHUNK <= count) ? ITEMS_CHUNK : (count - i);
+                final int chunkSize = (i + maxChunkSize <= count) ? maxChunkSize : (count - i);
                 executeCallbacksTask(
                         c -> c.bindItems(workspaceItems.subList(start, start + chunkSize), false),
                         executor);
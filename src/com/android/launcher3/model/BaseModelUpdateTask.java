@@ -26,12 +26,10 @@ import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executor;
@@ -117,9 +115,9 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
     }
 
     public void bindDeepShortcuts(BgDataModel dataModel) {
-        final HashMap<ComponentKey, Integer> shortcutMapCopy =
-                new HashMap<>(dataModel.deepShortcutMap);
-        scheduleCallbackTask(callbacks -> callbacks.bindDeepShortcutMap(shortcutMapCopy));
+        // The counts are immutable, so the current instance can be bound directly
+        final DeepShortcutCounts shortcutCounts = dataModel.deepShortcutCounts;
+        scheduleCallbackTask(callbacks -> callbacks.bindDeepShortcutMap(shortcutCounts));
     }
 
     public void bindUpdatedWidgets(BgDataModel dataModel) {
@@ -46,7 +46,6 @@ import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.IntSparseArrayMap;
@@ -58,10 +57,9 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -82,6 +80,11 @@ public class BgDataModel {
      */
     public final IntSparseArrayMap<ItemInfo> itemsIdMap = new IntSparseArrayMap<>();
 
+    /**
+     * Indexes of the items in {@link #itemsIdMap} by package, component and container
+     */
+    public final ModelItemIndex itemIndex = new ModelItemIndex(itemsIdMap);
+
     /**
      * List of all the folders and shortcuts directly on the home screen (no widgets
      * or shortcuts within folders).
@@ -104,9 +107,10 @@ public class BgDataModel {
     public final IntSparseArrayMap<FixedContainerItems> extraItems = new IntSparseArrayMap<>();
 
     /**
-     * Maps all launcher activities to counts of their shortcuts.
+     * Maps all launcher activities to counts of their shortcuts. The instance is immutable and
+     * replaced on every change, so it can be shared with the UI without copying.
      */
-    public final HashMap<ComponentKey, Integer> deepShortcutMap = new HashMap<>();
+    public DeepShortcutCounts deepShortcutCounts = DeepShortcutCounts.EMPTY;
 
     /**
      * Entire list of widgets.
@@ -126,7 +130,8 @@ public class BgDataModel {
         appWidgets.clear();
         folders.clear();
         itemsIdMap.clear();
-        deepShortcutMap.clear();
+        itemIndex.clear();
+        deepShortcutCounts = DeepShortcutCounts.EMPTY;
         extraItems.clear();
     }
 
@@ -168,9 +173,7 @@ public class BgDataModel {
 
         if (args.length > 0 && TextUtils.equals(args[0], "--all")) {
             writer.println(prefix + "shortcut counts ");
-            for (Integer count : deepShortcutMap.values()) {
-                writer.print(count + ", ");
-            }
+            deepShortcutCounts.forEach((key, count) -> writer.print(count + ", "));
             writer.println();
         }
     }
@@ -186,14 +189,12 @@ public class BgDataModel {
                 case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
                     folders.remove(item.id);
                     if (FeatureFlags.IS_STUDIO_BUILD) {
-                        for (ItemInfo info : itemsIdMap) {
-                            if (info.container == item.id) {
-                                // We are deleting a folder which still contains items that
-                                // think they are contained by that folder.
-                                String msg = "deleting a folder (" + item + ") which still " +
-                                        "contains items (" + info + ")";
-                                Log.e(TAG, msg);
-                            }
+                        for (ItemInfo info : itemIndex.getChildren(item.id)) {
+                            // We are deleting a folder which still contains items that
+                            // think they are contained by that folder.
+                            String msg = "deleting a folder (" + item + ") which still " +
+                                    "contains items (" + info + ")";
+                            Log.e(TAG, msg);
                         }
                     }
                     workspaceItems.remove(item);
@@ -212,6 +213,7 @@ public class BgDataModel {
                     break;
             }
             itemsIdMap.remove(item.id);
+            itemIndex.remove(item);
         }
         updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
     }
@@ -231,6 +233,7 @@ public class BgDataModel {
         }
 
         itemsIdMap.put(item.id, item);
+        itemIndex.add(item);
         switch (item.itemType) {
             case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
                 folders.put(item.id, (FolderInfo) item);
@@ -359,34 +362,33 @@ public class BgDataModel {
     }
 
     /**
-     * Clear all the deep shortcut counts for the given package, and re-add the new shortcut counts.
+     * Replaces the deep shortcut counts for the given package with the counts of
+     * {@code shortcuts}. If {@code packageName} is null, all the counts for the user are replaced.
+     *
+     * @return true if the counts changed
      */
-    public synchronized void updateDeepShortcutCounts(
-            String packageName, UserHandle user, List<ShortcutInfo> shortcuts) {
-        if (packageName != null) {
-            Iterator<ComponentKey> keysIter = deepShortcutMap.keySet().iterator();
-            while (keysIter.hasNext()) {
-                ComponentKey next = keysIter.next();
-                if (next.componentName.getPackageName().equals(packageName)
-                        && next.user.equals(user)) {
-                    keysIter.remove();
-                }
-            }
+    public synchronized boolean updateDeepShortcutCounts(
+            @Nullable String packageName, UserHandle user, List<ShortcutInfo> shortcuts) {
+        DeepShortcutCounts counts = deepShortcutCounts.updatePackage(packageName, user, shortcuts);
+        if (counts == deepShortcutCounts) {
+            return false;
         }
+        deepShortcutCounts = counts;
+        return true;
+    }
 
-        // Now add the new shortcuts to the map.
-        for (ShortcutInfo shortcut : shortcuts) {
-            boolean shouldShowInContainer = shortcut.isEnabled()
-                    && (shortcut.isDeclaredInManifest() || shortcut.isDynamic())
-                    && shortcut.getActivity() != null;
-            if (shouldShowInContainer) {
-                ComponentKey targetComponent
-                        = new ComponentKey(shortcut.getActivity(), shortcut.getUserHandle());
-
-                Integer previousCount = deepShortcutMap.get(targetComponent);
-                deepShortcutMap.put(targetComponent, previousCount == null ? 1 : previousCount + 1);
-            }
+    /**
+     * Removes all the deep shortcut counts for the given user.
+     *
+     * @return true if the counts changed
+     */
+    public synchronized boolean removeDeepShortcutCounts(UserHandle user) {
+        DeepShortcutCounts counts = deepShortcutCounts.removeUser(user);
+        if (counts == deepShortcutCounts) {
+            return false;
         }
+        deepShortcutCounts = counts;
+        return true;
     }
 
     /**
@@ -399,6 +401,44 @@ public class BgDataModel {
         return items;
     }
 
+    /**
+     * Returns the items in {@link #itemsIdMap} matching {@param matcher}. Only the candidates
+     * found in {@link #itemIndex} are checked when the matcher supports it.
+     */
+    public synchronized ArrayList<ItemInfo> getMatchingItems(ItemInfoMatcher matcher) {
+        Collection<ItemInfo> candidates = matcher.getCandidates(itemIndex);
+        ArrayList<ItemInfo> result = new ArrayList<>();
+        for (ItemInfo info : candidates != null ? candidates : itemsIdMap) {
+            if (matcher.matchesInfo(info)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #forAllWorkspaceItemInfos}, but only calls {@code op} for the persisted
+     * items related to {@code packages}, looked up in {@link #itemIndex}. All the dynamic items
+     * of the user are still included.
+     * Note the call is not synchronized over the model, that should be handled by the called.
+     */
+    public void forWorkspaceItemInfosOfPackages(UserHandle userHandle, Set<String> packages,
+            Consumer<WorkspaceItemInfo> op) {
+        for (ItemInfo info : itemIndex.getItemsForPackages(packages, userHandle)) {
+            if (info instanceof WorkspaceItemInfo) {
+                op.accept((WorkspaceItemInfo) info);
+            }
+        }
+
+        for (int i = extraItems.size() - 1; i >= 0; i--) {
+            for (ItemInfo info : extraItems.valueAt(i).items) {
+                if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)) {
+                    op.accept((WorkspaceItemInfo) info);
+                }
+            }
+        }
+    }
+
     /**
      * Calls the provided {@code op} for all workspaceItems in the in-memory model (both persisted
      * items and dynamic/predicted items for the provided {@code userHandle}.
@@ -498,7 +538,7 @@ public class BgDataModel {
             pendingTasks.executeAllAndDestroy();
         }
 
-        default void bindDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMap) { }
+        default void bindDeepShortcutMap(DeepShortcutCounts deepShortcutCounts) { }
 
         /**
          * Binds extra item provided any external source
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.ComponentName;
+import android.content.pm.ShortcutInfo;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.util.ComponentKey;
+
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Immutable map of launcher activities to counts of their deep shortcuts.
+ *
+ * Counts are stored in an open addressing table of primitive counts, so that lookups do not
+ * allocate. Updates return a new instance, reusing the {@link ComponentKey} instances of the
+ * previous one, which allows the same instance to be shared between the model and the UI
+ * without copying.
+ */
+public final class DeepShortcutCounts {
+
+    public static final DeepShortcutCounts EMPTY =
+            new DeepShortcutCounts(new ComponentKey[0], new int[0], 0);
+
+    // Table of keys, with null for empty slots. The size of the table is a power of 2.
+    private final ComponentKey[] mKeys;
+    private final int[] mCounts;
+    private final int mSize;
+
+    private DeepShortcutCounts(ComponentKey[] keys, int[] counts, int size) {
+        mKeys = keys;
+        mCounts = counts;
+        mSize = size;
+    }
+
+    /**
+     * Returns the number of shortcuts for the provided activity
+     */
+    public int getCount(@NonNull ComponentName component, @NonNull UserHandle user) {
+        int index = indexOf(mKeys, component, user);
+        return index < 0 ? 0 : mCounts[index];
+    }
+
+    /**
+     * Returns the number of activities with shortcuts
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Calls the consumer for every activity with shortcuts
+     */
+    public void forEach(ObjIntConsumer<ComponentKey> consumer) {
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] != null) {
+                consumer.accept(mKeys[i], mCounts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of this map where the counts for {@code packageName} are replaced by the
+     * counts of {@code shortcuts}. If {@code packageName} is null, all the counts for the user are
+     * replaced. Returns this instance if the counts did not change.
+     */
+    public DeepShortcutCounts updatePackage(@Nullable String packageName, UserHandle user,
+            List<ShortcutInfo> shortcuts) {
+        // Count the new shortcuts in a small table
+        ComponentKey[] newKeys = new ComponentKey[tableSizeFor(shortcuts.size())];
+        int[] newCounts = new int[newKeys.length];
+        int newSize = 0;
+        for (int i = shortcuts.size() - 1; i >= 0; i--) {
+            ShortcutInfo shortcut = shortcuts.get(i);
+            boolean shouldShowInContainer = shortcut.isEnabled()
+                    && (shortcut.isDeclaredInManifest() || shortcut.isDynamic())
+                    && shortcut.getActivity() != null;
+            if (!shouldShowInContainer) {
+                continue;
+            }
+            ComponentName activity = shortcut.getActivity();
+            UserHandle shortcutUser = shortcut.getUserHandle();
+            if (!isReplaced(activity, shortcutUser, packageName, user)) {
+                // Only the counts of the provided package and user are updated
+                continue;
+            }
+            int index = indexOf(newKeys, activity, shortcutUser);
+            if (index < 0) {
+                // Intern the key, reusing the instance from the current map if possible
+                int existing = indexOf(mKeys, activity, shortcutUser);
+                ComponentKey key = existing >= 0
+                        ? mKeys[existing] : new ComponentKey(activity, shortcutUser);
+                index = -index - 1;
+                newKeys[index] = key;
+                newSize++;
+            }
+            newCounts[index]++;
+        }
+
+        // Check if anything changed
+        int removedCount = 0;
+        boolean changed = false;
+        for (int i = 0; i < mKeys.length; i++) {
+            ComponentKey key = mKeys[i];
+            if (key != null && isReplaced(key.componentName, key.user, packageName, user)) {
+                removedCount++;
+                int index = indexOf(newKeys, key.componentName, key.user);
+                changed |= index < 0 || newCounts[index] != mCounts[i];
+            }
+        }
+        if (!changed && removedCount == newSize) {
+            return this;
+        }
+
+        int size = mSize - removedCount + newSize;
+        ComponentKey[] keys = new ComponentKey[tableSizeFor(size)];
+        int[] counts = new int[keys.length];
+        for (int i = 0; i < mKeys.length; i++) {
+            ComponentKey key = mKeys[i];
+            if (key != null && !isReplaced(key.componentName, key.user, packageName, user)) {
+                put(keys, counts, key, mCounts[i]);
+            }
+        }
+        for (int i = 0; i < newKeys.length; i++) {
+            if (newKeys[i] != null) {
+                put(keys, counts, newKeys[i], newCounts[i]);
+            }
+        }
+        return new DeepShortcutCounts(keys, counts, size);
+    }
+
+    /**
+     * Returns a copy of this map without the counts for the provided user
+     */
+    public DeepShortcutCounts removeUser(UserHandle user) {
+        return updatePackage(null, user, List.of());
+    }
+
+    private static boolean isReplaced(ComponentName component, UserHandle componentUser,
+            @Nullable String packageName, UserHandle user) {
+        return componentUser.equals(user)
+                && (packageName == null || component.getPackageName().equals(packageName));
+    }
+
+    private static void put(ComponentKey[] keys, int[] counts, ComponentKey key, int count) {
+        int index = -indexOf(keys, key.componentName, key.user) - 1;
+        keys[index] = key;
+        counts[index] = count;
+    }
+
+    /**
+     * Returns the index of the key in the table, or (-(insertion point) - 1) if not present
+     */
+    private static int indexOf(ComponentKey[] keys, ComponentName component, UserHandle user) {
+        if (keys.length == 0) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        int index = hash(component, user) & mask;
+        while (true) {
+            ComponentKey key = keys[index];
+            if (key == null) {
+                return -index - 1;
+            }
+            if (key.componentName.equals(component) && key.user.equals(user)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static int hash(ComponentName component, UserHandle user) {
+        int h = component.hashCode() * 31 + user.hashCode();
+        // Spread the higher bits, as the table is indexed using the lower bits
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns a power of 2 table size which keeps the load factor under 0.5
+     */
+    private static int tableSizeFor(int size) {
+        int tableSize = 1;
+        while (tableSize < size * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+}
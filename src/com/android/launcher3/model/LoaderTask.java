@@ -16,6 +16,7 @@
 
 package com.android.launcher3.model;
 
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_WORKSPACE_LOADED;
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_HAS_SHORTCUT_PERMISSION;
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_QUIET_MODE_CHANGE_PERMISSION;
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_QUIET_MODE_ENABLED;
@@ -24,6 +25,7 @@ import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_LO
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SAFEMODE;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
 import static com.android.launcher3.util.PackageManagerHelper.isSystemApp;
 
@@ -43,6 +45,7 @@ import android.content.pm.ShortcutInfo;
 import android.graphics.Point;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Process;
 import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -53,6 +56,7 @@ import android.util.LongSparseArray;
 import android.util.TimingLogger;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.InvariantDeviceProfile;
@@ -63,15 +67,15 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.folder.Folder;
 import com.android.launcher3.folder.FolderGridOrganizer;
-import com.android.launcher3.folder.FolderNameInfos;
-import com.android.launcher3.folder.FolderNameProvider;
 import com.android.launcher3.icons.ComponentWithLabelAndIcon;
 import com.android.launcher3.icons.ComponentWithLabelAndIcon.ComponentWithIconCachingLogic;
 import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.icons.IconCacheWatermarks;
 import com.android.launcher3.icons.LauncherActivityCachingLogic;
 import com.android.launcher3.icons.ShortcutCachingLogic;
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.logging.StartupTracer;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.IconRequestInfo;
@@ -91,6 +95,7 @@ import com.android.launcher3.util.IOUtils;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.LooperIdleLock;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.TraceHelper;
@@ -105,6 +110,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * Runnable for the thread that loads the contents of the launcher:
@@ -133,6 +141,7 @@ public class LoaderTask implements Runnable {
 
     private final InstallSessionHelper mSessionHelper;
     private final IconCache mIconCache;
+    private final ModelSubsystems mSubsystems;
 
     private final UserManagerState mUserManagerState = new UserManagerState();
 
@@ -157,6 +166,7 @@ public class LoaderTask implements Runnable {
         mUserCache = UserCache.INSTANCE.get(mApp.getContext());
         mSessionHelper = InstallSessionHelper.INSTANCE.get(mApp.getContext());
         mIconCache = mApp.getIconCache();
+        mSubsystems = mApp.getModel().getSubsystems();
     }
 
     protected synchronized void waitForIdle() {
@@ -201,6 +211,7 @@ public class LoaderTask implements Runnable {
         TimingLogger logger = new TimingLogger(TAG, "run");
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
+            mSubsystems.onLoadStarted();
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
             Trace.beginSection("LoadWorkspace");
             try {
@@ -209,6 +220,7 @@ public class LoaderTask implements Runnable {
                 Trace.endSection();
             }
             logASplit(logger, "loadWorkspace");
+            StartupTracer.INSTANCE.mark(MILESTONE_WORKSPACE_LOADED);
 
             // Sanitize data re-syncs widgets/shortcuts based on the workspace loaded from db.
             // sanitizeData should not be invoked if the workspace is loaded from a db different
@@ -250,14 +262,21 @@ public class LoaderTask implements Runnable {
 
             verifyNotStopped();
             IconCacheUpdateHandler updateHandler = mIconCache.getUpdateHandler();
-            setIgnorePackages(updateHandler);
-            updateHandler.updateIcons(allActivityList,
-                    LauncherActivityCachingLogic.newInstance(mApp.getContext()),
-                    mApp.getModel()::onPackageIconsUpdated);
+            // Only the components of the packages which changed since the last validation of
+            // their cache entries need to be compared against the icon DB
+            IconCacheWatermarks.Update watermarks = mIconCache.getWatermarks().startUpdate();
+            setIgnorePackages(updateHandler, watermarks);
+            LauncherActivityCachingLogic activityCachingLogic =
+                    LauncherActivityCachingLogic.newInstance(mApp.getContext());
+            updateHandler.updateIcons(
+                    watermarks.filterChanged(allActivityList, activityCachingLogic),
+                    activityCachingLogic, mApp.getModel()::onPackageIconsUpdated);
             logASplit(logger, "update icon cache");
 
             if (FeatureFlags.ENABLE_DEEP_SHORTCUT_ICON_CACHE.get()) {
                 verifyNotStopped();
+                // Shortcuts change without a package update, so they can't be filtered by the
+                // package watermarks and are always compared against the icon DB
                 logASplit(logger, "save shortcuts in icon cache");
                 updateHandler.updateIcons(allShortcuts, new ShortcutCachingLogic(),
                         mApp.getModel()::onPackageIconsUpdated);
@@ -268,53 +287,23 @@ public class LoaderTask implements Runnable {
             logASplit(logger, "step 2 complete");
             verifyNotStopped();
 
-            // third step
-            List<ShortcutInfo> allDeepShortcuts = loadDeepShortcuts();
-            logASplit(logger, "loadDeepShortcuts");
-
-            verifyNotStopped();
-            mResults.bindDeepShortcuts();
-            logASplit(logger, "bindDeepShortcuts");
-
-            if (FeatureFlags.ENABLE_DEEP_SHORTCUT_ICON_CACHE.get()) {
-                verifyNotStopped();
-                logASplit(logger, "save deep shortcuts in icon cache");
-                updateHandler.updateIcons(allDeepShortcuts,
-                        new ShortcutCachingLogic(), (pkgs, user) -> { });
-            }
-
-            // Take a break
-            waitForIdle();
-            logASplit(logger, "step 3 complete");
-            verifyNotStopped();
-
-            // fourth step
-            List<ComponentWithLabelAndIcon> allWidgetsList =
-                    mBgDataModel.widgetsModel.update(mApp, null);
-            logASplit(logger, "load widgets");
-
-            verifyNotStopped();
-            mResults.bindWidgets();
-            logASplit(logger, "bindWidgets");
-            verifyNotStopped();
-
-            updateHandler.updateIcons(allWidgetsList,
-                    new ComponentWithIconCachingLogic(mApp.getContext(), true),
-                    mApp.getModel()::onWidgetLabelsUpdated);
-            logASplit(logger, "save widgets in icon cache");
-
-            // fifth step
-            if (FeatureFlags.FOLDER_NAME_SUGGEST.get()) {
-                loadFolderNames();
+            if (mSubsystems.isLazy()) {
+                // Deep shortcuts, widgets and folder names are loaded on first use
+                logASplit(logger, "skip lazy subsystems");
+            } else {
+                loadSubsystems(logger, updateHandler, watermarks);
             }
 
             verifyNotStopped();
             updateHandler.finish();
+            watermarks.commit();
             logASplit(logger, "finish icon update");
 
+            mSubsystems.onLoadComplete();
             mModelDelegate.modelLoadComplete();
             transaction.commit();
             memoryLogger.clearLogs();
+            MemoryAccounting.INSTANCE.sample();
         } catch (CancellationException e) {
             // Loader stopped, ignore
             logASplit(logger, "Cancelled");
@@ -893,7 +882,8 @@ public class LoaderTask implements Runnable {
         }
     }
 
-    private void setIgnorePackages(IconCacheUpdateHandler updateHandler) {
+    private void setIgnorePackages(IconCacheUpdateHandler updateHandler,
+            IconCacheWatermarks.Update watermarks) {
         // Ignore packages which have a promise icon.
         synchronized (mBgDataModel) {
             for (ItemInfo info : mBgDataModel.itemsIdMap) {
@@ -902,12 +892,16 @@ public class LoaderTask implements Runnable {
                     if (si.isPromise() && si.getTargetComponent() != null) {
                         updateHandler.addPackagesToIgnore(
                                 si.user, si.getTargetComponent().getPackageName());
+                        watermarks.addPackageToIgnore(
+                                si.user, si.getTargetComponent().getPackageName());
                     }
                 } else if (info instanceof LauncherAppWidgetInfo) {
                     LauncherAppWidgetInfo lawi = (LauncherAppWidgetInfo) info;
                     if (lawi.hasRestoreFlag(LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY)) {
                         updateHandler.addPackagesToIgnore(
                                 lawi.user, lawi.providerName.getPackageName());
+                        watermarks.addPackageToIgnore(
+                                lawi.user, lawi.providerName.getPackageName());
                     }
                 }
             }
@@ -927,7 +921,11 @@ public class LoaderTask implements Runnable {
                 for (int folderId : deletedFolderIds) {
                     mBgDataModel.workspaceItems.remove(mBgDataModel.folders.get(folderId));
                     mBgDataModel.folders.remove(folderId);
-                    mBgDataModel.itemsIdMap.remove(folderId);
+                    ItemInfo folder = mBgDataModel.itemsIdMap.get(folderId);
+                    if (folder != null) {
+                        mBgDataModel.itemsIdMap.remove(folderId);
+                        mBgDataModel.itemIndex.remove(folder);
+                    }
                 }
             }
 
@@ -955,26 +953,36 @@ public class LoaderTask implements Runnable {
         mBgAllAppsList.clear();
 
         List<IconRequestInfo<AppInfo>> iconRequestInfos = new ArrayList<>();
-        for (UserHandle user : profiles) {
-            // Query for the set of apps
-            final List<LauncherActivityInfo> apps = mLauncherApps.getActivityList(null, user);
-            // Fail if we don't have any apps
-            // TODO: Fix this. Only fail for the current user.
-            if (apps == null || apps.isEmpty()) {
-                return allActivityList;
+        // Merge the profiles in the order of the user cache, independent of which query
+        // completes first
+        for (ProfileApps profileApps : queryProfileApps(profiles)) {
+            if (profileApps.apps.isEmpty()) {
+                // Fail if we don't have any apps for the current user, which happens when the
+                // package manager is not ready. Other profiles can legitimately be empty.
+                if (Process.myUserHandle().equals(profileApps.user)) {
+                    return allActivityList;
+                }
+                continue;
             }
-            boolean quietMode = mUserManagerState.isUserQuiet(user);
-            // Create the ApplicationInfos
-            for (int i = 0; i < apps.size(); i++) {
-                LauncherActivityInfo app = apps.get(i);
-                AppInfo appInfo = new AppInfo(app, user, quietMode);
-
-                iconRequestInfos.add(new IconRequestInfo<>(
-                        appInfo, app, /* useLowResIcon= */ false));
-                mBgAllAppsList.add(
-                        appInfo, app, !FeatureFlags.ENABLE_BULK_ALL_APPS_ICON_LOADING.get());
+            // Apps of a paused profile are shown disabled, so only load their low res icons.
+            // The high res icons are loaded when they are shown after the profile is unpaused.
+            boolean useLowResIcon = profileApps.quietMode;
+            for (int i = 0; i < profileApps.apps.size(); i++) {
+                LauncherActivityInfo app = profileApps.activities.get(i);
+                AppInfo appInfo = profileApps.apps.get(i);
+
+                iconRequestInfos.add(new IconRequestInfo<>(appInfo, app, useLowResIcon));
+                if (FeatureFlags.ENABLE_BULK_ALL_APPS_ICON_LOADING.get() || !useLowResIcon) {
+                    mBgAllAppsList.add(appInfo, app,
+                            !FeatureFlags.ENABLE_BULK_ALL_APPS_ICON_LOADING.get());
+                } else if (mBgAllAppsList.add(appInfo, app, false /* loadIcon */)) {
+                    // Only load the icon once the app is accepted, filtered out or duplicate
+                    // apps would otherwise still go through the icon cache
+                    mIconCache.getTitleAndIcon(appInfo, app, true /* useLowResIcon */);
+                    mBgAllAppsList.updateSectionName(appInfo);
+                }
             }
-            allActivityList.addAll(apps);
+            allActivityList.addAll(profileApps.activities);
         }
 
 
@@ -1019,37 +1027,125 @@ public class LoaderTask implements Runnable {
         return allActivityList;
     }
 
-    private List<ShortcutInfo> loadDeepShortcuts() {
-        List<ShortcutInfo> allShortcuts = new ArrayList<>();
-        mBgDataModel.deepShortcutMap.clear();
-
-        if (mBgAllAppsList.hasShortcutHostPermission()) {
-            for (UserHandle user : mUserCache.getUserProfiles()) {
-                if (mUserManager.isUserUnlocked(user)) {
-                    List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
-                            .query(ShortcutRequest.ALL);
-                    allShortcuts.addAll(shortcuts);
-                    mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
+    /**
+     * Queries the activities of each profile, and creates their {@link AppInfo}s, with the
+     * profiles queried in parallel. A profile which fails to be queried is returned with no apps
+     * without affecting the others.
+     *
+     * @return the apps of each profile, in the same order as {@param profiles}
+     */
+    private List<ProfileApps> queryProfileApps(List<UserHandle> profiles) {
+        return queryProfiles(profiles, this::queryProfileApps,
+                user -> new ProfileApps(user, false));
+    }
+
+    /**
+     * Runs {@param query} for each profile, in parallel when there is more than one profile. If
+     * the query fails for a profile, the result of {@param onFailure} is used for it instead.
+     *
+     * @return the result of each profile, in the same order as {@param profiles}
+     * @throws CancellationException if the thread is interrupted while waiting for the queries,
+     *         in which case its interrupt status is kept
+     */
+    @VisibleForTesting
+    static <T> List<T> queryProfiles(List<UserHandle> profiles, Function<UserHandle, T> query,
+            Function<UserHandle, T> onFailure) throws CancellationException {
+        List<T> result = new ArrayList<>(profiles.size());
+        if (profiles.size() == 1) {
+            // No need to switch threads
+            result.add(query.apply(profiles.get(0)));
+            return result;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(profiles.size());
+        for (UserHandle user : profiles) {
+            futures.add(THREAD_POOL_EXECUTOR.submit(() -> query.apply(user)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                result.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Failed to load apps for " + profiles.get(i), e);
+                result.add(onFailure.apply(profiles.get(i)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < futures.size(); j++) {
+                    futures.get(j).cancel(true);
                 }
+                throw new CancellationException("Interrupted while loading apps");
             }
         }
-        return allShortcuts;
+        return result;
+    }
+
+    private ProfileApps queryProfileApps(UserHandle user) {
+        ProfileApps profileApps = new ProfileApps(user, mUserManagerState.isUserQuiet(user));
+        List<LauncherActivityInfo> activities;
+        try {
+            activities = mLauncherApps.getActivityList(null, user);
+        } catch (SecurityException e) {
+            // The profile might have been removed since the user cache was updated
+            Log.e(TAG, "Failed to query activities for " + user, e);
+            return profileApps;
+        }
+        if (activities == null) {
+            return profileApps;
+        }
+        for (LauncherActivityInfo activity : activities) {
+            profileApps.activities.add(activity);
+            profileApps.apps.add(new AppInfo(activity, user, profileApps.quietMode));
+        }
+        return profileApps;
     }
 
-    private void loadFolderNames() {
-        FolderNameProvider provider = FolderNameProvider.newInstance(mApp.getContext(),
-                mBgAllAppsList.data, mBgDataModel.folders);
+    /**
+     * Loads the parts of the model which are not needed to show the workspace and all apps
+     *
+     * @see ModelSubsystems
+     */
+    private void loadSubsystems(TimingLogger logger, IconCacheUpdateHandler updateHandler,
+            IconCacheWatermarks.Update watermarks) throws CancellationException {
+        // third step
+        List<ShortcutInfo> allDeepShortcuts = ModelSubsystems.loadDeepShortcuts(
+                mApp.getContext(), mBgDataModel, mBgAllAppsList);
+        logASplit(logger, "loadDeepShortcuts");
+
+        verifyNotStopped();
+        mResults.bindDeepShortcuts();
+        logASplit(logger, "bindDeepShortcuts");
+
+        if (FeatureFlags.ENABLE_DEEP_SHORTCUT_ICON_CACHE.get()) {
+            verifyNotStopped();
+            logASplit(logger, "save deep shortcuts in icon cache");
+            updateHandler.updateIcons(allDeepShortcuts,
+                    new ShortcutCachingLogic(), (pkgs, user) -> { });
+        }
 
-        synchronized (mBgDataModel) {
-            for (int i = 0; i < mBgDataModel.folders.size(); i++) {
-                FolderNameInfos suggestionInfos = new FolderNameInfos();
-                FolderInfo info = mBgDataModel.folders.valueAt(i);
-                if (info.suggestedFolderNames == null) {
-                    provider.getSuggestedFolderName(mApp.getContext(), info.contents,
-                            suggestionInfos);
-                    info.suggestedFolderNames = suggestionInfos;
-                }
-            }
+        // Take a break
+        waitForIdle();
+        logASplit(logger, "step 3 complete");
+        verifyNotStopped();
+
+        // fourth step
+        List<ComponentWithLabelAndIcon> allWidgetsList =
+                mBgDataModel.widgetsModel.update(mApp, null);
+        logASplit(logger, "load widgets");
+
+        verifyNotStopped();
+        mResults.bindWidgets();
+        logASplit(logger, "bindWidgets");
+        verifyNotStopped();
+
+        ComponentWithIconCachingLogic widgetCachingLogic =
+                new ComponentWithIconCachingLogic(mApp.getContext(), true);
+        updateHandler.updateIcons(
+                watermarks.filterChanged(allWidgetsList, widgetCachingLogic),
+                widgetCachingLogic, mApp.getModel()::onWidgetLabelsUpdated);
+        logASplit(logger, "save widgets in icon cache");
+
+        // fifth step
+        if (FeatureFlags.FOLDER_NAME_SUGGEST.get()) {
+            ModelSubsystems.loadFolderNames(mApp.getContext(), mBgDataModel, mBgAllAppsList);
         }
     }
 
@@ -1110,4 +1206,20 @@ public class LoaderTask implements Runnable {
             Log.d(TAG, label);
         }
     }
+
+    /**
+     * The apps of a user profile, as loaded by {@link #queryProfileApps(UserHandle)}
+     */
+    private static class ProfileApps {
+
+        final UserHandle user;
+        final boolean quietMode;
+        final List<LauncherActivityInfo> activities = new ArrayList<>();
+        final List<AppInfo> apps = new ArrayList<>();
+
+        ProfileApps(UserHandle user, boolean quietMode) {
+            this.user = user;
+            this.quietMode = quietMode;
+        }
+    }
 }
@@ -25,6 +25,7 @@ import androidx.annotation.WorkerThread;
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.R;
 import com.android.launcher3.shortcuts.ShortcutKey;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.ResourceBasedOverride;
 
 import java.io.FileDescriptor;
@@ -87,6 +88,22 @@ public class ModelDelegate implements ResourceBasedOverride {
     @WorkerThread
     public void modelLoadComplete() { }
 
+    /**
+     * Called before the predictions are first used, when they are not started by the loader
+     *
+     * @see ModelSubsystems#SUBSYSTEM_PREDICTIONS
+     */
+    @WorkerThread
+    public void startPredictions() { }
+
+    /**
+     * Returns the number of recent launches of the app, used to rank search results
+     */
+    @WorkerThread
+    public int getAppLaunchCount(ComponentKey key) {
+        return 0;
+    }
+
     /**
      * Called when the delegate is no loner needed
      */
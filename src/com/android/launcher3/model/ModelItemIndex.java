@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.UserHandle;
+import android.util.ArraySet;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary indexes over the items in {@link BgDataModel#itemsIdMap}, so that package and folder
+ * events only visit the affected items instead of walking the whole model.
+ *
+ * Items are indexed by the values they had when last indexed. Any change to the target, user or
+ * container of a model item must be followed by {@link #update(ItemInfo)}, which
+ * {@link ModelWriter} does for every database update. All access must be synchronized on the
+ * owning {@link BgDataModel}.
+ */
+public class ModelItemIndex {
+
+    private final IntSparseArrayMap<ItemInfo> mItemsIdMap;
+
+    // Items by the packages they target or load resources from
+    private final HashMap<PackageUserKey, ArrayList<ItemInfo>> mPackageIndex = new HashMap<>();
+    // Items by their target component
+    private final HashMap<ComponentKey, ArrayList<ItemInfo>> mComponentIndex = new HashMap<>();
+    // Items by the id of their container
+    private final IntSparseArrayMap<ArrayList<ItemInfo>> mContainerIndex =
+            new IntSparseArrayMap<>();
+
+    // The keys each item is currently indexed with
+    private final IdentityHashMap<ItemInfo, IndexKeys> mIndexedKeys = new IdentityHashMap<>();
+
+    ModelItemIndex(IntSparseArrayMap<ItemInfo> itemsIdMap) {
+        mItemsIdMap = itemsIdMap;
+    }
+
+    /**
+     * Adds an item of the model to the indexes, or re-indexes it if already present
+     */
+    public void add(ItemInfo item) {
+        remove(item);
+        IndexKeys keys = IndexKeys.of(item);
+        mIndexedKeys.put(item, keys);
+        for (PackageUserKey key : keys.packages) {
+            addToIndex(mPackageIndex, key, item);
+        }
+        if (keys.component != null) {
+            addToIndex(mComponentIndex, keys.component, item);
+        }
+        ArrayList<ItemInfo> children = mContainerIndex.get(keys.container);
+        if (children == null) {
+            children = new ArrayList<>();
+            mContainerIndex.put(keys.container, children);
+        }
+        children.add(item);
+    }
+
+    /**
+     * Removes an item from the indexes
+     */
+    public void remove(ItemInfo item) {
+        IndexKeys keys = mIndexedKeys.remove(item);
+        if (keys == null) {
+            return;
+        }
+        for (PackageUserKey key : keys.packages) {
+            removeFromIndex(mPackageIndex, key, item);
+        }
+        if (keys.component != null) {
+            removeFromIndex(mComponentIndex, keys.component, item);
+        }
+        ArrayList<ItemInfo> children = mContainerIndex.get(keys.container);
+        if (children != null) {
+            children.remove(item);
+            if (children.isEmpty()) {
+                mContainerIndex.remove(keys.container);
+            }
+        }
+    }
+
+    /**
+     * Re-indexes an item of the model after its target, user or container changed
+     */
+    public void update(ItemInfo item) {
+        if (mIndexedKeys.containsKey(item)) {
+            add(item);
+        }
+    }
+
+    public void clear() {
+        mPackageIndex.clear();
+        mComponentIndex.clear();
+        mContainerIndex.clear();
+        mIndexedKeys.clear();
+    }
+
+    @Nullable
+    public ItemInfo getItem(int id) {
+        return mItemsIdMap.get(id);
+    }
+
+    /**
+     * Returns the items which target, or load resources from, any of the packages
+     */
+    public List<ItemInfo> getItemsForPackages(Collection<String> packages, UserHandle user) {
+        Set<ItemInfo> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        PackageUserKey key = new PackageUserKey(null, user);
+        for (String packageName : packages) {
+            key.update(packageName, user);
+            ArrayList<ItemInfo> items = mPackageIndex.get(key);
+            if (items != null) {
+                result.addAll(items);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Returns the items which target any of the components
+     */
+    public List<ItemInfo> getItemsForComponents(
+            Collection<ComponentName> components, UserHandle user) {
+        ArrayList<ItemInfo> result = new ArrayList<>();
+        for (ComponentName cn : components) {
+            ArrayList<ItemInfo> items = mComponentIndex.get(new ComponentKey(cn, user));
+            if (items != null) {
+                result.addAll(items);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the items directly inside the container
+     */
+    public List<ItemInfo> getChildren(int container) {
+        ArrayList<ItemInfo> children = mContainerIndex.get(container);
+        return children == null ? new ArrayList<>() : new ArrayList<>(children);
+    }
+
+    /**
+     * Checks that the indexes contain exactly the items of the model. Items are not checked
+     * against their current values, as the UI thread updates them before {@link ModelWriter}
+     * re-indexes them on the model thread.
+     *
+     * @return a description of each inconsistency found
+     */
+    public List<String> verify() {
+        ArrayList<String> errors = new ArrayList<>();
+        // Check membership against sets, so that verifying is linear in the number of items
+        IntSparseArrayMap<Set<ItemInfo>> containerSets = new IntSparseArrayMap<>();
+        for (int i = mContainerIndex.size() - 1; i >= 0; i--) {
+            containerSets.put(mContainerIndex.keyAt(i), toIdentitySet(mContainerIndex.valueAt(i)));
+        }
+        Map<ComponentKey, Set<ItemInfo>> componentSets = toIdentitySets(mComponentIndex);
+        Map<PackageUserKey, Set<ItemInfo>> packageSets = toIdentitySets(mPackageIndex);
+
+        for (ItemInfo item : mItemsIdMap) {
+            if (!mIndexedKeys.containsKey(item)) {
+                errors.add("Item not indexed: " + item);
+            }
+        }
+        for (Map.Entry<ItemInfo, IndexKeys> entry : mIndexedKeys.entrySet()) {
+            ItemInfo item = entry.getKey();
+            IndexKeys keys = entry.getValue();
+            if (mItemsIdMap.get(item.id) != item) {
+                errors.add("Indexed item not in model: " + item);
+            }
+            boolean indexed = contains(containerSets.get(keys.container), item)
+                    && (keys.component == null
+                            || contains(componentSets.get(keys.component), item));
+            for (PackageUserKey key : keys.packages) {
+                indexed &= contains(packageSets.get(key), item);
+            }
+            if (!indexed) {
+                errors.add("Item missing from index for " + keys + ": " + item);
+            }
+        }
+        return errors;
+    }
+
+    private static boolean contains(@Nullable Set<ItemInfo> items, ItemInfo item) {
+        return items != null && items.contains(item);
+    }
+
+    private static Set<ItemInfo> toIdentitySet(List<ItemInfo> items) {
+        Set<ItemInfo> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(items);
+        return set;
+    }
+
+    private static <K> Map<K, Set<ItemInfo>> toIdentitySets(Map<K, ArrayList<ItemInfo>> index) {
+        HashMap<K, Set<ItemInfo>> sets = new HashMap<>();
+        for (Map.Entry<K, ArrayList<ItemInfo>> entry : index.entrySet()) {
+            sets.put(entry.getKey(), toIdentitySet(entry.getValue()));
+        }
+        return sets;
+    }
+
+    private static <K> void addToIndex(Map<K, ArrayList<ItemInfo>> index, K key, ItemInfo item) {
+        ArrayList<ItemInfo> items = index.get(key);
+        if (items == null) {
+            items = new ArrayList<>(1);
+            index.put(key, items);
+        }
+        items.add(item);
+    }
+
+    private static <K> void removeFromIndex(
+            Map<K, ArrayList<ItemInfo>> index, K key, ItemInfo item) {
+        ArrayList<ItemInfo> items = index.get(key);
+        if (items != null) {
+            items.remove(item);
+            if (items.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * The values of an item used as keys in the indexes
+     */
+    private static class IndexKeys {
+
+        final ArraySet<PackageUserKey> packages = new ArraySet<>(1);
+        final int container;
+        @Nullable
+        ComponentKey component;
+
+        IndexKeys(int container) {
+            this.container = container;
+        }
+
+        static IndexKeys of(ItemInfo item) {
+            IndexKeys keys = new IndexKeys(item.container);
+            UserHandle user = item.user;
+            if (user == null) {
+                return keys;
+            }
+            ComponentName cn = item.getTargetComponent();
+            if (cn != null) {
+                keys.component = new ComponentKey(cn, user);
+                keys.packages.add(new PackageUserKey(cn.getPackageName(), user));
+            }
+            // Deep shortcuts are matched by the package of their intent
+            Intent intent = item.getIntent();
+            if (intent != null && intent.getPackage() != null) {
+                keys.packages.add(new PackageUserKey(intent.getPackage(), user));
+            }
+            if (item instanceof WorkspaceItemInfo) {
+                Intent.ShortcutIconResource res = ((WorkspaceItemInfo) item).iconResource;
+                if (res != null && res.packageName != null) {
+                    keys.packages.add(new PackageUserKey(res.packageName, user));
+                }
+            }
+            return keys;
+        }
+
+        @Override
+        public String toString() {
+            return "container=" + container + " component=" + component
+                    + " packages=" + packages.size();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import android.content.Context;
+import android.content.pm.ShortcutInfo;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.R;
+import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.folder.FolderNameInfos;
+import com.android.launcher3.folder.FolderNameProvider;
+import com.android.launcher3.icons.ComponentWithLabelAndIcon;
+import com.android.launcher3.icons.ComponentWithLabelAndIcon.ComponentWithIconCachingLogic;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.shortcuts.ShortcutRequest;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parts of the model which are not needed to show the workspace and all apps. By default they are
+ * loaded by the {@link LoaderTask}, but in the lightweight mode used on low-RAM devices they are
+ * only loaded on first use, which reduces the startup time and the memory used by the launcher
+ * when they are never used.
+ *
+ * Lazily loaded subsystems are dropped on every model load, and loaded again on their next use.
+ * Model update tasks are dropped while the model is loading, so subsystems requested during a
+ * load stay pending and are loaded once it completes.
+ */
+public class ModelSubsystems {
+
+    private static final String TAG = "ModelSubsystems";
+
+    public static final int SUBSYSTEM_DEEP_SHORTCUTS = 1 << 0;
+    public static final int SUBSYSTEM_WIDGETS = 1 << 1;
+    public static final int SUBSYSTEM_FOLDER_NAMES = 1 << 2;
+    public static final int SUBSYSTEM_PREDICTIONS = 1 << 3;
+    public static final int SUBSYSTEM_ALL = SUBSYSTEM_DEEP_SHORTCUTS | SUBSYSTEM_WIDGETS
+            | SUBSYSTEM_FOLDER_NAMES | SUBSYSTEM_PREDICTIONS;
+
+    private final LauncherModel mModel;
+
+    private boolean mIsLazy;
+    // Subsystems requested but not loaded yet, guarded by this
+    private int mPendingSubsystems;
+    // Subsystems loaded since the last model load, guarded by this
+    private int mLoadedSubsystems;
+
+    public ModelSubsystems(Context context, LauncherModel model) {
+        mModel = model;
+        mIsLazy = context.getResources().getBoolean(R.bool.config_lazyLoadModelSubsystems);
+    }
+
+    /**
+     * Returns true if the subsystems are loaded on first use rather than by the loader
+     */
+    public synchronized boolean isLazy() {
+        return mIsLazy;
+    }
+
+    @VisibleForTesting
+    public synchronized void setLazy(boolean isLazy) {
+        mIsLazy = isLazy;
+    }
+
+    /**
+     * Returns true if all the given subsystems are loaded
+     */
+    public synchronized boolean isLoaded(int subsystems) {
+        return (mLoadedSubsystems & subsystems) == subsystems;
+    }
+
+    /**
+     * Called by the loader when it starts loading the model
+     */
+    @WorkerThread
+    synchronized void onLoadStarted() {
+        if (mIsLazy) {
+            // Predictions are shown with the workspace, keep them running across reloads
+            mPendingSubsystems |= mLoadedSubsystems & SUBSYSTEM_PREDICTIONS;
+            mLoadedSubsystems = 0;
+        } else {
+            mPendingSubsystems = 0;
+            mLoadedSubsystems = SUBSYSTEM_ALL;
+        }
+    }
+
+    /**
+     * Called by the loader when the model is loaded, to load the subsystems requested while the
+     * tasks loading them could not run.
+     */
+    @WorkerThread
+    void onLoadComplete() {
+        // The loader calls this before its transaction is committed, and tasks enqueued on the
+        // model thread run inline, so they would be dropped as the model is not marked as loaded
+        // yet. Post the load to run once the loader is done instead.
+        MODEL_EXECUTOR.post(this::loadPendingSubsystems);
+    }
+
+    @WorkerThread
+    private void loadPendingSubsystems() {
+        int pending;
+        synchronized (this) {
+            pending = mIsLazy ? mPendingSubsystems : 0;
+        }
+        // Pending subsystems are only cleared by the task once it actually loads them. If the
+        // task is dropped because another load started, they are requested again when it ends.
+        if (pending != 0) {
+            mModel.enqueueModelUpdateTask(new LoadSubsystemsTask(pending));
+        }
+    }
+
+    /**
+     * Loads the given subsystems in the background if they are not loaded yet, to be called
+     * before they are first used. Does nothing when the subsystems are loaded by the loader.
+     */
+    public void ensureLoaded(int subsystems) {
+        int missing;
+        synchronized (this) {
+            if (!mIsLazy) {
+                return;
+            }
+            missing = subsystems & ~(mLoadedSubsystems | mPendingSubsystems);
+            mPendingSubsystems |= missing;
+        }
+        if (missing != 0) {
+            mModel.enqueueModelUpdateTask(new LoadSubsystemsTask(missing));
+        }
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ModelSubsystems: isLazy=" + mIsLazy
+                + " pending=" + Integer.toBinaryString(mPendingSubsystems)
+                + " loaded=" + Integer.toBinaryString(mLoadedSubsystems));
+    }
+
+    /**
+     * Loads the deep shortcuts counts of all the apps in the data model
+     *
+     * @return all the dynamic and manifest shortcuts
+     */
+    @WorkerThread
+    static List<ShortcutInfo> loadDeepShortcuts(Context context, BgDataModel dataModel,
+            AllAppsList appsList) {
+        List<ShortcutInfo> allShortcuts = new ArrayList<>();
+        synchronized (dataModel) {
+            dataModel.deepShortcutCounts = DeepShortcutCounts.EMPTY;
+        }
+
+        if (appsList.hasShortcutHostPermission()) {
+            UserManager userManager = context.getSystemService(UserManager.class);
+            for (UserHandle user : UserCache.INSTANCE.get(context).getUserProfiles()) {
+                if (userManager.isUserUnlocked(user)) {
+                    List<ShortcutInfo> shortcuts = new ShortcutRequest(context, user)
+                            .query(ShortcutRequest.ALL);
+                    allShortcuts.addAll(shortcuts);
+                    dataModel.updateDeepShortcutCounts(null, user, shortcuts);
+                }
+            }
+        }
+        return allShortcuts;
+    }
+
+    /**
+     * Fills the suggested names of the folders which do not have any yet
+     */
+    @WorkerThread
+    static void loadFolderNames(Context context, BgDataModel dataModel, AllAppsList appsList) {
+        FolderNameProvider provider = FolderNameProvider.newInstance(context,
+                appsList.data, dataModel.folders);
+
+        synchronized (dataModel) {
+            for (int i = 0; i < dataModel.folders.size(); i++) {
+                FolderNameInfos suggestionInfos = new FolderNameInfos();
+                FolderInfo info = dataModel.folders.valueAt(i);
+                if (info.suggestedFolderNames == null) {
+                    provider.getSuggestedFolderName(context, info.contents, suggestionInfos);
+                    info.suggestedFolderNames = suggestionInfos;
+                }
+            }
+        }
+    }
+
+    private class LoadSubsystemsTask extends BaseModelUpdateTask {
+
+        private final int mSubsystems;
+
+        LoadSubsystemsTask(int subsystems) {
+            mSubsystems = subsystems;
+        }
+
+        @Override
+        public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList apps) {
+            int subsystems;
+            synchronized (ModelSubsystems.this) {
+                // A request made during a load may be loaded by both its task and the loader
+                subsystems = mSubsystems & ~mLoadedSubsystems;
+            }
+            if (subsystems == 0) {
+                return;
+            }
+            Trace.beginSection("LoadSubsystems");
+            long startTime = SystemClock.uptimeMillis();
+            Context context = app.getContext();
+            if ((subsystems & SUBSYSTEM_DEEP_SHORTCUTS) != 0) {
+                loadDeepShortcuts(context, dataModel, apps);
+                bindDeepShortcuts(dataModel);
+            }
+            if ((subsystems & SUBSYSTEM_WIDGETS) != 0) {
+                List<ComponentWithLabelAndIcon> widgets = dataModel.widgetsModel.update(app, null);
+                bindUpdatedWidgets(dataModel);
+                // The package watermarks are only committed by the loader, so the widget entries
+                // are compared against the icon DB instead of being filtered by the watermarks.
+                // This happens once per model load, when the widgets are first needed. The
+                // update handler is not finished, as it would drop the entries of all the other
+                // components, which are not listed here.
+                ComponentWithIconCachingLogic cachingLogic =
+                        new ComponentWithIconCachingLogic(context, true);
+                app.getIconCache().getUpdateHandler().updateIcons(
+                        widgets, cachingLogic, mModel::onWidgetLabelsUpdated);
+            }
+            if ((subsystems & SUBSYSTEM_FOLDER_NAMES) != 0
+                    && FeatureFlags.FOLDER_NAME_SUGGEST.get()) {
+                loadFolderNames(context, dataModel, apps);
+            }
+            if ((subsystems & SUBSYSTEM_PREDICTIONS) != 0) {
+                mModel.getModelDelegate().startPredictions();
+            }
+            synchronized (ModelSubsystems.this) {
+                mLoadedSubsystems |= subsystems;
+                mPendingSubsystems &= ~subsystems;
+            }
+            Trace.endSection();
+            Log.d(TAG, "Loaded subsystems " + Integer.toBinaryString(subsystems) + " in "
+                    + (SystemClock.uptimeMillis() - startTime) + "ms");
+        }
+    }
+}
@@ -55,7 +55,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * Class for handling model updates.
@@ -279,9 +278,7 @@ public class ModelWriter {
      * Removes all the items from the database matching {@param matcher}.
      */
     public void deleteItemsFromDatabase(ItemInfoMatcher matcher) {
-        deleteItemsFromDatabase(StreamSupport.stream(mBgDataModel.itemsIdMap.spliterator(), false)
-                        .filter(matcher::matchesInfo)
-                        .collect(Collectors.toList()));
+        deleteItemsFromDatabase(mBgDataModel.getMatchingItems(matcher));
     }
 
     /**
@@ -421,6 +418,7 @@ public class ModelWriter {
             mContext.getContentResolver().update(uri, mWriter.get().getValues(mContext),
                     null, null);
             updateItemArrays(mItem, mItemId);
+            mVerifier.verifyModel();
         }
     }
 
@@ -446,6 +444,8 @@ public class ModelWriter {
                 ops.add(ContentProviderOperation.newUpdate(uri).withValues(values).build());
                 updateItemArrays(item, itemId);
             }
+            // Verify once for the whole batch
+            mVerifier.verifyModel();
             try {
                 mContext.getContentResolver().applyBatch(LauncherProvider.AUTHORITY, ops);
             } catch (Exception e) {
@@ -456,7 +456,7 @@ public class ModelWriter {
 
     private abstract class UpdateItemBaseRunnable implements Runnable {
         private final StackTraceElement[] mStackTrace;
-        private final ModelVerifier mVerifier = new ModelVerifier();
+        protected final ModelVerifier mVerifier = new ModelVerifier();
 
         UpdateItemBaseRunnable() {
             mStackTrace = new Throwable().getStackTrace();
@@ -483,6 +483,10 @@ public class ModelWriter {
                 // as in Workspace.onDrop. Here, we just add/remove them from the list of items
                 // that are on the desktop, as appropriate
                 ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
+                if (modelItem != null) {
+                    // The container or target of the item may have changed
+                    mBgDataModel.itemIndex.update(modelItem);
+                }
                 if (modelItem != null &&
                         (modelItem.container == Favorites.CONTAINER_DESKTOP ||
                                 modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
@@ -501,7 +505,6 @@ public class ModelWriter {
                 } else {
                     mBgDataModel.workspaceItems.remove(modelItem);
                 }
-                mVerifier.verifyModel();
             }
         }
     }
@@ -518,6 +521,10 @@ public class ModelWriter {
         }
 
         void verifyModel() {
+            if (FeatureFlags.IS_STUDIO_BUILD) {
+                // Verifying is linear in the number of items, only do it on development builds
+                verifyItemIndex();
+            }
             if (!mVerifyChanges || !mModel.hasCallbacks()) {
                 return;
             }
@@ -539,5 +546,22 @@ public class ModelWriter {
                 mModel.rebindCallbacks();
             });
         }
+
+        /**
+         * Checks that the secondary indexes of the model still match its items
+         */
+        private void verifyItemIndex() {
+            List<String> errors;
+            synchronized (mBgDataModel) {
+                errors = mBgDataModel.itemIndex.verify();
+            }
+            if (errors.isEmpty()) {
+                return;
+            }
+            for (String error : errors) {
+                Log.e(TAG, error);
+            }
+            throw new IllegalStateException("Model index out of sync: " + errors.get(0));
+        }
     }
 }
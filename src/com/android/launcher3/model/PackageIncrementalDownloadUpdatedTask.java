@@ -18,6 +18,7 @@ package com.android.launcher3.model;
 import android.os.UserHandle;
 
 import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.PackageUpdateCoalescer.SinglePackageTask;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
@@ -29,7 +30,8 @@ import java.util.List;
 /**
  * Handles updates due to incremental download progress updates.
  */
-public class PackageIncrementalDownloadUpdatedTask extends BaseModelUpdateTask {
+public class PackageIncrementalDownloadUpdatedTask extends BaseModelUpdateTask
+        implements SinglePackageTask {
 
     private final UserHandle mUser;
     private final int mProgress;
@@ -42,6 +44,16 @@ public class PackageIncrementalDownloadUpdatedTask extends BaseModelUpdateTask {
         mPackageName = packageName;
     }
 
+    @Override
+    public String getPackageName() {
+        return mPackageName;
+    }
+
+    @Override
+    public UserHandle getUser() {
+        return mUser;
+    }
+
     @Override
     public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList appsList) {
         PackageInstallInfo downloadInfo = new PackageInstallInfo(
@@ -17,8 +17,10 @@ package com.android.launcher3.model;
 
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.os.UserHandle;
 
 import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.PackageUpdateCoalescer.SinglePackageTask;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
@@ -31,7 +33,8 @@ import java.util.List;
 /**
  * Handles changes due to a sessions updates for a currently installing app.
  */
-public class PackageInstallStateChangedTask extends BaseModelUpdateTask {
+public class PackageInstallStateChangedTask extends BaseModelUpdateTask
+        implements SinglePackageTask {
 
     private final PackageInstallInfo mInstallInfo;
 
@@ -39,6 +42,16 @@ public class PackageInstallStateChangedTask extends BaseModelUpdateTask {
         mInstallInfo = installInfo;
     }
 
+    @Override
+    public String getPackageName() {
+        return mInstallInfo.packageName;
+    }
+
+    @Override
+    public UserHandle getUser() {
+        return mInstallInfo.user;
+    }
+
     @Override
     public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList apps) {
         if (mInstallInfo.state == PackageInstallInfo.STATUS_INSTALLED) {
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserHandle;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces the package events received in quick succession, like when the store updates many
+ * apps at once, into as few {@link PackageUpdatedTask}s as possible. Each task updates the icon
+ * cache, scans the model and binds its changes once for all its packages.
+ *
+ * An event is merged into a pending event with the same op and user, unless an event with a
+ * different op for any of its packages was received in between, so that the order of the ops on
+ * a package, like remove then add, is preserved. Pending events are flushed at the end of the
+ * coalescing window, or before any other model task which may depend on them is run. Tasks for a
+ * single package, like install progress updates, only flush the events when one of them is for
+ * the same package, so that a stream of such tasks does not defeat the coalescing.
+ *
+ * Events with different ops or users are not merged, as a {@link PackageUpdatedTask} handles a
+ * single op for a single user, so a window can still bind once for each of them.
+ */
+public class PackageUpdateCoalescer {
+
+    public static final long COALESCE_WINDOW_MS = 100;
+
+    private final Handler mHandler;
+    private final long mWindowMs;
+    private final Consumer<PackageUpdatedTask> mTaskConsumer;
+    private final Runnable mFlushRunnable = this::flush;
+
+    // Pending events, in the order they need to be run
+    private final ArrayList<PendingEvent> mPendingEvents = new ArrayList<>();
+
+    private int mEventCount;
+    private int mTaskCount;
+
+    /**
+     * @param handler the handler on which the tasks for the pending events are sent
+     * @param windowMs how long events are held for coalescing after the first pending one
+     * @param taskConsumer called in order on the handler thread with the tasks for the coalesced
+     *                     events
+     */
+    public PackageUpdateCoalescer(Handler handler, long windowMs,
+            Consumer<PackageUpdatedTask> taskConsumer) {
+        mHandler = handler;
+        mWindowMs = windowMs;
+        mTaskConsumer = taskConsumer;
+    }
+
+    /**
+     * Adds an event for a {@link PackageUpdatedTask} op, to be run at the end of the window
+     */
+    public synchronized void addEvent(int op, UserHandle user, String... packages) {
+        mEventCount++;
+        if (mPendingEvents.isEmpty()) {
+            mHandler.postDelayed(mFlushRunnable, mWindowMs);
+        }
+
+        PendingEvent target = null;
+        for (int i = mPendingEvents.size() - 1; i >= 0; i--) {
+            PendingEvent event = mPendingEvents.get(i);
+            if (!event.user.equals(user)) {
+                continue;
+            }
+            if (event.op == op) {
+                target = event;
+                break;
+            }
+            if (event.containsAny(packages)) {
+                // Merging with an earlier event would run this op before the one in between
+                break;
+            }
+        }
+        if (target == null) {
+            target = new PendingEvent(op, user);
+            mPendingEvents.add(target);
+        }
+        Collections.addAll(target.packages, packages);
+    }
+
+    /**
+     * Sends the tasks for all pending events if any of them is for the given package, so that a
+     * task for that package runs after them. Tasks for other packages do not depend on the
+     * pending events and can run before them.
+     */
+    public void flushIfPending(String packageName, UserHandle user) {
+        synchronized (this) {
+            if (!hasPendingEvent(packageName, user)) {
+                return;
+            }
+        }
+        // All the events are flushed to keep the order between the packages of merged events
+        flush();
+    }
+
+    private boolean hasPendingEvent(String packageName, UserHandle user) {
+        for (int i = mPendingEvents.size() - 1; i >= 0; i--) {
+            PendingEvent event = mPendingEvents.get(i);
+            if (event.user.equals(user) && event.packages.contains(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the tasks for all pending events. The tasks are always sent on the handler thread,
+     * after anything already posted to it when called from a different thread.
+     */
+    public void flush() {
+        ArrayList<PendingEvent> events;
+        synchronized (this) {
+            if (mPendingEvents.isEmpty()) {
+                return;
+            }
+            mHandler.removeCallbacks(mFlushRunnable);
+            events = new ArrayList<>(mPendingEvents);
+            mPendingEvents.clear();
+            mTaskCount += events.size();
+        }
+        if (mHandler.getLooper() == Looper.myLooper()) {
+            sendTasks(events);
+        } else {
+            mHandler.post(() -> sendTasks(events));
+        }
+    }
+
+    private void sendTasks(ArrayList<PendingEvent> events) {
+        // Tasks can run synchronously when sent on the model thread, so they are sent outside of
+        // the lock, as they might in turn add events
+        for (PendingEvent event : events) {
+            mTaskConsumer.accept(new PackageUpdatedTask(event.op, event.user,
+                    event.packages.toArray(new String[event.packages.size()])));
+        }
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "PackageUpdateCoalescer: events=" + mEventCount
+                + " tasks=" + mTaskCount + " pending=" + mPendingEvents.size());
+    }
+
+    /**
+     * A model task which only depends on the events of a single package
+     */
+    public interface SinglePackageTask {
+
+        String getPackageName();
+
+        UserHandle getUser();
+    }
+
+    private static class PendingEvent {
+
+        final int op;
+        final UserHandle user;
+        final LinkedHashSet<String> packages = new LinkedHashSet<>();
+
+        PendingEvent(int op, UserHandle user) {
+            this.op = op;
+            this.user = user;
+        }
+
+        boolean containsAny(String[] packageNames) {
+            for (String packageName : packageNames) {
+                if (packages.contains(packageName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -29,6 +29,8 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.launcher3.Launcher;
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherSettings;
@@ -51,6 +53,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.WidgetPreviewCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -58,6 +61,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Handles updates due to changes in package manager (app installed/updated/removed)
@@ -87,10 +92,26 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
         mPackages = packages;
     }
 
+    @VisibleForTesting
+    public int getOp() {
+        return mOp;
+    }
+
+    @VisibleForTesting
+    public UserHandle getUser() {
+        return mUser;
+    }
+
+    @VisibleForTesting
+    public String[] getPackages() {
+        return mPackages;
+    }
+
     @Override
     public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList appsList) {
         final Context context = app.getContext();
         final IconCache iconCache = app.getIconCache();
+        final WidgetPreviewCache previewCache = WidgetPreviewCache.INSTANCE.get(context);
 
         final String[] packages = mPackages;
         final int N = packages.length;
@@ -111,6 +132,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                         needsRestart = true;
                     }
                     iconCache.updateIconsForPkg(packages[i], mUser);
+                    previewCache.invalidatePackage(packages[i], mUser);
                     if (FeatureFlags.PROMISE_APPS_IN_ALL_APPS.get()) {
                         appsList.removePackage(packages[i], mUser);
                     }
@@ -126,6 +148,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                     for (int i = 0; i < N; i++) {
                         if (DEBUG) Log.d(TAG, "mAllAppsList.updatePackage " + packages[i]);
                         iconCache.updateIconsForPkg(packages[i], mUser);
+                        previewCache.invalidatePackage(packages[i], mUser);
                         activitiesLists.put(
                                 packages[i], appsList.updatePackage(context, packages[i], mUser));
 
@@ -145,6 +168,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                 for (int i = 0; i < N; i++) {
                     FileLog.d(TAG, "Removing app icon" + packages[i]);
                     iconCache.removeIconsForPkg(packages[i], mUser);
+                    previewCache.invalidatePackage(packages[i], mUser);
                     if (isTargetPackage(packages[i])) {
                         needsRestart = true;
                     }
@@ -203,7 +227,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             // For system apps, package manager send OP_UPDATE when an app is enabled.
             final boolean isNewApkAvailable = mOp == OP_ADD || mOp == OP_UPDATE;
             synchronized (dataModel) {
-                dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+                forAffectedWorkspaceItemInfos(dataModel, packageSet, si -> {
 
                     boolean infoUpdated = false;
                     boolean shortcutUpdated = false;
@@ -375,6 +399,19 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
         }
     }
 
+    /**
+     * Calls {@param op} for the workspace items which may be affected by this task
+     */
+    private void forAffectedWorkspaceItemInfos(BgDataModel dataModel, Set<String> packages,
+            Consumer<WorkspaceItemInfo> op) {
+        if (mOp == OP_USER_AVAILABILITY_CHANGE) {
+            // All the packages of the user are affected
+            dataModel.forAllWorkspaceItemInfos(mUser, op);
+        } else {
+            dataModel.forWorkspaceItemInfosOfPackages(mUser, packages, op);
+        }
+    }
+
     /**
      * Updates {@param si}'s intent to point to a new ComponentName.
      * @return Whether the shortcut intent was changed.
@@ -28,6 +28,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -58,12 +59,13 @@ public class ShortcutsChangedTask extends BaseModelUpdateTask {
         ArrayList<WorkspaceItemInfo> matchingWorkspaceItems = new ArrayList<>();
 
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
-                if ((si.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT)
-                        && mPackageName.equals(si.getIntent().getPackage())) {
-                    matchingWorkspaceItems.add(si);
-                }
-            });
+            dataModel.forWorkspaceItemInfosOfPackages(mUser, Collections.singleton(mPackageName),
+                    si -> {
+                        if ((si.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT)
+                                && mPackageName.equals(si.getIntent().getPackage())) {
+                            matchingWorkspaceItems.add(si);
+                        }
+                    });
         }
 
         if (!matchingWorkspaceItems.isEmpty()) {
@@ -113,9 +115,11 @@ public class ShortcutsChangedTask extends BaseModelUpdateTask {
         }
 
         if (mUpdateIdMap) {
-            // Update the deep shortcut map if the list of ids has changed for an activity.
-            dataModel.updateDeepShortcutCounts(mPackageName, mUser, mShortcuts);
-            bindDeepShortcuts(dataModel);
+            // Update the deep shortcut map if the list of ids has changed for an activity. Only the
+            // counts of this package are recomputed, and nothing is bound if they are unchanged.
+            if (dataModel.updateDeepShortcutCounts(mPackageName, mUser, mShortcuts)) {
+                bindDeepShortcuts(dataModel);
+            }
         }
     }
 }
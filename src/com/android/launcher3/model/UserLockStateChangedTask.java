@@ -27,13 +27,11 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.ItemInfoMatcher;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 
 /**
  * Task to handle changing of lock state of the user
@@ -99,19 +97,13 @@ public class UserLockStateChangedTask extends BaseModelUpdateTask {
             deleteAndBindComponentsRemoved(ItemInfoMatcher.ofShortcutKeys(removedKeys));
         }
 
-        // Remove shortcut id map for that user
-        Iterator<ComponentKey> keysIter = dataModel.deepShortcutMap.keySet().iterator();
-        while (keysIter.hasNext()) {
-            if (keysIter.next().user.equals(mUser)) {
-                keysIter.remove();
-            }
-        }
-
-        if (mIsUserUnlocked) {
-            dataModel.updateDeepShortcutCounts(
-                    null, mUser,
-                    new ShortcutRequest(context, mUser).query(ShortcutRequest.ALL));
+        // Replace the shortcut counts for that user
+        boolean countsChanged = mIsUserUnlocked
+                ? dataModel.updateDeepShortcutCounts(
+                        null, mUser, new ShortcutRequest(context, mUser).query(ShortcutRequest.ALL))
+                : dataModel.removeDeepShortcutCounts(mUser);
+        if (countsChanged) {
+            bindDeepShortcuts(dataModel);
         }
-        bindDeepShortcuts(dataModel);
     }
 }
@@ -36,6 +36,7 @@ import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageManagerHelper;
 
 import java.util.Comparator;
@@ -61,6 +62,9 @@ public class AppInfo extends ItemInfoWithIcon {
     // Section name used for indexing.
     public String sectionName = "";
 
+    // Sort key of the title, computed lazily when sorting apps
+    private LabelComparator.SortKey mTitleSortKey;
+
     public AppInfo() {
         itemType = LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
     }
@@ -139,6 +143,15 @@ public class AppInfo extends ItemInfoWithIcon {
         return workspaceItemInfo;
     }
 
+    /**
+     * Returns the sort key of the title, which is only recomputed when the title or the locale
+     * of {@param comparator} changes.
+     */
+    public LabelComparator.SortKey getTitleSortKey(LabelComparator comparator) {
+        mTitleSortKey = comparator.getSortKey(title, mTitleSortKey);
+        return mTitleSortKey;
+    }
+
     public ComponentKey toComponentKey() {
         return new ComponentKey(componentName, user);
     }
@@ -59,6 +59,7 @@ import com.android.launcher3.Workspace;
 import com.android.launcher3.dragndrop.DragLayer;
 import com.android.launcher3.shortcuts.DeepShortcutView;
 import com.android.launcher3.util.Themes;
+import com.android.launcher3.util.ViewCache;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.views.BaseDragLayer;
 import com.android.launcher3.widget.LocalColorExtractor;
@@ -205,7 +206,7 @@ public abstract class ArrowPopup<T extends Context & ActivityContext>
      * Utility method for inflating and adding a view
      */
     public <R extends View> R inflateAndAdd(int resId, ViewGroup container) {
-        View view = mInflater.inflate(resId, container, false);
+        View view = inflateView(resId, container);
         container.addView(view);
         return (R) view;
     }
@@ -214,11 +215,19 @@ public abstract class ArrowPopup<T extends Context & ActivityContext>
      * Utility method for inflating and adding a view
      */
     public <R extends View> R inflateAndAdd(int resId, ViewGroup container, int index) {
-        View view = mInflater.inflate(resId, container, false);
+        View view = inflateView(resId, container);
         container.addView(view, index);
         return (R) view;
     }
 
+    private View inflateView(int resId, ViewGroup container) {
+        // Popup views are not recycled, so the cache only has views of pre-warmed layouts
+        ViewCache viewCache = mActivityContext.getViewCache();
+        return viewCache.isPrewarmed(resId)
+                ? viewCache.getView(resId, getContext(), container)
+                : mInflater.inflate(resId, container, false);
+    }
+
     /**
      * Called when all view inflation and reordering in complete.
      */
@@ -19,6 +19,8 @@ package com.android.launcher3.popup;
 import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_SHORTCUTS;
 import static com.android.launcher3.Utilities.squaredHypot;
 import static com.android.launcher3.Utilities.squaredTouchSlop;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_DEEP_SHORTCUTS;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_WIDGETS;
 import static com.android.launcher3.popup.PopupPopulator.MAX_SHORTCUTS;
 import static com.android.launcher3.popup.PopupPopulator.MAX_SHORTCUTS_IF_NOTIFICATIONS;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
@@ -212,6 +214,9 @@ public class PopupContainerWithArrow<T extends Context & ActivityContext>
                         R.layout.popup_container, launcher.getDragLayer(), false);
         container.configureForLauncher(launcher);
 
+        // The widgets shortcut is added when the widgets are bound, see onWidgetsBound
+        launcher.getModel().getSubsystems()
+                .ensureLoaded(SUBSYSTEM_DEEP_SHORTCUTS | SUBSYSTEM_WIDGETS);
         PopupDataProvider popupDataProvider = launcher.getPopupDataProvider();
         container.populateAndShow(icon,
                 popupDataProvider.getShortcutCountForItem(item),
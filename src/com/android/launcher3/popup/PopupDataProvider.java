@@ -19,11 +19,15 @@ package com.android.launcher3.popup;
 import android.content.ComponentName;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.dot.DotInfo;
+import com.android.launcher3.model.DeepShortcutCounts;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.notification.NotificationKeyData;
@@ -38,6 +42,7 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -56,7 +61,7 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     private final Consumer<Predicate<PackageUserKey>> mNotificationDotsChangeListener;
 
     /** Maps launcher activity components to a count of how many shortcuts they have. */
-    private HashMap<ComponentKey, Integer> mDeepShortcutMap = new HashMap<>();
+    private DeepShortcutCounts mDeepShortcutCounts = DeepShortcutCounts.EMPTY;
     /** Maps packages to their DotInfo's . */
     private Map<PackageUserKey, DotInfo> mPackageUserToDotInfos = new HashMap<>();
 
@@ -67,15 +72,53 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     private PopupDataChangeListener mChangeListener = PopupDataChangeListener.INSTANCE;
 
+    // Dots changed by individual notification updates, delivered together on the next frame so
+    // that a burst of notifications only updates the icons once.
+    private final HashSet<PackageUserKey> mPendingDotUpdates = new HashSet<>();
+    private boolean mPendingTrim;
+    private final FrameCallback mDotUpdateCallback = frameTimeNanos -> flushNotificationDots();
+
+    private int mNotificationChangeCount;
+    private int mDotUpdateCount;
+
     public PopupDataProvider(Consumer<Predicate<PackageUserKey>> notificationDotsChangeListener) {
         mNotificationDotsChangeListener = notificationDotsChangeListener;
     }
 
     private void updateNotificationDots(Predicate<PackageUserKey> updatedDots) {
+        mDotUpdateCount++;
         mNotificationDotsChangeListener.accept(updatedDots);
         mChangeListener.onNotificationDotsUpdated(updatedDots);
     }
 
+    private void scheduleNotificationDotsUpdate(PackageUserKey updatedDot, boolean trim) {
+        if (mPendingDotUpdates.isEmpty()) {
+            Choreographer.getInstance().postFrameCallback(mDotUpdateCallback);
+        }
+        mPendingDotUpdates.add(updatedDot);
+        mPendingTrim |= trim;
+    }
+
+    /**
+     * Delivers the dot updates scheduled since the last frame
+     */
+    @VisibleForTesting
+    void flushNotificationDots() {
+        if (mPendingDotUpdates.isEmpty()) {
+            return;
+        }
+        Choreographer.getInstance().removeFrameCallback(mDotUpdateCallback);
+        HashSet<PackageUserKey> updatedDots = new HashSet<>(mPendingDotUpdates);
+        boolean trim = mPendingTrim;
+        mPendingDotUpdates.clear();
+        mPendingTrim = false;
+
+        updateNotificationDots(updatedDots::contains);
+        if (trim) {
+            trimNotifications(mPackageUserToDotInfos);
+        }
+    }
+
     @Override
     public void onNotificationPosted(PackageUserKey postedPackageUserKey,
             NotificationKeyData notificationKey) {
@@ -84,8 +127,9 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             dotInfo = new DotInfo();
             mPackageUserToDotInfos.put(postedPackageUserKey, dotInfo);
         }
+        mNotificationChangeCount++;
         if (dotInfo.addOrUpdateNotificationKey(notificationKey)) {
-            updateNotificationDots(postedPackageUserKey::equals);
+            scheduleNotificationDotsUpdate(postedPackageUserKey, false);
         }
     }
 
@@ -93,18 +137,21 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     public void onNotificationRemoved(PackageUserKey removedPackageUserKey,
             NotificationKeyData notificationKey) {
         DotInfo oldDotInfo = mPackageUserToDotInfos.get(removedPackageUserKey);
+        mNotificationChangeCount++;
         if (oldDotInfo != null && oldDotInfo.removeNotificationKey(notificationKey)) {
             if (oldDotInfo.getNotificationKeys().size() == 0) {
                 mPackageUserToDotInfos.remove(removedPackageUserKey);
             }
-            updateNotificationDots(removedPackageUserKey::equals);
-            trimNotifications(mPackageUserToDotInfos);
+            scheduleNotificationDotsUpdate(removedPackageUserKey, true);
         }
     }
 
     @Override
     public void onNotificationFullRefresh(List<StatusBarNotification> activeNotifications) {
         if (activeNotifications == null) return;
+        // Deliver pending updates first, so that they are not applied over the new state
+        flushNotificationDots();
+        mNotificationChangeCount++;
         // This will contain the PackageUserKeys which have updated dots.
         HashMap<PackageUserKey, DotInfo> updatedDots = new HashMap<>(mPackageUserToDotInfos);
         mPackageUserToDotInfos.clear();
@@ -143,9 +190,9 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
         mChangeListener.trimNotifications(updatedDots);
     }
 
-    public void setDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMapCopy) {
-        mDeepShortcutMap = deepShortcutMapCopy;
-        if (LOGD) Log.d(TAG, "bindDeepShortcutMap: " + mDeepShortcutMap);
+    public void setDeepShortcutMap(DeepShortcutCounts deepShortcutCounts) {
+        mDeepShortcutCounts = deepShortcutCounts;
+        if (LOGD) Log.d(TAG, "bindDeepShortcutMap: " + mDeepShortcutCounts.size());
     }
 
     public int getShortcutCountForItem(ItemInfo info) {
@@ -157,8 +204,7 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             return 0;
         }
 
-        Integer count = mDeepShortcutMap.get(new ComponentKey(component, info.user));
-        return count == null ? 0 : count;
+        return mDeepShortcutCounts.getCount(component, info.user);
     }
 
     public @Nullable DotInfo getDotInfoForItem(@NonNull ItemInfo info) {
@@ -262,6 +308,9 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "PopupDataProvider:");
         writer.println(prefix + "\tmPackageUserToDotInfos:" + mPackageUserToDotInfos);
+        writer.println(prefix + "\tnotificationChanges=" + mNotificationChangeCount
+                + " dotUpdates=" + mDotUpdateCount
+                + " pendingDotUpdates=" + mPendingDotUpdates.size());
     }
 
     public interface PopupDataChangeListener {
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+/**
+ * Scores how well a query matches a title, ordered from best to worst:
+ *   1) Prefix of the title
+ *   2) Prefix of a word in the title
+ *   3) Match of the romanized title, see {@link TransliterationIndex}
+ *   4) Substring of the title
+ *   5) Approximate substring of the title, within a small number of typos
+ *
+ * The approximate match uses the bit-parallel algorithm by Myers, so each title is scanned once
+ * regardless of the number of allowed errors. An instance is bound to a single query and does
+ * not allocate when scoring titles, except for non-latin text.
+ */
+public class StringMatchScorer {
+
+    public static final int NO_MATCH = 0;
+
+    public static final int SCORE_PREFIX = 1000;
+    public static final int SCORE_WORD_START = 800;
+    public static final int SCORE_TRANSLITERATION = 600;
+    public static final int SCORE_SUBSTRING = 400;
+    public static final int SCORE_FUZZY = 200;
+
+    // Penalty applied per edit for approximate matches
+    private static final int FUZZY_ERROR_PENALTY = 60;
+    // Penalty applied per word between the first word and the matched word, for word start matches
+    private static final int WORD_INDEX_PENALTY = 10;
+    private static final int MAX_WORD_INDEX_PENALTY = 100;
+
+    // Bit-parallel matching is limited to patterns which fit in a long
+    private static final int MAX_FUZZY_QUERY_LENGTH = Long.SIZE;
+
+    private static final int ASCII_SIZE = 128;
+
+    private final String mQuery;
+    private final int mQueryLength;
+    private final boolean mIsAsciiQuery;
+    private final int mMaxErrors;
+
+    // Pattern bit masks for Myers' algorithm: bit i is set if the query has the char at index i
+    private final long[] mAsciiMasks = new long[ASCII_SIZE];
+    private final char[] mOtherChars;
+    private final long[] mOtherMasks;
+    private final long mHighBit;
+
+    @Nullable
+    private StringMatcher mMatcher;
+
+    /**
+     * @param query lower case query
+     */
+    public StringMatchScorer(String query) {
+        mQuery = query;
+        mQueryLength = query.length();
+        mMaxErrors = getMaxErrors(mQueryLength);
+
+        boolean isAscii = true;
+        int otherCount = 0;
+        for (int i = 0; i < mQueryLength; i++) {
+            if (query.charAt(i) >= ASCII_SIZE) {
+                isAscii = false;
+                otherCount++;
+            }
+        }
+        mIsAsciiQuery = isAscii;
+        mOtherChars = new char[otherCount];
+        mOtherMasks = new long[otherCount];
+
+        int patternLength = Math.min(mQueryLength, MAX_FUZZY_QUERY_LENGTH);
+        mHighBit = patternLength == 0 ? 0 : 1L << (patternLength - 1);
+        int otherSize = 0;
+        for (int i = 0; i < patternLength; i++) {
+            char c = query.charAt(i);
+            if (c < ASCII_SIZE) {
+                mAsciiMasks[c] |= 1L << i;
+            } else {
+                int index = indexOf(mOtherChars, otherSize, c);
+                if (index < 0) {
+                    index = otherSize++;
+                    mOtherChars[index] = c;
+                }
+                mOtherMasks[index] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of edits allowed for a query of the given length
+     */
+    public static int getMaxErrors(int queryLength) {
+        // A typo in a short query matches too many unrelated titles (eg, "map" in "Camera")
+        if (queryLength < 4) {
+            return 0;
+        } else if (queryLength < 6) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    /**
+     * Returns the score of the title for the query, or {@link #NO_MATCH}
+     *
+     * @param allowFuzzy whether approximate matches should be considered
+     */
+    public int score(String title, @Nullable TransliterationIndex searchIndex,
+            boolean allowFuzzy) {
+        int titleLength = title.length();
+        if (mQueryLength == 0 || titleLength == 0) {
+            return NO_MATCH;
+        }
+
+        int wordScore = scoreWordStart(title);
+        if (wordScore != NO_MATCH) {
+            return wordScore;
+        }
+        if (searchIndex != null && searchIndex.matches(mQuery, title)) {
+            return SCORE_TRANSLITERATION;
+        }
+        if (titleLength >= mQueryLength && containsIgnoreCase(title)) {
+            return SCORE_SUBSTRING;
+        }
+        return allowFuzzy ? scoreApproximate(title) : NO_MATCH;
+    }
+
+    /**
+     * Returns the score of an approximate match of the title for the query, or
+     * {@link #NO_MATCH}. Unlike {@link #score}, exact matches are not checked first, so this
+     * should only be called for titles which have no exact match.
+     */
+    public int scoreApproximate(String title) {
+        if (mMaxErrors > 0 && mQueryLength <= MAX_FUZZY_QUERY_LENGTH && title.length() > 0) {
+            int distance = approximateDistance(title);
+            if (distance <= mMaxErrors) {
+                return SCORE_FUZZY - distance * FUZZY_ERROR_PENALTY;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private int scoreWordStart(String title) {
+        int titleLength = title.length();
+        if (titleLength < mQueryLength) {
+            return NO_MATCH;
+        }
+        if (!mIsAsciiQuery || !isAscii(title)) {
+            // Fallback to the locale aware matcher for non-latin text
+            if (mMatcher == null) {
+                mMatcher = StringMatcher.getInstance();
+            }
+            if (mMatcher.matches(mQuery, title.substring(0, mQueryLength))) {
+                return SCORE_PREFIX;
+            }
+            return StringMatcherUtility.matches(mQuery, title, mMatcher)
+                    ? SCORE_WORD_START : NO_MATCH;
+        }
+
+        int lastType;
+        int thisType = Character.UNASSIGNED;
+        int nextType = Character.getType(title.charAt(0));
+        int wordIndex = 0;
+        int end = titleLength - mQueryLength;
+        for (int i = 0; i <= end; i++) {
+            lastType = thisType;
+            thisType = nextType;
+            nextType = i < (titleLength - 1)
+                    ? Character.getType(title.charAt(i + 1)) : Character.UNASSIGNED;
+            if (StringMatcherUtility.isBreak(thisType, lastType, nextType)) {
+                if (title.regionMatches(true, i, mQuery, 0, mQueryLength)) {
+                    // wordIndex is at least 1 here, the second word is not penalized
+                    return i == 0 ? SCORE_PREFIX : SCORE_WORD_START - Math.min(
+                            (wordIndex - 1) * WORD_INDEX_PENALTY, MAX_WORD_INDEX_PENALTY);
+                }
+                wordIndex++;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private boolean containsIgnoreCase(String title) {
+        int end = title.length() - mQueryLength;
+        for (int i = 0; i <= end; i++) {
+            if (title.regionMatches(true, i, mQuery, 0, mQueryLength)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the minimum edit distance between the query and any substring of the title,
+     * using Myers' bit-vector algorithm.
+     */
+    private int approximateDistance(String title) {
+        long pv = -1L;
+        long mv = 0L;
+        int score = Math.min(mQueryLength, MAX_FUZZY_QUERY_LENGTH);
+        int best = score;
+        int titleLength = title.length();
+        for (int j = 0; j < titleLength; j++) {
+            long eq = getMask(Character.toLowerCase(title.charAt(j)));
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & mHighBit) != 0) {
+                score++;
+            } else if ((mh & mHighBit) != 0) {
+                score--;
+            }
+            // The text can start at any position, so no carry is shifted in
+            ph <<= 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if (score < best) {
+                best = score;
+            }
+        }
+        return best;
+    }
+
+    private long getMask(char c) {
+        if (c < ASCII_SIZE) {
+            return mAsciiMasks[c];
+        }
+        int index = indexOf(mOtherChars, mOtherChars.length, c);
+        return index < 0 ? 0 : mOtherMasks[index];
+    }
+
+    private static int indexOf(char[] chars, int size, char c) {
+        for (int i = 0; i < size; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = s.length() - 1; i >= 0; i--) {
+            if (s.charAt(i) >= ASCII_SIZE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import android.annotation.TargetApi;
+import android.icu.text.Transliterator;
+import android.os.Build;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.Utilities;
+import com.android.launcher3.model.data.ItemInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Index of romanized tokens for CJK titles, allowing latin queries to match Chinese and Japanese
+ * titles by their full pinyin/romaji, by the reading of any character, or by initials.
+ *
+ * Readings are computed once per title using the platform ICU transliteration rules, so that
+ * queries only compare precomputed strings. This class is not thread safe, the owner should
+ * access it on a single thread.
+ */
+public class TransliterationIndex {
+
+    private static final String HAN_TO_LATIN = "Han-Latin; Latin-ASCII; Lower";
+    private static final String KANA_TO_LATIN =
+            "Hiragana-Latin; Katakana-Latin; Latin-ASCII; Lower";
+
+    private static final Object LOCK = new Object();
+    private static Transliterator sHanTransliterator;
+    private static Transliterator sKanaTransliterator;
+    // Readings of individual Han characters, shared across all indexes.
+    private static final SparseArray<String> sHanReadings = new SparseArray<>();
+
+    private static final TitleTokens NO_TOKENS = new TitleTokens("", new int[0]);
+
+    private final HashMap<String, TitleTokens> mTokens = new HashMap<>();
+
+    /**
+     * Rebuilds the index for the provided items, computing tokens for new titles and dropping
+     * titles which are no longer present.
+     */
+    public void update(List<? extends ItemInfo> items) {
+        ArrayList<CharSequence> titles = new ArrayList<>(items.size());
+        for (int i = items.size() - 1; i >= 0; i--) {
+            titles.add(items.get(i).title);
+        }
+        updateTitles(titles);
+    }
+
+    /**
+     * Same as {@link #update}, for a list of titles. Null titles are ignored.
+     */
+    public void updateTitles(Collection<? extends CharSequence> titles) {
+        HashSet<String> titleStrs = new HashSet<>(titles.size());
+        for (CharSequence title : titles) {
+            if (title != null) {
+                String titleStr = title.toString();
+                titleStrs.add(titleStr);
+                getTokens(titleStr);
+            }
+        }
+        mTokens.keySet().retainAll(titleStrs);
+    }
+
+    /**
+     * Returns {@code true} if the latin {@code query} matches the romanized form of
+     * {@code title}, either as a prefix of the reading starting at any character or word, or as
+     * a prefix of the initials starting at any character or word.
+     *
+     * @param query lower case query
+     */
+    public boolean matches(String query, String title) {
+        if (!isLatinQuery(query)) {
+            return false;
+        }
+        TitleTokens tokens = getTokens(title);
+        if (tokens == NO_TOKENS) {
+            return false;
+        }
+        String normalizedQuery = query.replace(" ", "");
+        if (normalizedQuery.isEmpty()) {
+            return false;
+        }
+        return tokens.matches(normalizedQuery);
+    }
+
+    private TitleTokens getTokens(String title) {
+        TitleTokens tokens = mTokens.get(title);
+        if (tokens == null) {
+            tokens = computeTokens(title);
+            mTokens.put(title, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns true if the title contains characters which can be romanized.
+     */
+    public static boolean needsTransliteration(CharSequence title) {
+        for (int i = 0; i < title.length(); ) {
+            int codePoint = Character.codePointAt(title, i);
+            i += Character.charCount(codePoint);
+            if (getScript(codePoint) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLatinQuery(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Character.UnicodeScript getScript(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        switch (script) {
+            case HAN:
+            case HIRAGANA:
+            case KATAKANA:
+                return script;
+            default:
+                return null;
+        }
+    }
+
+    @VisibleForTesting
+    static TitleTokens computeTokens(String title) {
+        if (!Utilities.ATLEAST_Q || !needsTransliteration(title)) {
+            return NO_TOKENS;
+        }
+        StringBuilder reading = new StringBuilder();
+        ArrayList<Integer> unitStarts = new ArrayList<>();
+
+        int length = title.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = title.codePointAt(i);
+            Character.UnicodeScript script = getScript(codePoint);
+            int end;
+            String unit;
+            if (script == Character.UnicodeScript.HAN) {
+                // Each Han character is a syllable of its own
+                end = i + Character.charCount(codePoint);
+                unit = getHanReading(codePoint);
+            } else if (script != null) {
+                // Kana is romanized as a run, as readings depend on the following characters
+                end = i;
+                while (end < length) {
+                    int cp = title.codePointAt(end);
+                    Character.UnicodeScript s = getScript(cp);
+                    if (s != Character.UnicodeScript.HIRAGANA
+                            && s != Character.UnicodeScript.KATAKANA) {
+                        break;
+                    }
+                    end += Character.charCount(cp);
+                }
+                unit = transliterateKana(title.substring(i, end));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                end = i;
+                while (end < length) {
+                    int cp = title.codePointAt(end);
+                    if (!Character.isLetterOrDigit(cp) || getScript(cp) != null) {
+                        break;
+                    }
+                    end += Character.charCount(cp);
+                }
+                unit = title.substring(i, end).toLowerCase(Locale.ROOT);
+            } else {
+                // Separators and symbols are not part of the reading
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            unit = stripNonAlphanumeric(unit);
+            if (!unit.isEmpty()) {
+                unitStarts.add(reading.length());
+                reading.append(unit);
+            }
+            i = end;
+        }
+
+        int[] starts = new int[unitStarts.size()];
+        for (int j = 0; j < starts.length; j++) {
+            starts[j] = unitStarts.get(j);
+        }
+        return new TitleTokens(reading.toString(), starts);
+    }
+
+    private static String stripNonAlphanumeric(String unit) {
+        StringBuilder sb = null;
+        for (int i = 0; i < unit.length(); i++) {
+            char c = unit.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+            if (!valid && sb == null) {
+                sb = new StringBuilder(unit.substring(0, i));
+            } else if (valid && sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? unit : sb.toString();
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    private static String getHanReading(int codePoint) {
+        synchronized (LOCK) {
+            String reading = sHanReadings.get(codePoint);
+            if (reading == null) {
+                if (sHanTransliterator == null) {
+                    sHanTransliterator = Transliterator.getInstance(HAN_TO_LATIN);
+                }
+                reading = sHanTransliterator.transliterate(
+                        new String(Character.toChars(codePoint)));
+                sHanReadings.put(codePoint, reading);
+            }
+            return reading;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    private static String transliterateKana(String kana) {
+        synchronized (LOCK) {
+            if (sKanaTransliterator == null) {
+                sKanaTransliterator = Transliterator.getInstance(KANA_TO_LATIN);
+            }
+            return sKanaTransliterator.transliterate(kana);
+        }
+    }
+
+    /**
+     * Precomputed romanized form of a title.
+     */
+    @VisibleForTesting
+    static class TitleTokens {
+
+        // Concatenated readings of all the characters and words of the title
+        final String reading;
+        // Offsets in the reading where each character or word starts
+        final int[] unitStarts;
+        // First letter of each character or word
+        final String initials;
+
+        TitleTokens(String reading, int[] unitStarts) {
+            this.reading = reading;
+            this.unitStarts = unitStarts;
+            char[] initials = new char[unitStarts.length];
+            for (int i = 0; i < unitStarts.length; i++) {
+                initials[i] = reading.charAt(unitStarts[i]);
+            }
+            this.initials = new String(initials);
+        }
+
+        boolean matches(String query) {
+            for (int i = 0; i < unitStarts.length; i++) {
+                if (reading.startsWith(query, unitStarts[i])
+                        || (query.length() > 1 && initials.startsWith(query, i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -32,17 +32,15 @@ import com.android.launcher3.LauncherModel;
 import com.android.launcher3.R;
 import com.android.launcher3.allapps.AllAppsContainerView;
 import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.DeepShortcutCounts;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.popup.PopupContainerWithArrow;
 import com.android.launcher3.popup.PopupDataProvider;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.Themes;
 import com.android.launcher3.views.BaseDragLayer;
 
-import java.util.HashMap;
-
 /**
  * Launcher activity for secondary displays
  */
@@ -215,8 +213,8 @@ public class SecondaryDisplayLauncher extends BaseDraggingActivity
     }
 
     @Override
-    public void bindDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMap) {
-        mPopupDataProvider.setDeepShortcutMap(deepShortcutMap);
+    public void bindDeepShortcutMap(DeepShortcutCounts deepShortcutCounts) {
+        mPopupDataProvider.setDeepShortcutMap(deepShortcutCounts);
     }
 
     @Override
@@ -18,6 +18,7 @@ package com.android.launcher3.secondarydisplay;
 import static android.view.View.MeasureSpec.EXACTLY;
 import static android.view.View.MeasureSpec.makeMeasureSpec;
 
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_DEEP_SHORTCUTS;
 import static com.android.launcher3.popup.SystemShortcut.APP_INFO;
 
 import android.content.Context;
@@ -29,6 +30,7 @@ import android.widget.GridView;
 import com.android.launcher3.AbstractFloatingView;
 import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.R;
 import com.android.launcher3.allapps.AllAppsContainerView;
 import com.android.launcher3.model.data.ItemInfo;
@@ -181,6 +183,8 @@ public class SecondaryDragLayer extends BaseDragLayer<SecondaryDisplayLauncher>
                 (PopupContainerWithArrow) mActivity.getLayoutInflater().inflate(
                         R.layout.popup_container, mActivity.getDragLayer(), false);
 
+        LauncherAppState.getInstance(mActivity).getModel().getSubsystems()
+                .ensureLoaded(SUBSYSTEM_DEEP_SHORTCUTS);
         container.populateAndShow((BubbleTextView) v,
                 mActivity.getPopupDataProvider().getShortcutCountForItem(item),
                 Collections.emptyList(),
@@ -32,6 +32,7 @@ import com.android.launcher3.LauncherRootView;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.statemanager.StateManager.AtomicAnimationFactory;
 import com.android.launcher3.statemanager.StateManager.StateHandler;
+import com.android.launcher3.util.MemoryAccounting;
 import com.android.launcher3.views.BaseDragLayer;
 
 import java.util.List;
@@ -131,6 +132,9 @@ public abstract class StatefulActivity<STATE_TYPE extends BaseState<STATE_TYPE>>
             getStateManager().moveToRestState();
         }
 
+        // The caches are at their largest when the UI gets hidden, before being trimmed. Sampled
+        // here rather than on trim, which is also called by the system for the same hide.
+        MemoryAccounting.INSTANCE.sample();
         // Workaround for b/78520668, explicitly trim memory once UI is hidden
         onTrimMemory(TRIM_MEMORY_UI_HIDDEN);
 
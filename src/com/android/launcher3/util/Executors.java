@@ -40,6 +40,23 @@ public class Executors {
     public static final ThreadPoolExecutor THREAD_POOL_EXECUTOR = new ThreadPoolExecutor(
             POOL_SIZE, POOL_SIZE, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
+    private static final int VIEW_INFLATION_QUEUE_SIZE = 32;
+
+    /**
+     * A bounded background executor used to pre-inflate views before they are needed. Views are
+     * inflated on a non looper thread, this allows us to catch errors like calling
+     * "new Handler()" in constructor easily. Tasks are rejected once the queue is full.
+     */
+    public static final ThreadPoolExecutor VIEW_INFLATION_EXECUTOR = createViewInflationExecutor();
+
+    private static ThreadPoolExecutor createViewInflationExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(VIEW_INFLATION_QUEUE_SIZE),
+                new SimpleThreadFactory("view-inflater-", Process.THREAD_PRIORITY_BACKGROUND));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Returns the executor for running tasks on the main thread.
      */
@@ -19,14 +19,19 @@ package com.android.launcher3.util;
 import android.content.ComponentName;
 import android.os.UserHandle;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.ModelItemIndex;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.shortcuts.ShortcutKey;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * A utility class to check for {@link ItemInfo}
@@ -52,18 +57,42 @@ public interface ItemInfoMatcher {
         }
     }
 
+    /**
+     * Returns the model items which may match, looked up in {@param index}, or null if every item
+     * needs to be checked.
+     */
+    @Nullable
+    default Collection<ItemInfo> getCandidates(ModelItemIndex index) {
+        return null;
+    }
+
     /**
      * Returns a new matcher with returns true if either this or {@param matcher} returns true.
      */
     default ItemInfoMatcher or(ItemInfoMatcher matcher) {
-        return (info, cn) -> matches(info, cn) || matcher.matches(info, cn);
+        return withCandidates((info, cn) -> matches(info, cn) || matcher.matches(info, cn),
+                index -> {
+                    Collection<ItemInfo> candidates = getCandidates(index);
+                    Collection<ItemInfo> otherCandidates =
+                            candidates == null ? null : matcher.getCandidates(index);
+                    if (otherCandidates == null) {
+                        return null;
+                    }
+                    Set<ItemInfo> result = new HashSet<>(candidates);
+                    result.addAll(otherCandidates);
+                    return result;
+                });
     }
 
     /**
      * Returns a new matcher with returns true if both this and {@param matcher} returns true.
      */
     default ItemInfoMatcher and(ItemInfoMatcher matcher) {
-        return (info, cn) -> matches(info, cn) && matcher.matches(info, cn);
+        return withCandidates((info, cn) -> matches(info, cn) && matcher.matches(info, cn),
+                index -> {
+                    Collection<ItemInfo> candidates = getCandidates(index);
+                    return candidates != null ? candidates : matcher.getCandidates(index);
+                });
     }
 
     /**
@@ -78,31 +107,65 @@ public interface ItemInfoMatcher {
     }
 
     static ItemInfoMatcher ofComponents(HashSet<ComponentName> components, UserHandle user) {
-        return (info, cn) -> components.contains(cn) && info.user.equals(user);
+        return withCandidates((info, cn) -> components.contains(cn) && info.user.equals(user),
+                index -> index.getItemsForComponents(components, user));
     }
 
     static ItemInfoMatcher ofPackages(Set<String> packageNames, UserHandle user) {
-        return (info, cn) -> packageNames.contains(cn.getPackageName()) && info.user.equals(user);
+        return withCandidates(
+                (info, cn) -> packageNames.contains(cn.getPackageName()) && info.user.equals(user),
+                index -> index.getItemsForPackages(packageNames, user));
     }
 
     static ItemInfoMatcher ofShortcutKeys(Set<ShortcutKey> keys) {
-        return (info, cn) -> info.itemType == Favorites.ITEM_TYPE_DEEP_SHORTCUT
-                && keys.contains(ShortcutKey.fromItemInfo(info));
+        return withCandidates((info, cn) -> info.itemType == Favorites.ITEM_TYPE_DEEP_SHORTCUT
+                && keys.contains(ShortcutKey.fromItemInfo(info)),
+                index -> {
+                    Set<ItemInfo> result = new HashSet<>();
+                    for (ShortcutKey key : keys) {
+                        result.addAll(index.getItemsForPackages(
+                                Collections.singleton(key.getPackageName()), key.user));
+                    }
+                    return result;
+                });
     }
 
     /**
      * Returns a matcher for items within folders.
      */
     static ItemInfoMatcher forFolderMatch(ItemInfoMatcher childOperator) {
-        return (info, cn) -> info instanceof FolderInfo && ((FolderInfo) info).contents.stream()
-                .anyMatch(childOperator::matchesInfo);
+        return withCandidates((info, cn) -> info instanceof FolderInfo
+                && ((FolderInfo) info).contents.stream().anyMatch(childOperator::matchesInfo),
+                index -> {
+                    Collection<ItemInfo> children = childOperator.getCandidates(index);
+                    if (children == null) {
+                        return null;
+                    }
+                    Set<ItemInfo> result = new HashSet<>();
+                    for (ItemInfo child : children) {
+                        ItemInfo container = index.getItem(child.container);
+                        if (container instanceof FolderInfo) {
+                            result.add(container);
+                        }
+                    }
+                    return result;
+                });
     }
 
     /**
      * Returns a matcher for items with provided ids
      */
     static ItemInfoMatcher ofItemIds(IntSet ids) {
-        return (info, cn) -> ids.contains(info.id);
+        return withCandidates((info, cn) -> ids.contains(info.id), index -> {
+            Set<ItemInfo> result = new HashSet<>();
+            for (int id : ids) {
+                ItemInfo item = index.getItem(id);
+                if (item != null) {
+                    result.add(item);
+                }
+            }
+            return result;
+        });
     }
 
     /**
@@ -113,4 +176,24 @@ public interface ItemInfoMatcher {
         items.forEach(item -> ids.add(item.id));
         return ofItemIds(ids);
     }
+
+    /**
+     * Returns a matcher which can look up the items it may match in the model indexes, see
+     * {@link #getCandidates(ModelItemIndex)}.
+     */
+    static ItemInfoMatcher withCandidates(ItemInfoMatcher matcher,
+            Function<ModelItemIndex, Collection<ItemInfo>> candidates) {
+        return new ItemInfoMatcher() {
+            @Override
+            public boolean matches(ItemInfo info, ComponentName cn) {
+                return matcher.matches(info, cn);
+            }
+
+            @Nullable
+            @Override
+            public Collection<ItemInfo> getCandidates(ModelItemIndex index) {
+                return candidates.apply(index);
+            }
+        };
+    }
 }
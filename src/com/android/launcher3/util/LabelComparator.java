@@ -15,8 +15,12 @@
  */
 package com.android.launcher3.util;
 
+import android.text.TextUtils;
+
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
+import java.util.Locale;
 
 /**
  * Extension of {@link java.text.Collator} with special handling for digits. Used for comparing
@@ -24,23 +28,75 @@ import java.util.Comparator;
  */
 public class LabelComparator implements Comparator<String> {
 
-    private final Collator mCollator = Collator.getInstance();
+    private final Locale mLocale = Locale.getDefault();
+    private final Collator mCollator = Collator.getInstance(mLocale);
 
     @Override
     public int compare(String titleA, String titleB) {
         // Ensure that we de-prioritize any titles that don't start with a
         // linguistic letter or digit
-        boolean aStartsWithLetter = (titleA.length() > 0) &&
-                Character.isLetterOrDigit(titleA.codePointAt(0));
-        boolean bStartsWithLetter = (titleB.length() > 0) &&
-                Character.isLetterOrDigit(titleB.codePointAt(0));
+        int result = compareStartsWithLetter(startsWithLetter(titleA), startsWithLetter(titleB));
+        if (result != 0) {
+            return result;
+        }
+
+        // Order by the title in the current locale
+        return mCollator.compare(titleA, titleB);
+    }
+
+    /**
+     * Compares two labels using their precomputed sort keys, with the same result as comparing
+     * the labels themselves.
+     */
+    public int compare(SortKey keyA, SortKey keyB) {
+        int result = compareStartsWithLetter(keyA.mStartsWithLetter, keyB.mStartsWithLetter);
+        return result != 0 ? result : keyA.mCollationKey.compareTo(keyB.mCollationKey);
+    }
+
+    /**
+     * Returns the sort key for {@param label}, reusing {@param key} if it is still valid for the
+     * label in the current locale.
+     */
+    public SortKey getSortKey(CharSequence label, SortKey key) {
+        if (key != null && key.mLocale.equals(mLocale)
+                && (key.mLabel == label || TextUtils.equals(key.mLabel, label))) {
+            return key;
+        }
+        String s = label.toString();
+        return new SortKey(label, mLocale, startsWithLetter(s), mCollator.getCollationKey(s));
+    }
+
+    private static boolean startsWithLetter(String title) {
+        return title.length() > 0 && Character.isLetterOrDigit(title.codePointAt(0));
+    }
+
+    private static int compareStartsWithLetter(boolean aStartsWithLetter,
+            boolean bStartsWithLetter) {
         if (aStartsWithLetter && !bStartsWithLetter) {
             return -1;
         } else if (!aStartsWithLetter && bStartsWithLetter) {
             return 1;
         }
+        return 0;
+    }
 
-        // Order by the title in the current locale
-        return mCollator.compare(titleA, titleB);
+    /**
+     * The collation of a label in a given locale, so that sorting labels only needs to compare
+     * bytes instead of running the collator on every comparison.
+     */
+    public static final class SortKey {
+
+        private final CharSequence mLabel;
+        private final Locale mLocale;
+        private final boolean mStartsWithLetter;
+        private final CollationKey mCollationKey;
+
+        private SortKey(CharSequence label, Locale locale, boolean startsWithLetter,
+                CollationKey collationKey) {
+            mLabel = label;
+            mLocale = locale;
+            mStartsWithLetter = startsWithLetter;
+            mCollationKey = collationKey;
+        }
     }
 }
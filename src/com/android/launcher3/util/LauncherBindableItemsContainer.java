@@ -29,6 +29,7 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 
@@ -59,7 +60,7 @@ public interface LauncherBindableItemsContainer {
             return false;
         };
 
-        mapOverItems(op);
+        mapOverUpdatedItems(updates, op);
         Folder openFolder = Folder.getOpen(context);
         if (openFolder != null) {
             openFolder.iterateOverItems(op);
@@ -86,7 +87,7 @@ public interface LauncherBindableItemsContainer {
             return false;
         };
 
-        mapOverItems(op);
+        mapOverUpdatedItems(updates, op);
         Folder folder = Folder.getOpen(context);
         if (folder != null) {
             folder.iterateOverItems(op);
@@ -100,6 +101,17 @@ public interface LauncherBindableItemsContainer {
      */
     void mapOverItems(ItemOperator op);
 
+    /**
+     * Map the operator over the shortcuts and widgets of the items which were updated in place,
+     * and over the folders containing them. By default, maps over all the items.
+     *
+     * @param updates the items which were updated
+     * @param op the operator to map over the shortcuts
+     */
+    default void mapOverUpdatedItems(Collection<? extends ItemInfo> updates, ItemOperator op) {
+        mapOverItems(op);
+    }
+
     interface ItemOperator {
         /**
          * Process the next itemInfo, possibly with side-effect on the next item.
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.icons.BitmapInfo;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the memory retained by the launcher caches, to help sizing the cache limits.
+ *
+ * Caches register a {@link MemorySource} which reports the bitmaps and the objects they hold.
+ * Bitmap sizes are their allocation sizes, while other objects use rough per object estimates.
+ * A bitmap shared by multiple caches is only counted once, for the first registered source
+ * holding it. The highest estimate of each source is kept until the process dies.
+ */
+public class MemoryAccounting {
+
+    public static final MemoryAccounting INSTANCE = new MemoryAccounting();
+
+    // Rough retained sizes of common objects, excluding their bitmaps
+    public static final int ITEM_INFO_BYTES = 512;
+    public static final int VIEW_BYTES = 2 * 1024;
+    public static final int CACHE_ENTRY_BYTES = 64;
+    private static final int BITMAP_OBJECT_BYTES = 64;
+
+    private static final String TOTAL = "total";
+
+    private final ArrayList<Registration> mRegistrations = new ArrayList<>();
+    // Highest estimate of each source since the process started, guarded by this
+    private final Map<String, Long> mHighWaterMarks = new LinkedHashMap<>();
+
+    @VisibleForTesting
+    MemoryAccounting() { }
+
+    /**
+     * Registers a source of memory usage. Sources registered with the same name are added up.
+     *
+     * @return a handle to unregister the source
+     */
+    public SafeCloseable register(@NonNull String name, @NonNull MemorySource source) {
+        Registration registration = new Registration(name, source);
+        synchronized (this) {
+            mRegistrations.add(registration);
+        }
+        return () -> {
+            synchronized (MemoryAccounting.this) {
+                mRegistrations.remove(registration);
+            }
+        };
+    }
+
+    /**
+     * Updates the high-water marks with the current estimates. Can be called from any thread, the
+     * sources capture their state on the model thread, and are then queried on the main thread.
+     * When called on the main thread, the sources are also queried right away, with the state
+     * captured at the previous sample, as UI caches may be trimmed right after.
+     */
+    public void sample() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            estimate();
+        }
+        MODEL_EXECUTOR.execute(() -> {
+            for (Registration registration : getRegistrations()) {
+                registration.source.prepareEstimate();
+            }
+            MAIN_EXECUTOR.execute(this::estimate);
+        });
+    }
+
+    private synchronized ArrayList<Registration> getRegistrations() {
+        return new ArrayList<>(mRegistrations);
+    }
+
+    /**
+     * Returns the current estimates by source name, including the total, and updates the
+     * high-water marks.
+     */
+    @UiThread
+    @VisibleForTesting
+    Map<String, SizeEstimate> estimate() {
+        ArrayList<Registration> registrations = getRegistrations();
+
+        Set<Bitmap> countedBitmaps = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<String, SizeEstimate> estimates = new LinkedHashMap<>();
+        SizeEstimate total = new SizeEstimate(countedBitmaps);
+        for (Registration registration : registrations) {
+            SizeEstimate estimate = estimates.computeIfAbsent(registration.name,
+                    n -> new SizeEstimate(countedBitmaps));
+            long bytes = estimate.mBytes;
+            int objects = estimate.mObjectCount;
+            int bitmaps = estimate.mBitmapCount;
+            registration.source.estimateSize(estimate);
+            total.mBytes += estimate.mBytes - bytes;
+            total.mObjectCount += estimate.mObjectCount - objects;
+            total.mBitmapCount += estimate.mBitmapCount - bitmaps;
+        }
+        estimates.put(TOTAL, total);
+
+        synchronized (this) {
+            estimates.forEach((name, estimate) ->
+                    mHighWaterMarks.merge(name, estimate.mBytes, Math::max));
+        }
+        return estimates;
+    }
+
+    /**
+     * Returns the highest estimate of the source since the process started
+     */
+    public synchronized long getHighWaterMark(String name) {
+        Long mark = mHighWaterMarks.get(name);
+        return mark == null ? 0 : mark;
+    }
+
+    /**
+     * Dumps the current estimates, of the state captured at the last sample for the sources
+     * capturing it on the model thread
+     */
+    @UiThread
+    public void dump(String prefix, PrintWriter writer) {
+        Map<String, SizeEstimate> estimates = estimate();
+        writer.println(prefix + "MemoryAccounting: (estimated retained sizes)");
+        synchronized (this) {
+            for (Map.Entry<String, Long> entry : mHighWaterMarks.entrySet()) {
+                if (!estimates.containsKey(entry.getKey())) {
+                    // Source is not registered anymore
+                    writer.println(prefix + "  " + entry.getKey() + ": current=0KB"
+                            + " highWaterMark=" + entry.getValue() / 1024 + "KB");
+                }
+            }
+            estimates.forEach((name, estimate) -> writer.println(prefix + "  " + name
+                    + ": current=" + estimate.mBytes / 1024 + "KB"
+                    + " highWaterMark=" + mHighWaterMarks.get(name) / 1024 + "KB"
+                    + " bitmaps=" + estimate.mBitmapCount
+                    + " objects=" + estimate.mObjectCount));
+        }
+    }
+
+    /**
+     * A cache or a model reporting the memory it retains
+     */
+    public interface MemorySource {
+
+        /**
+         * Captures the state used by {@link #estimateSize}, for sources which can only be read on
+         * the model thread. Called on the model thread before each sample.
+         */
+        @WorkerThread
+        default void prepareEstimate() { }
+
+        /**
+         * Adds the bitmaps and objects currently retained to the estimate. Called on the main
+         * thread.
+         */
+        void estimateSize(SizeEstimate estimate);
+    }
+
+    /**
+     * Memory retained by a source
+     */
+    public static final class SizeEstimate {
+
+        private final Set<Bitmap> mCountedBitmaps;
+
+        private long mBytes;
+        private int mObjectCount;
+        private int mBitmapCount;
+
+        @VisibleForTesting
+        SizeEstimate(Set<Bitmap> countedBitmaps) {
+            mCountedBitmaps = countedBitmaps;
+        }
+
+        public long getBytes() {
+            return mBytes;
+        }
+
+        public int getBitmapCount() {
+            return mBitmapCount;
+        }
+
+        /**
+         * Adds objects which are not bitmaps, using a rough estimate of their retained size
+         */
+        public void addObjects(int count, int bytesPerObject) {
+            mObjectCount += count;
+            mBytes += (long) count * bytesPerObject;
+        }
+
+        /**
+         * Adds the bitmap, unless it was already counted for any source
+         */
+        public void addBitmap(@Nullable Bitmap bitmap) {
+            if (bitmap == null || bitmap.isRecycled() || !mCountedBitmaps.add(bitmap)) {
+                return;
+            }
+            mBitmapCount++;
+            mBytes += bitmap.getAllocationByteCount() + BITMAP_OBJECT_BYTES;
+        }
+
+        public void addBitmapInfo(@Nullable BitmapInfo info) {
+            if (info != null) {
+                addBitmap(info.icon);
+            }
+        }
+
+        /**
+         * Adds the bitmap of the drawable, or the size of an ARGB bitmap of its intrinsic size
+         * when the bitmap is not accessible.
+         */
+        public void addDrawable(@Nullable Drawable drawable) {
+            if (drawable instanceof BitmapDrawable) {
+                addBitmap(((BitmapDrawable) drawable).getBitmap());
+            } else if (drawable != null) {
+                mBitmapCount++;
+                mBytes += (long) Math.max(drawable.getIntrinsicWidth(), 0)
+                        * Math.max(drawable.getIntrinsicHeight(), 0) * 4 + BITMAP_OBJECT_BYTES;
+            }
+        }
+    }
+
+    private static class Registration {
+
+        final String name;
+        final MemorySource source;
+
+        Registration(String name, MemorySource source) {
+            this.name = name;
+            this.source = source;
+        }
+    }
+}
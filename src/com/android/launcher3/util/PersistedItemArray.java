@@ -19,6 +19,7 @@ package com.android.launcher3.util;
 import android.content.Context;
 import android.content.Intent;
 import android.os.UserHandle;
+import android.text.TextUtils;
 import android.util.AtomicFile;
 import android.util.Log;
 import android.util.Xml;
@@ -95,6 +96,9 @@ public class PersistedItemArray<T extends ItemInfo> {
                 out.attribute(null, Favorites.PROFILE_ID,
                         Long.toString(userCache.getSerialNumberForUser(item.user)));
                 out.attribute(null, Favorites.INTENT, intent.toUri(0));
+                if (!TextUtils.isEmpty(item.title)) {
+                    out.attribute(null, Favorites.TITLE, item.title.toString());
+                }
                 out.endTag(null, TAG_ENTRY);
             }
             out.endTag(null, TAG_ROOT);
@@ -143,9 +147,10 @@ public class PersistedItemArray<T extends ItemInfo> {
                             parser.getAttributeValue(null, Favorites.PROFILE_ID)));
                     Intent intent = Intent.parseUri(
                             parser.getAttributeValue(null, Favorites.INTENT), 0);
+                    String title = parser.getAttributeValue(null, Favorites.TITLE);
 
                     if (user != null && intent != null) {
-                        T item = factory.createInfo(itemType, user, intent);
+                        T item = factory.createInfo(itemType, user, intent, title);
                         if (item != null) {
                             result.add(item);
                         }
@@ -180,5 +185,15 @@ public class PersistedItemArray<T extends ItemInfo> {
          */
         @Nullable
         T createInfo(int itemType, UserHandle user, Intent intent);
+
+        /**
+         * Same as {@link #createInfo(int, UserHandle, Intent)}, with the title persisted with the
+         * entry, if any. This allows creating the item without resolving its title.
+         */
+        @Nullable
+        default T createInfo(int itemType, UserHandle user, Intent intent,
+                @Nullable String title) {
+            return createInfo(itemType, user, intent);
+        }
     }
 }
@@ -16,6 +16,7 @@
 package com.android.launcher3.util;
 
 import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
 
 /**
  * Utility class to hold a list of runnable
@@ -24,6 +25,8 @@ public class RunnableList {
 
     private ArrayList<Runnable> mList = null;
     private boolean mDestroyed = false;
+    // Index of the next runnable to execute, when partially executed
+    private int mNextIndex = 0;
 
     /**
      * Ads a runnable to this list
@@ -59,9 +62,28 @@ public class RunnableList {
             ArrayList<Runnable> list = mList;
             mList = null;
             int count = list.size();
-            for (int i = 0; i < count; i++) {
+            for (int i = mNextIndex; i < count; i++) {
                 list.get(i).run();
             }
+            mNextIndex = 0;
         }
     }
+
+    /**
+     * Executes the previously added runnables in order, as long as {@param canContinue} returns
+     * true before each one. Runnables added while executing are also executed.
+     *
+     * @return true if all the runnables were executed and the list is cleared
+     */
+    public boolean executeWhile(BooleanSupplier canContinue) {
+        while (mList != null && mNextIndex < mList.size()) {
+            if (!canContinue.getAsBoolean()) {
+                return false;
+            }
+            mList.get(mNextIndex++).run();
+        }
+        mList = null;
+        mNextIndex = 0;
+        return true;
+    }
 }
@@ -15,21 +15,91 @@
  */
 package com.android.launcher3.util;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.VIEW_INFLATION_EXECUTOR;
+import static com.android.launcher3.util.MemoryAccounting.VIEW_BYTES;
+
 import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
- * Utility class to cache views at an activity level
+ * Utility class to cache views at an activity level.
+ *
+ * Layouts registered using {@link #prewarm} are additionally inflated on a background thread,
+ * so that the first use of the view only costs as much as a recycled view. The number of views
+ * kept warm follows the observed usage of the layout.
  */
 public class ViewCache {
 
+    // Views requested within this window of each other are considered to be part of the same
+    // burst (eg, opening a folder or a popup), which is used to determine the warm target.
+    private static final long USAGE_BURST_WINDOW_MS = 500;
+
+    private static final String TAG = "ViewCache";
+
     protected final SparseArray<CacheEntry> mCache = new SparseArray();
 
     public void setCacheSize(int layoutId, int size) {
-        mCache.put(layoutId, new CacheEntry(size));
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry == null) {
+            mCache.put(layoutId, new CacheEntry(size));
+        } else {
+            entry.resize(size);
+        }
+    }
+
+    /**
+     * Registers the layout for background pre-inflation. Views will be inflated ahead of use
+     * until {@code initialTarget} views are available, and the target is later adjusted based on
+     * the actual usage, bounded by {@code maxSize}.
+     *
+     * @param parent used to generate the layout params of the inflated views, similar to
+     *               {@link LayoutInflater#inflate(int, ViewGroup, boolean)}
+     */
+    @UiThread
+    public void prewarm(int layoutId, Context context, @Nullable ViewGroup parent,
+            int initialTarget, int maxSize) {
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry == null) {
+            entry = new CacheEntry(maxSize);
+            mCache.put(layoutId, entry);
+        } else if (entry.mMaxSize < maxSize) {
+            entry.resize(maxSize);
+        }
+        // LayoutInflater is not thread safe as it maintains a global variable 'mConstructorArgs'.
+        // Create a different copy to use on the background thread.
+        entry.mInflater = LayoutInflater.from(context).cloneInContext(context);
+        entry.mParent = parent;
+        entry.mWarmTarget = Math.max(entry.mWarmTarget, Math.min(initialTarget, entry.mMaxSize));
+        scheduleInflation(layoutId, entry);
+    }
+
+    /**
+     * Returns true if the layout was registered using {@link #prewarm}, so that views of the
+     * layout can be available without having been recycled first.
+     */
+    @UiThread
+    public boolean isPrewarmed(int layoutId) {
+        CacheEntry entry = mCache.get(layoutId);
+        return entry != null && entry.mInflater != null;
     }
 
     public <T extends View> T getView(int layoutId, Context context, ViewGroup parent) {
@@ -38,14 +108,19 @@ public class ViewCache {
             entry = new CacheEntry(1);
             mCache.put(layoutId, entry);
         }
+        entry.onViewRequested();
 
         if (entry.mCurrentSize > 0) {
+            entry.mHitCount++;
             entry.mCurrentSize --;
             T result = (T) entry.mViews[entry.mCurrentSize];
             entry.mViews[entry.mCurrentSize] = null;
+            scheduleInflation(layoutId, entry);
             return result;
         }
 
+        entry.mMissCount++;
+        scheduleInflation(layoutId, entry);
         return (T) LayoutInflater.from(context).inflate(layoutId, parent, false);
     }
 
@@ -57,17 +132,171 @@ public class ViewCache {
         }
     }
 
+    /**
+     * Releases cached views based on the memory pressure. Views beyond the observed usage are
+     * dropped when memory is running low, and everything is dropped when memory is critical.
+     */
+    @UiThread
+    public void onTrimMemory(int level) {
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // Not a memory pressure signal, the cache is most useful when coming back to the UI.
+            return;
+        }
+        for (int i = mCache.size() - 1; i >= 0; i--) {
+            CacheEntry entry = mCache.valueAt(i);
+            if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+                entry.trimTo(0);
+                entry.mWarmTarget = 0;
+            } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                entry.trimTo(entry.mWarmTarget);
+            }
+        }
+    }
+
+    @UiThread
+    private void scheduleInflation(int layoutId, CacheEntry entry) {
+        LayoutInflater inflater = entry.mInflater;
+        if (inflater == null) {
+            return;
+        }
+        int count = entry.mWarmTarget - entry.mCurrentSize - entry.mPendingInflations;
+        if (count <= 0) {
+            return;
+        }
+        ViewGroup parent = entry.mParent;
+        int generation = entry.mGeneration;
+        // Views of a layout are inflated by a single task, so that a few registered layouts do
+        // not fill the bounded inflation queue
+        try {
+            VIEW_INFLATION_EXECUTOR.execute(() -> {
+                for (int i = 0; i < count; i++) {
+                    View view = inflater.inflate(layoutId, parent, false);
+                    MAIN_EXECUTOR.execute(() -> onViewPreInflated(layoutId, generation, view));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Inflation queue is full, skipping pre-inflation of layout 0x"
+                    + Integer.toHexString(layoutId));
+            return;
+        }
+        entry.mPendingInflations += count;
+    }
+
+    /**
+     * Drops all the cached views and ignores the pending pre-inflations. To be called when the
+     * views inflated so far do not match the current DeviceProfile anymore. Layouts stay
+     * registered, and are pre-inflated again on the next {@link #prewarm} or request.
+     */
+    @UiThread
+    public void clear() {
+        for (int i = 0; i < mCache.size(); i++) {
+            mCache.valueAt(i).clear();
+        }
+    }
+
+    @UiThread
+    private void onViewPreInflated(int layoutId, int generation, View view) {
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry == null) {
+            return;
+        }
+        if (entry.mGeneration == generation) {
+            entry.mPendingInflations--;
+        }
+        if (entry.mGeneration == generation && entry.mCurrentSize < entry.mWarmTarget) {
+            entry.mPreInflatedCount++;
+            recycleView(layoutId, view);
+        }
+    }
+
+    /**
+     * Estimates the memory retained by the cached views
+     */
+    @UiThread
+    public void estimateSize(SizeEstimate estimate) {
+        for (int i = 0; i < mCache.size(); i++) {
+            estimate.addObjects(mCache.valueAt(i).mCurrentSize, VIEW_BYTES);
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ViewCache:");
+        for (int i = 0; i < mCache.size(); i++) {
+            CacheEntry entry = mCache.valueAt(i);
+            writer.println(prefix + "  layout=0x" + Integer.toHexString(mCache.keyAt(i))
+                    + " cached=" + entry.mCurrentSize
+                    + " max=" + entry.mMaxSize
+                    + " warmTarget=" + entry.mWarmTarget
+                    + " hits=" + entry.mHitCount
+                    + " misses=" + entry.mMissCount
+                    + " preInflated=" + entry.mPreInflatedCount);
+        }
+    }
+
     private static class CacheEntry {
 
-        final int mMaxSize;
-        final View[] mViews;
+        int mMaxSize;
+        View[] mViews;
 
         int mCurrentSize;
 
+        // Pre-inflation state, only set for layouts registered using prewarm
+        @Nullable LayoutInflater mInflater;
+        @Nullable ViewGroup mParent;
+        int mWarmTarget;
+        int mPendingInflations;
+        // Incremented when the entry is trimmed or cleared, to ignore inflations scheduled before
+        int mGeneration;
+
+        // Usage tracking
+        long mLastRequestTime;
+        int mBurstCount;
+
+        int mHitCount;
+        int mMissCount;
+        int mPreInflatedCount;
+
         public CacheEntry(int maxSize) {
             mMaxSize = maxSize;
             mViews = new View[maxSize];
             mCurrentSize = 0;
         }
+
+        void resize(int maxSize) {
+            View[] views = new View[maxSize];
+            mCurrentSize = Math.min(mCurrentSize, maxSize);
+            System.arraycopy(mViews, 0, views, 0, mCurrentSize);
+            mViews = views;
+            mMaxSize = maxSize;
+            mWarmTarget = Math.min(mWarmTarget, maxSize);
+        }
+
+        void trimTo(int size) {
+            if (mCurrentSize <= size) {
+                return;
+            }
+            for (int i = size; i < mCurrentSize; i++) {
+                mViews[i] = null;
+            }
+            mCurrentSize = size;
+            mPendingInflations = 0;
+            mGeneration++;
+        }
+
+        void clear() {
+            Arrays.fill(mViews, null);
+            mCurrentSize = 0;
+            mPendingInflations = 0;
+            mGeneration++;
+        }
+
+        void onViewRequested() {
+            long now = SystemClock.uptimeMillis();
+            mBurstCount = now - mLastRequestTime <= USAGE_BURST_WINDOW_MS ? mBurstCount + 1 : 1;
+            mLastRequestTime = now;
+            if (mInflater != null) {
+                mWarmTarget = Math.min(mMaxSize, Math.max(mWarmTarget, mBurstCount));
+            }
+        }
     }
 }
@@ -16,19 +16,31 @@
 
 package com.android.launcher3.util;
 
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
 import android.view.View;
 import android.view.View.OnAttachStateChangeListener;
 import android.view.ViewTreeObserver.OnDrawListener;
 
 import com.android.launcher3.Launcher;
+import com.android.launcher3.logging.FileLog;
 
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * An executor which runs all the tasks after the first onDraw is called on the target view.
+ *
+ * The tasks are run over multiple frames, within a time budget per frame, so that binding the
+ * pages which are not visible does not drop frames. As many tasks are run in a frame as can fit
+ * in the budget, based on the measured cost of the last task, so cheap tasks like icons are
+ * batched while expensive ones like widgets are spread out.
  */
 public class ViewOnDrawExecutor implements OnDrawListener, Runnable,
-        OnAttachStateChangeListener {
+        OnAttachStateChangeListener, FrameCallback {
+
+    private static final String TAG = "ViewOnDrawExecutor";
 
     private final RunnableList mTasks;
 
@@ -41,6 +53,18 @@ public class ViewOnDrawExecutor implements OnDrawListener, Runnable,
 
     private boolean mCancelled;
 
+    private long mFrameBudgetNanos;
+    private boolean mExecutingInFrames;
+    private long mLastTaskNanos;
+    private long mLastTaskStartNanos;
+    private long mFrameStartNanos;
+    private int mTasksInFrame;
+    private long mLastFrameTimeNanos;
+    private long mStartTimeMs;
+    private int mTaskCount;
+    private int mFrameCount;
+    private int mDroppedFrameCount;
+
     public ViewOnDrawExecutor(RunnableList tasks) {
         mTasks = tasks;
     }
@@ -48,6 +72,9 @@ public class ViewOnDrawExecutor implements OnDrawListener, Runnable,
     public void attachTo(Launcher launcher) {
         mOnClearCallback = launcher::clearPendingExecutor;
         mAttachedView = launcher.getWorkspace();
+        // Leave the rest of the frame for input, animation, layout and draw
+        mFrameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(
+                DisplayController.getSingleFrameMs(launcher)) / 2;
         mAttachedView.addOnAttachStateChangeListener(this);
 
         if (mAttachedView.isAttachedToWindow()) {
@@ -84,10 +111,61 @@ public class ViewOnDrawExecutor implements OnDrawListener, Runnable,
 
     @Override
     public void run() {
-        // Post the pending tasks after both onDraw and onLoadAnimationCompleted have been called.
-        if (mLoadAnimationCompleted && mFirstDrawCompleted && !mCompleted) {
+        // Run the pending tasks after both onDraw and onLoadAnimationCompleted have been called.
+        if (mLoadAnimationCompleted && mFirstDrawCompleted && !mCompleted
+                && !mExecutingInFrames) {
+            mExecutingInFrames = true;
+            mStartTimeMs = SystemClock.uptimeMillis();
+            mAttachedView.getViewTreeObserver().removeOnDrawListener(this);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (mCompleted) {
+            return;
+        }
+        long frameIntervalNanos = mFrameBudgetNanos * 2;
+        if (mLastFrameTimeNanos > 0 && frameIntervalNanos > 0) {
+            long frames = (frameTimeNanos - mLastFrameTimeNanos) / frameIntervalNanos;
+            if (frames > 1) {
+                mDroppedFrameCount += frames - 1;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mFrameCount++;
+
+        mFrameStartNanos = System.nanoTime();
+        mTasksInFrame = 0;
+        boolean done = mTasks.executeWhile(this::canExecuteNextTask);
+        if (mCompleted) {
+            // Cancelled by one of the tasks
+            return;
+        }
+        if (done) {
             markCompleted();
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private boolean canExecuteNextTask() {
+        if (mCompleted) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (mTasksInFrame > 0) {
+            mLastTaskNanos = now - mLastTaskStartNanos;
         }
+        // Always run at least one task per frame, then as many as are expected to fit
+        if (mTasksInFrame > 0 && now - mFrameStartNanos + mLastTaskNanos > mFrameBudgetNanos) {
+            return false;
+        }
+        mLastTaskStartNanos = now;
+        mTasksInFrame++;
+        mTaskCount++;
+        return true;
     }
 
     /**
@@ -98,6 +176,14 @@ public class ViewOnDrawExecutor implements OnDrawListener, Runnable,
             mTasks.executeAllAndDestroy();
         }
         mCompleted = true;
+        Choreographer.getInstance().removeFrameCallback(this);
+        if (mExecutingInFrames) {
+            FileLog.d(TAG, "Pending tasks " + (mCancelled ? "cancelled" : "completed")
+                    + ": tasks=" + mTaskCount
+                    + " frames=" + mFrameCount
+                    + " droppedFrames=" + mDroppedFrameCount
+                    + " durationMs=" + (SystemClock.uptimeMillis() - mStartTimeMs));
+        }
         if (mAttachedView != null) {
             mAttachedView.getViewTreeObserver().removeOnDrawListener(this);
             mAttachedView.removeOnAttachStateChangeListener(this);
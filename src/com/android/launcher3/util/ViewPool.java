@@ -15,8 +15,12 @@
  */
 package com.android.launcher3.util;
 
+import static com.android.launcher3.util.Executors.VIEW_INFLATION_EXECUTOR;
+import static com.android.launcher3.util.MemoryAccounting.VIEW_BYTES;
+
 import android.content.Context;
 import android.os.Handler;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -25,14 +29,19 @@ import androidx.annotation.AnyThread;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
 import com.android.launcher3.util.ViewPool.Reusable;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Utility class to maintain a pool of reusable views.
  * During initialization, views are inflated on the background thread.
  */
 public class ViewPool<T extends View & Reusable> {
 
+    private static final String TAG = "ViewPool";
+
     private final Object[] mPool;
 
     private final LayoutInflater mInflater;
@@ -62,14 +71,20 @@ public class ViewPool<T extends View & Reusable> {
         // Create a different copy to use on the background thread.
         LayoutInflater inflater = mInflater.cloneInContext(mInflater.getContext());
 
-        // Inflate views on a non looper thread. This allows us to catch errors like calling
-        // "new Handler()" in constructor easily.
-        new Thread(() -> {
-            for (int i = 0; i < initialSize; i++) {
-                T view = inflateNewView(inflater);
-                handler.post(() -> addToPool(view));
-            }
-        }, "ViewPool-init").start();
+        // Inflate views on the shared non looper inflation thread. This allows us to catch errors
+        // like calling "new Handler()" in constructor easily.
+        try {
+            VIEW_INFLATION_EXECUTOR.execute(() -> {
+                for (int i = 0; i < initialSize; i++) {
+                    T view = inflateNewView(inflater);
+                    handler.post(() -> addToPool(view));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Views will be inflated on demand instead
+            Log.w(TAG, "Inflation queue is full, skipping pre-inflation of layout 0x"
+                    + Integer.toHexString(mLayoutId));
+        }
     }
 
     @UiThread
@@ -101,6 +116,14 @@ public class ViewPool<T extends View & Reusable> {
         return inflateNewView(mInflater);
     }
 
+    /**
+     * Estimates the memory retained by the pooled views
+     */
+    @UiThread
+    public void estimateSize(SizeEstimate estimate) {
+        estimate.addObjects(mCurrentSize, VIEW_BYTES);
+    }
+
     @AnyThread
     private T inflateNewView(LayoutInflater inflater) {
         return (T) inflater.inflate(mLayoutId, mParent, false);
@@ -16,6 +16,7 @@
 package com.android.launcher3.widget;
 
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 
 import android.content.Context;
 import android.content.res.Resources;
@@ -29,8 +30,6 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
-import android.os.Handler;
 import android.os.Process;
 import android.os.UserHandle;
 import android.util.ArrayMap;
@@ -38,6 +37,9 @@ import android.util.Log;
 import android.util.Size;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.LauncherAppState;
@@ -47,14 +49,12 @@ import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.icons.FastBitmapDrawable;
 import com.android.launcher3.icons.LauncherIcons;
 import com.android.launcher3.icons.ShadowGenerator;
-import com.android.launcher3.icons.cache.HandlerRunnable;
 import com.android.launcher3.model.WidgetItem;
-import com.android.launcher3.pm.ShortcutConfigActivityInfo;
-import com.android.launcher3.util.Executors;
 import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.WidgetPreviewCache.CachedPreview;
+import com.android.launcher3.widget.WidgetPreviewCache.PreviewKey;
 import com.android.launcher3.widget.util.WidgetSizes;
 
-import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 /** Utility class to load widget previews */
@@ -64,6 +64,8 @@ public class DatabaseWidgetPreviewLoader {
 
     private final Context mContext;
     private final float mPreviewBoxCornerRadius;
+    private final WidgetPreviewCache mPreviewCache;
+    private final PreviewRenderScheduler mRenderScheduler;
 
     private final UserHandle mMyUser = Process.myUserHandle();
     private final ArrayMap<UserHandle, Bitmap> mUserBadges = new ArrayMap<>();
@@ -74,38 +76,129 @@ public class DatabaseWidgetPreviewLoader {
         mPreviewBoxCornerRadius = previewCornerRadius > 0
                 ? previewCornerRadius
                 : mContext.getResources().getDimension(R.dimen.widget_preview_corner_radius);
+        mPreviewCache = WidgetPreviewCache.INSTANCE.get(context);
+        mRenderScheduler = PreviewRenderScheduler.INSTANCE.get(context);
     }
 
     /**
-     * Generates the widget preview on {@link AsyncTask#THREAD_POOL_EXECUTOR}. Must be
-     * called on UI thread.
+     * Returns the preview of the item from the memory cache, or null if it needs to be loaded
+     * using {@link #loadPreview}.
+     */
+    @Nullable
+    public Bitmap getCachedPreview(@NonNull WidgetItem item, @NonNull Size previewSize) {
+        CachedPreview preview = mPreviewCache.getFromMemory(getPreviewKey(item, previewSize));
+        return preview == null ? null : preview.bitmap;
+    }
+
+    /**
+     * Loads the widget preview from the preview cache, or generates it using the
+     * {@link PreviewRenderScheduler}. Must be called on UI thread.
      *
-     * @return a request id which can be used to cancel the request.
+     * @return a request which can be used to cancel the load.
      */
     @NonNull
-    public HandlerRunnable loadPreview(
+    public PreviewRenderScheduler.Request loadPreview(
             @NonNull WidgetItem item,
             @NonNull Size previewSize,
             @NonNull Consumer<Bitmap> callback) {
-        Handler handler = Executors.UI_HELPER_EXECUTOR.getHandler();
-        HandlerRunnable<Bitmap> request = new HandlerRunnable<>(handler,
-                () -> generatePreview(item, previewSize.getWidth(), previewSize.getHeight()),
-                MAIN_EXECUTOR,
+        PreviewKey key = getPreviewKey(item, previewSize);
+        return mRenderScheduler.submit(key,
+                onComplete -> {
+                    CachedPreview preview = mPreviewCache.get(key);
+                    if (preview != null) {
+                        onComplete.accept(preview.bitmap);
+                        return;
+                    }
+                    // The drawables are mutated on the main thread, without blocking the worker
+                    PreviewDrawables drawables = loadDrawables(item);
+                    MAIN_EXECUTOR.execute(() -> {
+                        try {
+                            drawables.mutate();
+                        } catch (RuntimeException e) {
+                            Log.e(TAG, "Error preparing preview for " + key, e);
+                            onComplete.accept(null);
+                            return;
+                        }
+                        THREAD_POOL_EXECUTOR.execute(() -> {
+                            Bitmap bitmap = null;
+                            try {
+                                bitmap = generatePreview(key, item, drawables,
+                                        previewSize.getWidth(), previewSize.getHeight()).bitmap;
+                            } catch (RuntimeException e) {
+                                Log.e(TAG, "Error generating preview for " + key, e);
+                            }
+                            onComplete.accept(bitmap);
+                        });
+                    });
+                },
                 callback);
-        Utilities.postAsyncCallback(handler, request);
-        return request;
+    }
+
+    private PreviewKey getPreviewKey(WidgetItem item, Size previewSize) {
+        return mPreviewCache.getKey(item.componentName, item.user,
+                previewSize.getWidth() + "x" + previewSize.getHeight());
+    }
+
+    /**
+     * Loads the drawables drawn in the preview of a widget or a shortcut
+     */
+    @WorkerThread
+    private PreviewDrawables loadDrawables(WidgetItem item) {
+        PreviewDrawables drawables = new PreviewDrawables();
+        if (item.widgetInfo != null) {
+            drawables.preview = loadWidgetPreviewImage(item.widgetInfo);
+            if (drawables.preview == null) {
+                drawables.icon = loadWidgetIcon(item.widgetInfo);
+            }
+        } else {
+            drawables.icon = item.activityInfo.getFullResIcon(
+                    LauncherAppState.getInstance(mContext).getIconCache());
+        }
+        return drawables;
     }
 
     /**
-     * Returns a generated preview for a widget and if the preview should be saved in persistent
-     * storage.
+     * Generates the preview for a widget or a shortcut and adds it to the preview cache.
+     *
+     * @param drawables the drawables of the preview, already mutated on the main thread
      */
-    private Bitmap generatePreview(WidgetItem item, int previewWidth, int previewHeight) {
+    @WorkerThread
+    private CachedPreview generatePreview(PreviewKey key, WidgetItem item,
+            PreviewDrawables drawables, int previewWidth, int previewHeight) {
+        Bitmap bitmap;
+        int sourceWidth;
         if (item.widgetInfo != null) {
-            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            int[] preScaledWidthOut = new int[1];
+            bitmap = generateWidgetPreview(
+                    item.widgetInfo, drawables, previewWidth, preScaledWidthOut);
+            sourceWidth = preScaledWidthOut[0];
         } else {
-            return generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
+            bitmap = generateShortcutPreview(drawables.icon, previewWidth, previewHeight);
+            sourceWidth = bitmap.getWidth();
+        }
+        return mPreviewCache.put(key, bitmap, sourceWidth);
+    }
+
+    /**
+     * Same as {@link #generateWidgetPreview} but uses the memory preview cache. Does not access
+     * the disk on the calling thread: on a miss the preview is generated directly, and persisted
+     * in the background.
+     */
+    @UiThread
+    public Bitmap getWidgetPreview(LauncherAppWidgetProviderInfo info,
+            int maxPreviewWidth, int[] preScaledWidthOut) {
+        PreviewKey key = mPreviewCache.getKey(info.provider, info.getProfile(),
+                "maxWidth" + maxPreviewWidth);
+        CachedPreview preview = mPreviewCache.getFromMemory(key);
+        if (preview == null) {
+            int[] sourceWidthOut = new int[1];
+            Bitmap bitmap = generateWidgetPreview(info, maxPreviewWidth, sourceWidthOut);
+            preview = mPreviewCache.putAsync(key, bitmap, sourceWidthOut[0]);
+        }
+        if (preScaledWidthOut != null) {
+            preScaledWidthOut[0] = preview.sourceWidth;
         }
+        return preview.bitmap;
     }
 
     /**
@@ -162,31 +255,56 @@ public class DatabaseWidgetPreviewLoader {
      * @param maxPreviewWidth             width of the preview on either workspace or tray
      * @param preScaledWidthOut           return the width of the returned bitmap
      */
+    @UiThread
     public Bitmap generateWidgetPreview(LauncherAppWidgetProviderInfo info,
             int maxPreviewWidth, int[] preScaledWidthOut) {
-        // Load the preview image if possible
-        if (maxPreviewWidth < 0) maxPreviewWidth = Integer.MAX_VALUE;
+        PreviewDrawables drawables = new PreviewDrawables();
+        drawables.preview = loadWidgetPreviewImage(info);
+        if (drawables.preview == null) {
+            drawables.icon = loadWidgetIcon(info);
+        }
+        drawables.mutate();
+        return generateWidgetPreview(info, drawables, maxPreviewWidth, preScaledWidthOut);
+    }
 
-        Drawable drawable = null;
-        if (info.previewImage != 0) {
-            try {
-                drawable = info.loadPreviewImage(mContext, 0);
-            } catch (OutOfMemoryError e) {
-                Log.w(TAG, "Error loading widget preview for: " + info.provider, e);
-                // During OutOfMemoryError, the previous heap stack is not affected. Catching
-                // an OOM error here should be safe & not affect other parts of launcher.
-                drawable = null;
-            }
-            if (drawable != null) {
-                drawable = mutateOnMainThread(drawable);
-            } else {
-                Log.w(TAG, "Can't load widget preview drawable 0x"
-                        + Integer.toHexString(info.previewImage)
-                        + " for provider: "
-                        + info.provider);
-            }
+    @Nullable
+    private Drawable loadWidgetPreviewImage(LauncherAppWidgetProviderInfo info) {
+        if (info.previewImage == 0) {
+            return null;
+        }
+        Drawable drawable;
+        try {
+            drawable = info.loadPreviewImage(mContext, 0);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Error loading widget preview for: " + info.provider, e);
+            // During OutOfMemoryError, the previous heap stack is not affected. Catching
+            // an OOM error here should be safe & not affect other parts of launcher.
+            drawable = null;
+        }
+        if (drawable == null) {
+            Log.w(TAG, "Can't load widget preview drawable 0x"
+                    + Integer.toHexString(info.previewImage)
+                    + " for provider: "
+                    + info.provider);
+        }
+        return drawable;
+    }
+
+    @Nullable
+    private Drawable loadWidgetIcon(LauncherAppWidgetProviderInfo info) {
+        try {
+            return LauncherAppState.getInstance(mContext).getIconCache()
+                    .getFullResIcon(info.provider.getPackageName(), info.icon);
+        } catch (Resources.NotFoundException e) {
+            return null;
         }
+    }
+
+    private Bitmap generateWidgetPreview(LauncherAppWidgetProviderInfo info,
+            PreviewDrawables drawables, int maxPreviewWidth, int[] preScaledWidthOut) {
+        if (maxPreviewWidth < 0) maxPreviewWidth = Integer.MAX_VALUE;
 
+        Drawable drawable = drawables.preview;
         final boolean widgetPreviewExists = (drawable != null);
         final int spanX = info.spanX;
         final int spanY = info.spanY;
@@ -267,21 +385,16 @@ public class DatabaseWidgetPreviewLoader {
                 }
 
                 // Draw icon in the center.
-                try {
-                    Drawable icon = LauncherAppState.getInstance(mContext).getIconCache()
-                            .getFullResIcon(info.provider.getPackageName(), info.icon);
-                    if (icon != null) {
-                        int appIconSize = dp.iconSizePx;
-                        int iconSize = (int) Math.min(appIconSize * scale,
-                                Math.min(boxRect.width(), boxRect.height()));
-
-                        icon = mutateOnMainThread(icon);
-                        int hoffset = (previewWidthF - iconSize) / 2;
-                        int yoffset = (previewHeightF - iconSize) / 2;
-                        icon.setBounds(hoffset, yoffset, hoffset + iconSize, yoffset + iconSize);
-                        icon.draw(c);
-                    }
-                } catch (Resources.NotFoundException e) {
+                Drawable icon = drawables.icon;
+                if (icon != null) {
+                    int appIconSize = dp.iconSizePx;
+                    int iconSize = (int) Math.min(appIconSize * scale,
+                            Math.min(boxRect.width(), boxRect.height()));
+
+                    int hoffset = (previewWidthF - iconSize) / 2;
+                    int yoffset = (previewHeightF - iconSize) / 2;
+                    icon.setBounds(hoffset, yoffset, hoffset + iconSize, yoffset + iconSize);
+                    icon.draw(c);
                 }
             }
         });
@@ -302,8 +415,7 @@ public class DatabaseWidgetPreviewLoader {
         return builder.bounds;
     }
 
-    private Bitmap generateShortcutPreview(
-            ShortcutConfigActivityInfo info, int maxWidth, int maxHeight) {
+    private Bitmap generateShortcutPreview(Drawable fullResIcon, int maxWidth, int maxHeight) {
         int iconSize = ActivityContext.lookupContext(mContext).getDeviceProfile().allAppsIconSizePx;
         int padding = mContext.getResources()
                 .getDimensionPixelSize(R.dimen.widget_preview_shortcut_padding);
@@ -317,9 +429,7 @@ public class DatabaseWidgetPreviewLoader {
 
             LauncherIcons li = LauncherIcons.obtain(mContext);
             Drawable icon = li.createBadgedIconBitmap(
-                    mutateOnMainThread(info.getFullResIcon(
-                            LauncherAppState.getInstance(mContext).getIconCache())),
-                    Process.myUserHandle(), 0).newIcon(mContext);
+                    fullResIcon, Process.myUserHandle(), 0).newIcon(mContext);
             li.recycle();
 
             icon.setBounds(padding, padding, padding + iconSize, padding + iconSize);
@@ -327,14 +437,22 @@ public class DatabaseWidgetPreviewLoader {
         });
     }
 
-    private Drawable mutateOnMainThread(final Drawable drawable) {
-        try {
-            return MAIN_EXECUTOR.submit(drawable::mutate).get();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
+    /**
+     * Drawables drawn into a preview. Their constant state can be shared with drawables used on
+     * the main thread, so they are mutated there before being drawn in the background.
+     */
+    private static class PreviewDrawables {
+        @Nullable Drawable preview;
+        @Nullable Drawable icon;
+
+        @UiThread
+        void mutate() {
+            if (preview != null) {
+                preview = preview.mutate();
+            }
+            if (icon != null) {
+                icon = icon.mutate();
+            }
         }
     }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Schedules the rendering of widget previews on a small pool of background threads.
+ *
+ * Pending renders are processed in LIFO order, so that the rows most recently bound, which are
+ * the ones visible after a fast scroll, are rendered before the rows which already scrolled
+ * away. Requests for the same preview share a single render, and renders which no longer have
+ * any request are dropped before they start.
+ *
+ * A render can hop to other threads before it completes, for example to prepare drawables on the
+ * main thread. It keeps its slot of the pool until it completes, but does not hold a worker
+ * thread meanwhile.
+ */
+public class PreviewRenderScheduler {
+
+    private static final String TAG = "PreviewRenderScheduler";
+
+    public static final MainThreadInitializedObject<PreviewRenderScheduler> INSTANCE =
+            new MainThreadInitializedObject<>(c -> new PreviewRenderScheduler(
+                    THREAD_POOL_EXECUTOR, MAIN_EXECUTOR, getDefaultParallelism()));
+
+    private final Executor mWorkerExecutor;
+    private final Executor mCallbackExecutor;
+    private final int mMaxParallelRenders;
+
+    // Pending renders, most recent first. Guarded by itself.
+    private final ArrayDeque<RenderTask> mQueue = new ArrayDeque<>();
+    // Number of renders in progress, each of them picks the next pending render when it
+    // completes. Guarded by mQueue.
+    private int mActiveRenders;
+
+    // Pending and running renders by key, only accessed on the callback thread.
+    private final HashMap<Object, RenderTask> mTasks = new HashMap<>();
+
+    // Metrics, only accessed on the callback thread
+    private int mRequestCount;
+    private int mDedupedCount;
+    private int mCancelledCount;
+    private int mRenderCount;
+    private int mFailedCount;
+    private int mMaxQueueDepth;
+    // Start of the current burst of requests, or 0 if the first preview was already delivered
+    private long mBurstStartTime;
+    private long mLastTimeToFirstPreview = -1;
+
+    @VisibleForTesting
+    PreviewRenderScheduler(Executor workerExecutor, Executor callbackExecutor,
+            int maxParallelRenders) {
+        mWorkerExecutor = workerExecutor;
+        mCallbackExecutor = callbackExecutor;
+        mMaxParallelRenders = maxParallelRenders;
+    }
+
+    private static int getDefaultParallelism() {
+        // Leave some room for the UI threads, drawing previews is CPU bound
+        return Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Same as {@link #submit(Object, Renderer, Consumer)} for a render which completes on the
+     * worker thread.
+     */
+    @UiThread
+    @NonNull
+    public Request submit(@NonNull Object key, @NonNull Supplier<Bitmap> renderer,
+            @NonNull Consumer<Bitmap> callback) {
+        return submit(key, onComplete -> onComplete.accept(renderer.get()), callback);
+    }
+
+    /**
+     * Schedules {@code renderer} to be started on a background thread, ahead of any previously
+     * scheduled renders. If a render with the same key is already pending or running, its result
+     * is shared instead.
+     *
+     * @param callback called on the callback thread with the result, or with null if the render
+     *                 failed, unless the request is cancelled
+     */
+    @UiThread
+    @NonNull
+    public Request submit(@NonNull Object key, @NonNull Renderer renderer,
+            @NonNull Consumer<Bitmap> callback) {
+        if (mTasks.isEmpty()) {
+            mBurstStartTime = SystemClock.uptimeMillis();
+        }
+        mRequestCount++;
+
+        RenderTask task = mTasks.get(key);
+        if (task == null) {
+            task = new RenderTask(key, renderer);
+            mTasks.put(key, task);
+        } else {
+            mDedupedCount++;
+        }
+        Request request = new Request(task, callback);
+        task.requests.add(request);
+
+        synchronized (mQueue) {
+            if (!task.started) {
+                // Move the task to the front of the queue
+                mQueue.remove(task);
+                mQueue.addFirst(task);
+                mMaxQueueDepth = Math.max(mMaxQueueDepth, mQueue.size());
+            }
+            if (mActiveRenders < mMaxParallelRenders && !mQueue.isEmpty()) {
+                mActiveRenders++;
+                mWorkerExecutor.execute(this::startNextRender);
+            }
+        }
+        return request;
+    }
+
+    private void startNextRender() {
+        RenderTask task;
+        synchronized (mQueue) {
+            task = mQueue.pollFirst();
+            if (task == null) {
+                mActiveRenders--;
+                return;
+            }
+            task.started = true;
+        }
+        AtomicBoolean completed = new AtomicBoolean();
+        Consumer<Bitmap> onComplete = bitmap -> {
+            if (!completed.compareAndSet(false, true)) {
+                Log.w(TAG, "Render completed twice for " + task.key);
+                return;
+            }
+            mCallbackExecutor.execute(() -> onRenderComplete(task, bitmap));
+            mWorkerExecutor.execute(this::startNextRender);
+        };
+        try {
+            task.renderer.render(onComplete);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error rendering preview for " + task.key, e);
+            onComplete.accept(null);
+        }
+    }
+
+    @UiThread
+    private void onRenderComplete(RenderTask task, @Nullable Bitmap bitmap) {
+        if (mTasks.get(task.key) == task) {
+            mTasks.remove(task.key);
+        }
+        mRenderCount++;
+        if (bitmap == null) {
+            mFailedCount++;
+        }
+        if (task.requests.isEmpty()) {
+            return;
+        }
+        if (bitmap != null && mBurstStartTime != 0) {
+            mLastTimeToFirstPreview = SystemClock.uptimeMillis() - mBurstStartTime;
+            mBurstStartTime = 0;
+        }
+        ArrayList<Request> requests = new ArrayList<>(task.requests);
+        task.requests.clear();
+        for (Request request : requests) {
+            request.mCallback.accept(bitmap);
+        }
+    }
+
+    @UiThread
+    private void cancel(Request request) {
+        RenderTask task = request.mTask;
+        if (!task.requests.remove(request)) {
+            // Already delivered or cancelled
+            return;
+        }
+        mCancelledCount++;
+        if (!task.requests.isEmpty()) {
+            return;
+        }
+        boolean removed;
+        synchronized (mQueue) {
+            removed = !task.started && mQueue.remove(task);
+        }
+        // Running renders are kept, so that their result can still be shared
+        if (removed) {
+            mTasks.remove(task.key);
+        }
+    }
+
+    /**
+     * Returns the number of renders waiting for a worker
+     */
+    public int getQueueDepth() {
+        synchronized (mQueue) {
+            return mQueue.size();
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "PreviewRenderScheduler:");
+        writer.println(prefix + "  queueDepth=" + getQueueDepth()
+                + " maxQueueDepth=" + mMaxQueueDepth
+                + " maxParallelRenders=" + mMaxParallelRenders);
+        writer.println(prefix + "  requests=" + mRequestCount
+                + " deduped=" + mDedupedCount
+                + " cancelled=" + mCancelledCount
+                + " rendered=" + mRenderCount
+                + " failed=" + mFailedCount
+                + " lastTimeToFirstPreviewMs=" + mLastTimeToFirstPreview);
+    }
+
+    /**
+     * Renders a preview, possibly in several steps on different threads
+     */
+    public interface Renderer {
+
+        /**
+         * Starts the render on a worker thread. {@code onComplete} must be called once, on any
+         * thread, with the preview or with null if it could not be rendered.
+         */
+        void render(@NonNull Consumer<Bitmap> onComplete);
+    }
+
+    /**
+     * A request for a preview, which can be cancelled until the callback is called.
+     */
+    public final class Request {
+
+        private final RenderTask mTask;
+        private final Consumer<Bitmap> mCallback;
+
+        private Request(RenderTask task, Consumer<Bitmap> callback) {
+            mTask = task;
+            mCallback = callback;
+        }
+
+        /**
+         * Cancels the request. The render is skipped if no other request needs it.
+         */
+        @UiThread
+        public void cancel() {
+            PreviewRenderScheduler.this.cancel(this);
+        }
+    }
+
+    private static class RenderTask {
+
+        final Object key;
+        final Renderer renderer;
+        // Requests waiting for the result, only accessed on the callback thread
+        final ArrayList<Request> requests = new ArrayList<>(1);
+        // Set when a worker picks the task, guarded by the queue
+        boolean started;
+
+        RenderTask(Object key, Renderer renderer) {
+            this.key = key;
+            this.renderer = renderer;
+        }
+    }
+}
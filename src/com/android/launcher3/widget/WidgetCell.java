@@ -51,7 +51,6 @@ import com.android.launcher3.R;
 import com.android.launcher3.icons.BaseIconFactory;
 import com.android.launcher3.icons.FastBitmapDrawable;
 import com.android.launcher3.icons.RoundDrawableWrapper;
-import com.android.launcher3.icons.cache.HandlerRunnable;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.util.WidgetSizes;
@@ -122,7 +121,7 @@ public class WidgetCell extends LinearLayout {
 
     private final DatabaseWidgetPreviewLoader mWidgetPreviewLoader;
 
-    protected HandlerRunnable mActiveRequest;
+    protected PreviewRenderScheduler.Request mActiveRequest;
     private boolean mAnimatePreview = true;
 
     protected final ActivityContext mActivity;
@@ -430,8 +429,20 @@ public class WidgetCell extends LinearLayout {
         if (mActiveRequest != null) {
             return;
         }
-        mActiveRequest = mWidgetPreviewLoader.loadPreview(
-                mItem, new Size(mTargetPreviewWidth, mTargetPreviewHeight), callback);
+        Size previewSize = new Size(mTargetPreviewWidth, mTargetPreviewHeight);
+        // Previews shown recently, in any surface, can be applied without a load
+        Bitmap sharedPreview = mWidgetPreviewLoader.getCachedPreview(mItem, previewSize);
+        if (sharedPreview != null) {
+            applyPreview(sharedPreview);
+            return;
+        }
+        mActiveRequest = mWidgetPreviewLoader.loadPreview(mItem, previewSize, bitmap -> {
+            // Clear the request even if the render failed, so that the next bind retries
+            mActiveRequest = null;
+            if (bitmap != null) {
+                callback.accept(bitmap);
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+import static com.android.launcher3.util.MemoryAccounting.CACHE_ENTRY_BYTES;
+
+import android.content.ComponentCallbacks2;
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.Configuration;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.Utilities;
+import com.android.launcher3.icons.GraphicsUtils;
+import com.android.launcher3.icons.cache.SQLiteCacheHelper;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.MemoryAccounting;
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
+import com.android.launcher3.util.PackageManagerHelper;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two level cache of generated widget and shortcut previews, shared by all the surfaces showing
+ * previews.
+ *
+ * Recently used previews are kept in a size bounded memory cache, and all the generated previews
+ * are persisted in {@link LauncherFiles#WIDGET_PREVIEWS_DB}, keyed by the provider, the user and
+ * the preview size. Persisted previews are only used if the version of the provider package and
+ * the system state affecting their rendering (locale, theme, colors, grid and icon state) did not
+ * change since they were generated.
+ */
+public class WidgetPreviewCache implements ComponentCallbacks2 {
+
+    private static final String TAG = "WidgetPreviewCache";
+
+    public static final MainThreadInitializedObject<WidgetPreviewCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewCache::new);
+
+    private static final int MEMORY_CACHE_SIZE_BYTES = 16 * 1024 * 1024;
+
+    private final Context mContext;
+    private final CacheDb mDb;
+    private final LruCache<PreviewKey, CachedPreview> mMemoryCache;
+
+    // Package version info for each user, as {versionCode, lastUpdateTime}
+    private final Map<PackageUserKey, long[]> mPackageVersions = new HashMap<>();
+
+    private final AtomicInteger mMemoryHitCount = new AtomicInteger();
+    private final AtomicInteger mDiskHitCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+
+    // Computed lazily, and reset when any of its components changes
+    @Nullable
+    private volatile String mSystemState;
+
+    private WidgetPreviewCache(Context context) {
+        mContext = context;
+        mDb = new CacheDb(context);
+        mMemoryCache = new LruCache<PreviewKey, CachedPreview>(MEMORY_CACHE_SIZE_BYTES) {
+            @Override
+            protected int sizeOf(PreviewKey key, CachedPreview value) {
+                return value.bitmap.getAllocationByteCount();
+            }
+        };
+        context.registerComponentCallbacks(this);
+        InvariantDeviceProfile.INSTANCE.get(context).addOnChangeListener(
+                (modelPropertiesChanged, taskbarChanged) -> onSystemStateChanged());
+        MemoryAccounting.INSTANCE.register("widgetPreviews", this::estimateSize);
+    }
+
+    /**
+     * Returns the key for the preview of the provider.
+     *
+     * @param size description of the size constraints used to generate the preview
+     */
+    public PreviewKey getKey(@NonNull ComponentName provider, @NonNull UserHandle user,
+            @NonNull String size) {
+        return new PreviewKey(provider, user, size, getSystemState());
+    }
+
+    /**
+     * Drops the previews generated for the previous system state, to be called when a component
+     * of the system state which is not observed by this cache changes (eg, the icon state).
+     */
+    public void onSystemStateChanged() {
+        mSystemState = null;
+        mMemoryCache.evictAll();
+    }
+
+    private String getSystemState() {
+        String systemState = mSystemState;
+        if (systemState == null) {
+            systemState = computeSystemState();
+            mSystemState = systemState;
+        }
+        return systemState;
+    }
+
+    private String computeSystemState() {
+        // Previews can use localized, night mode and density specific resources, are sized based
+        // on the grid, and shortcut previews include the app icon
+        Configuration config = mContext.getResources().getConfiguration();
+        InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(mContext);
+        StringBuilder state = new StringBuilder()
+                .append(config.getLocales().toLanguageTags())
+                .append(',').append(config.uiMode & Configuration.UI_MODE_NIGHT_MASK)
+                .append(',').append(config.densityDpi)
+                .append(',').append(idp.numColumns).append('x').append(idp.numRows)
+                .append(',').append(LauncherAppState.getInstance(mContext).getIconProvider()
+                        .getSystemIconState());
+        if (Utilities.ATLEAST_S) {
+            // Previews can use the dynamic colors
+            state.append(',').append(mContext.getColor(android.R.color.system_accent1_500))
+                    .append(',').append(mContext.getColor(android.R.color.system_neutral1_500));
+        }
+        return state.toString();
+    }
+
+    /**
+     * Returns the preview from the memory cache, or null. Safe to call on the UI thread.
+     */
+    @Nullable
+    public CachedPreview getFromMemory(@NonNull PreviewKey key) {
+        CachedPreview preview = mMemoryCache.get(key);
+        if (preview != null) {
+            mMemoryHitCount.incrementAndGet();
+        }
+        return preview;
+    }
+
+    /**
+     * Returns the preview from the memory or the disk cache, or null.
+     */
+    @WorkerThread
+    @Nullable
+    public CachedPreview get(@NonNull PreviewKey key) {
+        CachedPreview preview = mMemoryCache.get(key);
+        if (preview != null) {
+            mMemoryHitCount.incrementAndGet();
+            return preview;
+        }
+        preview = readFromDb(key);
+        if (preview != null) {
+            mDiskHitCount.incrementAndGet();
+            mMemoryCache.put(key, preview);
+        } else {
+            mMissCount.incrementAndGet();
+        }
+        return preview;
+    }
+
+    /**
+     * Adds a newly generated preview to the cache.
+     *
+     * @param sourceWidth width of the preview before it was scaled down to fit the requested size
+     */
+    @WorkerThread
+    public CachedPreview put(@NonNull PreviewKey key, @NonNull Bitmap bitmap, int sourceWidth) {
+        CachedPreview preview = new CachedPreview(bitmap, sourceWidth);
+        mMemoryCache.put(key, preview);
+        writeToDb(key, preview);
+        return preview;
+    }
+
+    /**
+     * Same as {@link #put}, but persists the preview in the background. Safe to call on the UI
+     * thread.
+     */
+    public CachedPreview putAsync(@NonNull PreviewKey key, @NonNull Bitmap bitmap,
+            int sourceWidth) {
+        CachedPreview preview = new CachedPreview(bitmap, sourceWidth);
+        mMemoryCache.put(key, preview);
+        UI_HELPER_EXECUTOR.execute(() -> writeToDb(key, preview));
+        return preview;
+    }
+
+    /**
+     * Removes all the previews for the package, to be called when the package is updated or
+     * removed.
+     */
+    @WorkerThread
+    public void invalidatePackage(String packageName, UserHandle user) {
+        synchronized (mPackageVersions) {
+            mPackageVersions.remove(new PackageUserKey(packageName, user));
+        }
+        for (PreviewKey key : mMemoryCache.snapshot().keySet()) {
+            if (key.user.equals(user) && key.componentName.getPackageName().equals(packageName)) {
+                mMemoryCache.remove(key);
+            }
+        }
+        try {
+            mDb.delete(CacheDb.COLUMN_PACKAGE + " = ? AND " + CacheDb.COLUMN_USER + " = ?",
+                    new String[] {packageName, Long.toString(getUserSerial(user))});
+        } catch (SQLException e) {
+            Log.e(TAG, "Unable to delete previews for " + packageName, e);
+        }
+    }
+
+    @Nullable
+    private CachedPreview readFromDb(PreviewKey key) {
+        long[] versions = getPackageVersion(key.componentName.getPackageName(), key.user);
+        if (versions == null) {
+            return null;
+        }
+        try (Cursor cursor = mDb.query(
+                new String[] {CacheDb.COLUMN_PREVIEW_BITMAP, CacheDb.COLUMN_SOURCE_WIDTH},
+                CacheDb.COLUMN_COMPONENT + " = ? AND " + CacheDb.COLUMN_USER + " = ? AND "
+                        + CacheDb.COLUMN_SIZE + " = ? AND " + CacheDb.COLUMN_VERSION + " = ? AND "
+                        + CacheDb.COLUMN_LAST_UPDATED + " = ? AND "
+                        + CacheDb.COLUMN_SYSTEM_STATE + " = ?",
+                new String[] {
+                        key.componentName.flattenToShortString(),
+                        Long.toString(getUserSerial(key.user)),
+                        key.size,
+                        Long.toString(versions[0]),
+                        Long.toString(versions[1]),
+                        key.systemState})) {
+            if (cursor.moveToNext()) {
+                byte[] data = cursor.getBlob(0);
+                BitmapFactory.Options opts = new BitmapFactory.Options();
+                opts.inPreferredConfig = Bitmap.Config.HARDWARE;
+                Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+                return bitmap == null ? null : new CachedPreview(bitmap, cursor.getInt(1));
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Error loading preview from DB", e);
+        }
+        return null;
+    }
+
+    private void writeToDb(PreviewKey key, CachedPreview preview) {
+        long[] versions = getPackageVersion(key.componentName.getPackageName(), key.user);
+        if (versions == null) {
+            return;
+        }
+        // Hardware bitmaps can not be compressed directly
+        Bitmap swBitmap = preview.bitmap.getConfig() == Bitmap.Config.HARDWARE
+                ? preview.bitmap.copy(Bitmap.Config.ARGB_8888, false) : preview.bitmap;
+        if (swBitmap == null) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(CacheDb.COLUMN_COMPONENT, key.componentName.flattenToShortString());
+        values.put(CacheDb.COLUMN_USER, getUserSerial(key.user));
+        values.put(CacheDb.COLUMN_SIZE, key.size);
+        values.put(CacheDb.COLUMN_PACKAGE, key.componentName.getPackageName());
+        values.put(CacheDb.COLUMN_VERSION, versions[0]);
+        values.put(CacheDb.COLUMN_LAST_UPDATED, versions[1]);
+        values.put(CacheDb.COLUMN_SYSTEM_STATE, key.systemState);
+        values.put(CacheDb.COLUMN_PREVIEW_BITMAP, GraphicsUtils.flattenBitmap(swBitmap));
+        values.put(CacheDb.COLUMN_SOURCE_WIDTH, preview.sourceWidth);
+        try {
+            mDb.insertOrReplace(values);
+        } catch (SQLException e) {
+            Log.e(TAG, "Unable to save preview for " + key, e);
+        }
+    }
+
+    @Nullable
+    private long[] getPackageVersion(String packageName, UserHandle user) {
+        PackageUserKey key = new PackageUserKey(packageName, user);
+        synchronized (mPackageVersions) {
+            long[] versions = mPackageVersions.get(key);
+            if (versions == null) {
+                versions = loadPackageVersion(packageName, user);
+                if (versions == null) {
+                    Log.w(TAG, "Package not found: " + key);
+                    return null;
+                }
+                mPackageVersions.put(key, versions);
+            }
+            return versions;
+        }
+    }
+
+    @Nullable
+    private long[] loadPackageVersion(String packageName, UserHandle user) {
+        PackageManager pm = mContext.getPackageManager();
+        if (!Process.myUserHandle().equals(user)) {
+            // The package manager of this context only knows about the packages of this user
+            ApplicationInfo appInfo = new PackageManagerHelper(mContext)
+                    .getApplicationInfo(packageName, user, 0);
+            if (appInfo == null) {
+                return null;
+            }
+            PackageInfo info = pm.getPackageArchiveInfo(appInfo.sourceDir, 0);
+            return info == null ? null : new long[] {PackageInfoCompat.getLongVersionCode(info),
+                    new File(appInfo.sourceDir).lastModified()};
+        }
+        try {
+            PackageInfo info = pm.getPackageInfo(packageName,
+                    PackageManager.MATCH_UNINSTALLED_PACKAGES);
+            return new long[] {PackageInfoCompat.getLongVersionCode(info), info.lastUpdateTime};
+        } catch (NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private long getUserSerial(UserHandle user) {
+        return UserCache.INSTANCE.get(mContext).getSerialNumberForUser(user);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mMemoryCache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+        }
+    }
+
+    private void estimateSize(SizeEstimate estimate) {
+        Map<PreviewKey, CachedPreview> previews = mMemoryCache.snapshot();
+        estimate.addObjects(previews.size(), CACHE_ENTRY_BYTES);
+        for (CachedPreview preview : previews.values()) {
+            estimate.addBitmap(preview.bitmap);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Most configuration changes, like rotation, do not affect the previews, so only drop them
+        // if the system state is different
+        String systemState = computeSystemState();
+        if (!systemState.equals(mSystemState)) {
+            mSystemState = systemState;
+            mMemoryCache.evictAll();
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int memoryHits = mMemoryHitCount.get();
+        int diskHits = mDiskHitCount.get();
+        int misses = mMissCount.get();
+        int total = memoryHits + diskHits + misses;
+        writer.println(prefix + "WidgetPreviewCache:");
+        writer.println(prefix + "  memorySize=" + mMemoryCache.size()
+                + " maxMemorySize=" + mMemoryCache.maxSize());
+        writer.println(prefix + "  memoryHits=" + memoryHits
+                + " diskHits=" + diskHits
+                + " misses=" + misses
+                + " hitRate=" + (total == 0 ? 0 : (memoryHits + diskHits) * 100 / total) + "%");
+    }
+
+    /**
+     * A preview stored in the cache
+     */
+    public static final class CachedPreview {
+
+        @NonNull public final Bitmap bitmap;
+        // Width of the preview before it was scaled down to fit the requested size
+        public final int sourceWidth;
+
+        CachedPreview(@NonNull Bitmap bitmap, int sourceWidth) {
+            this.bitmap = bitmap;
+            this.sourceWidth = sourceWidth;
+        }
+    }
+
+    /**
+     * Key for a preview of a widget or shortcut provider at a given size, for a system state.
+     */
+    public static final class PreviewKey extends ComponentKey {
+
+        @NonNull final String size;
+        @NonNull final String systemState;
+
+        public PreviewKey(ComponentName componentName, UserHandle user, @NonNull String size,
+                @NonNull String systemState) {
+            super(componentName, user);
+            this.size = size;
+            this.systemState = systemState;
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode() ^ size.hashCode() ^ systemState.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PreviewKey && super.equals(o)
+                    && ((PreviewKey) o).size.equals(size)
+                    && ((PreviewKey) o).systemState.equals(systemState);
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "#" + size;
+        }
+    }
+
+    private static class CacheDb extends SQLiteCacheHelper {
+        private static final int DB_VERSION = 11;
+
+        private static final String TABLE_NAME = "shortcut_and_widget_previews";
+        private static final String COLUMN_COMPONENT = "componentName";
+        private static final String COLUMN_USER = "profileId";
+        private static final String COLUMN_SIZE = "size";
+        private static final String COLUMN_PACKAGE = "packageName";
+        private static final String COLUMN_LAST_UPDATED = "lastUpdated";
+        private static final String COLUMN_VERSION = "version";
+        private static final String COLUMN_PREVIEW_BITMAP = "preview_bitmap";
+        private static final String COLUMN_SOURCE_WIDTH = "sourceWidth";
+        private static final String COLUMN_SYSTEM_STATE = "systemState";
+
+        CacheDb(Context context) {
+            super(context, LauncherFiles.WIDGET_PREVIEWS_DB, DB_VERSION, TABLE_NAME);
+        }
+
+        @Override
+        public void onCreateTable(SQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                    + COLUMN_COMPONENT + " TEXT NOT NULL, "
+                    + COLUMN_USER + " INTEGER NOT NULL, "
+                    + COLUMN_SIZE + " TEXT NOT NULL, "
+                    + COLUMN_PACKAGE + " TEXT NOT NULL, "
+                    + COLUMN_LAST_UPDATED + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_PREVIEW_BITMAP + " BLOB, "
+                    + COLUMN_SOURCE_WIDTH + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_SYSTEM_STATE + " TEXT NOT NULL DEFAULT '', "
+                    + "PRIMARY KEY (" + COLUMN_COMPONENT + ", " + COLUMN_USER + ", "
+                    + COLUMN_SIZE + ") "
+                    + ");");
+        }
+    }
+}
@@ -33,6 +33,8 @@ import android.widget.TableRow;
 import com.android.launcher3.R;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.recyclerview.ViewHolderBinder;
+import com.android.launcher3.util.ViewCache;
+import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.WidgetCell;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
 import com.android.launcher3.widget.util.WidgetsTableUtils;
@@ -49,6 +51,7 @@ public final class WidgetsListTableViewHolderBinder
     private static final String TAG = "WidgetsListRowViewHolderBinder";
 
     private final LayoutInflater mLayoutInflater;
+    private final ViewCache mViewCache;
     private final OnClickListener mIconClickListener;
     private final OnLongClickListener mIconLongClickListener;
     private final WidgetsListDrawableFactory mListDrawableFactory;
@@ -59,6 +62,7 @@ public final class WidgetsListTableViewHolderBinder
             OnLongClickListener iconLongClickListener,
             WidgetsListDrawableFactory listDrawableFactory) {
         mLayoutInflater = layoutInflater;
+        mViewCache = ActivityContext.lookupContext(layoutInflater.getContext()).getViewCache();
         mIconClickListener = iconClickListener;
         mIconLongClickListener = iconLongClickListener;
         mListDrawableFactory = listDrawableFactory;
@@ -151,8 +155,8 @@ public final class WidgetsListTableViewHolderBinder
                 }
             } else {
                 for (int j = tableRow.getChildCount(); j < widgetItems.size(); j++) {
-                    WidgetCell widget = (WidgetCell) mLayoutInflater.inflate(
-                            R.layout.widget_cell, tableRow, false);
+                    WidgetCell widget = mViewCache.getView(
+                            R.layout.widget_cell, mLayoutInflater.getContext(), tableRow);
                     // set up touch.
                     View preview = widget.findViewById(R.id.widget_preview_container);
                     preview.setOnClickListener(mIconClickListener);
@@ -17,13 +17,20 @@
 package com.android.launcher3.widget.picker.search;
 
 import static com.android.launcher3.search.StringMatcherUtility.matches;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 
 import android.os.Handler;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
+import com.android.launcher3.search.TransliterationIndex;
 import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
@@ -42,17 +49,66 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
     private final Handler mResultHandler;
     private final PopupDataProvider mDataProvider;
 
+    // Romanized titles of the widgets and their apps, built in the background for the widget list
+    // in mIndexedWidgets, and only accessed on the main thread once published. Null until the
+    // first index is built.
+    @Nullable
+    private TransliterationIndex mSearchIndex;
+    @Nullable
+    private List<WidgetsListBaseEntry> mIndexedWidgets;
+
     public SimpleWidgetsSearchAlgorithm(PopupDataProvider dataProvider) {
         mResultHandler = new Handler();
         mDataProvider = dataProvider;
+        updateSearchIndex();
     }
 
     @Override
     public void doSearch(String query, SearchCallback<WidgetsListBaseEntry> callback) {
-        ArrayList<WidgetsListBaseEntry> result = getFilteredWidgets(mDataProvider, query);
+        updateSearchIndex();
+        ArrayList<WidgetsListBaseEntry> result =
+                getFilteredWidgets(mDataProvider, query, mSearchIndex);
         mResultHandler.post(() -> callback.onSearchResult(query, result));
     }
 
+    /**
+     * Rebuilds the search index in the background if the widgets changed since it was built. The
+     * previous index is used until the new one is ready.
+     */
+    @UiThread
+    private void updateSearchIndex() {
+        List<WidgetsListBaseEntry> widgets = mDataProvider.getAllWidgets();
+        if (widgets == null || widgets == mIndexedWidgets) {
+            return;
+        }
+        mIndexedWidgets = widgets;
+        UI_HELPER_EXECUTOR.execute(() -> {
+            TransliterationIndex index = buildSearchIndex(widgets);
+            MAIN_EXECUTOR.execute(() -> {
+                if (mIndexedWidgets == widgets) {
+                    mSearchIndex = index;
+                }
+            });
+        });
+    }
+
+    @WorkerThread
+    private static TransliterationIndex buildSearchIndex(List<WidgetsListBaseEntry> widgets) {
+        ArrayList<CharSequence> titles = new ArrayList<>();
+        for (WidgetsListBaseEntry entry : widgets) {
+            if (entry instanceof WidgetsListHeaderEntry) {
+                titles.add(entry.mPkgItem.title);
+                for (WidgetItem item : entry.mWidgets) {
+                    titles.add(item.label);
+                }
+            }
+        }
+        // Also loads the transliteration rules, which is slow the first time
+        TransliterationIndex index = new TransliterationIndex();
+        index.updateTitles(titles);
+        return index;
+    }
+
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
@@ -65,12 +121,23 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
      */
     public static ArrayList<WidgetsListBaseEntry> getFilteredWidgets(
             PopupDataProvider dataProvider, String input) {
+        return getFilteredWidgets(dataProvider, input, null);
+    }
+
+    /**
+     * Returns entries for all matched widgets, also matching latin queries against the romanized
+     * titles in {@code searchIndex} if provided
+     */
+    public static ArrayList<WidgetsListBaseEntry> getFilteredWidgets(
+            PopupDataProvider dataProvider, String input,
+            @Nullable TransliterationIndex searchIndex) {
         ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
         dataProvider.getAllWidgets().stream()
                 .filter(entry -> entry instanceof WidgetsListHeaderEntry)
                 .forEach(headerEntry -> {
-                    List<WidgetItem> matchedWidgetItems = filterWidgetItems(
-                            input, headerEntry.mPkgItem.title.toString(), headerEntry.mWidgets);
+                    List<WidgetItem> matchedWidgetItems = filterWidgetItems(input,
+                            headerEntry.mPkgItem.title.toString(), headerEntry.mWidgets,
+                            searchIndex);
                     if (matchedWidgetItems.size() > 0) {
                         results.add(new WidgetsListSearchHeaderEntry(headerEntry.mPkgItem,
                                 headerEntry.mTitleSectionName, matchedWidgetItems));
@@ -82,13 +149,16 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
     }
 
     private static List<WidgetItem> filterWidgetItems(String query, String packageTitle,
-            List<WidgetItem> items) {
+            List<WidgetItem> items, @Nullable TransliterationIndex searchIndex) {
         StringMatcher matcher = StringMatcher.getInstance();
-        if (matches(query, packageTitle, matcher)) {
+        String queryLower = query.toLowerCase();
+        if (matches(query, packageTitle, matcher)
+                || (searchIndex != null && searchIndex.matches(queryLower, packageTitle))) {
             return items;
         }
         return items.stream()
-                .filter(item -> matches(query, item.label, matcher))
+                .filter(item -> matches(query, item.label, matcher)
+                        || (searchIndex != null && searchIndex.matches(queryLower, item.label)))
                 .collect(Collectors.toList());
     }
 }
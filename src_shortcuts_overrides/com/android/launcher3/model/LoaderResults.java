@@ -20,10 +20,8 @@ import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.model.BgDataModel.Callbacks;
-import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -38,11 +36,11 @@ public class LoaderResults extends BaseLoaderResults {
 
     @Override
     public void bindDeepShortcuts() {
-        final HashMap<ComponentKey, Integer> shortcutMapCopy;
+        final DeepShortcutCounts shortcutCounts;
         synchronized (mBgDataModel) {
-            shortcutMapCopy = new HashMap<>(mBgDataModel.deepShortcutMap);
+            shortcutCounts = mBgDataModel.deepShortcutCounts;
         }
-        executeCallbacksTask(c -> c.bindDeepShortcutMap(shortcutMapCopy), mUiExecutor);
+        executeCallbacksTask(c -> c.bindDeepShortcutMap(shortcutCounts), mUiExecutor);
     }
 
     @Override
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.os.UserHandle;
+import android.view.ViewGroup;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.ActivityContextWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link WorkspaceViewIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WorkspaceViewIndexTest {
+
+    private Context mContext;
+    private UserHandle mUser;
+    private ShortcutAndWidgetContainer mHotseat;
+    private ShortcutAndWidgetContainer mPage;
+    private WorkspaceViewIndex mIndex;
+
+    @Before
+    public void setup() {
+        getInstrumentation().runOnMainSync(() -> {
+            mContext = new ActivityContextWrapper(getInstrumentation().getTargetContext());
+            mUser = Process.myUserHandle();
+            mHotseat = new ShortcutAndWidgetContainer(mContext, CellLayout.HOTSEAT);
+            mPage = new ShortcutAndWidgetContainer(mContext, CellLayout.WORKSPACE);
+            mIndex = new WorkspaceViewIndex(
+                    () -> Arrays.<ViewGroup>asList(mHotseat, mPage));
+            mHotseat.setOnChildrenChangedListener(mIndex::invalidate);
+            mPage.setOnChildrenChangedListener(mIndex::invalidate);
+        });
+    }
+
+    @Test
+    public void testLookupByIdAndPackage() {
+        getInstrumentation().runOnMainSync(() -> {
+            BubbleTextView first = addIcon(mPage, createItem(1, "pkg1"));
+            BubbleTextView second = addIcon(mPage, createItem(2, "pkg1"));
+            BubbleTextView third = addIcon(mHotseat, createItem(3, "pkg2"));
+
+            assertSame(first, mIndex.getViewByItemId(1));
+            assertSame(third, mIndex.getViewByItemId(3));
+            assertNull(mIndex.getViewByItemId(4));
+            assertEquals(Arrays.asList(first, second), mIndex.getViewsForPackage("pkg1", mUser));
+            assertEquals(Arrays.asList(third), mIndex.getViewsForPackage("pkg2", mUser));
+            assertTrue(mIndex.getViewsForPackage("pkg3", mUser).isEmpty());
+        });
+    }
+
+    @Test
+    public void testRemovedViewIsDropped() {
+        getInstrumentation().runOnMainSync(() -> {
+            BubbleTextView icon = addIcon(mPage, createItem(1, "pkg1"));
+            assertSame(icon, mIndex.getViewByItemId(1));
+
+            mPage.removeView(icon);
+            assertNull(mIndex.getViewByItemId(1));
+            assertTrue(mIndex.getViewsForPackage("pkg1", mUser).isEmpty());
+        });
+    }
+
+    @Test
+    public void testItemsWithoutIdAreListedSeparately() {
+        getInstrumentation().runOnMainSync(() -> {
+            BubbleTextView predicted = addIcon(mHotseat, createItem(ItemInfo.NO_ID, "pkg1"));
+
+            assertEquals(Arrays.asList(predicted), mIndex.getViewsWithoutId());
+            assertEquals(Arrays.asList(predicted), mIndex.getViewsForPackage("pkg1", mUser));
+        });
+    }
+
+    @Test
+    public void testReboundViewIsIndexedByNewPackage() {
+        getInstrumentation().runOnMainSync(() -> {
+            // Predicted icons are reused for new predictions without leaving the hotseat
+            BubbleTextView predicted = addIcon(mHotseat, createItem(ItemInfo.NO_ID, "pkg1"));
+            assertEquals(Arrays.asList(predicted), mIndex.getViewsForPackage("pkg1", mUser));
+
+            predicted.applyFromWorkspaceItem(createItem(ItemInfo.NO_ID, "pkg2"));
+            assertTrue(mIndex.getViewsForPackage("pkg1", mUser).isEmpty());
+            assertEquals(Arrays.asList(predicted), mIndex.getViewsForPackage("pkg2", mUser));
+            assertEquals(1, mIndex.getViewsByPackage().size());
+        });
+    }
+
+    private BubbleTextView addIcon(ShortcutAndWidgetContainer container, WorkspaceItemInfo info) {
+        BubbleTextView icon = new BubbleTextView(mContext);
+        icon.applyFromWorkspaceItem(info);
+        container.addView(icon, new CellLayout.LayoutParams(container.getChildCount(), 0, 1, 1));
+        return icon;
+    }
+
+    private WorkspaceItemInfo createItem(int id, String packageName) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.user = mUser;
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(packageName, packageName + ".Activity"));
+        return info;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+
+import com.android.launcher3.allapps.AllAppsGridAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the incremental updates of {@link AlphabeticalAppsList}
+ */
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class AlphabeticalAppsListTest {
+
+    private static final String TAG = "AlphabeticalAppsListTest";
+
+    private static final String[] WORDS = {"photo", "music", "video", "camera", "calendar",
+            "mail", "maps", "notes", "clock", "weather", "news", "bank", "chat", "game", "shop",
+            "drive", "files", "fitness", "health", "radio", "reader", "scanner", "tasks",
+            "translate", "wallet", "keep", "home", "phone", "messages", "contacts"};
+
+    private static final int BENCHMARK_ITERATIONS = 50;
+    // An app update should fit well within a frame. The budget is several frames, so that only
+    // regressions in the update complexity fail the test, and not the speed or load of the device.
+    private static final long MAX_MEDIAN_NANOS = TimeUnit.MILLISECONDS.toNanos(32);
+
+    private final Random mRandom = new Random(0);
+    private AppInfoComparator mComparator;
+
+    @Before
+    public void setup() {
+        mComparator = new AppInfoComparator(getInstrumentation().getTargetContext());
+    }
+
+    @Test
+    public void testIncrementalSortMatchesFullSort() {
+        List<AppInfo> apps = createApps(500);
+        List<AppInfo> sorted = new ArrayList<>();
+        AlphabeticalAppsList.updateSortedApps(sorted, toSet(apps), mComparator);
+
+        // Install a few apps and uninstall a few others
+        List<AppInfo> updated = new ArrayList<>(apps);
+        updated.subList(100, 110).clear();
+        updated.addAll(createApps(20));
+        AlphabeticalAppsList.updateSortedApps(sorted, toSet(updated), mComparator);
+
+        List<AppInfo> expected = new ArrayList<>(updated);
+        Collections.sort(expected, mComparator);
+        assertEquals(expected, sorted);
+    }
+
+    @Test
+    public void testInstallNotifiesSingleInsert() {
+        List<AppInfo> sorted = new ArrayList<>();
+        AlphabeticalAppsList.updateSortedApps(sorted, toSet(createApps(500)), mComparator);
+        AdapterItemDiffCallback callback = new AdapterItemDiffCallback();
+        callback.setOldItems(toAdapterItems(sorted));
+
+        List<AppInfo> updated = new ArrayList<>(sorted);
+        updated.add(createApp("zzz"));
+        AlphabeticalAppsList.updateSortedApps(sorted, toSet(updated), mComparator);
+        UpdateCounter counter = diff(callback, toAdapterItems(sorted));
+
+        assertEquals(1, counter.inserted);
+        assertEquals(0, counter.removed);
+        assertEquals(0, counter.changed);
+    }
+
+    @Test
+    public void testUpdateInPlaceNotifiesChange() {
+        List<AppInfo> sorted = new ArrayList<>();
+        AlphabeticalAppsList.updateSortedApps(sorted, toSet(createApps(100)), mComparator);
+        AdapterItemDiffCallback callback = new AdapterItemDiffCallback();
+        callback.setOldItems(toAdapterItems(sorted));
+
+        sorted.get(10).runtimeStatusFlags |= FLAG_DISABLED_SUSPENDED;
+        UpdateCounter counter = diff(callback, toAdapterItems(sorted));
+
+        assertEquals(0, counter.inserted);
+        assertEquals(0, counter.removed);
+        assertEquals(1, counter.changed);
+    }
+
+    @Test
+    public void testInstallCost500Apps() {
+        benchmarkInstall(500);
+    }
+
+    @Test
+    public void testInstallCost2000Apps() {
+        benchmarkInstall(2000);
+    }
+
+    /**
+     * Measures sorting the apps and computing the adapter notifications for a single install. The
+     * cost is reported as a metric, and verified against a generous budget.
+     */
+    private void benchmarkInstall(int appCount) {
+        List<AppInfo> apps = createApps(appCount);
+        List<AppInfo> installs = createApps(BENCHMARK_ITERATIONS);
+        List<AppInfo> sorted = new ArrayList<>();
+        AlphabeticalAppsList.updateSortedApps(sorted, toSet(apps), mComparator);
+        AdapterItemDiffCallback callback = new AdapterItemDiffCallback();
+        callback.setOldItems(toAdapterItems(sorted));
+
+        long[] durations = new long[BENCHMARK_ITERATIONS];
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            Set<AppInfo> updated = toSet(sorted);
+            updated.add(installs.get(i));
+            List<AdapterItem> items = new ArrayList<>(sorted.size() + 1);
+
+            long start = System.nanoTime();
+            AlphabeticalAppsList.updateSortedApps(sorted, updated, mComparator);
+            for (int j = 0; j < sorted.size(); j++) {
+                items.add(AdapterItem.asApp(j, "", sorted.get(j), j));
+            }
+            UpdateCounter counter = diff(callback, items);
+            callback.setOldItems(items);
+            durations[i] = System.nanoTime() - start;
+
+            assertEquals(1, counter.inserted);
+            assertEquals(0, counter.removed);
+        }
+        Arrays.sort(durations);
+        long median = durations[durations.length / 2];
+        Log.d(TAG, "Install with " + appCount + " apps: median="
+                + TimeUnit.NANOSECONDS.toMicros(median) + "us max="
+                + TimeUnit.NANOSECONDS.toMicros(durations[durations.length - 1]) + "us");
+        assertTrue("Median install cost " + TimeUnit.NANOSECONDS.toMicros(median) + "us",
+                median < MAX_MEDIAN_NANOS);
+
+        List<AppInfo> expected = new ArrayList<>(apps);
+        expected.addAll(installs);
+        Collections.sort(expected, mComparator);
+        assertEquals(expected, sorted);
+    }
+
+    private static UpdateCounter diff(AdapterItemDiffCallback callback, List<AdapterItem> items) {
+        callback.setNewItems(items);
+        UpdateCounter counter = new UpdateCounter();
+        DiffUtil.calculateDiff(callback, false).dispatchUpdatesTo(counter);
+        return counter;
+    }
+
+    private List<AppInfo> createApps(int count) {
+        List<AppInfo> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            apps.add(createApp(WORDS[mRandom.nextInt(WORDS.length)] + " "
+                    + WORDS[mRandom.nextInt(WORDS.length)] + " " + mRandom.nextInt()));
+        }
+        return apps;
+    }
+
+    private static AppInfo createApp(String title) {
+        return new AppInfo(new ComponentName("com.example", "com.example." + title),
+                title, Process.myUserHandle(), null);
+    }
+
+    private static Set<AppInfo> toSet(List<AppInfo> apps) {
+        Set<AppInfo> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(apps);
+        return set;
+    }
+
+    private static List<AdapterItem> toAdapterItems(List<AppInfo> apps) {
+        List<AdapterItem> items = new ArrayList<>(apps.size());
+        for (int i = 0; i < apps.size(); i++) {
+            items.add(AdapterItem.asApp(i, "", apps.get(i), i));
+        }
+        return items;
+    }
+
+    private static class UpdateCounter implements ListUpdateCallback {
+
+        int inserted;
+        int removed;
+        int changed;
+
+        @Override
+        public void onInserted(int position, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            removed += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) { }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            changed += count;
+        }
+    }
+}
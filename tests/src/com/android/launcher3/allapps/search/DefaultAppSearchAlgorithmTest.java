@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static com.android.launcher3.allapps.search.DefaultAppSearchAlgorithm.FUZZY_SEARCH_CHAR_BUDGET;
+import static com.android.launcher3.allapps.search.DefaultAppSearchAlgorithm.MAX_RESULTS_COUNT;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.test.filters.MediumTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.allapps.AllAppsGridAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.util.ComponentKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link DefaultAppSearchAlgorithm}
+ */
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class DefaultAppSearchAlgorithmTest {
+
+    private static final String[] WORDS = {"photo", "music", "video", "camera", "calendar",
+            "mail", "maps", "notes", "clock", "weather", "news", "bank", "chat", "game", "shop",
+            "drive", "files", "fitness", "health", "radio", "reader", "scanner", "tasks",
+            "translate", "wallet", "keep", "home", "phone", "messages", "contacts"};
+
+    private static final String TAG = "DefaultAppSearchAlgorithmTest";
+
+    private static final int BENCHMARK_APP_COUNT = 1000;
+    // Well above the 2ms target, so that only regressions in the search complexity fail the test,
+    // and not the speed or load of the device
+    private static final long MAX_P99_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Test
+    public void testRankedByMatchQuality() {
+        List<AppInfo> apps = Arrays.asList(
+                createApp("Music Calendar"),
+                createApp("Calendar"),
+                createApp("Mail Calendar"),
+                createApp("Xcalendar"));
+
+        assertTitles(DefaultAppSearchAlgorithm.getTitleMatchResult(apps, "cal"),
+                "Calendar", "Music Calendar", "Mail Calendar", "Xcalendar");
+    }
+
+    @Test
+    public void testTypoMatches() {
+        List<AppInfo> apps = Arrays.asList(createApp("Camera"), createApp("Calendar"));
+
+        assertTitles(DefaultAppSearchAlgorithm.getTitleMatchResult(apps, "calandar"), "Calendar");
+    }
+
+    @Test
+    public void testTypoMatchesWithinBudget() {
+        String filler = "Zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz";
+        List<AppInfo> apps = new ArrayList<>();
+        apps.add(createApp("Calendar"));
+        for (int i = 0; i <= FUZZY_SEARCH_CHAR_BUDGET / filler.length(); i++) {
+            apps.add(createApp(filler + i));
+        }
+        apps.add(createApp("Calculator"));
+
+        // Titles past the budget are not considered for approximate matches
+        assertTitles(DefaultAppSearchAlgorithm.getTitleMatchResult(apps, "calandar"), "Calendar");
+        assertTitles(DefaultAppSearchAlgorithm.getTitleMatchResult(apps, "calculatro"));
+        // Exact matches are always found
+        assertTitles(DefaultAppSearchAlgorithm.getTitleMatchResult(apps, "calcu"), "Calculator");
+    }
+
+    @Test
+    public void testLaunchCountBoost() {
+        AppInfo notes = createApp("Notes");
+        AppInfo notebook = createApp("Notebook");
+        List<AppInfo> apps = Arrays.asList(notes, notebook);
+        ToIntFunction<ComponentKey> launchCounts =
+                key -> key.equals(notebook.toComponentKey()) ? 10 : 0;
+
+        assertTitles(DefaultAppSearchAlgorithm.getTitleMatchResult(
+                apps, "note", null, launchCounts), "Notebook", "Notes");
+    }
+
+    /**
+     * Measures the per-keystroke search cost on a large app list. The latency is reported as a
+     * metric, and verified against a generous budget.
+     */
+    @Test
+    public void testLargeAppList() {
+        Random random = new Random(0);
+        List<AppInfo> apps = new ArrayList<>(BENCHMARK_APP_COUNT);
+        for (int i = 0; i < BENCHMARK_APP_COUNT; i++) {
+            apps.add(createApp(WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + i));
+        }
+        ToIntFunction<ComponentKey> launchCounts = key -> key.hashCode() & 0x7;
+
+        // Type every word one keystroke at a time, with and without a typo.
+        List<String> queries = new ArrayList<>();
+        for (String word : WORDS) {
+            String typo = word.substring(0, word.length() - 2) + "x"
+                    + word.charAt(word.length() - 1);
+            for (int i = 1; i <= word.length(); i++) {
+                queries.add(word.substring(0, i));
+                queries.add(typo.substring(0, i));
+            }
+        }
+
+        // Warm up, so that the measurements do not include class loading and JIT
+        for (String query : queries) {
+            DefaultAppSearchAlgorithm.getTitleMatchResult(apps, query, null, launchCounts);
+        }
+
+        long[] durations = new long[queries.size()];
+        for (int i = 0; i < durations.length; i++) {
+            String query = queries.get(i);
+            long start = System.nanoTime();
+            List<AdapterItem> result = DefaultAppSearchAlgorithm.getTitleMatchResult(
+                    apps, query, null, launchCounts);
+            durations[i] = System.nanoTime() - start;
+
+            // Results do not depend on timing
+            assertEquals(getTitles(result), getTitles(DefaultAppSearchAlgorithm
+                    .getTitleMatchResult(apps, query, null, launchCounts)));
+            if (Arrays.stream(WORDS).anyMatch(w -> w.startsWith(query))) {
+                // Every word is used by many apps, so only exact word matches are returned
+                assertEquals(query, MAX_RESULTS_COUNT, result.size());
+                for (AdapterItem item : result) {
+                    assertTrue(query + " -> " + item.itemInfo.title, Arrays.stream(
+                            item.itemInfo.title.toString().split(" "))
+                            .anyMatch(w -> w.startsWith(query)));
+                }
+            }
+        }
+        Arrays.sort(durations);
+        long p99 = durations[(int) Math.ceil(durations.length * 0.99) - 1];
+        Log.d(TAG, "p99 per-keystroke latency for " + BENCHMARK_APP_COUNT + " apps: "
+                + TimeUnit.NANOSECONDS.toMicros(p99) + "us");
+        assertTrue("p99 latency " + TimeUnit.NANOSECONDS.toMicros(p99) + "us",
+                p99 < MAX_P99_NANOS);
+    }
+
+    private static List<String> getTitles(List<AdapterItem> result) {
+        return result.stream()
+                .map(item -> item.itemInfo.title.toString())
+                .collect(Collectors.toList());
+    }
+
+    private static AppInfo createApp(String title) {
+        return new AppInfo(new ComponentName("com.example", "com.example." + title.hashCode()),
+                title, Process.myUserHandle(), null);
+    }
+
+    private static void assertTitles(List<AdapterItem> result, String... titles) {
+        assertEquals(titles.length, result.size());
+        for (int i = 0; i < titles.length; i++) {
+            assertEquals(titles[i], result.get(i).itemInfo.title.toString());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.icons.ComponentWithLabelAndIcon.ComponentWithIconCachingLogic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link IconCacheWatermarks}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconCacheWatermarksTest {
+
+    private static final String TAG = "IconCacheWatermarksTest";
+
+    private static final int PACKAGE_COUNT = 100;
+    private static final int COMPONENTS_PER_PACKAGE = 10;
+
+    private final HashMap<String, PackageInfo> mPackageInfos = new HashMap<>();
+    private final List<ComponentWithLabelAndIcon> mComponents = new ArrayList<>();
+
+    private IconCache mIconCache;
+    private IconCacheWatermarks mWatermarks;
+    private ComponentWithIconCachingLogic mCachingLogic;
+
+    @Before
+    public void setup() {
+        Context context = getInstrumentation().getTargetContext();
+        // In memory icon cache and watermarks
+        mIconCache = new IconCache(context, InvariantDeviceProfile.INSTANCE.get(context),
+                null, new IconProvider(context));
+        mWatermarks = mIconCache.getWatermarks();
+        mCachingLogic = new ComponentWithIconCachingLogic(context, false);
+
+        for (int i = 0; i < PACKAGE_COUNT; i++) {
+            PackageInfo info = new PackageInfo();
+            info.packageName = "com.test.pkg" + i;
+            info.setLongVersionCode(1);
+            info.lastUpdateTime = 1000;
+            mPackageInfos.put(info.packageName, info);
+            for (int j = 0; j < COMPONENTS_PER_PACKAGE; j++) {
+                mComponents.add(new FakeComponent(
+                        new ComponentName(info.packageName, "Activity" + j)));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mIconCache.close();
+    }
+
+    @Test
+    public void testUnchangedPackagesNotRevalidated() {
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        assertEquals(mComponents.size(), runUpdate().size());
+        long firstPassTime = SystemClock.elapsedRealtimeNanos() - startTime;
+
+        startTime = SystemClock.elapsedRealtimeNanos();
+        assertThat(runUpdate()).isEmpty();
+        long steadyPassTime = SystemClock.elapsedRealtimeNanos() - startTime;
+
+        Log.d(TAG, mComponents.size() + " components, first pass: " + firstPassTime / 1000
+                + "us, steady pass: " + steadyPassTime / 1000 + "us");
+    }
+
+    @Test
+    public void testUpdatedPackageRevalidated() {
+        runUpdate();
+
+        mPackageInfos.get("com.test.pkg5").lastUpdateTime = 2000;
+        mPackageInfos.get("com.test.pkg7").setLongVersionCode(2);
+
+        Set<String> packages = new HashSet<>();
+        List<ComponentWithLabelAndIcon> changed = runUpdate();
+        for (ComponentWithLabelAndIcon component : changed) {
+            packages.add(component.getComponent().getPackageName());
+        }
+        assertEquals(2 * COMPONENTS_PER_PACKAGE, changed.size());
+        assertThat(packages).containsExactly("com.test.pkg5", "com.test.pkg7");
+        assertThat(runUpdate()).isEmpty();
+    }
+
+    @Test
+    public void testRemovedPackageForgotten() {
+        runUpdate();
+
+        PackageInfo removed = mPackageInfos.remove("com.test.pkg3");
+        mComponents.removeIf(c -> c.getComponent().getPackageName().equals("com.test.pkg3"));
+        assertThat(runUpdate()).isEmpty();
+
+        // Reinstalling the same version still revalidates the package
+        mPackageInfos.put(removed.packageName, removed);
+        for (int j = 0; j < COMPONENTS_PER_PACKAGE; j++) {
+            mComponents.add(new FakeComponent(new ComponentName(removed.packageName,
+                    "Activity" + j)));
+        }
+        assertEquals(COMPONENTS_PER_PACKAGE, runUpdate().size());
+    }
+
+    private List<ComponentWithLabelAndIcon> runUpdate() {
+        IconCacheWatermarks.Update update = mWatermarks.startUpdate(mPackageInfos);
+        List<ComponentWithLabelAndIcon> changed = update.filterChanged(mComponents, mCachingLogic);
+        update.commit();
+        return changed;
+    }
+
+    private static class FakeComponent implements ComponentWithLabelAndIcon {
+
+        private final ComponentName mComponent;
+
+        FakeComponent(ComponentName component) {
+            mComponent = component;
+        }
+
+        @Override
+        public ComponentName getComponent() {
+            return mComponent;
+        }
+
+        @Override
+        public UserHandle getUser() {
+            return Process.myUserHandle();
+        }
+
+        @Override
+        public CharSequence getLabel(PackageManager pm) {
+            return mComponent.getClassName();
+        }
+
+        @Override
+        public Drawable getFullResIcon(IconCache cache) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.logging.StartupTracer.MAX_REPORTS;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_ACTIVITY_CREATE;
+import static com.android.launcher3.logging.StartupTracer.MILESTONE_COUNT;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.util.AtomicFile;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.logging.StartupTracer.Report;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link StartupTracer}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class StartupTracerTest {
+
+    private AtomicFile mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new AtomicFile(new File(getInstrumentation().getTargetContext().getCacheDir(),
+                "startup_reports_test"));
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void percentile_nearestRank() {
+        long[] values = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+        assertEquals(50, StartupTracer.percentile(values, 50));
+        assertEquals(90, StartupTracer.percentile(values, 90));
+        assertEquals(100, StartupTracer.percentile(values, 100));
+        assertEquals(7, StartupTracer.percentile(new long[] {7}, 50));
+    }
+
+    @Test
+    public void addReport_keepsLastReports() {
+        for (int i = 0; i < MAX_REPORTS + 5; i++) {
+            StartupTracer.addReport(mFile, createReport(i));
+        }
+
+        List<Report> reports = StartupTracer.readReports(mFile);
+        assertEquals(MAX_REPORTS, reports.size());
+        assertEquals(5, reports.get(0).wallTime);
+        assertEquals(MAX_REPORTS + 4, reports.get(MAX_REPORTS - 1).wallTime);
+        assertEquals("build", reports.get(0).build);
+        assertArrayEquals(createReport(5).times, reports.get(0).times);
+    }
+
+    @Test
+    public void mark_lateActivityCreateNotColdStart() {
+        StartupTracer tracer = new StartupTracer(1000);
+        tracer.mark(MILESTONE_ACTIVITY_CREATE, 60000);
+        assertTrue(tracer.isFinished());
+    }
+
+    @Test
+    public void mark_finishesWhenAllMilestonesReached() {
+        StartupTracer tracer = new StartupTracer(1000);
+        for (int i = MILESTONE_ACTIVITY_CREATE; i < MILESTONE_COUNT; i++) {
+            assertFalse(tracer.isFinished());
+            tracer.mark(i, 1000 + i * 100);
+        }
+        assertTrue(tracer.isFinished());
+    }
+
+    private static Report createReport(long wallTime) {
+        long[] times = new long[MILESTONE_COUNT];
+        Arrays.fill(times, wallTime * 10);
+        times[MILESTONE_COUNT - 1] = -1;
+        return new Report(wallTime, "build", times);
+    }
+}
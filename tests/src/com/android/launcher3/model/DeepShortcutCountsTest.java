@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import android.content.ComponentName;
+import android.content.pm.ShortcutInfo;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.ComponentKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link DeepShortcutCounts}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DeepShortcutCountsTest {
+
+    private static final UserHandle USER = Process.myUserHandle();
+    private static final UserHandle OTHER_USER = UserHandle.of(USER.getIdentifier() + 10);
+
+    private static final ComponentName APP1_MAIN = new ComponentName("app1", "app1.Main");
+    private static final ComponentName APP1_OTHER = new ComponentName("app1", "app1.Other");
+    private static final ComponentName APP2_MAIN = new ComponentName("app2", "app2.Main");
+
+    private static int sShortcutId = 0;
+
+    @Test
+    public void testUpdateAll_countsShortcutsPerActivity() {
+        DeepShortcutCounts counts = DeepShortcutCounts.EMPTY.updatePackage(null, USER,
+                Arrays.asList(shortcut(APP1_MAIN, USER), shortcut(APP1_MAIN, USER),
+                        shortcut(APP1_OTHER, USER), shortcut(APP2_MAIN, USER),
+                        disabledShortcut(APP2_MAIN, USER)));
+
+        assertEquals(3, counts.size());
+        assertEquals(2, counts.getCount(APP1_MAIN, USER));
+        assertEquals(1, counts.getCount(APP1_OTHER, USER));
+        assertEquals(1, counts.getCount(APP2_MAIN, USER));
+        assertEquals(0, counts.getCount(APP1_MAIN, OTHER_USER));
+    }
+
+    @Test
+    public void testUpdatePackage_onlyReplacesPackage() {
+        DeepShortcutCounts counts = DeepShortcutCounts.EMPTY.updatePackage(null, USER,
+                Arrays.asList(shortcut(APP1_MAIN, USER), shortcut(APP1_OTHER, USER),
+                        shortcut(APP2_MAIN, USER)));
+
+        DeepShortcutCounts updated = counts.updatePackage("app1", USER, Arrays.asList(
+                shortcut(APP1_MAIN, USER), shortcut(APP1_MAIN, USER)));
+
+        assertNotSame(counts, updated);
+        assertEquals(2, updated.size());
+        assertEquals(2, updated.getCount(APP1_MAIN, USER));
+        assertEquals(0, updated.getCount(APP1_OTHER, USER));
+        assertEquals(1, updated.getCount(APP2_MAIN, USER));
+
+        // The previous instance is unchanged
+        assertEquals(1, counts.getCount(APP1_MAIN, USER));
+        assertEquals(1, counts.getCount(APP1_OTHER, USER));
+    }
+
+    @Test
+    public void testUpdatePackage_unchanged_returnsSameInstance() {
+        DeepShortcutCounts counts = DeepShortcutCounts.EMPTY.updatePackage(null, USER,
+                Arrays.asList(shortcut(APP1_MAIN, USER), shortcut(APP2_MAIN, USER)));
+
+        assertSame(counts, counts.updatePackage("app1", USER,
+                Arrays.asList(shortcut(APP1_MAIN, USER))));
+        assertSame(counts, counts.updatePackage("app1", OTHER_USER, new ArrayList<>()));
+    }
+
+    @Test
+    public void testUpdatePackage_reusesKeys() {
+        DeepShortcutCounts counts = DeepShortcutCounts.EMPTY.updatePackage(null, USER,
+                Arrays.asList(shortcut(APP1_MAIN, USER), shortcut(APP2_MAIN, USER)));
+        ComponentKey[] before = new ComponentKey[1];
+        counts.forEach((key, count) -> {
+            if (key.componentName.equals(APP1_MAIN)) {
+                before[0] = key;
+            }
+        });
+
+        DeepShortcutCounts updated = counts.updatePackage("app1", USER, Arrays.asList(
+                shortcut(APP1_MAIN, USER), shortcut(APP1_MAIN, USER)));
+        updated.forEach((key, count) -> {
+            if (key.componentName.equals(APP1_MAIN)) {
+                assertSame(before[0], key);
+            }
+        });
+    }
+
+    @Test
+    public void testRemoveUser() {
+        DeepShortcutCounts counts = DeepShortcutCounts.EMPTY
+                .updatePackage(null, USER, Arrays.asList(shortcut(APP1_MAIN, USER)))
+                .updatePackage(null, OTHER_USER, Arrays.asList(shortcut(APP1_MAIN, OTHER_USER)));
+        assertEquals(2, counts.size());
+
+        DeepShortcutCounts updated = counts.removeUser(OTHER_USER);
+        assertEquals(1, updated.size());
+        assertEquals(1, updated.getCount(APP1_MAIN, USER));
+        assertEquals(0, updated.getCount(APP1_MAIN, OTHER_USER));
+        assertSame(updated, updated.removeUser(OTHER_USER));
+    }
+
+    @Test
+    public void testManyActivities() {
+        List<ShortcutInfo> shortcuts = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ComponentName cn = new ComponentName("app" + (i % 50), "Activity" + i);
+            shortcuts.add(shortcut(cn, USER));
+            shortcuts.add(shortcut(cn, USER));
+        }
+        DeepShortcutCounts counts = DeepShortcutCounts.EMPTY.updatePackage(null, USER, shortcuts);
+
+        assertEquals(500, counts.size());
+        for (int i = 0; i < 500; i++) {
+            ComponentName cn = new ComponentName("app" + (i % 50), "Activity" + i);
+            assertEquals(2, counts.getCount(cn, USER));
+        }
+        assertEquals(490, counts.updatePackage("app7", USER, new ArrayList<>()).size());
+    }
+
+    private static ShortcutInfo shortcut(ComponentName activity, UserHandle user) {
+        ShortcutInfo info = spy(new ShortcutInfo.Builder(
+                getApplicationContext(), "shortcut" + sShortcutId++)
+                .setActivity(activity)
+                .build());
+        doReturn(true).when(info).isEnabled();
+        doReturn(true).when(info).isDynamic();
+        doReturn(user).when(info).getUserHandle();
+        return info;
+    }
+
+    private static ShortcutInfo disabledShortcut(ComponentName activity, UserHandle user) {
+        ShortcutInfo info = shortcut(activity, user);
+        doReturn(false).when(info).isEnabled();
+        return info;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_ALL;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_DEEP_SHORTCUTS;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_FOLDER_NAMES;
+import static com.android.launcher3.model.ModelSubsystems.SUBSYSTEM_WIDGETS;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.APP_ICON;
+import static com.android.launcher3.util.LauncherModelHelper.NO__ICON;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for loading the model with {@link ModelSubsystems} loaded on first use
+ */
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class LazyModelSubsystemsTest {
+
+    private static final String TAG = "LazyModelSubsystemsTest";
+
+    private static final int APP_COUNT = 300;
+    private static final int FOLDER_COUNT = 10;
+    private static final int FOLDER_SIZE = 10;
+    private static final int GRID_SIZE = 4;
+
+    // Budgets for loading the synthetic model in the lightweight mode, with enough headroom
+    // over the measured values to not be flaky on slow devices
+    private static final long LOAD_TIME_BUDGET_MS = 3000;
+    private static final long HEAP_BUDGET_BYTES = 16 * 1024 * 1024;
+
+    // A single GC can leave garbage behind (eg, objects waiting for finalization), so the heap is
+    // sampled until two consecutive samples are this close
+    private static final long HEAP_SETTLE_TOLERANCE_BYTES = 256 * 1024;
+    private static final int MAX_GC_ROUNDS = 10;
+
+    private LauncherModelHelper mModelHelper;
+    private ModelSubsystems mSubsystems;
+
+    @Before
+    public void setUp() {
+        mModelHelper = new LauncherModelHelper();
+        mSubsystems = mModelHelper.getModel().getSubsystems();
+        mSubsystems.setLazy(true);
+
+        // Fill the workspace with folders followed by single app icons
+        int itemCount = FOLDER_COUNT + APP_COUNT - FOLDER_COUNT * FOLDER_SIZE;
+        int cellsPerScreen = GRID_SIZE * GRID_SIZE;
+        int[][][] grid = new int[(itemCount + cellsPerScreen - 1) / cellsPerScreen]
+                [GRID_SIZE][GRID_SIZE];
+        for (int cell = 0; cell < grid.length * cellsPerScreen; cell++) {
+            int position = cell % cellsPerScreen;
+            grid[cell / cellsPerScreen][position / GRID_SIZE][position % GRID_SIZE] =
+                    cell < FOLDER_COUNT ? FOLDER_SIZE : (cell < itemCount ? APP_ICON : NO__ICON);
+        }
+        mModelHelper.createGrid(grid);
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void testLoadSkipsLazySubsystems() throws Exception {
+        long heapBefore = getSettledUsedHeap();
+        long startTime = SystemClock.uptimeMillis();
+        mModelHelper.loadModelSync();
+        long loadTime = SystemClock.uptimeMillis() - startTime;
+        // Let any work queued by the load finish, so that only retained objects are measured
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        long heapGrowth = getSettledUsedHeap() - heapBefore;
+        // Also reported as metrics, to follow the trend below the budgets
+        Log.d(TAG, "Loaded " + APP_COUNT + " apps in " + loadTime + "ms, heap growth: "
+                + heapGrowth / 1024 + "KB");
+
+        assertEquals(APP_COUNT, getAppCount(mModelHelper.getBgDataModel()));
+        assertFalse(mSubsystems.isLoaded(SUBSYSTEM_DEEP_SHORTCUTS));
+        assertFalse(mSubsystems.isLoaded(SUBSYSTEM_WIDGETS));
+        assertFalse(mSubsystems.isLoaded(SUBSYSTEM_FOLDER_NAMES));
+        assertThat(loadTime).isLessThan(LOAD_TIME_BUDGET_MS);
+        assertThat(heapGrowth).isLessThan(HEAP_BUDGET_BYTES);
+    }
+
+    @Test
+    public void testLoadedOnFirstUse() throws Exception {
+        mModelHelper.loadModelSync();
+
+        mSubsystems.ensureLoaded(SUBSYSTEM_WIDGETS | SUBSYSTEM_FOLDER_NAMES);
+        MODEL_EXECUTOR.submit(() -> { }).get();
+
+        assertTrue(mSubsystems.isLoaded(SUBSYSTEM_WIDGETS | SUBSYSTEM_FOLDER_NAMES));
+        assertFalse(mSubsystems.isLoaded(SUBSYSTEM_DEEP_SHORTCUTS));
+    }
+
+    @Test
+    public void testRequestedBeforeLoadIsLoadedAfterLoad() throws Exception {
+        // The model is not loaded yet, so the task loading the widgets is dropped
+        mSubsystems.ensureLoaded(SUBSYSTEM_WIDGETS);
+        mModelHelper.loadModelSync();
+        MODEL_EXECUTOR.submit(() -> { }).get();
+
+        assertTrue(mSubsystems.isLoaded(SUBSYSTEM_WIDGETS));
+        assertFalse(mSubsystems.isLoaded(SUBSYSTEM_DEEP_SHORTCUTS));
+    }
+
+    @Test
+    public void testReloadDropsLazySubsystems() throws Exception {
+        mModelHelper.loadModelSync();
+        mSubsystems.ensureLoaded(SUBSYSTEM_WIDGETS);
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        assertTrue(mSubsystems.isLoaded(SUBSYSTEM_WIDGETS));
+
+        mModelHelper.getModel().forceReload();
+        mModelHelper.loadModelSync();
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        assertFalse(mSubsystems.isLoaded(SUBSYSTEM_WIDGETS));
+
+        mSubsystems.ensureLoaded(SUBSYSTEM_WIDGETS);
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        assertTrue(mSubsystems.isLoaded(SUBSYSTEM_WIDGETS));
+    }
+
+    @Test
+    public void testLoadedByLoaderWhenNotLazy() throws Exception {
+        mSubsystems.setLazy(false);
+        mModelHelper.loadModelSync();
+
+        assertTrue(mSubsystems.isLoaded(SUBSYSTEM_ALL));
+    }
+
+    private static int getAppCount(BgDataModel dataModel) {
+        int count = 0;
+        synchronized (dataModel) {
+            for (ItemInfo info : dataModel.itemsIdMap) {
+                if (info.itemType == Favorites.ITEM_TYPE_APPLICATION) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the heap in use once garbage collection settled, as the smallest of the samples
+     * taken until two consecutive samples are within {@link #HEAP_SETTLE_TOLERANCE_BYTES}.
+     */
+    private static long getSettledUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long minUsed = Long.MAX_VALUE;
+        long previousUsed = -1;
+        for (int i = 0; i < MAX_GC_ROUNDS; i++) {
+            runtime.gc();
+            System.runFinalization();
+            runtime.gc();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            minUsed = Math.min(minUsed, used);
+            if (previousUsed >= 0
+                    && Math.abs(used - previousUsed) < HEAP_SETTLE_TOLERANCE_BYTES) {
+                break;
+            }
+            previousUsed = used;
+        }
+        return minUsed;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.pm.UserCache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link LoaderTask#queryProfiles}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LoaderTaskQueryProfilesTest {
+
+    private static final UserHandle USER = Process.myUserHandle();
+    private static final UserHandle OTHER_USER = UserHandle.of(USER.getIdentifier() + 1);
+
+    private Context mContext;
+    private LauncherApps mLauncherApps;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        mLauncherApps = mContext.getSystemService(LauncherApps.class);
+    }
+
+    @Test
+    public void testParallelQueryMatchesSequential() {
+        List<UserHandle> profiles = new ArrayList<>(
+                UserCache.INSTANCE.get(mContext).getUserProfiles());
+        // Query the current user twice, so that the parallel path is used even without profiles
+        profiles.add(USER);
+
+        Function<UserHandle, List<String>> query = this::queryComponents;
+        List<List<String>> sequential = profiles.stream().map(query).collect(Collectors.toList());
+        List<List<String>> parallel = LoaderTask.queryProfiles(profiles, query, user -> null);
+
+        assertEquals(sequential, parallel);
+        assertFalse(parallel.get(0).isEmpty());
+    }
+
+    @Test
+    public void testSingleProfileMatchesSequential() {
+        List<UserHandle> profiles = Arrays.asList(USER);
+        assertEquals(Arrays.asList(queryComponents(USER)),
+                LoaderTask.queryProfiles(profiles, this::queryComponents, user -> null));
+    }
+
+    @Test
+    public void testFailedProfileUsesFallback() {
+        List<String> result = LoaderTask.queryProfiles(Arrays.asList(USER, OTHER_USER),
+                user -> {
+                    if (user.equals(OTHER_USER)) {
+                        throw new SecurityException("Profile removed");
+                    }
+                    return "loaded";
+                },
+                user -> "failed");
+
+        assertEquals(Arrays.asList("loaded", "failed"), result);
+    }
+
+    @Test
+    public void testInterruptKeepsInterruptStatus() {
+        CountDownLatch release = new CountDownLatch(1);
+        Function<UserHandle, String> blockingQuery = user -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "loaded";
+        };
+
+        Thread.currentThread().interrupt();
+        try {
+            LoaderTask.queryProfiles(Arrays.asList(USER, OTHER_USER), blockingQuery,
+                    user -> "failed");
+            fail("Query should be cancelled when interrupted");
+        } catch (CancellationException e) {
+            // Expected
+        } finally {
+            // Clears the interrupt status for the other tests
+            assertTrue(Thread.interrupted());
+            release.countDown();
+        }
+    }
+
+    private List<String> queryComponents(UserHandle user) {
+        return mLauncherApps.getActivityList(null, user).stream()
+                .map(LauncherActivityInfo::getComponentName)
+                .map(Object::toString)
+                .collect(Collectors.toList());
+    }
+}
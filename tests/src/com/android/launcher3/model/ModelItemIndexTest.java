@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.ItemInfoMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link ModelItemIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ModelItemIndexTest {
+
+    private static final int FOLDER_ID = 1000;
+    private static final int ITEM_COUNT = 200;
+
+    private Context mContext;
+    private BgDataModel mDataModel;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        mDataModel = new BgDataModel();
+
+        FolderInfo folder = new FolderInfo();
+        folder.id = FOLDER_ID;
+        folder.container = Favorites.CONTAINER_DESKTOP;
+        mDataModel.addItem(mContext, folder, false);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            // Put every fourth item in the folder
+            mDataModel.addItem(mContext, createItem(i, "pkg" + (i % 20),
+                    i % 4 == 0 ? FOLDER_ID : Favorites.CONTAINER_DESKTOP), false);
+        }
+    }
+
+    @Test
+    public void testMatchingItemsSameAsFullScan() {
+        Set<String> packages = new HashSet<>();
+        packages.add("pkg3");
+        packages.add("pkg4");
+        ItemInfoMatcher matcher = ItemInfoMatcher.ofPackages(packages, Process.myUserHandle());
+        ItemInfoMatcher removeMatch = matcher.or(ItemInfoMatcher.forFolderMatch(matcher));
+
+        assertNotNull(removeMatch.getCandidates(mDataModel.itemIndex));
+        assertSameItems(fullScan(removeMatch), mDataModel.getMatchingItems(removeMatch));
+        assertTrue(mDataModel.getMatchingItems(removeMatch).contains(
+                mDataModel.itemsIdMap.get(FOLDER_ID)));
+    }
+
+    @Test
+    public void testContainerChangeReindexed() {
+        ItemInfo item = mDataModel.itemsIdMap.get(1);
+        item.container = FOLDER_ID;
+        mDataModel.itemIndex.update(item);
+
+        assertTrue(mDataModel.itemIndex.getChildren(FOLDER_ID).contains(item));
+        assertEquals(ITEM_COUNT / 4 + 1, mDataModel.itemIndex.getChildren(FOLDER_ID).size());
+        assertEquals(Collections.emptyList(), mDataModel.itemIndex.verify());
+    }
+
+    @Test
+    public void testRemovedItemsNotIndexed() {
+        List<ItemInfo> removed = mDataModel.getMatchingItems(ItemInfoMatcher.ofPackages(
+                Collections.singleton("pkg5"), Process.myUserHandle()));
+        mDataModel.removeItem(mContext, removed);
+
+        assertEquals(0, mDataModel.itemIndex.getItemsForPackages(
+                Collections.singleton("pkg5"), Process.myUserHandle()).size());
+        assertEquals(Collections.emptyList(), mDataModel.itemIndex.verify());
+    }
+
+    private List<ItemInfo> fullScan(ItemInfoMatcher matcher) {
+        List<ItemInfo> result = new ArrayList<>();
+        for (ItemInfo info : mDataModel.itemsIdMap) {
+            if (matcher.matchesInfo(info)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private static void assertSameItems(List<ItemInfo> expected, List<ItemInfo> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+    }
+
+    private static WorkspaceItemInfo createItem(int id, String packageName, int container) {
+        ComponentName cn = new ComponentName(packageName, packageName + ".Activity" + id);
+        WorkspaceItemInfo item = new WorkspaceItemInfo(new AppInfo(cn, "app" + id,
+                Process.myUserHandle(), AppInfo.makeLaunchIntent(cn)));
+        item.id = id;
+        item.container = container;
+        return item;
+    }
+}
@@ -149,6 +149,7 @@ public class ModelMultiCallbacksTest {
     }
 
     private void waitForLoaderAndTempMainThread() throws Exception {
+        mModelHelper.getModel().flushPackageUpdates();
         Executors.MAIN_EXECUTOR.submit(() -> { }).get();
         Executors.MODEL_EXECUTOR.submit(() -> { }).get();
         Executors.MAIN_EXECUTOR.submit(() -> { }).get();
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.model.PackageUpdatedTask.OP_ADD;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_REMOVE;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UPDATE;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.pm.PackageInstallInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for {@link PackageUpdateCoalescer}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PackageUpdateCoalescerTest {
+
+    private static final UserHandle USER = Process.myUserHandle();
+    private static final UserHandle OTHER_USER = UserHandle.of(USER.getIdentifier() + 1);
+
+    private final ArrayList<PackageUpdatedTask> mTasks = new ArrayList<>();
+    private PackageUpdateCoalescer mCoalescer;
+
+    @Before
+    public void setup() {
+        // Use a long window so that events are only flushed by the test
+        mCoalescer = new PackageUpdateCoalescer(new Handler(Looper.getMainLooper()),
+                TimeUnit.HOURS.toMillis(1), mTasks::add);
+    }
+
+    @After
+    public void tearDown() {
+        flush();
+    }
+
+    @Test
+    public void testSameOpMerged() {
+        mCoalescer.addEvent(OP_UPDATE, USER, "a");
+        mCoalescer.addEvent(OP_UPDATE, USER, "b", "c");
+        mCoalescer.addEvent(OP_UPDATE, USER, "a");
+        flush();
+
+        assertEquals(1, mTasks.size());
+        assertTask(mTasks.get(0), OP_UPDATE, "a", "b", "c");
+    }
+
+    @Test
+    public void testRemoveThenAddKeepsOrder() {
+        mCoalescer.addEvent(OP_ADD, USER, "a");
+        mCoalescer.addEvent(OP_REMOVE, USER, "b");
+        mCoalescer.addEvent(OP_ADD, USER, "b");
+        mCoalescer.addEvent(OP_ADD, USER, "c");
+        flush();
+
+        // The add of b can not be merged with the add of a, as it would run before the remove
+        assertEquals(3, mTasks.size());
+        assertTask(mTasks.get(0), OP_ADD, "a");
+        assertTask(mTasks.get(1), OP_REMOVE, "b");
+        assertTask(mTasks.get(2), OP_ADD, "b", "c");
+    }
+
+    @Test
+    public void testIndependentPackagesMergedAcrossOps() {
+        mCoalescer.addEvent(OP_UPDATE, USER, "a");
+        mCoalescer.addEvent(OP_REMOVE, USER, "b");
+        mCoalescer.addEvent(OP_UPDATE, USER, "c");
+        flush();
+
+        assertEquals(2, mTasks.size());
+        assertTask(mTasks.get(0), OP_UPDATE, "a", "c");
+        assertTask(mTasks.get(1), OP_REMOVE, "b");
+    }
+
+    @Test
+    public void testUsersNotMerged() {
+        mCoalescer.addEvent(OP_ADD, USER, "a");
+        mCoalescer.addEvent(OP_ADD, OTHER_USER, "a");
+        flush();
+
+        assertEquals(2, mTasks.size());
+        assertEquals(USER, mTasks.get(0).getUser());
+        assertEquals(OTHER_USER, mTasks.get(1).getUser());
+    }
+
+    @Test
+    public void testDumpCountsEventsAndTasks() {
+        for (int i = 0; i < 10; i++) {
+            mCoalescer.addEvent(OP_UPDATE, USER, "pkg" + i);
+        }
+        flush();
+
+        StringWriter out = new StringWriter();
+        mCoalescer.dump("", new PrintWriter(out, true));
+        assertTrue(out.toString(), out.toString().contains("events=10 tasks=1 pending=0"));
+    }
+
+    @Test
+    public void testUnrelatedPackageTasksDoNotFlush() {
+        // Install progress for other packages or users is interleaved with the package events
+        mCoalescer.addEvent(OP_UPDATE, USER, "a");
+        flushIfPending("installing", USER);
+        mCoalescer.addEvent(OP_UPDATE, USER, "b");
+        flushIfPending("a", OTHER_USER);
+        mCoalescer.addEvent(OP_UPDATE, USER, "c");
+        flushIfPending("installing", USER);
+        assertTrue(mTasks.isEmpty());
+
+        flush();
+        assertEquals(1, mTasks.size());
+        assertTask(mTasks.get(0), OP_UPDATE, "a", "b", "c");
+    }
+
+    @Test
+    public void testConflictingPackageTaskFlushes() {
+        mCoalescer.addEvent(OP_REMOVE, USER, "a");
+        mCoalescer.addEvent(OP_UPDATE, USER, "b");
+        flushIfPending("b", USER);
+
+        // All pending events run before the task for b, in the order of their events
+        assertEquals(2, mTasks.size());
+        assertTask(mTasks.get(0), OP_REMOVE, "a");
+        assertTask(mTasks.get(1), OP_UPDATE, "b");
+
+        flushIfPending("b", USER);
+        assertEquals(2, mTasks.size());
+    }
+
+    @Test
+    public void testInstallProgressInterleavedWithPackageEvents() throws Exception {
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        try {
+            LauncherModel model = modelHelper.getModel();
+            for (int i = 0; i < 5; i++) {
+                model.onPackageChanged("pkg" + i, USER);
+                model.enqueueModelUpdateTask(new PackageInstallStateChangedTask(
+                        new PackageInstallInfo("installing", PackageInstallInfo.STATUS_INSTALLING,
+                                i * 10, USER)));
+            }
+            model.flushPackageUpdates();
+
+            StringWriter out = new StringWriter();
+            model.dumpState("", null, new PrintWriter(out, true), new String[0]);
+            Matcher m = Pattern.compile("events=(\\d+) tasks=(\\d+)").matcher(out.toString());
+            assertTrue(out.toString(), m.find());
+            assertEquals(5, Integer.parseInt(m.group(1)));
+            // The install progress does not flush the events, which are only split if the
+            // coalescing window ends while they are being sent
+            assertTrue(out.toString(), Integer.parseInt(m.group(2)) <= 2);
+        } finally {
+            modelHelper.destroy();
+        }
+    }
+
+    @Test
+    public void testTasksSentOnHandlerThread() {
+        ArrayList<Looper> loopers = new ArrayList<>();
+        PackageUpdateCoalescer coalescer = new PackageUpdateCoalescer(
+                new Handler(Looper.getMainLooper()), TimeUnit.HOURS.toMillis(1),
+                task -> loopers.add(Looper.myLooper()));
+        coalescer.addEvent(OP_UPDATE, USER, "a");
+        coalescer.flush();
+        getInstrumentation().runOnMainSync(() -> coalescer.addEvent(OP_REMOVE, USER, "b"));
+        getInstrumentation().runOnMainSync(coalescer::flush);
+        getInstrumentation().waitForIdleSync();
+
+        assertEquals(2, loopers.size());
+        assertEquals(Looper.getMainLooper(), loopers.get(0));
+        assertEquals(Looper.getMainLooper(), loopers.get(1));
+    }
+
+    /**
+     * Flushes the pending events, and waits for their tasks to be sent on the handler thread
+     */
+    private void flush() {
+        mCoalescer.flush();
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void flushIfPending(String packageName, UserHandle user) {
+        mCoalescer.flushIfPending(packageName, user);
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private static void assertTask(PackageUpdatedTask task, int op, String... packages) {
+        assertEquals(op, task.getOp());
+        assertArrayEquals(packages, task.getPackages());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.popup;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.Process;
+import android.service.notification.StatusBarNotification;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.notification.NotificationKeyData;
+import com.android.launcher3.util.PackageUserKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Predicate;
+
+/**
+ * Tests for the notification dot handling in {@link PopupDataProvider}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PopupDataProviderTest {
+
+    private static final String PKG_A = "com.example.a";
+    private static final String PKG_B = "com.example.b";
+    private static final String PKG_C = "com.example.c";
+
+    private final ArrayList<Predicate<PackageUserKey>> mDotUpdates = new ArrayList<>();
+
+    private Context mContext;
+    private PopupDataProvider mProvider;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        getInstrumentation().runOnMainSync(
+                () -> mProvider = new PopupDataProvider(mDotUpdates::add));
+    }
+
+    @Test
+    public void testNotificationBurstUpdatesDotsOnce() {
+        getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < 10; i++) {
+                post(PKG_A, i);
+            }
+            post(PKG_B, 0);
+            assertTrue(mDotUpdates.isEmpty());
+
+            mProvider.flushNotificationDots();
+        });
+
+        assertEquals(1, mDotUpdates.size());
+        assertTrue(mDotUpdates.get(0).test(key(PKG_A)));
+        assertTrue(mDotUpdates.get(0).test(key(PKG_B)));
+        assertFalse(mDotUpdates.get(0).test(key(PKG_C)));
+    }
+
+    @Test
+    public void testFullRefreshDeliversPendingUpdates() {
+        getInstrumentation().runOnMainSync(() -> {
+            post(PKG_A, 0);
+            mProvider.onNotificationFullRefresh(Collections.emptyList());
+        });
+
+        // The pending post, then the removal by the refresh
+        assertEquals(2, mDotUpdates.size());
+        assertTrue(mDotUpdates.get(1).test(key(PKG_A)));
+    }
+
+    private void post(String pkg, int id) {
+        StatusBarNotification sbn = createNotification(pkg, id);
+        mProvider.onNotificationPosted(
+                PackageUserKey.fromNotification(sbn), NotificationKeyData.fromNotification(sbn));
+    }
+
+    private StatusBarNotification createNotification(String pkg, int id) {
+        Notification notification = new Notification.Builder(mContext, "channel")
+                .setContentTitle("title " + id)
+                .build();
+        return new StatusBarNotification(pkg, pkg, id, null, 0, 0, notification,
+                Process.myUserHandle(), null, 0);
+    }
+
+    private static PackageUserKey key(String pkg) {
+        return new PackageUserKey(pkg, Process.myUserHandle());
+    }
+}
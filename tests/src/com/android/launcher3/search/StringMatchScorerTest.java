@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.search.StringMatchScorer.NO_MATCH;
+import static com.android.launcher3.search.StringMatchScorer.SCORE_FUZZY;
+import static com.android.launcher3.search.StringMatchScorer.SCORE_PREFIX;
+import static com.android.launcher3.search.StringMatchScorer.SCORE_SUBSTRING;
+import static com.android.launcher3.search.StringMatchScorer.SCORE_WORD_START;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link StringMatchScorer}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class StringMatchScorerTest {
+
+    @Test
+    public void testExactMatches() {
+        assertEquals(SCORE_PREFIX, score("cal", "Calendar"));
+        assertEquals(SCORE_WORD_START, score("cow", "white cow"));
+        assertEquals(SCORE_WORD_START, score("cow", "whiteCow"));
+        assertEquals(SCORE_SUBSTRING, score("end", "Calendar"));
+        assertTrue(score("cow", "white cow") > score("cow", "black white cow"));
+    }
+
+    @Test
+    public void testTypos() {
+        assertEquals(SCORE_FUZZY - 60, score("calandar", "Calendar"));
+        assertEquals(SCORE_FUZZY - 60, score("youtbe", "YouTube"));
+        // Transposition counts as two edits, which is allowed for longer queries
+        assertEquals(SCORE_FUZZY - 120, score("calnedar", "Calendar"));
+        assertTrue(score("calandar", "Calendar") > score("calnedar", "Calendar"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        // Short queries do not allow typos
+        assertEquals(NO_MATCH, score("cx", "Calendar"));
+        assertEquals(NO_MATCH, score("map", "Camera"));
+        assertEquals(NO_MATCH, score("map", "Gmail"));
+        assertEquals(NO_MATCH, score("clock", "Calendar"));
+        assertEquals(NO_MATCH, score("mpas", "Maps"));
+        assertEquals(NO_MATCH, score("settings", "Camera"));
+        assertEquals(NO_MATCH, score("longer than title", "Maps"));
+    }
+
+    @Test
+    public void testFuzzyDisabled() {
+        StringMatchScorer scorer = new StringMatchScorer("calandar");
+        assertEquals(NO_MATCH, scorer.score("Calendar", null, false));
+    }
+
+    private static int score(String query, String title) {
+        return new StringMatchScorer(query).score(title, null, true);
+    }
+}
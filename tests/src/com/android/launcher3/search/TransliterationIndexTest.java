@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.Utilities;
+import com.android.launcher3.search.TransliterationIndex.TitleTokens;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link TransliterationIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TransliterationIndexTest {
+
+    @Test
+    public void testTokensMatch() {
+        // 微信: wei + xin
+        TitleTokens tokens = new TitleTokens("weixin", new int[] {0, 3});
+
+        assertTrue(tokens.matches("w"));
+        assertTrue(tokens.matches("wei"));
+        assertTrue(tokens.matches("weixin"));
+        assertTrue(tokens.matches("xin"));
+        assertTrue(tokens.matches("wx"));
+
+        assertFalse(tokens.matches("eix"));
+        assertFalse(tokens.matches("in"));
+        assertFalse(tokens.matches("weixinx"));
+        assertFalse(tokens.matches("xw"));
+    }
+
+    @Test
+    public void testComputeTokens() {
+        assumeTrue(Utilities.ATLEAST_Q);
+
+        TitleTokens tokens = TransliterationIndex.computeTokens("QQ邮箱");
+        assertEquals("qqyouxiang", tokens.reading);
+        assertEquals("qyx", tokens.initials);
+    }
+
+    @Test
+    public void testMatches() {
+        assumeTrue(Utilities.ATLEAST_Q);
+        TransliterationIndex index = new TransliterationIndex();
+
+        assertTrue(index.matches("weixin", "微信"));
+        assertTrue(index.matches("wei xin", "微信"));
+        assertTrue(index.matches("xin", "微信"));
+        assertTrue(index.matches("wx", "微信"));
+        assertTrue(index.matches("youxiang", "QQ邮箱"));
+
+        assertFalse(index.matches("weixin", "WeChat"));
+        assertFalse(index.matches("微", "微信"));
+        assertFalse(index.matches("zhifu", "微信"));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link LabelComparator}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LabelComparatorTest {
+
+    private static final String[] LABELS = {"Camera", "calendar", "Ärger", "10 Apps", "2 Apps",
+            "_hidden", "", "zebra", "Zebra", "émoji", "ﾃｽﾄ"};
+
+    private final LabelComparator mComparator = new LabelComparator();
+
+    @Test
+    public void testSortKeysMatchLabelComparison() {
+        for (String a : LABELS) {
+            for (String b : LABELS) {
+                assertEquals(a + " vs " + b,
+                        Integer.signum(mComparator.compare(a, b)),
+                        Integer.signum(mComparator.compare(
+                                mComparator.getSortKey(a, null),
+                                mComparator.getSortKey(b, null))));
+            }
+        }
+    }
+
+    @Test
+    public void testSortKeyReusedUntilLabelChanges() {
+        LabelComparator.SortKey key = mComparator.getSortKey("Camera", null);
+
+        assertSame(key, mComparator.getSortKey("Camera", key));
+        assertSame(key, mComparator.getSortKey(new StringBuilder("Camera"), key));
+        assertNotSame(key, mComparator.getSortKey("Calendar", key));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.MemoryAccounting.MemorySource;
+import com.android.launcher3.util.MemoryAccounting.SizeEstimate;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link MemoryAccounting}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class MemoryAccountingTest {
+
+    private final MemoryAccounting mAccounting = new MemoryAccounting();
+
+    @Test
+    public void sharedBitmap_countedOnceForFirstSource() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        mAccounting.register("first", estimate -> estimate.addBitmap(bitmap));
+        mAccounting.register("second", estimate -> {
+            estimate.addBitmap(bitmap);
+            estimate.addObjects(2, 100);
+        });
+
+        Map<String, SizeEstimate> estimates = mAccounting.estimate();
+        SizeEstimate first = estimates.get("first");
+        assertEquals(1, first.getBitmapCount());
+        assertEquals(0, estimates.get("second").getBitmapCount());
+        assertEquals(200, estimates.get("second").getBytes());
+        assertEquals(first.getBytes() + 200, estimates.get("total").getBytes());
+    }
+
+    @Test
+    public void sourcesWithSameName_addedUp() {
+        mAccounting.register("cache", estimate -> estimate.addObjects(1, 100));
+        mAccounting.register("cache", estimate -> estimate.addObjects(2, 100));
+
+        assertEquals(300, mAccounting.estimate().get("cache").getBytes());
+    }
+
+    @Test
+    public void highWaterMark_keptAfterShrinkAndUnregister() {
+        List<Integer> entries = new ArrayList<>();
+        SafeCloseable registration = mAccounting.register("cache",
+                estimate -> estimate.addObjects(entries.size(), 100));
+
+        entries.add(1);
+        entries.add(2);
+        mAccounting.estimate();
+        entries.clear();
+        mAccounting.estimate();
+        assertEquals(200, mAccounting.getHighWaterMark("cache"));
+
+        registration.close();
+        mAccounting.estimate();
+        assertEquals(200, mAccounting.getHighWaterMark("cache"));
+        assertEquals(200, mAccounting.getHighWaterMark("total"));
+    }
+
+    @Test
+    public void sample_preparesOnModelThread() throws Exception {
+        mAccounting.register("model", new MemorySource() {
+
+            private volatile int mCount;
+
+            @Override
+            public void prepareEstimate() {
+                assertTrue(MODEL_EXECUTOR.getLooper().isCurrentThread());
+                mCount = 3;
+            }
+
+            @Override
+            public void estimateSize(SizeEstimate estimate) {
+                assertTrue(MAIN_EXECUTOR.getLooper().isCurrentThread());
+                estimate.addObjects(mCount, 100);
+            }
+        });
+
+        mAccounting.sample();
+        MODEL_EXECUTOR.submit(() -> { }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+        assertEquals(300, mAccounting.getHighWaterMark("model"));
+    }
+}
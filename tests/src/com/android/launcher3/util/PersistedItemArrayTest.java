@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link PersistedItemArray}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PersistedItemArrayTest {
+
+    private Context mContext;
+    private PersistedItemArray<WorkspaceItemInfo> mArray;
+
+    @Before
+    public void setUp() {
+        mContext = getInstrumentation().getTargetContext();
+        mArray = new PersistedItemArray<>("persisted_item_array_test");
+        mArray.getFile(mContext).delete();
+    }
+
+    @After
+    public void tearDown() {
+        mArray.getFile(mContext).delete();
+    }
+
+    @Test
+    public void writeAndRead_restoresTitles() {
+        mArray.write(mContext, Arrays.asList(
+                createApp("App1", "Title 1"), createApp("App2", null)));
+
+        List<WorkspaceItemInfo> items = mArray.read(mContext, new TitleItemFactory(),
+                serial -> Process.myUserHandle());
+        assertEquals(2, items.size());
+        assertEquals(new ComponentName("a.b", "App1"), items.get(0).getTargetComponent());
+        assertEquals("Title 1", items.get(0).title);
+        assertEquals(new ComponentName("a.b", "App2"), items.get(1).getTargetComponent());
+        assertNull(items.get(1).title);
+    }
+
+    private static WorkspaceItemInfo createApp(String className, @Nullable String title) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.intent = AppInfo.makeLaunchIntent(new ComponentName("a.b", className));
+        info.user = Process.myUserHandle();
+        info.title = title;
+        return info;
+    }
+
+    private static class TitleItemFactory
+            implements PersistedItemArray.ItemFactory<WorkspaceItemInfo> {
+
+        @Override
+        public WorkspaceItemInfo createInfo(int itemType, UserHandle user, Intent intent) {
+            return createInfo(itemType, user, intent, null);
+        }
+
+        @Override
+        public WorkspaceItemInfo createInfo(int itemType, UserHandle user, Intent intent,
+                @Nullable String title) {
+            WorkspaceItemInfo info = new WorkspaceItemInfo();
+            info.itemType = itemType;
+            info.intent = intent;
+            info.user = user;
+            info.title = title;
+            return info;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link RunnableList}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class RunnableListTest {
+
+    private final List<Integer> mExecuted = new ArrayList<>();
+
+    @Test
+    public void executeWhile_stopsAndResumesInOrder() {
+        RunnableList list = createList(5);
+
+        assertFalse(list.executeWhile(() -> mExecuted.size() < 2));
+        assertThat(mExecuted).containsExactly(0, 1).inOrder();
+
+        assertTrue(list.executeWhile(() -> true));
+        assertThat(mExecuted).containsExactly(0, 1, 2, 3, 4).inOrder();
+    }
+
+    @Test
+    public void executeAllAndClear_afterPartialExecution() {
+        RunnableList list = createList(4);
+
+        list.executeWhile(() -> mExecuted.isEmpty());
+        list.executeAllAndClear();
+        assertThat(mExecuted).containsExactly(0, 1, 2, 3).inOrder();
+
+        // A new runnable starts a new list
+        list.add(() -> mExecuted.add(4));
+        list.executeAllAndClear();
+        assertThat(mExecuted).containsExactly(0, 1, 2, 3, 4).inOrder();
+    }
+
+    @Test
+    public void executeWhile_runsRunnablesAddedWhileExecuting() {
+        RunnableList list = new RunnableList();
+        list.add(() -> {
+            mExecuted.add(0);
+            list.add(() -> mExecuted.add(1));
+        });
+
+        assertTrue(list.executeWhile(() -> true));
+        assertThat(mExecuted).containsExactly(0, 1).inOrder();
+    }
+
+    private RunnableList createList(int count) {
+        RunnableList list = new RunnableList();
+        for (int i = 0; i < count; i++) {
+            int value = i;
+            list.add(() -> mExecuted.add(value));
+        }
+        return list;
+    }
+}
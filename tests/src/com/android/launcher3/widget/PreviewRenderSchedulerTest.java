@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.widget.PreviewRenderScheduler.Request;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Tests for {@link PreviewRenderScheduler}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PreviewRenderSchedulerTest {
+
+    private final ArrayList<Runnable> mWorkerTasks = new ArrayList<>();
+    private final ArrayList<String> mRendered = new ArrayList<>();
+    private final ArrayList<String> mDelivered = new ArrayList<>();
+
+    private PreviewRenderScheduler mScheduler;
+
+    @Before
+    public void setup() {
+        mScheduler = new PreviewRenderScheduler(mWorkerTasks::add, Runnable::run, 1);
+    }
+
+    @Test
+    public void testRendersMostRecentFirst() {
+        submit("a");
+        submit("b");
+        submit("c");
+        assertEquals(3, mScheduler.getQueueDepth());
+
+        runWorkers();
+
+        assertEquals(Arrays.asList("c", "b", "a"), mRendered);
+        assertEquals(Arrays.asList("c", "b", "a"), mDelivered);
+        assertEquals(0, mScheduler.getQueueDepth());
+    }
+
+    @Test
+    public void testResubmitMovesToFront() {
+        submit("a");
+        submit("b");
+        submit("a");
+
+        runWorkers();
+
+        assertEquals(Arrays.asList("a", "b"), mRendered);
+        assertEquals(Arrays.asList("a", "a", "b"), mDelivered);
+    }
+
+    @Test
+    public void testIdenticalRequestsShareRender() {
+        Bitmap[] results = new Bitmap[2];
+        mScheduler.submit("a", renderer("a"), b -> results[0] = b);
+        mScheduler.submit("a", renderer("a"), b -> results[1] = b);
+
+        runWorkers();
+
+        assertEquals(Arrays.asList("a"), mRendered);
+        assertSame(results[0], results[1]);
+    }
+
+    @Test
+    public void testCancelledRequestIsNotRendered() {
+        submit("a");
+        Request b = submit("b");
+        submit("c");
+        b.cancel();
+
+        runWorkers();
+
+        assertEquals(Arrays.asList("c", "a"), mRendered);
+        assertEquals(Arrays.asList("c", "a"), mDelivered);
+    }
+
+    @Test
+    public void testCancelOneOfSharedRequests() {
+        Request first = submit("a");
+        submit("a");
+        first.cancel();
+
+        runWorkers();
+
+        assertEquals(Arrays.asList("a"), mRendered);
+        assertEquals(Arrays.asList("a"), mDelivered);
+    }
+
+    @Test
+    public void testFailedRenderIsDelivered() {
+        Bitmap[] results = new Bitmap[] {Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888)};
+        boolean[] delivered = new boolean[2];
+        mScheduler.submit("a", () -> null, b -> {
+            delivered[0] = true;
+            results[0] = b;
+        });
+        mScheduler.submit("b", () -> {
+            throw new RuntimeException("Render failed");
+        }, b -> delivered[1] = true);
+        submit("c");
+
+        runWorkers();
+
+        assertTrue(delivered[0]);
+        assertNull(results[0]);
+        assertTrue(delivered[1]);
+        // Failures do not stop the following renders
+        assertEquals(Arrays.asList("c"), mDelivered);
+    }
+
+    @Test
+    public void testAsyncRenderKeepsItsSlot() {
+        ArrayList<Consumer<Bitmap>> pending = new ArrayList<>();
+        mScheduler.submit("a", onComplete -> {
+            mRendered.add("a");
+            pending.add(onComplete);
+        }, b -> mDelivered.add("a"));
+        submit("b");
+
+        runWorkers();
+        // The worker thread is released, but the next render waits for the slot
+        assertEquals(Arrays.asList("a"), mRendered);
+        assertEquals(1, mScheduler.getQueueDepth());
+
+        pending.get(0).accept(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+        runWorkers();
+
+        assertEquals(Arrays.asList("a", "b"), mRendered);
+        assertEquals(Arrays.asList("a", "b"), mDelivered);
+    }
+
+    private Request submit(String key) {
+        return mScheduler.submit(key, renderer(key), b -> mDelivered.add(key));
+    }
+
+    private Supplier<Bitmap> renderer(String key) {
+        return () -> {
+            mRendered.add(key);
+            return Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        };
+    }
+
+    private void runWorkers() {
+        while (!mWorkerTasks.isEmpty()) {
+            List<Runnable> tasks = new ArrayList<>(mWorkerTasks);
+            mWorkerTasks.clear();
+            tasks.forEach(Runnable::run);
+        }
+    }
+}